@@ -0,0 +1,104 @@
+package org.janelia.saalfeldlab.n5.universe;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+import org.janelia.saalfeldlab.n5.DatasetAttributes;
+import org.janelia.saalfeldlab.n5.N5Exception;
+
+/**
+ * Runs one task per block of a dataset.
+ * <p>
+ * Tasks run on an executor with at most two blocks per processor in flight,
+ * so that the blocks being processed bound the memory use. The first failure
+ * stops further blocks from being started, and is thrown once the blocks in
+ * flight are done.
+ */
+public class BlockTasks {
+
+	private BlockTasks() {}
+
+	/**
+	 * @param attrs the dataset attributes
+	 * @return the number of blocks along each dimension
+	 */
+	public static long[] gridDimensions(final DatasetAttributes attrs) {
+
+		final long[] out = new long[attrs.getNumDimensions()];
+		for (int d = 0; d < out.length; d++)
+			out[d] = (attrs.getDimensions()[d] + attrs.getBlockSize()[d] - 1) / attrs.getBlockSize()[d];
+
+		return out;
+	}
+
+	/**
+	 * Runs the task for the grid position of every block of a dataset.
+	 *
+	 * @param attrs the dataset attributes
+	 * @param executor the executor, or null to run all tasks in the calling
+	 *            thread. Tasks the executor rejects run in the calling thread.
+	 * @param action what the tasks do, for error messages, e.g. "copy a/b"
+	 * @param task the task, called with the grid position of a block
+	 * @throws N5Exception if a task failed or the calling thread was interrupted
+	 */
+	public static void forEachBlock(final DatasetAttributes attrs, final ExecutorService executor,
+			final String action, final Consumer<long[]> task) throws N5Exception {
+
+		final long[] gridDimensions = gridDimensions(attrs);
+		final int nd = gridDimensions.length;
+		long numBlocks = 1;
+		for (final long g : gridDimensions)
+			numBlocks *= g;
+
+		final int permits = executor == null ? 1 : Math.max(1, 2 * Runtime.getRuntime().availableProcessors());
+		final Semaphore inFlight = new Semaphore(permits);
+		final AtomicReference<Throwable> failure = new AtomicReference<>();
+		try {
+			for (long i = 0; i < numBlocks && failure.get() == null; i++) {
+
+				final long[] gridPosition = new long[nd];
+				long rem = i;
+				for (int d = 0; d < nd; d++) {
+					gridPosition[d] = rem % gridDimensions[d];
+					rem /= gridDimensions[d];
+				}
+
+				inFlight.acquire();
+				final Runnable blockTask = () -> {
+					try {
+						if (failure.get() == null)
+							task.accept(gridPosition);
+					} catch (final Throwable t) {
+						failure.compareAndSet(null, t);
+					} finally {
+						inFlight.release();
+					}
+				};
+
+				if (executor == null)
+					blockTask.run();
+				else {
+					try {
+						executor.execute(blockTask);
+					} catch (final RejectedExecutionException e) {
+						blockTask.run();
+					}
+				}
+			}
+
+			// wait for the blocks in flight
+			inFlight.acquire(permits);
+			inFlight.release(permits);
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new N5Exception("Interrupted while trying to " + action, e);
+		}
+
+		if (failure.get() != null)
+			throw new N5Exception("Failed to " + action, failure.get());
+	}
+
+}
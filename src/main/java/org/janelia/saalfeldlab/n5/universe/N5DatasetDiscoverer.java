@@ -8,7 +8,9 @@ import java.util.Collections;
 import java.util.Comparator;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
@@ -17,7 +19,9 @@ import java.util.concurrent.ThreadPoolExecutor;
 import java.util.function.Consumer;
 import java.util.function.Predicate;
 
+import org.janelia.saalfeldlab.n5.N5Exception;
 import org.janelia.saalfeldlab.n5.N5Reader;
+import org.janelia.saalfeldlab.n5.universe.metadata.MetadataUtils;
 import org.janelia.saalfeldlab.n5.universe.metadata.N5CosemMetadataParser;
 import org.janelia.saalfeldlab.n5.universe.metadata.N5CosemMultiScaleMetadata;
 import org.janelia.saalfeldlab.n5.universe.metadata.N5GenericSingleScaleMetadataParser;
@@ -63,6 +67,10 @@ public class N5DatasetDiscoverer {
 			new N5GenericSingleScaleMetadataParser(),
 	};
 
+	private static final String LABELS = "labels";
+
+	private static final String[] LABELS_KEYS = new String[]{LABELS, "ome/" + LABELS};
+
 	private final List<N5MetadataParser<?>> metadataParsers;
 	private final List<N5MetadataParser<?>> groupParsers;
 	private final List<N5MetadataParser<?>> shallowGroupParsers;
@@ -215,8 +223,12 @@ public class N5DatasetDiscoverer {
 			final List<N5MetadataParser<?>> metadataParsers, final List<N5MetadataParser<?>> groupParsers)
 			throws IOException {
 
+		final Set<String> keys = attributeKeys(n5, node, metadataParsers, groupParsers);
+
 		// Go through all parsers to populate metadata
 		for (final N5MetadataParser<?> parser : metadataParsers) {
+			if (skip(parser, keys))
+				continue;
 			try {
 				Optional<? extends N5Metadata> parsedMeta;
 				parsedMeta = parser.apply(n5, node);
@@ -230,6 +242,8 @@ public class N5DatasetDiscoverer {
 		// this may be a group (e.g. multiscale pyramid) try to parse groups
 		if ((node.getMetadata() == null) && !node.childrenList().isEmpty() && groupParsers != null) {
 			for (final N5MetadataParser<?> gp : groupParsers) {
+				if (skip(gp, keys))
+					continue;
 				try {
 					final Optional<? extends N5Metadata> groupMeta = gp.apply(n5, node);
 					groupMeta.ifPresent(node::setMetadata);
@@ -254,8 +268,12 @@ public class N5DatasetDiscoverer {
 	public static void parseMetadataShallow(final N5Reader n5, final N5TreeNode node,
 			final List<N5MetadataParser<?>> metadataParsers, final List<N5MetadataParser<?>> groupParsers) {
 
+		final Set<String> keys = attributeKeys(n5, node, metadataParsers, groupParsers);
+
 		// Go through all parsers to populate metadata
 		for (final N5MetadataParser<?> parser : metadataParsers) {
+			if (skip(parser, keys))
+				continue;
 			try {
 				final Optional<? extends N5Metadata> parsedMeta;
 				parsedMeta = parser.apply(n5, node);
@@ -269,6 +287,8 @@ public class N5DatasetDiscoverer {
 
 		// this may be a group (e.g. multiscale pyramid) try to parse groups
 		for (final N5MetadataParser<?> gp : groupParsers) {
+			if (skip(gp, keys))
+				continue;
 			try {
 				final Optional<? extends N5Metadata> groupMeta = gp.apply(n5, node);
 				groupMeta.ifPresent(node::setMetadata);
@@ -278,6 +298,38 @@ public class N5DatasetDiscoverer {
 		}
 	}
 
+	/**
+	 * Lists the keys of the node's attributes, if any of the parsers declares
+	 * {@link N5MetadataParser#identifyingKeys() identifying keys}.
+	 *
+	 * @return the keys, or null if no parser can be skipped
+	 */
+	@SafeVarargs
+	private static Set<String> attributeKeys(final N5Reader n5, final N5TreeNode node,
+			final List<N5MetadataParser<?>>... parserLists) {
+
+		boolean anyIdentified = false;
+		for (final List<N5MetadataParser<?>> parsers : parserLists)
+			if (parsers != null)
+				for (final N5MetadataParser<?> parser : parsers)
+					anyIdentified |= !parser.identifyingKeys().isEmpty();
+
+		if (!anyIdentified)
+			return null;
+
+		try {
+			final Map<String, Class<?>> attributes = n5.listAttributes(node.getPath());
+			return attributes == null ? null : attributes.keySet();
+		} catch (final Exception e) {
+			return null;
+		}
+	}
+
+	private static boolean skip(final N5MetadataParser<?> parser, final Set<String> keys) {
+
+		return keys != null && !parser.mayParse(keys);
+	}
+
 	public static boolean trim(final N5TreeNode node) {
 
 		return trim(node, x -> {});
@@ -437,6 +489,154 @@ public class N5DatasetDiscoverer {
 		return root;
 	}
 
+	public N5TreeNode discoverAndParsePruned(final String base) {
+
+		return discoverAndParsePruned(base, x -> {});
+	}
+
+	public N5TreeNode discoverAndParsePruned(final String base, final Consumer<N5TreeNode> callback) {
+
+		root = new N5TreeNode(base);
+		return discoverAndParsePruned(root, callback);
+	}
+
+	/**
+	 * Discovers and parses metadata for the given node and its descendants
+	 * without deep listing.
+	 * <p>
+	 * Groups are listed one level at a time. Descent stops at datasets and at
+	 * groups recognized by a shallow group parser (e.g. OME-NGFF multiscales):
+	 * the children of those are taken from the group's metadata, so their
+	 * scale levels are neither listed nor parsed again. Labels declared by an
+	 * OME-NGFF image are followed without listing. Group parsers that depend
+	 * on their children (e.g. COSEM, N5Viewer) run after the children are
+	 * parsed, as in {@link #discoverAndParseRecursive(N5TreeNode)}.
+	 *
+	 * @param root
+	 *            the root node
+	 * @param callback
+	 *            called for every node after it is parsed
+	 * @return the root node
+	 */
+	public N5TreeNode discoverAndParsePruned(final N5TreeNode root, final Consumer<N5TreeNode> callback) {
+
+		discoverPruned(root, callback);
+		sortAndTrimRecursive(root, callback);
+		return root;
+	}
+
+	private void discoverPruned(final N5TreeNode node, final Consumer<N5TreeNode> callback) {
+
+		parseMetadataShallow(n5, node, metadataParsers, shallowGroupParsers);
+
+		final String[] childNames;
+		if (node.getMetadata() instanceof N5MetadataGroup) {
+
+			@SuppressWarnings("unchecked")
+			final N5MetadataGroup<? extends N5Metadata> grpMeta = (N5MetadataGroup<N5Metadata>)node.getMetadata();
+			for (final N5Metadata child : grpMeta.getChildrenMetadata()) {
+				final N5TreeNode childNode = node.getDescendant(child.getPath()).orElseGet(() -> node.addPath(child.getPath()));
+				if (childNode == null)
+					throw new N5Exception("Child " + child.getPath() + " of " + node.getPath() + " is not below it");
+
+				if (childNode.getMetadata() == null)
+					childNode.setMetadata(child);
+			}
+
+			// images may have labels, which are the only children not declared by the group
+			final String labelsPath = MetadataUtils.canonicalPath(node, LABELS);
+			if (node.child(LABELS).isPresent() || !n5.exists(labelsPath)) {
+				callback.accept(node);
+				return;
+			}
+			childNames = new String[]{LABELS};
+
+		} else if (node.isDataset() || n5.datasetExists(node.getPath())) {
+			// do not list the blocks of datasets
+			callback.accept(node);
+			return;
+		} else
+			childNames = listChildren(node);
+
+		final List<N5TreeNode> children = new ArrayList<>(childNames.length);
+		for (final String name : childNames) {
+			final N5TreeNode child = new N5TreeNode(MetadataUtils.canonicalPath(node, name));
+			node.add(child);
+			children.add(child);
+		}
+
+		final ArrayList<Future<?>> childrenFutures = new ArrayList<>();
+		for (final N5TreeNode child : children) {
+			final boolean useExec;
+			if (executor instanceof ThreadPoolExecutor) {
+				final ThreadPoolExecutor threadPoolExec = (ThreadPoolExecutor)executor;
+				synchronized (executor) {
+					// parents wait for their children, so keep a thread free
+					useExec = threadPoolExec.getActiveCount() < threadPoolExec.getMaximumPoolSize() - 1;
+				}
+			} else
+				useExec = false;
+
+			if (useExec)
+				childrenFutures.add(executor.submit(() -> discoverPruned(child, callback)));
+			else
+				discoverPruned(child, callback);
+		}
+
+		for (final Future<?> childrenFuture : childrenFutures) {
+			try {
+				childrenFuture.get();
+			} catch (InterruptedException | ExecutionException e) {
+				LOG.error("Error encountered during metadata parsing", e);
+				throw new RuntimeException(e);
+			}
+		}
+
+		// group parsers that need their children's metadata
+		if (node.getMetadata() == null && !node.childrenList().isEmpty() && groupParsers != null) {
+			final Set<String> keys = attributeKeys(n5, node, groupParsers);
+			for (final N5MetadataParser<?> gp : groupParsers) {
+				if (skip(gp, keys))
+					continue;
+				try {
+					final Optional<? extends N5Metadata> groupMeta = gp.apply(n5, node);
+					groupMeta.ifPresent(node::setMetadata);
+					if (groupMeta.isPresent())
+						break;
+				} catch (final Exception e) {
+					LOG.debug("group parser {} failed for: {}", gp.getClass().getSimpleName(), node.getPath(), e);
+				}
+			}
+		}
+		callback.accept(node);
+	}
+
+	/**
+	 * Returns the names of the children of the node, those declared by an
+	 * OME-NGFF labels group, or the listed ones.
+	 */
+	private String[] listChildren(final N5TreeNode node) {
+
+		if (node.getNodeName().equals(LABELS)) {
+			// v0.4 stores the labels at the top level, v0.5 below "ome"
+			for (final String key : LABELS_KEYS) {
+				try {
+					final String[] labels = n5.getAttribute(node.getPath(), key, String[].class);
+					if (labels != null)
+						return labels;
+				} catch (final Exception e) {
+					LOG.debug("could not read {} of: {}", key, node.getPath(), e);
+				}
+			}
+		}
+
+		try {
+			return n5.list(node.getPath());
+		} catch (final Exception e) {
+			return new String[0];
+		}
+	}
+
 	public N5TreeNode parse(final String dataset) {
 
 		final N5TreeNode node = new N5TreeNode(dataset);
@@ -445,8 +645,12 @@ public class N5DatasetDiscoverer {
 
 	public N5TreeNode parse(final N5TreeNode node) {
 
+		final Set<String> keys = attributeKeys(n5, node, metadataParsers);
+
 		// Go through all parsers to populate metadata
 		for (final N5MetadataParser<?> parser : metadataParsers) {
+			if (skip(parser, keys))
+				continue;
 			try {
 				final Optional<? extends N5Metadata> metadata = parser.apply(n5, node);
 				if (metadata.isPresent()) {
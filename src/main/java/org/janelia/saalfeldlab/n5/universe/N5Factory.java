@@ -17,6 +17,10 @@ import org.janelia.saalfeldlab.n5.hdf5.N5HDF5Reader;
 import org.janelia.saalfeldlab.n5.hdf5.N5HDF5Writer;
 import org.janelia.saalfeldlab.n5.s3.AmazonS3Utils;
 import org.janelia.saalfeldlab.n5.universe.options.*;
+import org.janelia.saalfeldlab.n5.universe.reader.BlockCache;
+import org.janelia.saalfeldlab.n5.universe.reader.CachedN5Reader;
+import org.janelia.saalfeldlab.n5.universe.reader.CachedN5Writer;
+import org.janelia.saalfeldlab.n5.universe.reader.CoalescingN5Reader;
 import org.janelia.saalfeldlab.n5.zarr.N5ZarrReader;
 import org.janelia.saalfeldlab.n5.zarr.N5ZarrWriter;
 import org.janelia.saalfeldlab.n5.zarr.ZarrKeyValueReader;
@@ -453,13 +457,13 @@ public class N5Factory implements Serializable {
 
 			switch (storage) {
                 case HDF5:
-                    return getOptions().getHdf5Builder().buildReader(containerPath);
+                    return decorate(getOptions().getHdf5Builder(), getOptions().getHdf5Builder().buildReader(containerPath));
                 case N5:
-                    return getOptions().getN5Builder().buildReader(access, containerPath);
+                    return decorate(getOptions().getN5Builder(), getOptions().getN5Builder().buildReader(access, containerPath));
                 case ZARR3:
-                    return getOptions().getZarr3Builder().buildReader(access, containerPath);
+                    return decorate(getOptions().getZarr3Builder(), getOptions().getZarr3Builder().buildReader(access, containerPath));
                 case ZARR2:
-                    return getOptions().getZarr2Builder().buildReader(access, containerPath);
+                    return decorate(getOptions().getZarr2Builder(), getOptions().getZarr2Builder().buildReader(access, containerPath));
                 case ZARR:
                     return newGenericZarrReader(access, location);
             }
@@ -467,9 +471,25 @@ public class N5Factory implements Serializable {
 		}
 	}
 
+	private static N5Reader decorate(final AbstractN5Builder builder, final N5Reader reader) {
+
+		// coalesce the reads that miss the cache
+		final N5Reader coalescing = builder.getCoalesceReads() ? CoalescingN5Reader.wrap(reader) : reader;
+		final BlockCache cache = builder.getBlockCache();
+		return cache == null ? coalescing : CachedN5Reader.wrap(coalescing, cache);
+	}
+
+	private static N5Writer decorate(final AbstractN5Builder builder, final N5Writer writer) {
+
+		final BlockCache cache = builder.getBlockCache();
+		return cache == null ? writer : CachedN5Writer.wrap(writer, cache);
+	}
+
     /**
 	 * Open a zarr as N5Reader at the given {@code access} and {@code location}.
 	 * Will prefer returning the newest version of zarr that is found at the location.
+	 * The reader is opened with {@link #openReader(StorageFormat, KeyValueAccess, URI)},
+	 * so it is decorated with the options of that version.
 	 *
      * @param access to the key-value access backend
      * @param location of the zarr container
@@ -676,13 +696,13 @@ public class N5Factory implements Serializable {
 			final String containerLocation = location.toString();
 			switch (storage) {
                 case HDF5:
-                    return options.getHdf5Builder().buildWriter(containerLocation);
+                    return decorate(options.getHdf5Builder(), options.getHdf5Builder().buildWriter(containerLocation));
                 case N5:
-                    return options.getN5Builder().buildWriter(access, containerLocation);
+                    return decorate(options.getN5Builder(), options.getN5Builder().buildWriter(access, containerLocation));
                 case ZARR3:
-                    return options.getZarr3Builder().buildWriter(access, containerLocation);
+                    return decorate(options.getZarr3Builder(), options.getZarr3Builder().buildWriter(access, containerLocation));
                 case ZARR2:
-                    return options.getZarr2Builder().buildWriter(access, containerLocation);
+                    return decorate(options.getZarr2Builder(), options.getZarr2Builder().buildWriter(access, containerLocation));
                 case ZARR:
                     return newGenericZarrWriter(access, location);
             }
@@ -694,6 +714,8 @@ public class N5Factory implements Serializable {
 	 * Try to get a zarr writer at the given location and access.
 	 * If a container exists at the location, load that version as a writer if possible.
 	 * If no container exists, create a new writer with the newest zarr version.
+	 * The writer is opened with {@link #openWriter(StorageFormat, KeyValueAccess, URI)},
+	 * so it is decorated with the options of that version.
 	 *
      * @param access to the key-value backend
      * @param location of the zarr writer
@@ -4,6 +4,7 @@ import com.google.gson.JsonElement;
 import net.imglib2.util.Pair;
 import org.janelia.saalfeldlab.n5.*;
 import org.janelia.saalfeldlab.n5.hdf5.N5HDF5Reader;
+import org.janelia.saalfeldlab.n5.universe.reader.ForwardingN5Reader;
 import org.janelia.saalfeldlab.n5.zarr.ZarrKeyValueReader;
 import org.janelia.saalfeldlab.n5.zarr.v3.ZarrV3KeyValueReader;
 import org.jspecify.annotations.Nullable;
@@ -65,8 +66,9 @@ public class N5FactoryWithCache extends N5Factory {
 	private boolean canRead(N5Reader reader) {
 
 		try {
-			if (reader instanceof CachedGsonKeyValueN5Reader) {
-				((CachedGsonKeyValueN5Reader)reader).getAttributesFromContainer("/", "/");
+			final N5Reader inner = ForwardingN5Reader.unwrap(reader);
+			if (inner instanceof CachedGsonKeyValueN5Reader) {
+				((CachedGsonKeyValueN5Reader)inner).getAttributesFromContainer("/", "/");
 			} else {
 				reader.getAttribute("/", "/", JsonElement.class);
 			}
@@ -126,12 +128,14 @@ public class N5FactoryWithCache extends N5Factory {
 		}
 	}
 
-	private boolean n5MatchesFormat(N5Reader reader, StorageFormat format) {
+	private boolean n5MatchesFormat(N5Reader n5, StorageFormat format) {
 
 		// succeed if no format to compare against
 		if (format == null)
 			return true;
 
+		final N5Reader reader = ForwardingN5Reader.unwrap(n5);
+
 		switch (format) {
 		case N5:
 			return reader instanceof N5KeyValueReader && !(reader instanceof ZarrV3KeyValueReader);
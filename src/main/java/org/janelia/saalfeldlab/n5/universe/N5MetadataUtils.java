@@ -2,9 +2,11 @@ package org.janelia.saalfeldlab.n5.universe;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
 
 import org.janelia.saalfeldlab.n5.N5Reader;
 import org.janelia.saalfeldlab.n5.universe.metadata.N5CosemMetadataParser;
@@ -106,9 +108,29 @@ public class N5MetadataUtils {
 		return parseMetadata(n5, group, parseWholeTree, Executors.newCachedThreadPool(), PARSERS, GROUP_PARSERS);
 	}
 
+	/**
+	 * Parses the metadata of the given group.
+	 * <p>
+	 * If the group's own attributes declare its children, as OME-NGFF
+	 * multiscales do, only the group and its declared children are read and
+	 * the container is not listed. Otherwise, the whole tree is parsed if
+	 * parseWholeTree is true, or the tree below the group if false.
+	 *
+	 * @param n5 the reader
+	 * @param group the group
+	 * @param parseWholeTree whether to parse the whole container tree
+	 * @param exec the executor
+	 * @param parsers the metadata parsers
+	 * @param groupParsers the group parsers
+	 * @return the metadata, or null
+	 */
 	public static N5Metadata parseMetadata(final N5Reader n5, final String group, final boolean parseWholeTree,
 			final ExecutorService exec, final List<N5MetadataParser<?>> parsers, final List<N5MetadataParser<?>> groupParsers) {
 
+		final N5TreeNode shallowNode = parseMetadataTreeShallow(n5, group, groupParsers);
+		if (shallowNode != null)
+			return shallowNode.getMetadata();
+
 		final String groupToParse = parseWholeTree ? "" : group;
 		final N5TreeNode node = parseMetadataTree(n5, groupToParse, exec, parsers, groupParsers);
 		if (node == null)
@@ -119,6 +141,50 @@ public class N5MetadataUtils {
 			return node.getMetadata();
 	}
 
+	/**
+	 * Parses the metadata of a group whose children are declared in its own
+	 * attributes, like an OME-NGFF multiscale group, without listing the
+	 * container. Only the group and the scale levels it declares are read.
+	 *
+	 * @param n5 the reader
+	 * @param group the group
+	 * @param groupParsers the group parsers, of which only the shallow ones are used
+	 * @return the node for the group with its scale levels as children, or
+	 *         null if no shallow group parser could parse the group
+	 */
+	public static N5TreeNode parseMetadataTreeShallow(final N5Reader n5, final String group,
+			final List<N5MetadataParser<?>> groupParsers) {
+
+		final List<N5MetadataParser<?>> shallowParsers = shallowGroupParsers(groupParsers);
+		if (shallowParsers.isEmpty())
+			return null;
+
+		final N5TreeNode node = new N5TreeNode(group);
+		N5DatasetDiscoverer.parseMetadataShallow(n5, node, Collections.emptyList(), shallowParsers);
+		return node.getMetadata() == null ? null : node;
+	}
+
+	public static N5TreeNode parseMetadataTreeShallow(final N5Reader n5, final String group) {
+
+		return parseMetadataTreeShallow(n5, group, GROUP_PARSERS);
+	}
+
+	/**
+	 * @param groupParsers the group parsers
+	 * @return the group parsers that find children from the group's own
+	 *         attributes, and so do not need the container to be listed
+	 * @see N5MetadataParser#findsChildrenInAttributes()
+	 */
+	public static List<N5MetadataParser<?>> shallowGroupParsers(final List<N5MetadataParser<?>> groupParsers) {
+
+		if (groupParsers == null)
+			return Collections.emptyList();
+
+		return groupParsers.stream()
+				.filter(N5MetadataParser::findsChildrenInAttributes)
+				.collect(Collectors.toList());
+	}
+
 	public static N5TreeNode parseMetadataTree(final N5Reader n5) {
 
 		return parseMetadataTree(n5, Executors.newCachedThreadPool(), PARSERS, GROUP_PARSERS);
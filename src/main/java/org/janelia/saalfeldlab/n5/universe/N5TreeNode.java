@@ -1,13 +1,16 @@
 package org.janelia.saalfeldlab.n5.universe;
 
 import java.nio.file.Paths;
+import java.util.AbstractList;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Optional;
+import java.util.RandomAccess;
 import java.util.function.Function;
 import java.util.function.Predicate;
+import java.util.regex.Pattern;
 import java.util.stream.Stream;
 
 import org.janelia.saalfeldlab.n5.N5Reader;
@@ -25,16 +28,46 @@ import org.janelia.saalfeldlab.n5.universe.metadata.N5Metadata;
  */
 public class N5TreeNode {
 
+	private static final String SEPARATOR = "/";
+
+	private static final N5TreeNode[] NO_CHILDREN = new N5TreeNode[0];
+
+	/**
+	 * The full path, or null if the path is computed from the parent.
+	 */
 	private final String path;
 
+	/**
+	 * The last path segment of nodes whose path is computed from the parent.
+	 */
+	private final String name;
+
+	private final N5TreeNode parent;
+
 	private N5Metadata metadata;
 
-	private final ArrayList<N5TreeNode> children;
+	private N5TreeNode[] children = NO_CHILDREN;
+
+	private int numChildren = 0;
+
+	private Children childrenView;
 
 	public N5TreeNode(final String path) {
 
 		this.path = path.trim();
-		children = new ArrayList<>();
+		name = null;
+		parent = null;
+	}
+
+	/**
+	 * Creates a node whose path is its parent's path, a separator, and the
+	 * given name. The path is not stored, which saves memory for large trees.
+	 */
+	private N5TreeNode(final N5TreeNode parent, final String name) {
+
+		path = null;
+		this.name = name;
+		this.parent = parent;
 	}
 
 	public static Stream<N5TreeNode> flattenN5Tree(N5TreeNode root) {
@@ -44,11 +77,17 @@ public class N5TreeNode {
 
 	public String getNodeName() {
 
+		if (path == null)
+			return name;
+
 		return Paths.get(removeLeadingSlash(path)).getFileName().toString();
 	}
 
 	public String getParentPath() {
 
+		if (path == null)
+			return parent.getPath();
+
 		return Paths.get(removeLeadingSlash(path)).getParent().toString();
 	}
 
@@ -59,34 +98,99 @@ public class N5TreeNode {
 	 */
 	public void add(final N5TreeNode child) {
 
-		children.add(child);
+		if (numChildren == children.length)
+			children = Arrays.copyOf(children, Math.max(4, 2 * numChildren));
+
+		children[numChildren++] = child;
+		modified();
 	}
 
 	public void remove(final N5TreeNode child) {
 
-		children.remove(child);
+		childrenList().remove(child);
 	}
 
 	public void removeAllChildren() {
 
-		children.clear();
+		children = NO_CHILDREN;
+		numChildren = 0;
+		modified();
 	}
 
+	private void modified() {
+
+		if (childrenView != null)
+			childrenView.modified();
+	}
+
+	/**
+	 * Returns a modifiable view of the children of this node. The same view
+	 * is returned by every call, so iterating it fails fast if the children
+	 * are changed by other means.
+	 *
+	 * @return the children
+	 */
 	public List<N5TreeNode> childrenList() {
 
-		return children;
+		if (childrenView == null)
+			childrenView = new Children();
+
+		return childrenView;
 	}
 
 	public Optional<N5TreeNode> child(final String name) {
 
-		final String childPath = N5URI.normalizeGroupPath(path + "/" + name);
-		return children.stream().filter(x ->  N5URI.normalizeGroupPath(x.getPath()).equals(childPath)).findFirst();
+		final String childPath = N5URI.normalizeGroupPath(getPath() + "/" + name);
+		return childrenList().stream().filter(x ->  N5URI.normalizeGroupPath(x.getPath()).equals(childPath)).findFirst();
 	}
 
+	/**
+	 * Returns the node at the given full path below or at this node. Like
+	 * {@link #addPath(String)}, the path is followed by node names, so the
+	 * paths of the nodes are not built. Children that store their path, which
+	 * may be several segments below their parent, are matched by that path.
+	 *
+	 * @param path the full path to the node
+	 * @return the node, if present
+	 */
 	public Optional<N5TreeNode> getDescendant(String path) {
 
-		return getDescendants(x -> N5URI.normalizeGroupPath(x.getPath()).equals(N5URI.normalizeGroupPath(path)))
-				.findFirst();
+		final String normPath = removeLeadingSlash(N5URI.normalizeGroupPath(path));
+		final String thisPath = removeLeadingSlash(N5URI.normalizeGroupPath(getPath()));
+		if (normPath.equals(thisPath))
+			return Optional.of(this);
+
+		if (!thisPath.isEmpty() && !normPath.startsWith(thisPath + SEPARATOR))
+			return Optional.empty();
+
+		// start of the part of the path below node
+		int start = thisPath.isEmpty() ? 0 : thisPath.length() + 1;
+		N5TreeNode node = this;
+		while (start < normPath.length()) {
+			final int sepIdx = normPath.indexOf(SEPARATOR, start);
+			final int end = sepIdx < 0 ? normPath.length() : sepIdx;
+			N5TreeNode next = null;
+			for (int i = 0; i < node.numChildren && next == null; i++) {
+				final N5TreeNode child = node.children[i];
+				if (child.path == null) {
+					if (child.name.length() == end - start && normPath.startsWith(child.name, start)) {
+						next = child;
+						start = end + 1;
+					}
+				} else {
+					final String childPath = removeLeadingSlash(N5URI.normalizeGroupPath(child.path));
+					if (normPath.equals(childPath) || normPath.startsWith(childPath + SEPARATOR)) {
+						next = child;
+						start = childPath.length() + 1;
+					}
+				}
+			}
+			if (next == null)
+				return Optional.empty();
+
+			node = next;
+		}
+		return Optional.of(node);
 	}
 
 	/**
@@ -109,16 +213,17 @@ public class N5TreeNode {
 	 * @return the node
 	 */
 	public N5TreeNode addPath(final String path, Function<String, N5TreeNode> constructor) {
-		final String normPath = removeLeadingSlash(path);
+		final String normPath = removeLeadingSlash(N5URI.normalizeGroupPath(path));
+		final String thisPath = removeLeadingSlash(N5URI.normalizeGroupPath(getPath()));
 
-		if (!getPath().isEmpty() && !normPath.startsWith(getPath()))
-			return null;
-
-		if (this.path.equals(normPath))
+		if (thisPath.equals(normPath))
 			return this;
 
-		final String relativePath = removeLeadingSlash(normPath.replaceAll(this.path, ""));
-		final int sepIdx = relativePath.indexOf("/");
+		if (!thisPath.isEmpty() && !normPath.startsWith(thisPath + SEPARATOR))
+			return null;
+
+		final String relativePath = thisPath.isEmpty() ? normPath : normPath.substring(thisPath.length() + 1);
+		final int sepIdx = relativePath.indexOf(SEPARATOR);
 		final String childName;
 		if (sepIdx < 0)
 			childName = relativePath;
@@ -127,12 +232,15 @@ public class N5TreeNode {
 
 		// get the appropriate child along the path if it exists, otherwise add it
 		N5TreeNode child = null;
-		final Stream<N5TreeNode> cs = children.stream().filter(n -> n.getNodeName().equals(childName));
+		final Stream<N5TreeNode> cs = childrenList().stream().filter(n -> n.getNodeName().equals(childName));
 		final Optional<N5TreeNode> copt = cs.findFirst();
 		if (copt.isPresent())
 			child = copt.get();
 		else {
-			child = constructor.apply(this.path.isEmpty() ? childName : this.path + "/" + childName);
+			// keep the style of this node's path, e.g. with or without a leading slash
+			final String base = getPath();
+			final String prefix = base.isEmpty() || base.endsWith(SEPARATOR) ? base : base + SEPARATOR;
+			child = constructor.apply(prefix + childName);
 			add(child);
 		}
 		return child.addPath(normPath);
@@ -158,9 +266,19 @@ public class N5TreeNode {
 		return metadata;
 	}
 
+	/**
+	 * Returns the full path of this node. For nodes built by
+	 * {@link #fromFlatList} below the first level, the path is not stored but
+	 * built from the parent's path.
+	 *
+	 * @return the path
+	 */
 	public String getPath() {
 
-		return path;
+		if (path != null)
+			return path;
+
+		return parent.getPath() + SEPARATOR + name;
 	}
 
 	@Override
@@ -196,9 +314,9 @@ public class N5TreeNode {
 	private static String printRecursiveHelper(N5TreeNode node, String prefix) {
 
 		final StringBuffer out = new StringBuffer();
-		out.append(prefix + node.path + "\n");
+		out.append(prefix + node.getPath() + "\n");
 		for (final N5TreeNode c : node.childrenList()) {
-			System.out.println(c.path);
+			System.out.println(c.getPath());
 			out.append(printRecursiveHelper(c, prefix + " "));
 		}
 
@@ -231,35 +349,130 @@ public class N5TreeNode {
 	 */
 	public static void fromFlatList(final N5TreeNode root, final String[] pathList, final String groupSeparator) {
 
-		final HashMap<String, N5TreeNode> pathToNode = new HashMap<>();
-
 		final String normalizedBase = normalDatasetName(root.getPath(), groupSeparator);
-		pathToNode.put(normalizedBase, root);
-
-		// sort the paths by length such that parent nodes always have smaller
-		// indexes than their children
-		Arrays.sort(pathList);
-
 		final String prefix = normalizedBase == groupSeparator ? "" : normalizedBase;
-		for (final String datasetPath : pathList) {
 
-			final String fullPath = prefix + groupSeparator + datasetPath;
-			final N5TreeNode node = new N5TreeNode(fullPath);
-			pathToNode.put(fullPath, node);
+		// children the root already has, by name
+		final HashMap<String, N5TreeNode> rootChildren = new HashMap<>();
+		for (final N5TreeNode c : root.childrenList())
+			rootChildren.put(c.getNodeName(), c);
+
+		// sort so that every path directly follows its parent or its parent's
+		// descendants, then the nodes on the current path form a stack
+		Arrays.sort(pathList, (a, b) -> comparePaths(a, b, groupSeparator));
+
+		final Pattern separator = Pattern.compile(Pattern.quote(groupSeparator));
+		final HashMap<String, String> segments = new HashMap<>();
+		final ArrayList<N5TreeNode> stack = new ArrayList<>();
+		final ArrayList<String> stackNames = new ArrayList<>();
+		stack.add(root);
+		stackNames.add(null);
+		for (final String datasetPath : pathList) {
 
-			final String parentPath = fullPath.substring(0, fullPath.lastIndexOf(groupSeparator));
+			final String[] names = separator.split(removeLeadingSlash(datasetPath));
+			for (int depth = 0; depth < names.length; depth++) {
+
+				final String name = names[depth];
+				if (stack.size() > depth + 1 && stackNames.get(depth + 1).equals(name))
+					continue;
+
+				while (stack.size() > depth + 1) {
+					stack.remove(stack.size() - 1);
+					stackNames.remove(stackNames.size() - 1);
+				}
+
+				final N5TreeNode parent = stack.get(depth);
+				N5TreeNode node = depth == 0 ? rootChildren.get(name) : null;
+				if (node == null) {
+					if (depth == 0 || !groupSeparator.equals(SEPARATOR))
+						node = new N5TreeNode(prefix + groupSeparator + String.join(groupSeparator, Arrays.copyOf(names, depth + 1)));
+					else
+						node = new N5TreeNode(parent, segments.computeIfAbsent(name, x -> x));
+
+					parent.add(node);
+					if (depth == 0)
+						rootChildren.put(name, node);
+				}
+				stack.add(node);
+				stackNames.add(name);
+			}
+		}
+	}
 
-			N5TreeNode parent = pathToNode.get(parentPath);
-			if (parent == null) {
-				// possible for the parent to not appear in the list
-				// if deepList is called with a filter
-				parent = new N5TreeNode(parentPath);
-				pathToNode.put(parentPath, parent);
+	/**
+	 * Compares paths like strings, except that the group separator is smaller
+	 * than every other character.
+	 */
+	private static int comparePaths(final String a, final String b, final String groupSeparator) {
+
+		final int n = Math.min(a.length(), b.length());
+		for (int i = 0; i < n; i++) {
+			final char ca = a.charAt(i);
+			final char cb = b.charAt(i);
+			if (ca != cb) {
+				if (a.startsWith(groupSeparator, i))
+					return -1;
+				else if (b.startsWith(groupSeparator, i))
+					return 1;
+				return ca - cb;
 			}
+		}
+		return a.length() - b.length();
+	}
+
+	private class Children extends AbstractList<N5TreeNode> implements RandomAccess {
+
+		@Override
+		public N5TreeNode get(final int index) {
+
+			checkIndex(index, numChildren);
+			return children[index];
+		}
+
+		@Override
+		public N5TreeNode set(final int index, final N5TreeNode element) {
+
+			checkIndex(index, numChildren);
+			final N5TreeNode old = children[index];
+			children[index] = element;
+			return old;
+		}
+
+		@Override
+		public void add(final int index, final N5TreeNode element) {
+
+			checkIndex(index, numChildren + 1);
+			N5TreeNode.this.add(element);
+			System.arraycopy(children, index, children, index + 1, numChildren - 1 - index);
+			children[index] = element;
+		}
+
+		@Override
+		public N5TreeNode remove(final int index) {
+
+			checkIndex(index, numChildren);
+			final N5TreeNode old = children[index];
+			System.arraycopy(children, index + 1, children, index, numChildren - 1 - index);
+			children[--numChildren] = null;
+			modified();
+			return old;
+		}
+
+		@Override
+		public int size() {
+
+			return numChildren;
+		}
+
+		private void modified() {
+
+			modCount++;
+		}
 
-			if (!parent.child(datasetPath).isPresent())
-				parent.add(node);
+		private void checkIndex(final int index, final int size) {
 
+			if (index < 0 || index >= size)
+				throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
 		}
 	}
 
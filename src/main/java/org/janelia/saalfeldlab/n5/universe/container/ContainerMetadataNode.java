@@ -67,10 +67,46 @@ public class ContainerMetadataNode implements GsonN5Writer {
 		children = other.children;
 	}
 
+	/**
+	 * Returns a copy of this node and all its descendants that shares no
+	 * mutable state with this node.
+	 *
+	 * @return the copy
+	 */
+	public ContainerMetadataNode deepCopy() {
+
+		HashMap<String, JsonElement> attributesCopy = null;
+		if (attributes != null) {
+			attributesCopy = new HashMap<>();
+			for (final Map.Entry<String, JsonElement> e : attributes.entrySet())
+				attributesCopy.put(e.getKey(), e.getValue() == null ? null : e.getValue().deepCopy());
+		}
+
+		HashMap<String, ContainerMetadataNode> childrenCopy = null;
+		if (children != null) {
+			childrenCopy = new HashMap<>();
+			for (final Map.Entry<String, ContainerMetadataNode> e : children.entrySet())
+				childrenCopy.put(e.getKey(), e.getValue() == null ? null : e.getValue().deepCopy());
+		}
+
+		final ContainerMetadataNode copy = new ContainerMetadataNode(attributesCopy, childrenCopy, gson);
+		copy.path = path;
+		return copy;
+	}
+
 	public HashMap<String, JsonElement> getContainerAttributes() {
 		return attributes;
 	}
 
+	/**
+	 * Replaces the attributes of this node.
+	 *
+	 * @param attributes the attributes, or null if this node has none
+	 */
+	public void setContainerAttributes(final HashMap<String, JsonElement> attributes) {
+		this.attributes = attributes;
+	}
+
 	@Override
 	public JsonElement getAttributes(final String pathName) throws N5Exception.N5IOException {
 
@@ -2,23 +2,50 @@ package org.janelia.saalfeldlab.n5.universe.container;
 
 import com.google.gson.JsonElement;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
-import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import org.janelia.saalfeldlab.n5.N5Exception;
 import org.janelia.saalfeldlab.n5.N5Writer;
 import org.janelia.saalfeldlab.n5.universe.translation.JqUtils;
 
+/**
+ * Writes the attributes stored in a {@link ContainerMetadataNode} tree to an
+ * {@link N5Writer}.
+ * <p>
+ * Each node's attributes are written with a single
+ * {@link N5Writer#setAttributes(String, Map)} call. If the writer knows the
+ * original state of the container (see {@link #setOriginal}), nodes whose
+ * attributes are unchanged are skipped, and groups are only created for
+ * nodes that are not in the original tree. Attributes of the original that
+ * are no longer in the tree are removed with
+ * {@link N5Writer#removeAttributes(String, List)}. The original is updated
+ * after every write. If an executor is given, nodes are written in parallel.
+ */
 public class ContainerMetadataWriter {
 
 	private N5Writer n5;
 
 	private ContainerMetadataNode metadataTree;
 
+	private ContainerMetadataNode original;
+
+	private ExecutorService executor;
+
 	public ContainerMetadataWriter(
 			final N5Writer n5,
 			final String dataset) {
 
 		this( n5, ContainerMetadataNode.build(n5, dataset, JqUtils.buildGson(n5)) );
+		if (metadataTree != null)
+			original = metadataTree.deepCopy();
 	}
 	
 	public ContainerMetadataWriter(
@@ -44,15 +71,157 @@ public class ContainerMetadataWriter {
 	
 	public void setN5Writer( N5Writer n5 ) {
 		this.n5 = n5;
+		this.original = null;
+	}
+
+	/**
+	 * @return the tree of attributes known to be in the container, or null
+	 */
+	public ContainerMetadataNode getOriginal() {
+		return original;
+	}
+
+	/**
+	 * Sets the tree of attributes known to be in the container. Nodes are only
+	 * written if their attributes differ from this tree. Pass null if the
+	 * state of the container is unknown, so that all nodes are written.
+	 *
+	 * @param original the original tree
+	 */
+	public void setOriginal( ContainerMetadataNode original ) {
+		this.original = original;
+	}
+
+	/**
+	 * Sets the executor used to write nodes in parallel. If null, nodes are
+	 * written sequentially on the calling thread.
+	 *
+	 * @param executor the executor
+	 */
+	public void setExecutor( ExecutorService executor ) {
+		this.executor = executor;
 	}
 
 	public void writeAllAttributes() {
 
-		Iterator<String> it = metadataTree.getChildPathsRecursive(metadataTree.getPath()).iterator();
-		while( it.hasNext() )
-			writeAllAttributes( it.next() );
+		final List<String> groupsToCreate = new ArrayList<>();
+		final List<Change> changes = new ArrayList<>();
+		collectChanges(metadataTree.getPath(), metadataTree, original, groupsToCreate, changes);
+
+		/*
+		 * Creating a group creates its parents, so only the deepest new groups
+		 * are created, and only if they do not exist.
+		 */
+		for (final String group : groupsToCreate)
+			if (!n5.exists(group))
+				n5.createGroup(group);
+
+		if (executor == null) {
+			for (final Change change : changes)
+				write(change);
+		} else {
+			final List<Future<?>> futures = new ArrayList<>(changes.size());
+			for (final Change change : changes)
+				futures.add(executor.submit(() -> write(change)));
+
+			for (final Future<?> f : futures) {
+				try {
+					f.get();
+				} catch (final InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new N5Exception("Interrupted while writing attributes", e);
+				} catch (final ExecutionException e) {
+					if (e.getCause() instanceof N5Exception)
+						throw (N5Exception)e.getCause();
+
+					throw new N5Exception("Failed to write attributes", e.getCause());
+				}
+			}
+		}
+
+		original = metadataTree.deepCopy();
+	}
+
+	private void write(final Change change) {
+
+		// setAttributes merges, so keys removed from the tree are removed separately
+		if (!change.removed.isEmpty())
+			n5.removeAttributes(change.path, change.removed);
+
+		if (!change.attributes.isEmpty())
+			n5.setAttributes(change.path, change.attributes);
+	}
+
+	/**
+	 * Collects the nodes of the tree that must be written and the groups that
+	 * must be created, compared to the original tree.
+	 *
+	 * @return true if this node or one of its descendants is not in the original
+	 */
+	private static boolean collectChanges(
+			final String path,
+			final ContainerMetadataNode node,
+			final ContainerMetadataNode orig,
+			final List<String> groupsToCreate,
+			final List<Change> changes) {
+
+		final boolean isNew = orig == null;
+		boolean hasNewDescendant = false;
+		for (final Map.Entry<String, ContainerMetadataNode> e : children(node).entrySet()) {
+			if (e.getValue() == null)
+				continue;
+
+			final ContainerMetadataNode origChild = isNew ? null : children(orig).get(e.getKey());
+			hasNewDescendant |= collectChanges(path + "/" + e.getKey(), e.getValue(), origChild,
+					groupsToCreate, changes);
+		}
+
+		if (isNew && !hasNewDescendant)
+			groupsToCreate.add(path);
+
+		final Map<String, JsonElement> attrs = attributes(node);
+		final Map<String, JsonElement> origAttrs = isNew ? Collections.emptyMap() : attributes(orig);
+		if (!attrs.equals(origAttrs)) {
+			final List<String> removed = new ArrayList<>();
+			for (final String key : origAttrs.keySet())
+				if (!attrs.containsKey(key))
+					removed.add(key);
+
+			changes.add(new Change(path, attrs, removed));
+		}
+
+		return isNew || hasNewDescendant;
 	}
 	
+	private static Map<String, ContainerMetadataNode> children(final ContainerMetadataNode node) {
+
+		return node.getChildren() == null ? Collections.emptyMap() : node.getChildren();
+	}
+
+	private static Map<String, JsonElement> attributes(final ContainerMetadataNode node) {
+
+		return node.getContainerAttributes() == null ? Collections.emptyMap() : node.getContainerAttributes();
+	}
+
+	/**
+	 * The attributes to set and the keys to remove at a path.
+	 */
+	private static class Change {
+
+		final String path;
+
+		final Map<String, JsonElement> attributes;
+
+		final List<String> removed;
+
+		Change(final String path, final Map<String, JsonElement> attributes, final List<String> removed) {
+
+			this.path = path;
+			this.attributes = attributes;
+			this.removed = removed;
+		}
+	}
+
 	/**
 	 * Writes all attributes stored in the tree.
 	 * 
@@ -70,9 +239,8 @@ public class ContainerMetadataWriter {
 
 		String path = nopt.get().getPath();
 		HashMap<String, JsonElement> attrs = nopt.get().getContainerAttributes();
-		for( String key : attrs.keySet())
-		if( attrs.containsKey(key))
-			n5.setAttribute(path, key, attrs.get(key));
+		if (!attrs.isEmpty())
+			n5.setAttributes(path, attrs);
 	}
 
 	public void writeAttribute(
@@ -0,0 +1,501 @@
+package org.janelia.saalfeldlab.n5.universe.convert;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+import org.janelia.saalfeldlab.n5.Compression;
+import org.janelia.saalfeldlab.n5.DataBlock;
+import org.janelia.saalfeldlab.n5.DatasetAttributes;
+import org.janelia.saalfeldlab.n5.N5Exception;
+import org.janelia.saalfeldlab.n5.N5Exception.N5IOException;
+import org.janelia.saalfeldlab.n5.N5Reader;
+import org.janelia.saalfeldlab.n5.N5Writer;
+import org.janelia.saalfeldlab.n5.imglib2.N5Utils;
+import org.janelia.saalfeldlab.n5.universe.BlockTasks;
+import org.janelia.saalfeldlab.n5.universe.N5DatasetDiscoverer;
+import org.janelia.saalfeldlab.n5.universe.N5Factory;
+import org.janelia.saalfeldlab.n5.universe.N5TreeNode;
+import org.janelia.saalfeldlab.n5.universe.metadata.MetadataUtils;
+import org.janelia.saalfeldlab.n5.universe.metadata.N5DatasetMetadata;
+import org.janelia.saalfeldlab.n5.universe.metadata.N5Metadata;
+import org.janelia.saalfeldlab.n5.universe.metadata.SpatialMetadata;
+import org.janelia.saalfeldlab.n5.universe.metadata.SpatialMultiscaleMetadata;
+import org.janelia.saalfeldlab.n5.universe.metadata.axes.Axis;
+import org.janelia.saalfeldlab.n5.universe.metadata.axes.AxisMetadata;
+import org.janelia.saalfeldlab.n5.universe.metadata.axes.AxisUtils;
+import org.janelia.saalfeldlab.n5.universe.metadata.ome.ngff.NgffSingleScaleAxesMetadata;
+import org.janelia.saalfeldlab.n5.universe.metadata.ome.ngff.OmeNgffMetadata;
+import org.janelia.saalfeldlab.n5.universe.metadata.ome.ngff.OmeNgffMetadataParser;
+import org.janelia.saalfeldlab.n5.universe.reader.ForwardingN5Reader;
+import org.janelia.saalfeldlab.n5.zarr.v3.ZarrV3KeyValueWriter;
+
+import com.google.gson.JsonElement;
+
+import net.imglib2.Cursor;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.img.Img;
+import net.imglib2.img.array.ArrayImgFactory;
+import net.imglib2.realtransform.AffineGet;
+import net.imglib2.type.NativeType;
+import net.imglib2.type.Type;
+import net.imglib2.util.Util;
+import net.imglib2.view.Views;
+
+/**
+ * Copies the groups, datasets and attributes of a container into another
+ * container, possibly of a different storage format.
+ * <p>
+ * Blocks are copied in parallel on the given executor. If the destination
+ * block size is the same as the source's, blocks are copied as they are and
+ * only re-encoded with the destination compression. Otherwise the data are
+ * re-chunked, one destination block per task.
+ * <p>
+ * Attributes are copied as json, except for those that describe the
+ * dataset in the storage format. Multiscale metadata of any supported
+ * convention can be written as OME-NGFF instead.
+ * <p>
+ * A conversion that was interrupted can be resumed: with
+ * {@link #resume(boolean)}, blocks that exist in the destination and can be
+ * read are not copied again. Blocks that were only partly written when the
+ * conversion stopped fail to decode and are copied again, so after a resumed
+ * conversion completes every block is complete. Resuming reads all existing
+ * destination blocks once to verify them.
+ */
+public class ContainerConverter {
+
+	public enum MetadataConvention {
+		/**
+		 * Copy attributes as they are.
+		 */
+		COPY,
+		/**
+		 * Copy attributes except for OME-NGFF metadata, and write OME-NGFF
+		 * multiscales for all multiscale groups.
+		 */
+		OME_NGFF
+	}
+
+	/**
+	 * Attributes describing the container and its datasets in N5, Zarr v2 and
+	 * Zarr v3, these are written by the destination itself.
+	 */
+	private static final Set<String> DATASET_KEYS = new HashSet<>(Arrays.asList(
+			N5Reader.VERSION_KEY, DatasetAttributes.DIMENSIONS_KEY, DatasetAttributes.BLOCK_SIZE_KEY,
+			DatasetAttributes.DATA_TYPE_KEY, DatasetAttributes.COMPRESSION_KEY,
+			"zarr_format", "node_type", "shape", "chunks", "dtype", "data_type", "compressor", "filters",
+			"fill_value", "order", "dimension_separator", "chunk_grid", "chunk_key_encoding", "codecs",
+			"dimension_names", "storage_transformers"));
+
+	/**
+	 * Attributes holding OME-NGFF v0.4 and v0.5 metadata, these are written
+	 * anew when converting to OME-NGFF.
+	 */
+	private static final Set<String> NGFF_KEYS = new HashSet<>(Arrays.asList("multiscales", "ome"));
+
+	private final N5Reader source;
+
+	private final N5Writer destination;
+
+	private ExecutorService executor;
+
+	private int[] blockSize;
+
+	private Compression compression;
+
+	private MetadataConvention metadataConvention = MetadataConvention.COPY;
+
+	private boolean resume = false;
+
+	private int maxCachedBlocks = 256;
+
+	private Consumer<Progress> progressListener;
+
+	public ContainerConverter(final N5Reader source, final N5Writer destination) {
+
+		this.source = source;
+		this.destination = destination;
+	}
+
+	/**
+	 * Opens the source and destination containers with the given factory.
+	 *
+	 * @param factory the factory
+	 * @param sourceUri the source container
+	 * @param destinationUri the destination container, its storage format can
+	 *            be given by the scheme, e.g. "zarr3:"
+	 * @return the converter
+	 */
+	public static ContainerConverter open(final N5Factory factory, final String sourceUri, final String destinationUri) {
+
+		return new ContainerConverter(factory.openReader(sourceUri), factory.openWriter(destinationUri));
+	}
+
+	/**
+	 * @param executor the executor, or null to copy in the calling thread
+	 * @return this
+	 */
+	public ContainerConverter executor(final ExecutorService executor) {
+
+		this.executor = executor;
+		return this;
+	}
+
+	/**
+	 * @param blockSize the block size of all destination datasets, or null to
+	 *            keep the source block sizes
+	 * @return this
+	 */
+	public ContainerConverter blockSize(final int... blockSize) {
+
+		this.blockSize = blockSize;
+		return this;
+	}
+
+	/**
+	 * @param compression the compression of all destination datasets, or null
+	 *            to keep the source compression
+	 * @return this
+	 */
+	public ContainerConverter compression(final Compression compression) {
+
+		this.compression = compression;
+		return this;
+	}
+
+	public ContainerConverter metadataConvention(final MetadataConvention metadataConvention) {
+
+		this.metadataConvention = metadataConvention;
+		return this;
+	}
+
+	/**
+	 * @param resume if true, existing destination datasets with matching
+	 *            dimensions are kept and their existing blocks that can be
+	 *            read are skipped
+	 * @return this
+	 */
+	public ContainerConverter resume(final boolean resume) {
+
+		this.resume = resume;
+		return this;
+	}
+
+	/**
+	 * @param maxCachedBlocks the number of source blocks kept in memory when re-chunking
+	 * @return this
+	 */
+	public ContainerConverter maxCachedBlocks(final int maxCachedBlocks) {
+
+		this.maxCachedBlocks = maxCachedBlocks;
+		return this;
+	}
+
+	/**
+	 * @param progressListener called after each dataset
+	 * @return this
+	 */
+	public ContainerConverter progressListener(final Consumer<Progress> progressListener) {
+
+		this.progressListener = progressListener;
+		return this;
+	}
+
+	public Progress convert() {
+
+		return convert("");
+	}
+
+	/**
+	 * Converts a group and everything below it.
+	 *
+	 * @param group the group
+	 * @return the progress after the conversion
+	 */
+	public Progress convert(final String group) {
+
+		final Progress progress = new Progress();
+		final N5TreeNode root = discover(group);
+
+		final List<N5TreeNode> nodes = N5TreeNode.flattenN5Tree(root).collect(Collectors.toList());
+		for (final N5TreeNode node : nodes) {
+
+			final String path = node.getPath();
+			if (source.datasetExists(path)) {
+				copyDataset(path, progress);
+				progress.datasets.increment();
+				if (progressListener != null)
+					progressListener.accept(progress);
+			} else
+				destination.createGroup(path);
+
+			copyAttributes(path);
+		}
+
+		if (metadataConvention == MetadataConvention.OME_NGFF)
+			for (final N5TreeNode node : nodes)
+				if (node.getMetadata() instanceof SpatialMultiscaleMetadata)
+					writeNgff((SpatialMultiscaleMetadata<?>)node.getMetadata());
+
+		return progress;
+	}
+
+	private N5TreeNode discover(final String group) {
+
+		try {
+			final N5DatasetDiscoverer discoverer = executor == null
+					? new N5DatasetDiscoverer(source, Arrays.asList(N5DatasetDiscoverer.DEFAULT_PARSERS), N5DatasetDiscoverer.defaultGroupParsers(source))
+					: new N5DatasetDiscoverer(source, executor);
+			return discoverer.discoverAndParseRecursive(group);
+		} catch (final IOException e) {
+			throw new N5IOException("Failed to discover " + group, e);
+		}
+	}
+
+	private void copyAttributes(final String path) {
+
+		final boolean ngff = metadataConvention == MetadataConvention.OME_NGFF;
+		final Map<String, Object> attributes = new HashMap<>();
+		for (final String key : source.listAttributes(path).keySet())
+			if (!DATASET_KEYS.contains(key) && !(ngff && NGFF_KEYS.contains(key)))
+				attributes.put(key, source.getAttribute(path, key, JsonElement.class));
+
+		if (!attributes.isEmpty())
+			destination.setAttributes(path, attributes);
+	}
+
+	private void copyDataset(final String path, final Progress progress) {
+
+		final DatasetAttributes sourceAttrs = source.getDatasetAttributes(path);
+		final DatasetAttributes attrs = destinationAttributes(path, sourceAttrs);
+		final boolean sameBlocks = Arrays.equals(sourceAttrs.getBlockSize(), attrs.getBlockSize());
+
+		final RandomAccessibleInterval<?> img = sameBlocks ? null
+				: N5Utils.openWithBoundedSoftRefCache(source, path, maxCachedBlocks);
+
+		BlockTasks.forEachBlock(attrs, executor, "copy " + path, gridPosition -> {
+			if (resume && isCopied(path, attrs, gridPosition))
+				progress.skippedBlocks.increment();
+			else if (sameBlocks)
+				copyBlock(path, sourceAttrs, attrs, gridPosition, progress);
+			else
+				rechunkBlock(img, path, attrs, gridPosition, progress);
+		});
+	}
+
+	/**
+	 * A block was copied if it exists in the destination and can be read,
+	 * blocks that were partly written fail to decode.
+	 */
+	private boolean isCopied(final String path, final DatasetAttributes attrs, final long[] gridPosition) {
+
+		if (!destination.blockExists(path, attrs, gridPosition))
+			return false;
+
+		try {
+			return destination.readBlock(path, attrs, gridPosition) != null;
+		} catch (final RuntimeException e) {
+			return false;
+		}
+	}
+
+	private DatasetAttributes destinationAttributes(final String path, final DatasetAttributes sourceAttrs) {
+
+		final int[] outBlockSize = blockSize == null ? sourceAttrs.getBlockSize()
+				: Arrays.copyOf(blockSize, sourceAttrs.getNumDimensions());
+		for (int d = 0; d < outBlockSize.length; d++)
+			if (outBlockSize[d] <= 0)
+				outBlockSize[d] = sourceAttrs.getBlockSize()[d];
+
+		final DatasetAttributes attrs = new DatasetAttributes(sourceAttrs.getDimensions(), outBlockSize,
+				sourceAttrs.getDataType(), compression == null ? sourceAttrs.getCompression() : compression);
+
+		if (resume && destination.datasetExists(path)) {
+			final DatasetAttributes existing = destination.getDatasetAttributes(path);
+			if (Arrays.equals(existing.getDimensions(), attrs.getDimensions())
+					&& Arrays.equals(existing.getBlockSize(), attrs.getBlockSize())
+					&& existing.getDataType() == attrs.getDataType())
+				return existing;
+		}
+
+		destination.createDataset(path, attrs);
+		return attrs;
+	}
+
+	private void copyBlock(final String path, final DatasetAttributes sourceAttrs, final DatasetAttributes attrs,
+			final long[] gridPosition, final Progress progress) {
+
+		final DataBlock<?> block = source.readBlock(path, sourceAttrs, gridPosition);
+		if (block == null)
+			return;
+
+		destination.writeBlock(path, attrs, block);
+		progress.blocks.increment();
+		progress.elements.add(block.getNumElements());
+	}
+
+	@SuppressWarnings({"rawtypes", "unchecked"})
+	private void rechunkBlock(final RandomAccessibleInterval img, final String path, final DatasetAttributes attrs,
+			final long[] gridPosition, final Progress progress) {
+
+		final int nd = gridPosition.length;
+		final long[] min = new long[nd];
+		final long[] max = new long[nd];
+		final long[] size = new long[nd];
+		long numElements = 1;
+		for (int d = 0; d < nd; d++) {
+			min[d] = gridPosition[d] * attrs.getBlockSize()[d];
+			max[d] = Math.min(min[d] + attrs.getBlockSize()[d], attrs.getDimensions()[d]) - 1;
+			size[d] = max[d] - min[d] + 1;
+			numElements *= size[d];
+		}
+
+		final NativeType type = (NativeType)Util.getTypeFromInterval(img).createVariable();
+		final Img block = new ArrayImgFactory(type).create(size);
+		final Cursor<Type> in = Views.flatIterable(Views.interval(img, min, max)).cursor();
+		final Cursor<Type> out = block.cursor();
+		while (out.hasNext())
+			out.next().set(in.next());
+
+		N5Utils.saveBlock(block, destination, path, attrs, gridPosition);
+		progress.blocks.increment();
+		progress.elements.add(numElements);
+	}
+
+	private void writeNgff(final SpatialMultiscaleMetadata<?> multiscales) {
+
+		final N5Metadata[] levels = multiscales.getChildrenMetadata();
+		if (levels.length == 0)
+			return;
+
+		final int nd = ((N5DatasetMetadata)levels[0]).getAttributes().getNumDimensions();
+		final String[] paths = new String[levels.length];
+		final double[][] scales = new double[levels.length][];
+		final double[][] translations = new double[levels.length][];
+		for (int i = 0; i < levels.length; i++) {
+			paths[i] = MetadataUtils.relativePath(multiscales.getPath(), levels[i].getPath());
+			if (levels[i] instanceof NgffSingleScaleAxesMetadata) {
+				scales[i] = ((NgffSingleScaleAxesMetadata)levels[i]).getScale();
+				translations[i] = ((NgffSingleScaleAxesMetadata)levels[i]).getTranslation();
+			} else {
+				scales[i] = new double[nd];
+				translations[i] = new double[nd];
+				setScaleAndTranslation((SpatialMetadata)levels[i], scales[i], translations[i]);
+			}
+		}
+
+		final String version = ForwardingN5Reader.unwrap(destination) instanceof ZarrV3KeyValueWriter ? "0.5" : "0.4";
+		final OmeNgffMetadata ngff = OmeNgffMetadata.buildForWriting(nd, multiscales.getPath(), version,
+				axes(levels[0], nd), paths, scales, translations);
+		try {
+			new OmeNgffMetadataParser(destination).writeMetadata(ngff, destination, multiscales.getPath());
+		} catch (final Exception e) {
+			throw new N5Exception("Failed to write OME-NGFF metadata for " + multiscales.getPath(), e);
+		}
+	}
+
+	/**
+	 * Reads the diagonal and translation of the spatial transform, other
+	 * dimensions are left unscaled.
+	 */
+	private static void setScaleAndTranslation(final SpatialMetadata level, final double[] scale, final double[] translation) {
+
+		Arrays.fill(scale, 1);
+		final AffineGet transform = level.spatialTransform();
+		final int n = Math.min(transform.numSourceDimensions(), scale.length);
+		for (int d = 0; d < n; d++) {
+			scale[d] = transform.get(d, d);
+			translation[d] = transform.get(d, transform.numSourceDimensions());
+		}
+	}
+
+	private static Axis[] axes(final N5Metadata level, final int nd) {
+
+		if (level instanceof AxisMetadata) {
+			final Axis[] axes = ((AxisMetadata)level).getAxes();
+			if (axes != null && axes.length == nd)
+				return axes;
+		}
+
+		final String unit = ((SpatialMetadata)level).unit();
+		return Arrays.stream(AxisUtils.defaultAxes(nd))
+				.map(a -> Axis.SPACE.equals(a.getType()) && unit != null ? new Axis(a.getType(), a.getName(), unit) : a)
+				.toArray(Axis[]::new);
+	}
+
+	/**
+	 * Counts of a conversion, updated while it runs.
+	 */
+	public static class Progress {
+
+		private final long startNanos = System.nanoTime();
+
+		private final LongAdder datasets = new LongAdder();
+
+		private final LongAdder blocks = new LongAdder();
+
+		private final LongAdder skippedBlocks = new LongAdder();
+
+		private final LongAdder elements = new LongAdder();
+
+		public long getDatasets() {
+
+			return datasets.sum();
+		}
+
+		/**
+		 * @return the number of blocks written
+		 */
+		public long getBlocks() {
+
+			return blocks.sum();
+		}
+
+		/**
+		 * @return the number of complete blocks that existed in the destination when resuming
+		 */
+		public long getSkippedBlocks() {
+
+			return skippedBlocks.sum();
+		}
+
+		/**
+		 * @return the number of elements written
+		 */
+		public long getElements() {
+
+			return elements.sum();
+		}
+
+		public double getSeconds() {
+
+			return (System.nanoTime() - startNanos) * 1e-9;
+		}
+
+		public double getBlocksPerSecond() {
+
+			return getBlocks() / getSeconds();
+		}
+
+		public double getElementsPerSecond() {
+
+			return getElements() / getSeconds();
+		}
+
+		@Override
+		public String toString() {
+
+			return String.format("%d datasets, %d blocks (%d skipped), %.1f blocks/s, %.3g elements/s",
+					getDatasets(), getBlocks(), getSkippedBlocks(), getBlocksPerSecond(), getElementsPerSecond());
+		}
+	}
+
+}
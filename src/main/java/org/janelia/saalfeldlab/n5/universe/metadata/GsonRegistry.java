@@ -0,0 +1,43 @@
+package org.janelia.saalfeldlab.n5.universe.metadata;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+
+/**
+ * Process wide store of configured {@link Gson} instances.
+ * <p>
+ * Creating a Gson with many type adapters is expensive, and every new
+ * instance starts with an empty adapter cache. Gson instances are immutable
+ * and thread safe, so parsers and adapters that need the same configuration
+ * share one instance from here.
+ * <p>
+ * Only configurations that do not reference a particular reader should be
+ * registered, since registered instances are never released.
+ */
+public class GsonRegistry {
+
+	private static final ConcurrentHashMap<List<Object>, Gson> REGISTRY = new ConcurrentHashMap<>();
+
+	private GsonRegistry() {}
+
+	/**
+	 * Returns the Gson for the given configuration, building it the first time.
+	 *
+	 * @param builder
+	 *            creates the builder for the configuration
+	 * @param configuration
+	 *            identifies the configuration, e.g. the owning class and its
+	 *            options
+	 * @return the shared Gson
+	 */
+	public static Gson get(final Supplier<GsonBuilder> builder, final Object... configuration) {
+
+		return REGISTRY.computeIfAbsent(Arrays.asList(configuration), k -> builder.get().create());
+	}
+
+}
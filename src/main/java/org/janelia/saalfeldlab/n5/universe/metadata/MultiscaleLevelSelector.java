@@ -0,0 +1,263 @@
+package org.janelia.saalfeldlab.n5.universe.metadata;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.stream.IntStream;
+
+import org.janelia.saalfeldlab.n5.DatasetAttributes;
+import org.janelia.saalfeldlab.n5.universe.metadata.axes.Axis;
+import org.janelia.saalfeldlab.n5.universe.metadata.axes.AxisMetadata;
+
+import net.imglib2.realtransform.AffineGet;
+
+/**
+ * Selects scale levels of a {@link MultiscaleMetadata} for rendering.
+ * <p>
+ * The voxel size, physical bounding box, dimensions and block size of every
+ * level's spatial dimensions are computed once, when the selector is created.
+ * Queries do not allocate, and write their results to arrays given by the
+ * caller, so a selector can be shared by threads.
+ * <p>
+ * Pixel centers are at integer coordinates, so pixel i covers [i-0.5, i+0.5).
+ */
+public class MultiscaleLevelSelector {
+
+	private final int numLevels;
+
+	private final int nd;
+
+	/**
+	 * Level indexes ordered from the finest to the coarsest voxel size.
+	 */
+	private final int[] order;
+
+	/**
+	 * The voxel size of the levels in order, the geometric mean over
+	 * the spatial dimensions.
+	 */
+	private final double[] sortedVoxelSize;
+
+	private final double[][] voxelSize;
+
+	private final double[][] physicalToPixel;
+
+	private final double[][] boundsMin;
+
+	private final double[][] boundsMax;
+
+	private final long[][] dimensions;
+
+	private final int[][] blockSize;
+
+	public <T extends N5DatasetMetadata & SpatialMetadata> MultiscaleLevelSelector(final MultiscaleMetadata<T> multiscales) {
+
+		this(multiscales.getChildrenMetadata());
+	}
+
+	@SafeVarargs
+	public <T extends N5DatasetMetadata & SpatialMetadata> MultiscaleLevelSelector(final T... levels) {
+
+		numLevels = levels.length;
+		nd = levels.length == 0 ? 0 : levels[0].spatialTransform().numSourceDimensions();
+
+		voxelSize = new double[numLevels][];
+		physicalToPixel = new double[numLevels][];
+		boundsMin = new double[numLevels][];
+		boundsMax = new double[numLevels][];
+		dimensions = new long[numLevels][];
+		blockSize = new int[numLevels][];
+
+		final double[] meanVoxelSize = new double[numLevels];
+		for (int l = 0; l < numLevels; l++) {
+
+			final AffineGet toPhysical = levels[l].spatialTransform();
+			if (toPhysical.numSourceDimensions() != nd)
+				throw new IllegalArgumentException("Scale levels have different numbers of spatial dimensions");
+
+			final DatasetAttributes attrs = levels[l].getAttributes();
+			final int[] spatialIndexes = spatialIndexes(levels[l], attrs.getNumDimensions());
+
+			dimensions[l] = new long[nd];
+			blockSize[l] = new int[nd];
+			voxelSize[l] = new double[nd];
+			double logSum = 0;
+			for (int d = 0; d < nd; d++) {
+				final int i = spatialIndexes[d];
+				dimensions[l][d] = i < 0 ? 1 : attrs.getDimensions()[i];
+				blockSize[l][d] = i < 0 ? 1 : attrs.getBlockSize()[i];
+
+				// the length of the column is the size of a voxel along this dimension
+				double sq = 0;
+				for (int r = 0; r < nd; r++)
+					sq += toPhysical.get(r, d) * toPhysical.get(r, d);
+
+				voxelSize[l][d] = Math.sqrt(sq);
+				logSum += Math.log(voxelSize[l][d]);
+			}
+			meanVoxelSize[l] = Math.exp(logSum / nd);
+
+			physicalToPixel[l] = toPhysical.inverse().getRowPackedCopy();
+
+			final double[] pixelMin = new double[nd];
+			final double[] pixelMax = new double[nd];
+			for (int d = 0; d < nd; d++) {
+				pixelMin[d] = -0.5;
+				pixelMax[d] = dimensions[l][d] - 0.5;
+			}
+			boundsMin[l] = new double[nd];
+			boundsMax[l] = new double[nd];
+			transformBounds(toPhysical.getRowPackedCopy(), nd, pixelMin, pixelMax, boundsMin[l], boundsMax[l]);
+		}
+
+		order = IntStream.range(0, numLevels).boxed()
+				.sorted(Comparator.comparingDouble(l -> meanVoxelSize[l]))
+				.mapToInt(Integer::intValue).toArray();
+
+		sortedVoxelSize = new double[numLevels];
+		for (int i = 0; i < numLevels; i++)
+			sortedVoxelSize[i] = meanVoxelSize[order[i]];
+	}
+
+	private static int[] spatialIndexes(final Object level, final int datasetDimensions) {
+
+		final int nd = ((SpatialMetadata)level).spatialTransform().numSourceDimensions();
+		if (level instanceof AxisMetadata) {
+			final Axis[] axes = ((AxisMetadata)level).getAxes();
+			if (axes != null) {
+				final int[] idx = IntStream.range(0, axes.length).filter(i -> Axis.SPACE.equals(axes[i].getType())).toArray();
+				if (idx.length == nd)
+					return idx;
+			}
+		}
+
+		// the first dimensions are spatial, missing dimensions are singletons
+		return IntStream.range(0, nd).map(d -> d < datasetDimensions ? d : -1).toArray();
+	}
+
+	public int numLevels() {
+
+		return numLevels;
+	}
+
+	public int numDimensions() {
+
+		return nd;
+	}
+
+	/**
+	 * @param level the level
+	 * @return the voxel size of the level along each spatial dimension, do not modify
+	 */
+	public double[] voxelSize(final int level) {
+
+		return voxelSize[level];
+	}
+
+	/**
+	 * Returns the coarsest level whose voxel size is at most the given size, or
+	 * the finest level if all levels are coarser. Pass the physical size of a
+	 * screen pixel to render without undersampling.
+	 *
+	 * @param physicalPixelSize the physical size
+	 * @return the level index
+	 */
+	public int bestLevel(final double physicalPixelSize) {
+
+		int i = Arrays.binarySearch(sortedVoxelSize, physicalPixelSize);
+		if (i < 0)
+			i = -i - 2; // the last one smaller than the size
+		else
+			while (i + 1 < numLevels && sortedVoxelSize[i + 1] == physicalPixelSize)
+				i++;
+
+		return order[Math.max(i, 0)];
+	}
+
+	/**
+	 * Returns the levels whose physical bounding box overlaps the region.
+	 *
+	 * @param min the minimum of the region in physical coordinates
+	 * @param max the maximum of the region in physical coordinates
+	 * @param levelsOut receives the level indexes, needs space for all levels
+	 * @return the number of levels written
+	 */
+	public int levelsOverlapping(final double[] min, final double[] max, final int[] levelsOut) {
+
+		int n = 0;
+		for (int l = 0; l < numLevels; l++)
+			if (overlaps(l, min, max))
+				levelsOut[n++] = l;
+
+		return n;
+	}
+
+	public boolean overlaps(final int level, final double[] min, final double[] max) {
+
+		for (int d = 0; d < nd; d++)
+			if (max[d] < boundsMin[level][d] || min[d] > boundsMax[level][d])
+				return false;
+
+		return true;
+	}
+
+	/**
+	 * Finds the range of blocks of a level needed to render a region.
+	 *
+	 * @param level the level
+	 * @param min the minimum of the region in physical coordinates
+	 * @param max the maximum of the region in physical coordinates
+	 * @param minBlock receives the grid position of the first block
+	 * @param maxBlock receives the grid position of the last block
+	 * @return the number of blocks, 0 if the region does not overlap the level
+	 */
+	public long blocksNeeded(final int level, final double[] min, final double[] max,
+			final long[] minBlock, final long[] maxBlock) {
+
+		final double[] m = physicalToPixel[level];
+		final int nc = nd + 1;
+		long count = 1;
+		for (int r = 0; r < nd; r++) {
+
+			// the pixel bounding box of the region, without transforming corners
+			double lo = m[r * nc + nd];
+			double hi = lo;
+			for (int c = 0; c < nd; c++) {
+				final double a = m[r * nc + c] * min[c];
+				final double b = m[r * nc + c] * max[c];
+				lo += Math.min(a, b);
+				hi += Math.max(a, b);
+			}
+
+			final long dim = dimensions[level][r];
+			final long pMin = Math.max((long)Math.floor(lo + 0.5), 0);
+			final long pMax = Math.min((long)Math.floor(hi + 0.5), dim - 1);
+			if (pMax < pMin)
+				return 0;
+
+			final int bs = blockSize[level][r];
+			minBlock[r] = pMin / bs;
+			maxBlock[r] = pMax / bs;
+			count *= maxBlock[r] - minBlock[r] + 1;
+		}
+		return count;
+	}
+
+	private static void transformBounds(final double[] m, final int nd, final double[] min, final double[] max,
+			final double[] outMin, final double[] outMax) {
+
+		final int nc = nd + 1;
+		for (int r = 0; r < nd; r++) {
+			double lo = m[r * nc + nd];
+			double hi = lo;
+			for (int c = 0; c < nd; c++) {
+				final double a = m[r * nc + c] * min[c];
+				final double b = m[r * nc + c] * max[c];
+				lo += Math.min(a, b);
+				hi += Math.max(a, b);
+			}
+			outMin[r] = lo;
+			outMax[r] = hi;
+		}
+	}
+
+}
@@ -1,6 +1,9 @@
 package org.janelia.saalfeldlab.n5.universe.metadata;
 
+import java.util.Collections;
 import java.util.Optional;
+import java.util.Set;
+
 import org.janelia.saalfeldlab.n5.DatasetAttributes;
 import org.janelia.saalfeldlab.n5.N5Exception;
 import org.janelia.saalfeldlab.n5.N5Reader;
@@ -17,6 +20,14 @@ import org.janelia.saalfeldlab.n5.N5Writer;
  */
 public class N5CosemMetadataParser implements N5MetadataParser<N5CosemMetadata>, N5MetadataWriter<N5CosemMetadata> {
 
+	private static final Set<String> KEYS = Collections.singleton(N5CosemMetadata.CosemTransform.KEY);
+
+	@Override
+	public Set<String> identifyingKeys() {
+
+		return KEYS;
+	}
+
 	@Override
 	public Optional<N5CosemMetadata> parseMetadata(N5Reader n5, N5TreeNode node) {
 
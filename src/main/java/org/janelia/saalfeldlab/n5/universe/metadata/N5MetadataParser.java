@@ -1,6 +1,8 @@
 package org.janelia.saalfeldlab.n5.universe.metadata;
 
+import java.util.Collections;
 import java.util.Optional;
+import java.util.Set;
 import java.util.function.BiFunction;
 
 import org.janelia.saalfeldlab.n5.DatasetAttributes;
@@ -40,6 +42,53 @@ public interface N5MetadataParser<T extends N5Metadata> extends BiFunction<N5Rea
 		return parseMetadata(n5, new N5TreeNode(dataset));
 	}
 
+	/**
+	 * Returns the attribute keys that identify the metadata this parser reads.
+	 * If not empty, parsing can only succeed for nodes with at least one of
+	 * these keys, so discovery skips this parser for other nodes. Parsers that
+	 * can succeed without any particular key return an empty set.
+	 *
+	 * @return the identifying keys
+	 */
+	default Set<String> identifyingKeys() {
+
+		return Collections.emptySet();
+	}
+
+	/**
+	 * Checks whether this parser can succeed for a node with the given
+	 * attribute keys, without reading anything.
+	 *
+	 * @param attributeKeys
+	 *            the keys of the node's attributes
+	 * @return false if parsing would certainly fail
+	 */
+	default boolean mayParse(final Set<String> attributeKeys) {
+
+		final Set<String> keys = identifyingKeys();
+		if (keys.isEmpty())
+			return true;
+
+		for (final String key : keys)
+			if (attributeKeys.contains(key))
+				return true;
+
+		return false;
+	}
+
+	/**
+	 * Whether this parser finds the children of a group in the group's own
+	 * attributes, like the scale levels of OME-NGFF multiscales. Such parsers
+	 * can parse a group without the container being listed.
+	 *
+	 * @return true if parsing does not need the children of the node to be
+	 *         discovered
+	 */
+	default boolean findsChildrenInAttributes() {
+
+		return false;
+	}
+
 	@Override
 	default Optional<T> apply(N5Reader n5Reader, N5TreeNode n5TreeNode) {
 
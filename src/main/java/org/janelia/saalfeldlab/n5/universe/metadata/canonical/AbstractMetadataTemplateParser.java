@@ -46,6 +46,8 @@ import org.janelia.saalfeldlab.n5.XzCompression;
 import org.janelia.saalfeldlab.n5.universe.container.ContainerMetadataNode;
 import org.janelia.saalfeldlab.n5.universe.metadata.N5Metadata;
 import org.janelia.saalfeldlab.n5.universe.metadata.N5MetadataParser;
+import org.janelia.saalfeldlab.n5.universe.translation.GsonJacksonConverter;
+import org.janelia.saalfeldlab.n5.universe.translation.JqUtils;
 
 /**
  * Interface for metadata describing how spatial data are oriented in physical space.
@@ -62,13 +64,23 @@ public abstract class AbstractMetadataTemplateParser<T extends N5Metadata> imple
 
 	private final ObjectMapper objMapper;
 
+	private final JsonQuery query;
+
 	public AbstractMetadataTemplateParser( final Gson gson, final String translation )
 	{
 		this.translation = translation;
 		this.gson = gson;
 
-		scope = buildRootScope();
+		scope = JqUtils.rootScope();
 		objMapper = new ObjectMapper();	
+
+		JsonQuery qTmp = null;
+		try {
+			qTmp = JqUtils.compile(translation);
+		} catch (JsonQueryException e) {
+			// parsing will return empty
+		}
+		query = qTmp;
 	}
 
 	public String transform( final String in ) throws JsonMappingException, JsonProcessingException
@@ -76,7 +88,7 @@ public abstract class AbstractMetadataTemplateParser<T extends N5Metadata> imple
 		JsonNode inJsonNode = objMapper.readTree( in );
 
 		final List< JsonNode > out = new ArrayList<>();
-		JsonQuery.compile( translation, Versions.JQ_1_6 ).apply( scope, inJsonNode, out::add );	
+		JqUtils.compile( translation ).apply( scope, inJsonNode, out::add );	
 		
 		final StringBuffer stringOutput = new StringBuffer();
 		for ( final JsonNode n : out )
@@ -104,19 +116,14 @@ public abstract class AbstractMetadataTemplateParser<T extends N5Metadata> imple
 			return Optional.empty();
 		}
 
-		JsonNode in;
-		try {
-			in = objMapper.readTree( gson.toJson( attrs ));
+		if (query == null)
+			return Optional.empty();
 
-			final List< JsonNode > out = new ArrayList<>();
-			JsonQuery.compile( translation, Versions.JQ_1_6 ).apply( scope, in, out::add );	
-			
-			final StringBuffer stringOutput = new StringBuffer();
-			for ( final JsonNode n : out )
-				stringOutput.append( n.toString() + "\n" );
+		try {
+			final JsonElement out = JqUtils.apply(query, scope, GsonJacksonConverter.toJsonNode(attrs, gson.serializeNulls()));
 
 			final Type mapType = new TypeToken<HashMap<String, JsonElement>>(){}.getType();
-			final HashMap<String, JsonElement> tmpmap = gson.fromJson(stringOutput.toString(), mapType);
+			final HashMap<String, JsonElement> tmpmap = gson.fromJson(out, mapType);
 			final HashMap<String, JsonElement> map = tmpmap == null ? new HashMap<>() : tmpmap;
 			if( !map.containsKey("path" ))
 				map.put("path", new JsonPrimitive( node.getPath() ));
@@ -146,19 +153,14 @@ public abstract class AbstractMetadataTemplateParser<T extends N5Metadata> imple
 			return Optional.empty();
 		}
 
-		JsonNode in;
-		try {
-			in = objMapper.readTree( gson.toJson( treeNode ));
+		if (query == null)
+			return Optional.empty();
 
-			final List< JsonNode > out = new ArrayList<>();
-			JsonQuery.compile( translation, Versions.JQ_1_6 ).apply( scope, in, out::add );	
-			
-			final StringBuffer stringOutput = new StringBuffer();
-			for ( final JsonNode n : out )
-				stringOutput.append( n.toString() + "\n" );
+		try {
+			final JsonElement out = JqUtils.apply(query, scope, gson.toJsonTree( treeNode ));
 
 			final Type mapType = new TypeToken<HashMap<String, JsonElement>>(){}.getType();
-			final HashMap<String, JsonElement> tmpmap = gson.fromJson(stringOutput.toString(), mapType);
+			final HashMap<String, JsonElement> tmpmap = gson.fromJson(out, mapType);
 			final HashMap<String, JsonElement> map = tmpmap == null ? new HashMap<>() : tmpmap;
 			
 			if( !map.containsKey("path" ))
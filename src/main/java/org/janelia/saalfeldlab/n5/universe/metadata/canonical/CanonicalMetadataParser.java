@@ -8,8 +8,10 @@ import com.google.gson.JsonElement;
 
 import java.util.Arrays;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 import java.util.function.Predicate;
 import net.thisptr.jackson.jq.BuiltinFunctionLoader;
 import net.thisptr.jackson.jq.Expression;
@@ -50,6 +52,9 @@ import org.janelia.saalfeldlab.n5.universe.translation.JqUtils;
  */
 public class CanonicalMetadataParser implements N5MetadataParser< CanonicalMetadata > {
 
+	private static final Set<String> KEYS = new HashSet<>(Arrays.asList(
+			"spatialTransform", "multiscales", "multichannel", "intensityLimits", "color"));
+
 	protected Gson gson;
 
 	protected ContainerMetadataNode root;
@@ -92,6 +97,11 @@ public class CanonicalMetadataParser implements N5MetadataParser< CanonicalMetad
 		root.addPathsRecursive();
 	}
 
+	@Override
+	public Set<String> identifyingKeys() {
+		return KEYS;
+	}
+
 	@SuppressWarnings("unchecked")
 	@Override
 	public Optional<CanonicalMetadata> parseMetadata(N5Reader n5, N5TreeNode node) {
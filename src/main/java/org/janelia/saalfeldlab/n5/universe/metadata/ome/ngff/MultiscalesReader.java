@@ -0,0 +1,387 @@
+package org.janelia.saalfeldlab.n5.universe.metadata.ome.ngff;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.commons.lang3.ArrayUtils;
+import org.janelia.saalfeldlab.n5.universe.metadata.GsonRegistry;
+import org.janelia.saalfeldlab.n5.universe.metadata.axes.Axis;
+import org.janelia.saalfeldlab.n5.universe.metadata.axes.AxisUtils;
+import org.janelia.saalfeldlab.n5.universe.metadata.ome.ngff.OmeNgffMultiScaleMetadata.OmeNgffDataset;
+import org.janelia.saalfeldlab.n5.universe.metadata.ome.ngff.OmeNgffMultiScaleMetadata.OmeNgffDownsamplingMetadata;
+import org.janelia.saalfeldlab.n5.universe.metadata.ome.ngff.axes.AxisAdapter;
+import org.janelia.saalfeldlab.n5.universe.metadata.ome.ngff.coordinateTransformations.CoordinateTransformation;
+import org.janelia.saalfeldlab.n5.universe.metadata.ome.ngff.coordinateTransformations.CoordinateTransformationAdapter;
+import org.janelia.saalfeldlab.n5.universe.metadata.ome.ngff.coordinateTransformations.IdentityCoordinateTransformation;
+import org.janelia.saalfeldlab.n5.universe.metadata.ome.ngff.coordinateTransformations.ScaleCoordinateTransformation;
+import org.janelia.saalfeldlab.n5.universe.metadata.ome.ngff.coordinateTransformations.TranslationCoordinateTransformation;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParseException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+/**
+ * Reads OME-NGFF multiscales token by token.
+ * <p>
+ * Produces the same result as deserializing with {@link MultiscalesAdapter}
+ * and the CoordinateTransformationAdapter, without building intermediate
+ * json trees. Parameters are read into primitive arrays, and reversed in
+ * place when the axis order is reversed. Fields outside the multiscales are
+ * skipped without being parsed into objects. Multiscales are written with
+ * {@link MultiscalesAdapter}.
+ */
+public class MultiscalesReader extends TypeAdapter<OmeNgffMultiScaleMetadata[]> {
+
+	private static final String OME = "ome";
+	private static final String MS = "multiscales";
+
+	private final boolean reverse;
+
+	public MultiscalesReader(final boolean reverse) {
+
+		this.reverse = reverse;
+	}
+
+	/**
+	 * Reads the multiscales from the value of a "multiscales" attribute.
+	 *
+	 * @param multiscales the json array
+	 * @param reverse whether to reverse axes and parameters
+	 * @return the multiscales
+	 */
+	public static OmeNgffMultiScaleMetadata[] read(final JsonElement multiscales, final boolean reverse) {
+
+		return new MultiscalesReader(reverse).fromJsonTree(multiscales);
+	}
+
+	/**
+	 * Reads the multiscales from a whole attributes document, v0.4 or v0.5
+	 * (under the "ome" key).
+	 *
+	 * @param attributes reader of the attributes json
+	 * @param reverse whether to reverse axes and parameters
+	 * @return the multiscales, or null if there are none
+	 * @throws IOException if reading fails
+	 */
+	public static OmeNgffMultiScaleMetadata[] readAttributes(final Reader attributes, final boolean reverse) throws IOException {
+
+		final JsonReader in = new JsonReader(attributes);
+		in.setLenient(true);
+		return new MultiscalesReader(reverse).findMultiscales(in);
+	}
+
+	private OmeNgffMultiScaleMetadata[] findMultiscales(final JsonReader in) throws IOException {
+
+		if (in.peek() != JsonToken.BEGIN_OBJECT)
+			return null;
+
+		OmeNgffMultiScaleMetadata[] out = null;
+		in.beginObject();
+		while (in.hasNext()) {
+			final String name = in.nextName();
+			if (out == null && name.equals(MS))
+				out = read(in);
+			else if (out == null && name.equals(OME))
+				out = findMultiscales(in);
+			else
+				in.skipValue();
+		}
+		in.endObject();
+		return out;
+	}
+
+	/**
+	 * Writes the multiscales with {@link MultiscalesAdapter}, so that written
+	 * multiscales are read back unchanged.
+	 */
+	@Override
+	public void write(final JsonWriter out, final OmeNgffMultiScaleMetadata[] value) throws IOException {
+
+		final Gson gson = GsonRegistry.get(() -> new GsonBuilder()
+				.registerTypeAdapter(CoordinateTransformation.class, new CoordinateTransformationAdapter(reverse))
+				.registerTypeAdapter(Axis.class, new AxisAdapter())
+				.registerTypeAdapter(OmeNgffMultiScaleMetadata.class, new MultiscalesAdapter(reverse)),
+				MultiscalesAdapter.class, reverse);
+
+		gson.toJson(gson.toJsonTree(value, OmeNgffMultiScaleMetadata[].class), out);
+	}
+
+	@Override
+	public OmeNgffMultiScaleMetadata[] read(final JsonReader in) throws IOException {
+
+		if (nullOrSkip(in, JsonToken.BEGIN_ARRAY))
+			return null;
+
+		final List<OmeNgffMultiScaleMetadata> out = new ArrayList<>();
+		in.beginArray();
+		while (in.hasNext())
+			out.add(readMultiscale(in));
+		in.endArray();
+
+		return out.toArray(new OmeNgffMultiScaleMetadata[0]);
+	}
+
+	private OmeNgffMultiScaleMetadata readMultiscale(final JsonReader in) throws IOException {
+
+		if (nullOrSkip(in, JsonToken.BEGIN_OBJECT))
+			return null;
+
+		String name = null;
+		String type = null;
+		String version = "";
+		Axis[] axes = null;
+		boolean hasAxes = false;
+		OmeNgffDataset[] datasets = null;
+		boolean hasDatasets = false;
+		CoordinateTransformation<?>[] coordinateTransformations = null;
+		OmeNgffDownsamplingMetadata metadata = null;
+
+		in.beginObject();
+		while (in.hasNext()) {
+			switch (in.nextName()) {
+			case "name":
+				name = nextStringOrNull(in);
+				break;
+			case "type":
+				type = nextStringOrNull(in);
+				break;
+			case "version":
+				version = in.nextString();
+				break;
+			case "axes":
+				hasAxes = true;
+				axes = readAxes(in);
+				break;
+			case "datasets":
+				hasDatasets = true;
+				datasets = readDatasets(in);
+				break;
+			case "coordinateTransformations":
+				coordinateTransformations = readTransformations(in);
+				break;
+			case "metadata":
+				metadata = GsonRegistry.get(GsonBuilder::new, MultiscalesReader.class)
+						.getAdapter(OmeNgffDownsamplingMetadata.class).read(in);
+				break;
+			default:
+				in.skipValue();
+			}
+		}
+		in.endObject();
+
+		if (!hasAxes && !hasDatasets)
+			return null;
+		else if (axes == null)
+			throw new JsonParseException("multiscales must have axes");
+
+		return new OmeNgffMultiScaleMetadata(axes.length, "",
+				name, type, version, axes, datasets,
+				coordinateTransformations, null, metadata);
+	}
+
+	private Axis[] readAxes(final JsonReader in) throws IOException {
+
+		if (nullOrSkip(in, JsonToken.BEGIN_ARRAY))
+			return null;
+
+		final List<String> names = new ArrayList<>();
+		final List<Axis> axes = new ArrayList<>();
+		in.beginArray();
+		while (in.hasNext()) {
+			if (in.peek() == JsonToken.STRING)
+				// v0.3 uses string labels for axes
+				names.add(in.nextString());
+			else
+				axes.add(readAxis(in));
+		}
+		in.endArray();
+
+		final Axis[] out;
+		if (!names.isEmpty())
+			out = AxisUtils.defaultAxes(names.toArray(new String[0]));
+		else if (!axes.isEmpty())
+			out = axes.toArray(new Axis[0]);
+		else
+			return null;
+
+		if (reverse)
+			ArrayUtils.reverse(out);
+
+		return out;
+	}
+
+	private static Axis readAxis(final JsonReader in) throws IOException {
+
+		if (nullOrSkip(in, JsonToken.BEGIN_OBJECT))
+			return null;
+
+		String name = null;
+		String type = "";
+		String unit = "";
+		in.beginObject();
+		while (in.hasNext()) {
+			switch (in.nextName()) {
+			case "name":
+				name = nextStringOrNull(in);
+				break;
+			case "type":
+				type = nextStringOrNull(in);
+				break;
+			case "unit":
+				unit = nextStringOrNull(in);
+				break;
+			default:
+				in.skipValue();
+			}
+		}
+		in.endObject();
+
+		return name == null ? null : new Axis(type, name, unit);
+	}
+
+	private OmeNgffDataset[] readDatasets(final JsonReader in) throws IOException {
+
+		if (nullOrSkip(in, JsonToken.BEGIN_ARRAY))
+			return null;
+
+		final List<OmeNgffDataset> out = new ArrayList<>();
+		in.beginArray();
+		while (in.hasNext()) {
+			if (nullOrSkip(in, JsonToken.BEGIN_OBJECT)) {
+				out.add(null);
+				continue;
+			}
+
+			final OmeNgffDataset dataset = new OmeNgffDataset();
+			in.beginObject();
+			while (in.hasNext()) {
+				switch (in.nextName()) {
+				case "path":
+					dataset.path = nextStringOrNull(in);
+					break;
+				case "coordinateTransformations":
+					dataset.coordinateTransformations = readTransformations(in);
+					break;
+				default:
+					in.skipValue();
+				}
+			}
+			in.endObject();
+			out.add(dataset);
+		}
+		in.endArray();
+
+		return out.toArray(new OmeNgffDataset[0]);
+	}
+
+	private CoordinateTransformation<?>[] readTransformations(final JsonReader in) throws IOException {
+
+		if (nullOrSkip(in, JsonToken.BEGIN_ARRAY))
+			return null;
+
+		final List<CoordinateTransformation<?>> out = new ArrayList<>();
+		in.beginArray();
+		while (in.hasNext())
+			out.add(readTransformation(in));
+		in.endArray();
+
+		return out.toArray(new CoordinateTransformation<?>[0]);
+	}
+
+	/**
+	 * Returns null for identities and unknown types, like
+	 * CoordinateTransformationAdapter.
+	 */
+	private CoordinateTransformation<?> readTransformation(final JsonReader in) throws IOException {
+
+		if (nullOrSkip(in, JsonToken.BEGIN_OBJECT))
+			return null;
+
+		String type = null;
+		double[] scale = null;
+		double[] translation = null;
+		in.beginObject();
+		while (in.hasNext()) {
+			switch (in.nextName()) {
+			case "type":
+				type = nextStringOrNull(in);
+				break;
+			case ScaleCoordinateTransformation.TYPE:
+				scale = readDoubles(in);
+				break;
+			case TranslationCoordinateTransformation.TYPE:
+				translation = readDoubles(in);
+				break;
+			default:
+				in.skipValue();
+			}
+		}
+		in.endObject();
+
+		if (type == null || type.equals(IdentityCoordinateTransformation.TYPE))
+			return null;
+		else if (type.equals(ScaleCoordinateTransformation.TYPE))
+			return new ScaleCoordinateTransformation(scale);
+		else if (type.equals(TranslationCoordinateTransformation.TYPE))
+			return new TranslationCoordinateTransformation(translation);
+
+		return null;
+	}
+
+	private double[] readDoubles(final JsonReader in) throws IOException {
+
+		if (nullOrSkip(in, JsonToken.BEGIN_ARRAY))
+			return null;
+
+		double[] out = new double[5];
+		int n = 0;
+		in.beginArray();
+		while (in.hasNext()) {
+			if (n == out.length)
+				out = Arrays.copyOf(out, 2 * n);
+			out[n++] = in.nextDouble();
+		}
+		in.endArray();
+
+		if (n != out.length)
+			out = Arrays.copyOf(out, n);
+
+		if (reverse)
+			ArrayUtils.reverse(out);
+
+		return out;
+	}
+
+	private static String nextStringOrNull(final JsonReader in) throws IOException {
+
+		if (in.peek() == JsonToken.NULL) {
+			in.nextNull();
+			return null;
+		}
+		return in.nextString();
+	}
+
+	/**
+	 * Consumes a null or a value that is not of the expected kind.
+	 *
+	 * @return true if the value was consumed
+	 */
+	private static boolean nullOrSkip(final JsonReader in, final JsonToken expected) throws IOException {
+
+		final JsonToken token = in.peek();
+		if (token == expected)
+			return false;
+
+		in.skipValue();
+		return true;
+	}
+
+}
@@ -2,6 +2,7 @@ package org.janelia.saalfeldlab.n5.universe.metadata.ome.ngff;
 
 import java.util.Arrays;
 import java.util.Optional;
+import java.util.function.Supplier;
 
 import org.janelia.saalfeldlab.n5.DatasetAttributes;
 import org.janelia.saalfeldlab.n5.universe.metadata.MetadataUtils;
@@ -29,7 +30,9 @@ public class NgffSingleScaleAxesMetadata implements AxisMetadata, N5SpatialDatas
 
 	private final CoordinateTransformation<?>[] coordinateTransformations;
 
-	private transient final DatasetAttributes datasetAttributes;
+	private transient volatile DatasetAttributes datasetAttributes;
+
+	private transient volatile Supplier<DatasetAttributes> datasetAttributesSupplier;
 
 	private transient final double[] scale;
 
@@ -59,6 +62,7 @@ public class NgffSingleScaleAxesMetadata implements AxisMetadata, N5SpatialDatas
 		this.axes = axes;
 
 		this.datasetAttributes = datasetAttributes;
+		this.datasetAttributesSupplier = null;
 
 		coordinateTransformations = MetadataUtils.buildScaleTranslationTransformList(this.scale, this.translation);
 		if (Arrays.stream(axes).allMatch(x -> x.getType().equals(Axis.SPACE))) {
@@ -71,6 +75,28 @@ public class NgffSingleScaleAxesMetadata implements AxisMetadata, N5SpatialDatas
 		}
 	}
 
+	/**
+	 * Returns a copy of this metadata whose dataset attributes are obtained
+	 * from the given supplier the first time they are needed.
+	 *
+	 * @param datasetAttributesSupplier supplies the dataset attributes
+	 * @return the metadata
+	 */
+	public NgffSingleScaleAxesMetadata withLazyAttributes(final Supplier<DatasetAttributes> datasetAttributesSupplier) {
+
+		final NgffSingleScaleAxesMetadata out = new NgffSingleScaleAxesMetadata(path, scale, translation, axes, null);
+		out.datasetAttributesSupplier = datasetAttributesSupplier;
+		return out;
+	}
+
+	/**
+	 * @return true if the dataset attributes are known without reading them
+	 */
+	public boolean isAttributesResolved() {
+
+		return datasetAttributesSupplier == null;
+	}
+
 	private static double[] ones(final int N) {
 
 		final double[] ones = new double[N];
@@ -92,6 +118,15 @@ public class NgffSingleScaleAxesMetadata implements AxisMetadata, N5SpatialDatas
 	@Override
 	public DatasetAttributes getAttributes() {
 
+		if (datasetAttributesSupplier != null) {
+			synchronized (this) {
+				final Supplier<DatasetAttributes> supplier = datasetAttributesSupplier;
+				if (supplier != null) {
+					datasetAttributes = supplier.get();
+					datasetAttributesSupplier = null;
+				}
+			}
+		}
 		return datasetAttributes;
 	}
 
@@ -183,9 +218,12 @@ public class NgffSingleScaleAxesMetadata implements AxisMetadata, N5SpatialDatas
 			j++;
 		}
 
-		return new NgffSingleScaleAxesMetadata( newPath,
+		// the dataset is the same, so do not resolve its attributes here
+		final Supplier<DatasetAttributes> supplier = datasetAttributesSupplier;
+		final NgffSingleScaleAxesMetadata out = new NgffSingleScaleAxesMetadata( newPath,
 				newScale, newTranslation,
 				axes, datasetAttributes);
+		return supplier == null ? out : out.withLazyAttributes(supplier);
 	}
 
 }
@@ -1,17 +1,27 @@
 package org.janelia.saalfeldlab.n5.universe.metadata.ome.ngff;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 import org.janelia.saalfeldlab.n5.DatasetAttributes;
+import org.janelia.saalfeldlab.n5.N5Exception;
 import org.janelia.saalfeldlab.n5.N5Reader;
 import org.janelia.saalfeldlab.n5.N5Writer;
 import org.janelia.saalfeldlab.n5.universe.N5TreeNode;
+import org.janelia.saalfeldlab.n5.universe.metadata.GsonRegistry;
 import org.janelia.saalfeldlab.n5.universe.metadata.MetadataUtils;
 import org.janelia.saalfeldlab.n5.universe.metadata.N5MetadataParser;
 import org.janelia.saalfeldlab.n5.universe.metadata.N5MetadataWriter;
@@ -21,6 +31,7 @@ import org.janelia.saalfeldlab.n5.universe.metadata.ome.ngff.axes.AxisAdapter;
 import org.janelia.saalfeldlab.n5.universe.metadata.ome.ngff.coordinateTransformations.CoordinateTransformation;
 import org.janelia.saalfeldlab.n5.universe.metadata.ome.ngff.coordinateTransformations.CoordinateTransformationAdapter;
 import org.janelia.saalfeldlab.n5.universe.metadata.ome.ngff.v03.OmeNgffV03MetadataProcessor;
+import org.janelia.saalfeldlab.n5.universe.reader.ForwardingN5Reader;
 import org.janelia.saalfeldlab.n5.zarr.ZarrKeyValueReader;
 import org.janelia.saalfeldlab.n5.zarr.v3.ZarrV3DatasetAttributes;
 import org.janelia.saalfeldlab.n5.zarr.v3.ZarrV3KeyValueReader;
@@ -37,22 +48,56 @@ public class OmeNgffMetadataParser implements N5MetadataParser<OmeNgffMetadata>,
 	private final static String MS = "multiscales";
 	private final static String OMEMS = "ome/multiscales";
 
+	private final static Set<String> KEYS = new HashSet<>(Arrays.asList(OME, MS));
+
 	private final Gson gson;
 
 	protected boolean reverse;
 
+	private final ExecutorService executor;
+
+	private final boolean lazyChildren;
+
 	public OmeNgffMetadataParser(final boolean reverse) {
 
+		this(reverse, null, false);
+	}
+
+	/**
+	 * Creates a parser that reads the dataset attributes of scale levels
+	 * concurrently on the given executor.
+	 * <p>
+	 * If lazyChildren is true, only the attributes of the first and last
+	 * scale levels are read while parsing. The attributes of the other levels
+	 * are read the first time {@link NgffSingleScaleAxesMetadata#getAttributes()}
+	 * is called, and these levels are not checked to be datasets. OME-Zarr
+	 * v0.3 metadata always read all levels, because their transformations are
+	 * inferred from the sizes of the levels.
+	 *
+	 * @param reverse whether to reverse axes and parameters
+	 * @param executor the executor, may be null to read sequentially
+	 * @param lazyChildren whether to read intermediate scale levels lazily
+	 */
+	public OmeNgffMetadataParser(final boolean reverse, final ExecutorService executor, final boolean lazyChildren) {
+
 		this.reverse = reverse;
-		gson = gsonBuilder().create();
+		this.executor = executor;
+		this.lazyChildren = lazyChildren;
+		// subclasses may configure another builder
+		gson = GsonRegistry.get(this::gsonBuilder, getClass(), reverse);
 	}
 
 	public OmeNgffMetadataParser(final N5Reader n5) {
 		this(reverse(n5));
 	}
+
+	public OmeNgffMetadataParser(final N5Reader n5, final ExecutorService executor, final boolean lazyChildren) {
+		this(reverse(n5), executor, lazyChildren);
+	}
 	
 	public static boolean reverse(final N5Reader n5) {
-		return n5 instanceof ZarrV3KeyValueReader || n5 instanceof ZarrKeyValueReader;
+		final N5Reader inner = ForwardingN5Reader.unwrap(n5);
+		return inner instanceof ZarrV3KeyValueReader || inner instanceof ZarrKeyValueReader;
 	}
 
 	public OmeNgffMetadataParser() {
@@ -76,6 +121,18 @@ public class OmeNgffMetadataParser implements N5MetadataParser<OmeNgffMetadata>,
 			return null;
 	}
 
+	@Override
+	public Set<String> identifyingKeys() {
+
+		return KEYS;
+	}
+
+	@Override
+	public boolean findsChildrenInAttributes() {
+
+		return true;
+	}
+
 	@Override
 	public Optional<OmeNgffMetadata> parseMetadata(final N5Reader n5, final N5TreeNode node) {
 
@@ -92,7 +149,7 @@ public class OmeNgffMetadataParser implements N5MetadataParser<OmeNgffMetadata>,
 
 		OmeNgffMultiScaleMetadata[] multiscales;
 		try {
-			multiscales = gson.fromJson(msBase, OmeNgffMultiScaleMetadata[].class);
+			multiscales = MultiscalesReader.read(msBase, reverse);
 		} catch (final Exception e) {
 			return Optional.empty();
 		}
@@ -104,32 +161,30 @@ public class OmeNgffMetadataParser implements N5MetadataParser<OmeNgffMetadata>,
 		int nd = -1;
 		final Map<String, N5TreeNode> scaleLevelNodes = new HashMap<>();
 
-		DatasetAttributes[] attrs = null;
+		final DatasetAttributes[][] attrs = new DatasetAttributes[multiscales.length][];
 		for (int j = 0; j < multiscales.length; j++) {
 
 			final OmeNgffMultiScaleMetadata ms = multiscales[j];
 			nd = ms.getAxes().length;
 
 			final int numScales = ms.getDatasets().length;
-			attrs = new DatasetAttributes[numScales];
-			for (int i = 0; i < numScales; i++) {
+			final String[] childPaths = new String[numScales];
+			for (int i = 0; i < numScales; i++)
+				childPaths[i] = MetadataUtils.canonicalPath(node, ms.getPaths()[i]);
 
-				final N5TreeNode child = new N5TreeNode(
-						MetadataUtils.canonicalPath(node, ms.getPaths()[i]));
+			final boolean isV03 = ms.version.equals("0.3");
+			attrs[j] = readDatasetAttributes(n5, childPaths, lazyChildren && !isV03);
+			if (attrs[j] == null)
+				return Optional.empty();
 
-				final DatasetAttributes dsetAttrs = n5.getDatasetAttributes(child.getPath());
-				if (dsetAttrs == null)
-					return Optional.empty();
+			for (int i = 0; i < numScales; i++)
+				node.childrenList().add(new N5TreeNode(childPaths[i]));
 
-				attrs[i] = dsetAttrs;
-				node.childrenList().add(child);
-			}
-
-			if( ms.version.equals("0.3")) {
+			if( isV03 ) {
 				// OME-Zarr v0.3 does not have coordinate transformation metadata per scale level
 				// so modify datasets in place, adding inferred coordinate transformations
 				// per scale level here
-				OmeNgffV03MetadataProcessor.readProcess(ms.getDatasets(), attrs);
+				OmeNgffV03MetadataProcessor.readProcess(ms.getDatasets(), attrs[j]);
 			}
 
 			// add to scale level nodes map
@@ -147,7 +202,15 @@ public class OmeNgffMetadataParser implements N5MetadataParser<OmeNgffMetadata>,
 
 			final OmeNgffMultiScaleMetadata ms = multiscales[j];
 			final NgffSingleScaleAxesMetadata[] msChildrenMeta = OmeNgffMultiScaleMetadata.buildMetadata(
-					nd, node.getPath(), ms.getDatasets(), attrs, ms.getCoordinateTransformations(), ms.metadata, ms.axes, false);
+					nd, node.getPath(), ms.getDatasets(), attrs[j], ms.getCoordinateTransformations(), ms.metadata, ms.axes, false);
+
+			// scale levels that were not read resolve their attributes when first needed
+			for (int i = 0; i < msChildrenMeta.length; i++) {
+				if (attrs[j][i] == null) {
+					final String childPath = msChildrenMeta[i].getPath();
+					msChildrenMeta[i] = msChildrenMeta[i].withLazyAttributes(() -> n5.getDatasetAttributes(childPath));
+				}
+			}
 
 			MetadataUtils.updateChildrenMetadata(node, msChildrenMeta, false);
 			multiscales[j] = new OmeNgffMultiScaleMetadata(ms, msChildrenMeta);
@@ -156,6 +219,70 @@ public class OmeNgffMetadataParser implements N5MetadataParser<OmeNgffMetadata>,
 		return Optional.of(new OmeNgffMetadata(node.getPath(), multiscales));
 	}
 
+	/**
+	 * Reads the dataset attributes of the scale levels at the given paths,
+	 * concurrently if this parser has an executor.
+	 *
+	 * @param n5 the reader
+	 * @param paths the paths of the scale levels
+	 * @param lazy if true, only read the first and last levels
+	 * @return the attributes, with null entries for levels that were not
+	 *         read, or null if a level that was read is not a dataset
+	 */
+	protected DatasetAttributes[] readDatasetAttributes(final N5Reader n5, final String[] paths, final boolean lazy) {
+
+		final int N = paths.length;
+		final DatasetAttributes[] attrs = new DatasetAttributes[N];
+		final List<Integer> levels = new ArrayList<>();
+		for (int i = 0; i < N; i++)
+			if (!lazy || i == 0 || i == N - 1)
+				levels.add(i);
+
+		if (executor == null || levels.size() < 2) {
+			for (final int i : levels) {
+				attrs[i] = n5.getDatasetAttributes(paths[i]);
+				if (attrs[i] == null)
+					return null;
+			}
+			return attrs;
+		}
+
+		final List<FutureTask<DatasetAttributes>> tasks = new ArrayList<>(levels.size());
+		for (final int i : levels)
+			tasks.add(new FutureTask<DatasetAttributes>(() -> n5.getDatasetAttributes(paths[i])));
+
+		try {
+			for (final FutureTask<DatasetAttributes> task : tasks)
+				executor.execute(task);
+		} catch (final RejectedExecutionException e) {
+			// tasks that were not submitted are run below
+		}
+
+		try {
+			for (int k = 0; k < tasks.size(); k++) {
+				// runs the task on this thread if the executor has not started it yet,
+				// so this can not deadlock when called from a task of the same executor
+				final FutureTask<DatasetAttributes> task = tasks.get(k);
+				task.run();
+				final int i = levels.get(k);
+				attrs[i] = task.get();
+				if (attrs[i] == null)
+					return null;
+			}
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new N5Exception("Interrupted while reading dataset attributes", e);
+		} catch (final ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException)
+				throw (RuntimeException)e.getCause();
+
+			throw new N5Exception("Failed to read dataset attributes", e.getCause());
+		} finally {
+			tasks.forEach(t -> t.cancel(false));
+		}
+		return attrs;
+	}
+
 	@Override
 	public void writeMetadata(final OmeNgffMetadata t, final N5Writer n5, final String groupPath) throws Exception {
 
@@ -173,11 +300,12 @@ public class OmeNgffMetadataParser implements N5MetadataParser<OmeNgffMetadata>,
 
 	private void writeZarr3DimensionNames(N5Writer n5, final String groupPath, OmeNgffMultiScaleMetadata[] ms) {
 
-		if (!(n5 instanceof ZarrV3KeyValueWriter)) {
+		final N5Reader inner = ForwardingN5Reader.unwrap(n5);
+		if (!(inner instanceof ZarrV3KeyValueWriter)) {
 			return;
 		}
 
-		final ZarrV3KeyValueWriter zarr3 = (ZarrV3KeyValueWriter)n5;
+		final ZarrV3KeyValueWriter zarr3 = (ZarrV3KeyValueWriter)inner;
 		final List<String> axisNames = Stream.of(ms[0].getAxes()).map(Axis::getName)
 				.collect(Collectors.toList());
 
@@ -22,7 +22,16 @@ import com.google.gson.JsonObject;
 import net.imglib2.realtransform.AffineGet;
 import net.imglib2.realtransform.AffineTransform;
 import net.imglib2.realtransform.AffineTransform3D;
-
+import net.imglib2.realtransform.ScaleAndTranslation;
+
+/**
+ * The metadata of one OME-NGFF multiscales entry and its scale levels.
+ * <p>
+ * The scale and translation transforms between pixel and physical
+ * coordinates and between levels are not computed when the metadata is
+ * parsed, but on first use, and then kept. Every call returns a copy, so
+ * callers may modify it.
+ */
 public class OmeNgffMultiScaleMetadata extends SpatialMultiscaleMetadata<NgffSingleScaleAxesMetadata> {
 
 	// may be the empty string to indicate unknown version
@@ -38,6 +47,8 @@ public class OmeNgffMultiScaleMetadata extends SpatialMultiscaleMetadata<NgffSin
 
 	public transient DatasetAttributes[] childrenAttributes;
 
+	private transient volatile LevelTransforms levelTransforms;
+
 	public OmeNgffMultiScaleMetadata( final OmeNgffMultiScaleMetadata other, final NgffSingleScaleAxesMetadata[] children )
 	{
 		super( MetadataUtils.normalizeGroupPath(other.getPath()), children );
@@ -127,6 +138,104 @@ public class OmeNgffMultiScaleMetadata extends SpatialMultiscaleMetadata<NgffSin
 		return axes;
 	}
 
+	/**
+	 * Returns the transform from pixel to physical coordinates of a scale
+	 * level, over all axes.
+	 *
+	 * @param level the scale level
+	 * @return the transform
+	 */
+	public ScaleAndTranslation pixelToPhysical(final int level) {
+
+		return getLevelTransforms().pixelToPhysical[level].copy();
+	}
+
+	/**
+	 * Returns the transform from physical to pixel coordinates of a scale
+	 * level, over all axes.
+	 *
+	 * @param level the scale level
+	 * @return the transform
+	 */
+	public ScaleAndTranslation physicalToPixel(final int level) {
+
+		return getLevelTransforms().physicalToPixel[level].copy();
+	}
+
+	/**
+	 * Returns the transform from pixel coordinates of one scale level to pixel
+	 * coordinates of another.
+	 *
+	 * @param from the source scale level
+	 * @param to the target scale level
+	 * @return the transform
+	 */
+	public ScaleAndTranslation levelToLevel(final int from, final int to) {
+
+		return getLevelTransforms().levelToLevel[from][to].copy();
+	}
+
+	private LevelTransforms getLevelTransforms() {
+
+		// computed on first use, subclasses may not have their children yet
+		// while this class is constructed
+		LevelTransforms transforms = levelTransforms;
+		if (transforms == null) {
+			transforms = new LevelTransforms(getChildrenMetadata());
+			levelTransforms = transforms;
+		}
+
+		return transforms;
+	}
+
+	/**
+	 * Discards the transforms between scale levels. Subclasses that change
+	 * their children call this, so the transforms are computed again on next
+	 * use.
+	 */
+	protected void invalidateLevelTransforms() {
+
+		levelTransforms = null;
+	}
+
+	private static class LevelTransforms {
+
+		private final ScaleAndTranslation[] pixelToPhysical;
+
+		private final ScaleAndTranslation[] physicalToPixel;
+
+		private final ScaleAndTranslation[][] levelToLevel;
+
+		private LevelTransforms(final NgffSingleScaleAxesMetadata[] children) {
+
+			final int N = children.length;
+			pixelToPhysical = new ScaleAndTranslation[N];
+			physicalToPixel = new ScaleAndTranslation[N];
+			for (int i = 0; i < N; i++) {
+				pixelToPhysical[i] = new ScaleAndTranslation(children[i].getScale(), children[i].getTranslation());
+				physicalToPixel[i] = pixelToPhysical[i].inverse();
+			}
+
+			// x = s_i * p_i + t_i = s_j * p_j + t_j
+			levelToLevel = new ScaleAndTranslation[N][N];
+			for (int i = 0; i < N; i++) {
+				final double[] si = children[i].getScale();
+				final double[] ti = children[i].getTranslation();
+				for (int j = 0; j < N; j++) {
+					final double[] sj = children[j].getScale();
+					final double[] tj = children[j].getTranslation();
+					final double[] s = new double[si.length];
+					final double[] t = new double[si.length];
+					for (int d = 0; d < si.length; d++) {
+						s[d] = si[d] / sj[d];
+						t[d] = (ti[d] - tj[d]) / sj[d];
+					}
+					levelToLevel[i][j] = new ScaleAndTranslation(s, t);
+				}
+			}
+		}
+	}
+
 	public N5SingleScaleMetadata buildChild( final int nd, final N5DatasetMetadata datasetMeta )
 	{
 		final AffineTransform3D id = new AffineTransform3D();
@@ -66,6 +66,7 @@ public class OmeNgffMultiScaleMetadataMutable extends OmeNgffMultiScaleMetadata
 			attributes.add(idx,child.getAttributes());
 			datasets.add(idx, dset );
 		}
+		invalidateLevelTransforms();
 	}
 
 	public void clear() {
@@ -73,6 +74,7 @@ public class OmeNgffMultiScaleMetadataMutable extends OmeNgffMultiScaleMetadata
 		datasets.clear();
 		attributes.clear();
 		children.clear();
+		invalidateLevelTransforms();
 	}
 
 	@Override
@@ -5,9 +5,16 @@ import java.net.URISyntaxException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.stream.DoubleStream;
 import java.util.stream.Stream;
 
@@ -16,9 +23,11 @@ import org.janelia.saalfeldlab.n5.N5Reader;
 import org.janelia.saalfeldlab.n5.N5URI;
 import org.janelia.saalfeldlab.n5.imglib2.N5Utils;
 import org.janelia.saalfeldlab.n5.universe.N5Factory;
+import org.janelia.saalfeldlab.n5.universe.metadata.GsonRegistry;
 import org.janelia.saalfeldlab.n5.universe.metadata.axes.Axis;
 import org.janelia.saalfeldlab.n5.universe.metadata.axes.AxisUtils;
 import org.janelia.saalfeldlab.n5.universe.metadata.axes.CoordinateSystem;
+import org.janelia.saalfeldlab.n5.universe.metadata.ome.ngff.axes.ArrayCoordinateSystem;
 import org.janelia.saalfeldlab.n5.universe.metadata.ome.ngff.v05.graph.CoordinateSystems;
 import org.janelia.saalfeldlab.n5.universe.metadata.ome.ngff.v05.graph.TransformGraph;
 import org.janelia.saalfeldlab.n5.universe.metadata.ome.ngff.v05.transformations.AffineCoordinateTransformAdapter;
@@ -202,7 +211,7 @@ public class Common {
 	public static <T extends NumericType<T> & NativeType<T>> RealRandomAccessible<T> transformImage(
 			final N5Reader n5, final String imageDataset, final String registrationDataset, final String space ) throws IOException {
 		final TransformGraph graph = Common.openGraph(n5, registrationDataset, imageDataset );
-		final Optional<RealTransform> t = graph.path(space,"").map( p -> p.totalTransform(n5));
+		final Optional<RealTransform> t = graph.path(space,"").map( p -> p.simplifiedTransform(n5));
 
 		final RandomAccessibleInterval<T> img = open( n5 , imageDataset );
 		final RealRandomAccessible<T> rra = Views.interpolate( Views.extendZero( img ), new NLinearInterpolatorFactory<T>());
@@ -272,10 +281,7 @@ public class Common {
 
 	public static TransformGraph openGraph( final N5Reader n5, final String group, final int nd )
 	{
-		CoordinateSystem[] spaces = n5.getAttribute(group, "coordinateSystems", CoordinateSystem[].class);
-		if( spaces == null )
-			spaces = n5.getAttribute(group, "coordinateSystems", CoordinateSystem[].class);
-
+		final CoordinateSystem[] spaces = n5.getAttribute(group, "coordinateSystems", CoordinateSystem[].class);
 		if( spaces == null )
 			return openGraphImpliedSpaces( n5, group, nd );
 
@@ -306,16 +312,161 @@ public class Common {
 
 	public static TransformGraph openGraph( final N5Reader n5, final String... datasets ) throws IOException
 	{
-		TransformGraph graph = null;
-		for( final String d : datasets )
-			if( graph == null)
-				graph = openGraph( n5, d );
-			else
-				graph.add( openGraph( n5, d ));
+		if( datasets.length == 1 )
+			return openGraph( n5, datasets[0] );
+
+		return buildGraph( readGraphAttributes( n5, null, datasets ));
+	}
 
+	/**
+	 * Opens the transform graph of several datasets at once. The attributes of
+	 * all datasets are read in parallel on the executor, and the graph is
+	 * built in one pass. Spaces and transforms with the same name are only
+	 * added once, the first one wins.
+	 *
+	 * @param n5 the reader
+	 * @param executor the executor, if null attributes are read sequentially
+	 * @param datasets the datasets
+	 * @return the frozen graph
+	 */
+	public static TransformGraph openGraph( final N5Reader n5, final ExecutorService executor, final String... datasets )
+	{
+		final TransformGraph graph = buildGraph( readGraphAttributes( n5, executor, datasets ));
+		graph.freeze();
 		return graph;
 	}
 
+	private static class GraphAttributes {
+
+		private final String dataset;
+
+		private final int nd;
+
+		private final CoordinateSystem[] spaces;
+
+		private final CoordinateTransform<?>[] transforms;
+
+		private GraphAttributes( final String dataset, final int nd,
+				final CoordinateSystem[] spaces, final CoordinateTransform<?>[] transforms ) {
+
+			this.dataset = dataset;
+			this.nd = nd;
+			this.spaces = spaces;
+			this.transforms = transforms;
+		}
+	}
+
+	private static GraphAttributes readGraphAttributes( final N5Reader n5, final String dataset )
+	{
+		int nd = 5;
+		if( n5.datasetExists( dataset ))
+			nd = n5.getDatasetAttributes( dataset ).getNumDimensions();
+
+		final CoordinateSystem[] spaces = n5.getAttribute(dataset, "coordinateSystems", CoordinateSystem[].class);
+
+		CoordinateTransform<?>[] transforms = n5.getAttribute(dataset, "coordinateTransformations", CoordinateTransform[].class);
+		if( transforms == null )
+			transforms = n5.getAttribute(dataset, "transformations", CoordinateTransform[].class);
+
+		return new GraphAttributes( dataset, nd, spaces, transforms );
+	}
+
+	private static List<GraphAttributes> readGraphAttributes( final N5Reader n5, final ExecutorService executor,
+			final String... datasets )
+	{
+		final List<GraphAttributes> attributes = new ArrayList<>( datasets.length );
+		if( executor == null )
+		{
+			for( final String d : datasets )
+				attributes.add( readGraphAttributes( n5, d ));
+
+			return attributes;
+		}
+
+		final List<FutureTask<GraphAttributes>> tasks = new ArrayList<>( datasets.length );
+		try
+		{
+			for( final String d : datasets )
+			{
+				final FutureTask<GraphAttributes> task = new FutureTask<GraphAttributes>( () -> readGraphAttributes( n5, d ));
+				tasks.add( task );
+				try
+				{
+					executor.execute( task );
+				}
+				catch( final RejectedExecutionException e )
+				{
+					// run below on the calling thread
+				}
+			}
+
+			// run tasks the executor has not started or rejected here, so a busy executor can not deadlock
+			for( final FutureTask<GraphAttributes> task : tasks )
+			{
+				task.run();
+				attributes.add( task.get() );
+			}
+		}
+		catch( final InterruptedException e )
+		{
+			Thread.currentThread().interrupt();
+			throw new N5Exception( "Interrupted while reading transform graphs", e );
+		}
+		catch( final ExecutionException e )
+		{
+			if( e.getCause() instanceof N5Exception )
+				throw (N5Exception)e.getCause();
+
+			throw new N5Exception( "Failed to read transform graphs", e.getCause() );
+		}
+		finally
+		{
+			for( final FutureTask<GraphAttributes> task : tasks )
+				task.cancel( false );
+		}
+		return attributes;
+	}
+
+	private static TransformGraph buildGraph( final List<GraphAttributes> attributes )
+	{
+		final CoordinateSystems spaces = new CoordinateSystems();
+		final HashSet<String> names = new HashSet<>();
+		final List<CoordinateTransform<?>> transforms = new ArrayList<>();
+		for( final GraphAttributes a : attributes )
+		{
+			if( a.transforms == null )
+				continue;
+
+			if( a.spaces != null )
+			{
+				for( final CoordinateSystem cs : a.spaces )
+					spaces.add( cs );
+
+			}
+			else
+			{
+				// spaces implied by the transforms
+				for( final CoordinateTransform<?> t : a.transforms )
+				{
+					spaces.add( new CoordinateSystem( t.getInput(), a.nd ));
+					spaces.add( new CoordinateSystem( t.getOutput(), a.nd ));
+				}
+			}
+
+			if( a.nd > 0 )
+				spaces.add( new ArrayCoordinateSystem( a.dataset, a.nd ));
+
+			for( final CoordinateTransform<?> t : a.transforms )
+			{
+				if( t.getName() == null )
+					transforms.add( t );
+				else if( names.add( t.getName() ))
+					transforms.add( t );
+			}
+		}
+		return new TransformGraph( transforms, spaces );
+	}
+
 	public static double[] translation( final Interval itvl, final double[] centerPhysical )
 	{
 		final int nd = itvl.numDimensions();
@@ -411,7 +562,7 @@ public class Common {
 			return null;
 		}
 
-		final Gson gson = gsonBuilder().create();
+		final Gson gson = GsonRegistry.get(Common::gsonBuilder, Common.class);
 		final JsonElement elem = gson.fromJson( string, JsonElement.class );
 
 //		final CoordinateTransformation ct = gson.fromJson( elem.getAsJsonArray().get( 0 ), CoordinateTransformation.class );
@@ -6,6 +6,7 @@ import java.io.FileReader;
 import java.io.Reader;
 import java.util.Arrays;
 
+import org.janelia.saalfeldlab.n5.universe.metadata.GsonRegistry;
 import org.janelia.saalfeldlab.n5.universe.metadata.axes.CoordinateSystem;
 import org.janelia.saalfeldlab.n5.universe.metadata.ome.ngff.axes.ArrayCoordinateSystem;
 import org.janelia.saalfeldlab.n5.universe.metadata.ome.ngff.v05.graph.CoordinateSystems;
@@ -30,10 +31,9 @@ public class SpacesTransforms {
 
 	public static Gson buildGson()
 	{
-		final GsonBuilder gsonBuilder = new GsonBuilder();
-		gsonBuilder.registerTypeAdapter(CoordinateTransform.class, new CoordinateTransformAdapter(null));
-		final Gson gson = gsonBuilder.create();
-		return gson;
+		return GsonRegistry.get(() -> new GsonBuilder()
+				.registerTypeAdapter(CoordinateTransform.class, new CoordinateTransformAdapter(null)),
+				SpacesTransforms.class);
 	}
 
 	public static SpacesTransforms load( final Reader reader )
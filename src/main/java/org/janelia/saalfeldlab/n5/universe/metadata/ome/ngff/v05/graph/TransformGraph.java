@@ -2,10 +2,15 @@ package org.janelia.saalfeldlab.n5.universe.metadata.ome.ngff.v05.graph;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 
 import org.janelia.saalfeldlab.n5.N5Reader;
@@ -32,9 +37,31 @@ public class TransformGraph
 
 	private final HashMap< CoordinateSystem, CTNode > spacesToNodes;
 
+	private final HashMap< String, CoordinateTransform<?> > namesToTransforms = new HashMap<>();
+
+	/**
+	 * Shortest paths found so far, keyed by the list of start and end space
+	 * names. Cleared when transforms or spaces are added.
+	 */
+	private final ConcurrentHashMap< List<String>, Optional<TransformPath> > pathCache = new ConcurrentHashMap<>();
+
+	private volatile boolean frozen = false;
+
+	/**
+	 * True once the transforms or nodes were handed out modifiable, changes
+	 * made through them can not be tracked, so paths and names are not
+	 * cached any more.
+	 */
+	private volatile boolean untracked = false;
+
+	private final List< CoordinateTransform<?> > transformsView;
+
+	private volatile Map< CoordinateSystem, CTNode > spaceNodesView;
+
 	public TransformGraph() {
 		spaces = new CoordinateSystems();
 		transforms = new ArrayList<>();
+		transformsView = Collections.unmodifiableList( transforms );
 		spacesToNodes = new HashMap< CoordinateSystem, CTNode >();
 		gson = SpacesTransforms.buildGson();
 	}
@@ -44,6 +71,7 @@ public class TransformGraph
 		gson = SpacesTransforms.buildGson();
 		this.spaces = spaces;
 		this.transforms = new ArrayList<>();
+		transformsView = Collections.unmodifiableList( this.transforms );
 		inferSpacesFromAxes();
 
 		spacesToNodes = new HashMap< CoordinateSystem, CTNode >();
@@ -70,22 +98,76 @@ public class TransformGraph
 		}
 	}
 
+	/**
+	 * @return the transforms
+	 * @deprecated changes to the list are not tracked, so paths and
+	 *             transforms by name are not cached for this graph after
+	 *             calling this. Use {@link #transforms()} and
+	 *             {@link #addTransform}.
+	 */
+	@Deprecated
 	public List<CoordinateTransform<?>> getTransforms() {
+		untrack();
 		return transforms;
 	}
 
+	/**
+	 * @return an unmodifiable view of the transforms, use
+	 *         {@link #addTransform} to add transforms
+	 */
+	public List<CoordinateTransform<?>> transforms() {
+		return transformsView;
+	}
+
 	public CoordinateSystems getCoordinateSystems() {
 		return spaces;
 	}
 
 	public Optional<CoordinateTransform<?>> getTransform( final String name ) {
-		return transforms.stream().filter( x -> x.getName().equals(name)).findAny();
+		if( untracked )
+			return transforms.stream().filter( x -> name.equals( x.getName() )).findAny();
+
+		return Optional.ofNullable( namesToTransforms.get( name ));
 	}
 
+	/**
+	 * @return the nodes of this graph
+	 * @deprecated changes to the nodes are not tracked, so paths and
+	 *             transforms by name are not cached for this graph after
+	 *             calling this. Use {@link #spaceNodes()}, {@link #addTransform}
+	 *             and {@link #addSpace}.
+	 */
+	@Deprecated
 	public HashMap< CoordinateSystem, CTNode > getSpaceNodes() {
+		untrack();
 		return spacesToNodes;
 	}
 
+	/**
+	 * Returns an unmodifiable view of the nodes of this graph, with
+	 * unmodifiable edges. The view is reused until spaces or transforms are
+	 * added.
+	 *
+	 * @return the nodes
+	 */
+	public Map< CoordinateSystem, CTNode > spaceNodes() {
+		Map< CoordinateSystem, CTNode > view = spaceNodesView;
+		if( view == null ) {
+			final HashMap< CoordinateSystem, CTNode > nodes = new HashMap<>();
+			spacesToNodes.forEach( ( space, node ) ->
+					nodes.put( space, new CTNode( space, Collections.unmodifiableList( node.edges() ))));
+			view = Collections.unmodifiableMap( nodes );
+			spaceNodesView = view;
+		}
+		return view;
+	}
+
+	private void untrack() {
+		untracked = true;
+		pathCache.clear();
+		spaceNodesView = null;
+	}
+
 	public CoordinateSystem getInput( final CoordinateTransform<?> t ) {
 		return spaces.getSpace(t.getInput());
 	}
@@ -94,19 +176,41 @@ public class TransformGraph
 		return spaces.getSpace(t.getOutput());
 	}
 
+	/**
+	 * Prevents further changes to this graph, so that paths found can be
+	 * shared by threads querying the graph concurrently.
+	 *
+	 * @return this graph
+	 */
+	public TransformGraph freeze() {
+		frozen = true;
+		return this;
+	}
+
+	public boolean isFrozen() {
+		return frozen;
+	}
+
+	private void checkNotFrozen() {
+		if( frozen )
+			throw new UnsupportedOperationException( "This transform graph is frozen" );
+	}
+
 	public void addTransform( final CoordinateTransform<?> t ) {
+		checkNotFrozen();
 		addTransform( t, true );
 	}
 
 	private void addTransform( final CoordinateTransform<?> t, final boolean addInverse ) {
-		if( transforms.stream().anyMatch( x -> {
-			if( x != null && x.getName() != null )
-				return x.getName().equals(t.getName());
-			else
-				return false;
-		}))
+		if( t.getName() != null && namesToTransforms.containsKey( t.getName() ))
 			return;
 
+		if( t.getName() != null )
+			namesToTransforms.put( t.getName(), t );
+
+		pathCache.clear();
+		spaceNodesView = null;
+
 		if( spaces.hasSpace(t.getInput()) && spaces.hasSpace(t.getOutput()))
 		{
 			final CoordinateSystem src = getInput( t );
@@ -132,13 +236,16 @@ public class TransformGraph
 
 	public void updateTransforms()
 	{
-		getCoordinateSystems().updateTransforms( getTransforms().stream() );
+		getCoordinateSystems().updateTransforms( transforms().stream() );
 	}
 
 	public void addSpace( final CoordinateSystem space )
 	{
+		checkNotFrozen();
 		if( spaces.add(space) ) {
-			spacesToNodes.put( space, new CTNode(space));
+			spacesToNodes.putIfAbsent( space, new CTNode(space));
+			pathCache.clear();
+			spaceNodesView = null;
 		}
 	}
 
@@ -157,7 +264,7 @@ public class TransformGraph
 	 * @return the "sub-transformations"
 	 */
 	public List<CoordinateTransform<?>> subTransforms( final CoordinateSystem input, final CoordinateSystem output) {
-		return getTransforms().stream().filter( t ->
+		return transforms().stream().filter( t ->
 			{
 				return spaces.inputIsSubspace( t, input ) && spaces.outputIsSubspace( t, output );
 			}
@@ -171,7 +278,7 @@ public class TransformGraph
 		final HashSet<String> inAxes = new HashSet<>();
 		final String[] outputAxes = to.getAxisNames();
 
-		for( final CoordinateTransform<?> t : getTransforms() )
+		for( final CoordinateTransform<?> t : transforms() )
 		{
 			// if
 			if( spaces.outputMatchesAny(t, outputAxes))
@@ -211,7 +318,7 @@ public class TransformGraph
 		// order list
 		for( final String outLabels : to.getAxisNames() )
 		{
-			 getTransforms().stream().filter( t -> {
+			 transforms().stream().filter( t -> {
 					return spaces.outputHasAxis( t, outLabels );
 				}).findAny().ifPresent( t -> tList.add( t ));
 		}
@@ -247,12 +354,63 @@ public class TransformGraph
 			return Optional.of( new TransformPath(
 					new IdentityCoordinateTransform("identity", from.getName(), to.getName())));
 
-		return allPaths( from ).stream().filter( p -> spaces.getSpace(p.getEnd()).equals(to)).findAny();
+		if( untracked )
+			return shortestPath( from, to );
+
+		final List<String> key = Arrays.asList( from.getName(), to.getName() );
+		Optional<TransformPath> path = pathCache.get( key );
+		if( path == null ) {
+			path = shortestPath( from, to );
+			pathCache.put( key, path );
+		}
+		return path;
+	}
+
+	/**
+	 * Finds the path with the lowest {@link TransformPath#getCost() cost}
+	 * using Dijkstra's algorithm, so linear and invertible transforms are
+	 * preferred over fields.
+	 *
+	 * @param from the start space
+	 * @param to the end space
+	 * @return the path, if one exists
+	 */
+	protected Optional<TransformPath> shortestPath(final CoordinateSystem from, final CoordinateSystem to ) {
+
+		final PriorityQueue<TransformPath> queue = new PriorityQueue<>( Comparator.comparingDouble( TransformPath::getCost ));
+		final HashSet<String> settled = new HashSet<>();
+		settled.add( from.getName() );
+		edges( from ).forEach( t -> queue.add( new TransformPath( t )));
+
+		while( !queue.isEmpty() ) {
+			final TransformPath p = queue.poll();
+			final String end = p.getEnd();
+			if( !settled.add( end ))
+				continue;
+
+			if( end.equals( to.getName() ))
+				return Optional.of( p );
+
+			final CoordinateSystem endSpace = spaces.getSpace( end );
+			if( endSpace == null )
+				continue;
+
+			for( final CoordinateTransform<?> t : edges( endSpace ))
+				if( !settled.contains( t.getOutput() ))
+					queue.add( new TransformPath( p, t ));
+		}
+		return Optional.empty();
+	}
+
+	private List<CoordinateTransform<?>> edges( final CoordinateSystem space ) {
+
+		final CTNode node = spacesToNodes.get( space );
+		return node == null ? new ArrayList<>() : node.edges();
 	}
 
 	public List<TransformPath> paths(final CoordinateSystem from, final CoordinateSystem to ) {
 
-		return allPaths( from ).stream().filter( p -> p.getEnd().equals(to)).collect(Collectors.toList());
+		return allPaths( from ).stream().filter( p -> p.getEnd().equals(to.getName())).collect(Collectors.toList());
 	}
 
 	public List<TransformPath> allPaths(final String from) {
@@ -294,7 +452,7 @@ public class TransformGraph
 		}
 	}
 
-	private static class InverseCT extends AbstractCoordinateTransform<InvertibleRealTransform>
+	static class InverseCT extends AbstractCoordinateTransform<InvertibleRealTransform>
 		implements InvertibleCoordinateTransform<InvertibleRealTransform> {
 
 		InvertibleCoordinateTransform<?> ict;
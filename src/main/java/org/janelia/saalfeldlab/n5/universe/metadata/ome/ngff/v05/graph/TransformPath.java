@@ -1,21 +1,45 @@
 package org.janelia.saalfeldlab.n5.universe.metadata.ome.ngff.v05.graph;
 
+import java.util.Arrays;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.stream.Collectors;
 
 import org.janelia.saalfeldlab.n5.N5Reader;
 import org.janelia.saalfeldlab.n5.universe.metadata.axes.CoordinateSystem;
-import org.janelia.saalfeldlab.n5.universe.metadata.ome.ngff.coordinateTransformations.TransformUtils;
 import org.janelia.saalfeldlab.n5.universe.metadata.ome.ngff.v05.Common;
+import org.janelia.saalfeldlab.n5.universe.metadata.ome.ngff.v05.transformations.AbstractParametrizedFieldTransform;
 import org.janelia.saalfeldlab.n5.universe.metadata.ome.ngff.v05.transformations.CoordinateTransform;
+import org.janelia.saalfeldlab.n5.universe.metadata.ome.ngff.v05.transformations.IdentityCoordinateTransform;
+import org.janelia.saalfeldlab.n5.universe.metadata.ome.ngff.v05.transformations.InverseCoordinateTransform;
+import org.janelia.saalfeldlab.n5.universe.metadata.ome.ngff.v05.transformations.InvertibleCoordinateTransform;
+import org.janelia.saalfeldlab.n5.universe.metadata.ome.ngff.v05.transformations.LinearCoordinateTransform;
+import org.janelia.saalfeldlab.n5.universe.metadata.ome.ngff.v05.transformations.PointTransforms;
+import org.janelia.saalfeldlab.n5.universe.metadata.ome.ngff.v05.transformations.RealTransformCoordinateTransform;
 import org.janelia.saalfeldlab.n5.universe.metadata.ome.ngff.v05.transformations.SequenceCoordinateTransform;
+import org.janelia.saalfeldlab.n5.universe.metadata.ome.ngff.v05.transformations.ThinPlateSplineCoordinateTransform;
+import org.janelia.saalfeldlab.n5.universe.metadata.ome.ngff.v05.transformations.TransformSimplifier;
 
+import net.imglib2.realtransform.AffineGet;
+import net.imglib2.realtransform.AffineTransform;
 import net.imglib2.realtransform.AffineTransform3D;
 import net.imglib2.realtransform.RealTransform;
 import net.imglib2.realtransform.RealTransformSequence;
 
 public class TransformPath {
 
+	/**
+	 * Edge costs, linear transforms are cheapest, fields most expensive.
+	 */
+	public static final double LINEAR_COST = 1.0;
+
+	public static final double INVERTIBLE_COST = 2.0;
+
+	public static final double DEFAULT_COST = 4.0;
+
+	public static final double FIELD_COST = 10.0;
+
 	private final String start;
 
 	private final TransformPath parentPath;
@@ -24,12 +48,15 @@ public class TransformPath {
 
 	private final String end;
 
+	private final double cost;
+
 	public TransformPath( final CoordinateTransform<?> transform ) {
 
 		this.start = transform.getInput();
 		this.transform = transform;
 		this.end = transform.getOutput();
 		this.parentPath = null;
+		this.cost = cost( transform );
 	}
 
 	public TransformPath( final TransformPath parentPath, final CoordinateTransform<?> transform ) {
@@ -38,6 +65,7 @@ public class TransformPath {
 		this.parentPath = parentPath;
 		this.transform = transform;
 		this.end = transform.getOutput();
+		this.cost = parentPath.getCost() + cost( transform );
 	}
 
 	public String getStart()
@@ -50,11 +78,38 @@ public class TransformPath {
 		return end;
 	}
 
+	/**
+	 * @return the sum of the costs of the transforms along this path
+	 */
 	public double getCost()
 	{
-		// consider this in the future
-		// return flatTransforms().stream().mapToDouble( Transform::getCost ).sum();
-		return 1.0;
+		return cost;
+	}
+
+	/**
+	 * Estimates the cost of applying a transform without loading its
+	 * parameters.
+	 *
+	 * @param t the transform
+	 * @return the cost
+	 */
+	public static double cost( final CoordinateTransform<?> t )
+	{
+		if( t instanceof TransformGraph.InverseCT )
+			return cost( ((TransformGraph.InverseCT)t).ict );
+		else if( t instanceof InverseCoordinateTransform )
+			return cost( ((InverseCoordinateTransform<?,?>)t).getForward() );
+		else if( t instanceof SequenceCoordinateTransform )
+			return Arrays.stream( ((SequenceCoordinateTransform)t).getTransformations() )
+					.mapToDouble( TransformPath::cost ).sum();
+		else if( t instanceof LinearCoordinateTransform || t instanceof IdentityCoordinateTransform )
+			return LINEAR_COST;
+		else if( t instanceof AbstractParametrizedFieldTransform || t instanceof ThinPlateSplineCoordinateTransform )
+			return FIELD_COST;
+		else if( t instanceof InvertibleCoordinateTransform )
+			return INVERTIBLE_COST;
+
+		return DEFAULT_COST;
 	}
 
 	/**
@@ -81,28 +136,58 @@ public class TransformPath {
 		return flatTransforms;
 	}
 
+	/**
+	 * Returns the transform along this path, simplified by
+	 * {@link TransformSimplifier}. Affine sequences are expanded to the number
+	 * of dimensions of their input space in the graph, so sequences of
+	 * transforms over a subset of the axes fit the transforms around them.
+	 *
+	 * @param n5 the reader that stores transform parameters
+	 * @param g the graph this path belongs to
+	 * @return the total transform
+	 */
 	public RealTransform totalTransform( final N5Reader n5, final TransformGraph g )
 	{
-		final RealTransformSequence total = new RealTransformSequence();
-		flatTransforms().forEach( t ->  {
-				if( t instanceof SequenceCoordinateTransform)
-				{
-					final SequenceCoordinateTransform s = (SequenceCoordinateTransform)t;
-					if( s.isAffine())
-					{
-						final int nd = g.getInput( t ).getAxes().length;
-						total.add( TransformUtils.toAffine( s, nd ));
-					}
-					else
-						total.add( t.getTransform() );
-				}
-				else
-				{
-					total.add( ((RealTransform)t.getTransform( n5 )));
-				}
-			}
-			);
-		return total;
+		final List<CoordinateTransform<?>> transforms = flatTransforms().stream()
+				.map( t -> withInputDimensions( t, g ) )
+				.collect( Collectors.toList() );
+
+		return TransformSimplifier.simplify( n5, transforms );
+	}
+
+	private static CoordinateTransform<?> withInputDimensions( final CoordinateTransform<?> t, final TransformGraph g )
+	{
+		if( !( t instanceof SequenceCoordinateTransform ) || !( (SequenceCoordinateTransform)t ).isAffine() )
+			return t;
+
+		final CoordinateSystem input = g.getInput( t );
+		if( input == null )
+			return t;
+
+		final int nd = input.getAxes().length;
+		final CoordinateTransform<?>[] sequence = ( (SequenceCoordinateTransform)t ).getTransformations();
+		for( final CoordinateTransform<?> ct : sequence )
+			if( ct.getTransform().numSourceDimensions() > nd )
+				return t;
+
+		final AffineTransform affine = new AffineTransform( nd );
+		for( final CoordinateTransform<?> ct : sequence )
+			affine.preConcatenate( TransformSimplifier.embed( (AffineGet)ct.getTransform(), nd ) );
+
+		return new RealTransformCoordinateTransform<>( t.getName(), t.getInput(), t.getOutput(), affine );
+	}
+
+	/**
+	 * Returns a minimal transform equivalent to the transforms along this path.
+	 * Consecutive linear transforms are fused into one affine and identities
+	 * are removed, see {@link TransformSimplifier}.
+	 *
+	 * @param n5 the reader that stores transform parameters, may be null
+	 * @return the simplified transform
+	 */
+	public RealTransform simplifiedTransform( final N5Reader n5 )
+	{
+		return TransformSimplifier.simplify( n5, flatTransforms() );
 	}
 
 	public RealTransform totalTransform( final N5Reader n5 )
@@ -119,6 +204,36 @@ public class TransformPath {
 		return total;
 	}
 
+	/**
+	 * Transforms numPoints points stored one after the other in src along this
+	 * path, and writes the results to dst. See {@link PointTransforms}.
+	 *
+	 * @param n5 the reader that stores transform parameters, may be null
+	 * @param src the source points
+	 * @param dst the target points
+	 * @param numPoints the number of points
+	 */
+	public void applyPoints( final N5Reader n5, final double[] src, final double[] dst, final int numPoints )
+	{
+		PointTransforms.applySequence( flatTransforms(), n5, src, 0, dst, 0, numPoints );
+	}
+
+	/**
+	 * Transforms points along this path in parallel chunks of chunkSize points.
+	 * The parameters are read once for all chunks.
+	 */
+	public void applyPoints( final N5Reader n5, final double[] src, final double[] dst, final int numPoints,
+			final ExecutorService executor, final int chunkSize )
+	{
+		final List<CoordinateTransform<?>> stages = flatTransforms();
+		final int[] dims = PointTransforms.stageDimensions( stages, n5 );
+		final int ns = dims[ 0 ];
+		final int nt = dims[ dims.length - 1 ];
+		final PointTransforms.BulkTransform bulk = PointTransforms.sequence( stages, n5 );
+		PointTransforms.forEachChunk( numPoints, chunkSize, executor,
+				( start, n ) -> bulk.apply( src, start * ns, dst, start * nt, n ) );
+	}
+
 	public AffineTransform3D totalAffine3D( final N5Reader n5 )
 	{
 		return Common.toAffine3D(n5, flatTransforms());
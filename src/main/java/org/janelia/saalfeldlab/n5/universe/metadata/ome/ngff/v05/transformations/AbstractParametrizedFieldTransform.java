@@ -4,7 +4,6 @@ package org.janelia.saalfeldlab.n5.universe.metadata.ome.ngff.v05.transformation
 import org.janelia.saalfeldlab.n5.N5Exception;
 import org.janelia.saalfeldlab.n5.N5Reader;
 import org.janelia.saalfeldlab.n5.N5URI;
-import org.janelia.saalfeldlab.n5.imglib2.N5Utils;
 import org.janelia.saalfeldlab.n5.universe.metadata.ome.ngff.v05.Common;
 
 import net.imglib2.RandomAccessibleInterval;
@@ -35,6 +34,8 @@ public abstract class AbstractParametrizedFieldTransform<T extends RealTransform
 
 	protected transient int vectorAxisIndex;
 
+	protected transient FieldLoader fieldLoader;
+
 	public AbstractParametrizedFieldTransform( final String type, final String name, final String input, final String output) {
 		this( type, name, null, LINEAR_INTERPOLATION, input, output);
 	}
@@ -61,16 +62,54 @@ public abstract class AbstractParametrizedFieldTransform<T extends RealTransform
 
 	public abstract int parseVectorAxisIndex( N5Reader n5 );
 
+	/**
+	 * @return the loader that opens the field, the
+	 *         {@link FieldLoader#getDefault() default loader} unless another
+	 *         one was set
+	 */
+	public FieldLoader getFieldLoader() {
+		return fieldLoader == null ? FieldLoader.getDefault() : fieldLoader;
+	}
+
+	/**
+	 * Sets the loader that opens the field the next time the parameters are
+	 * read.
+	 *
+	 * @param fieldLoader the loader, or null to use the default loader
+	 */
+	public void setFieldLoader( final FieldLoader fieldLoader ) {
+		this.fieldLoader = fieldLoader;
+	}
+
 	public RealRandomAccessible<RealComposite<S>> getField() {
 		return field;
 	}
 
-	@SuppressWarnings("unchecked")
+	/**
+	 * Returns the field stored at the parameter path. The field is shared
+	 * through the {@link TransformCache} with other transforms that read the
+	 * same field from the same container.
+	 */
 	@Override
 	public RealRandomAccessible<RealComposite<S>> getParameters(final N5Reader n5) {
 
-		final String path = getParameterPath();
 		vectorAxisIndex = parseVectorAxisIndex( n5 );
+		final FieldLoader loader = getFieldLoader();
+		final String key = TransformCache.key(n5, getParameterPath()) + "#field:" + getOutput() + ":" + vectorAxisIndex
+				+ ":" + loader.key();
+		field = TransformCache.get(key, () -> readParameters(n5, loader));
+		return field;
+	}
+
+	protected RealRandomAccessible<RealComposite<S>> readParameters(final N5Reader n5) {
+
+		return readParameters(n5, getFieldLoader());
+	}
+
+	@SuppressWarnings("unchecked")
+	protected RealRandomAccessible<RealComposite<S>> readParameters(final N5Reader n5, final FieldLoader loader) {
+
+		final String path = getParameterPath();
 
 		InvertibleRealTransform ixfm = null;
 		CoordinateTransform<?>[] transforms = null;
@@ -83,7 +122,7 @@ public abstract class AbstractParametrizedFieldTransform<T extends RealTransform
 
 		final RandomAccessibleInterval<S> fieldRaw;
 		try {
-			fieldRaw = (RandomAccessibleInterval<S>)N5Utils.open(n5, path );
+			fieldRaw = (RandomAccessibleInterval<S>)loader.open(n5, path );
 		} catch (final N5Exception e) {
 			return null;
 		}
@@ -101,20 +140,16 @@ public abstract class AbstractParametrizedFieldTransform<T extends RealTransform
 			pixelToPhysicalCt = findPixelToPhysicalTransformCheckSelfRef( n5, path, getOutput());
 		}
 
-		if( pixelToPhysicalCt == null ) {
-			field = fieldInterp;
-			return field;
-		}
+		if( pixelToPhysicalCt == null )
+			return fieldInterp;
 
 		if( pixelToPhysicalCt.getType().equals( SequenceCoordinateTransform.TYPE ))
 		{
 			final int nd = fieldRaw.numDimensions();
 			final AffineGet affineTotal = ((SequenceCoordinateTransform) pixelToPhysicalCt).asAffine(nd);
 			final AffineGet affine = Common.removeDimension(vectorAxisIndex, affineTotal);
-			if( affine != null ) {
-				field = RealViews.affine(fieldInterp, affine);
-				return field;
-			}
+			if( affine != null )
+				return RealViews.affine(fieldInterp, affine);
 		}
 
 		System.err.println("Warning: only affine pixel to physical transforms are currently supported");
@@ -27,7 +27,8 @@ public class CoordinateFieldCoordinateTransform<T extends RealType<T>> extends A
 	public CoordinateFieldCoordinateTransform( final String name, final RealRandomAccessible<RealComposite<T>> field, final String interpolation,
 			final String input, final String output) {
 		super("coordinate_field", name, null, interpolation, input, output);
-		buildTransform( field );
+		this.field = field;
+		transform = buildTransform( field );
 	}
 
 	public CoordinateFieldCoordinateTransform(final String name, final N5Reader n5, final String path, final String interpolation,
@@ -54,7 +55,7 @@ public class CoordinateFieldCoordinateTransform<T extends RealType<T>> extends A
 	@Override
 	public PositionFieldTransform getTransform() {
 		if( field != null && transform == null )
-			buildTransform(field);
+			transform = buildTransform(field);
 
 		return transform;
 	}
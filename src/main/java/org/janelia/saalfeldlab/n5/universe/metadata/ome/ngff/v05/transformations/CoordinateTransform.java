@@ -1,7 +1,8 @@
 package org.janelia.saalfeldlab.n5.universe.metadata.ome.ngff.v05.transformations;
 
-import org.janelia.saalfeldlab.n5.N5Reader;
+import java.util.concurrent.ExecutorService;
 
+import org.janelia.saalfeldlab.n5.N5Reader;
 
 import net.imglib2.realtransform.RealTransform;
 
@@ -15,6 +16,51 @@ public interface CoordinateTransform<T extends RealTransform> {
 		return getTransform();
 	}
 
+	/**
+	 * Reads the transform and its parameters once, and returns a function
+	 * that transforms blocks of points with it. See {@link PointTransforms}.
+	 *
+	 * @param n5 the reader that stores the transform's parameters, may be null
+	 * @return the bulk transform
+	 */
+	public default PointTransforms.BulkTransform bulkTransform( final N5Reader n5 ) {
+		return PointTransforms.bulk( getTransform( n5 ) );
+	}
+
+	/**
+	 * Transforms numPoints points stored one after the other in src, and
+	 * writes the results to dst. See {@link PointTransforms}.
+	 *
+	 * @param n5 the reader that stores the transform's parameters, may be null
+	 * @param src the source points
+	 * @param srcOffset the index of the first source coordinate
+	 * @param dst the target points
+	 * @param dstOffset the index of the first target coordinate
+	 * @param numPoints the number of points
+	 */
+	public default void applyPoints( final N5Reader n5, final double[] src, final int srcOffset,
+			final double[] dst, final int dstOffset, final int numPoints ) {
+		bulkTransform( n5 ).apply( src, srcOffset, dst, dstOffset, numPoints );
+	}
+
+	public default void applyPoints( final N5Reader n5, final double[] src, final double[] dst, final int numPoints ) {
+		applyPoints( n5, src, 0, dst, 0, numPoints );
+	}
+
+	/**
+	 * Transforms points in parallel chunks of chunkSize points. The parameters
+	 * are read once for all chunks.
+	 */
+	public default void applyPoints( final N5Reader n5, final double[] src, final double[] dst, final int numPoints,
+			final ExecutorService executor, final int chunkSize ) {
+		final T t = getTransform( n5 );
+		final int ns = t.numSourceDimensions();
+		final int nt = t.numTargetDimensions();
+		final PointTransforms.BulkTransform bulk = bulkTransform( n5 );
+		PointTransforms.forEachChunk( numPoints, chunkSize, executor,
+				( start, n ) -> bulk.apply( src, start * ns, dst, start * nt, n ) );
+	}
+
 	public String getName();
 
 	public String getType();
@@ -8,6 +8,7 @@ import org.janelia.saalfeldlab.n5.imglib2.N5Utils;
 import org.janelia.saalfeldlab.n5.universe.metadata.axes.CoordinateSystem;
 
 import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.RealRandomAccess;
 import net.imglib2.RealRandomAccessible;
 import net.imglib2.realtransform.DisplacementFieldTransform;
 import net.imglib2.type.NativeType;
@@ -27,7 +28,8 @@ public class DisplacementFieldCoordinateTransform<T extends RealType<T>> extends
 	public DisplacementFieldCoordinateTransform( final String name, final RealRandomAccessible<RealComposite<T>> fields, final String interpolation,
 			final String input, final String output) {
 		super(KEY, name, null, interpolation, input, output);
-		buildTransform( fields );
+		field = fields;
+		transform = buildTransform( fields );
 	}
 
 	public DisplacementFieldCoordinateTransform(final String name, final N5Reader n5, final String path, final String interpolation,
@@ -62,11 +64,38 @@ public class DisplacementFieldCoordinateTransform<T extends RealType<T>> extends
 	@Override
 	public DisplacementFieldTransform getTransform() {
 		if( field != null && transform == null )
-			buildTransform(field);
+			transform = buildTransform(field);
 
 		return transform;
 	}
 
+	/**
+	 * Samples the field directly, adding the displacement to each point.
+	 */
+	@Override
+	public PointTransforms.BulkTransform bulkTransform( final N5Reader n5 ) {
+
+		final DisplacementFieldTransform t = getTransform( n5 );
+		final RealRandomAccessible<RealComposite<T>> f = field;
+		if( f == null )
+			return PointTransforms.bulk( t );
+
+		final int nd = t.numSourceDimensions();
+		return ( src, srcOffset, dst, dstOffset, numPoints ) -> {
+			final RealRandomAccess<RealComposite<T>> access = f.realRandomAccess();
+			for( int i = 0; i < numPoints; i++ ) {
+				final int si = srcOffset + i * nd;
+				final int ti = dstOffset + i * nd;
+				for( int d = 0; d < nd; d++ )
+					access.setPosition( src[ si + d ], d );
+
+				final RealComposite<T> displacement = access.get();
+				for( int d = 0; d < nd; d++ )
+					dst[ ti + d ] = src[ si + d ] + displacement.get( d ).getRealDouble();
+			}
+		};
+	}
+
 	@Override
 	public int parseVectorAxisIndex( final N5Reader n5 )
 	{
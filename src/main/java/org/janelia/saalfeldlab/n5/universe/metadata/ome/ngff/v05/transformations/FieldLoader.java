@@ -0,0 +1,243 @@
+package org.janelia.saalfeldlab.n5.universe.metadata.ome.ngff.v05.transformations;
+
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.janelia.saalfeldlab.n5.N5Reader;
+import org.janelia.saalfeldlab.n5.imglib2.N5Utils;
+
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.cache.Cache;
+import net.imglib2.cache.LoaderCache;
+import net.imglib2.cache.img.CachedCellImg;
+import net.imglib2.cache.img.CellLoader;
+import net.imglib2.cache.img.LoadedCellCacheLoader;
+import net.imglib2.cache.ref.BoundedSoftRefLoaderCache;
+import net.imglib2.cache.util.KeyBimap;
+import net.imglib2.img.array.ArrayImg;
+import net.imglib2.img.array.ArrayImgFactory;
+import net.imglib2.img.basictypeaccess.AccessFlags;
+import net.imglib2.img.basictypeaccess.ArrayDataAccessFactory;
+import net.imglib2.img.basictypeaccess.array.ArrayDataAccess;
+import net.imglib2.img.cell.Cell;
+import net.imglib2.img.cell.CellGrid;
+import net.imglib2.loops.LoopBuilder;
+import net.imglib2.type.NativeType;
+import net.imglib2.util.Intervals;
+import net.imglib2.util.Util;
+import net.imglib2.view.Views;
+
+/**
+ * Opens the datasets that store displacement and coordinate fields.
+ * <p>
+ * The vector axis is the first dimension of a field, so a cell that spans the
+ * whole vector axis stores the components of each vector next to each other.
+ * A loader is configured with
+ * <ul>
+ * <li>the maximum number of cells that all fields opened by this loader keep
+ * in memory together. The cells of all fields share one bounded cache, and
+ * fields whose blocks do not span the vector axis are re-chunked into cells
+ * that do.</li>
+ * <li>the number of elements up to which a field is copied into a single
+ * primitive array instead.</li>
+ * </ul>
+ * The {@link #getDefault() default} loader opens fields with
+ * {@link N5Utils#open}. A field transform uses the default loader unless it
+ * was given another one with
+ * {@link AbstractParametrizedFieldTransform#setFieldLoader}.
+ */
+public class FieldLoader {
+
+	/**
+	 * The largest number of elements of a field that is copied into memory,
+	 * the size limit of a Java array.
+	 */
+	public static final long MAX_IN_MEMORY_ELEMENTS = Integer.MAX_VALUE - 8;
+
+	private static final AtomicLong ids = new AtomicLong();
+
+	private static volatile FieldLoader defaultLoader = new FieldLoader(-1, -1);
+
+	private final long id = ids.incrementAndGet();
+
+	private final int maxCachedCells;
+
+	private final long inMemoryThreshold;
+
+	private final LoaderCache<CellKey, Cell<?>> cache;
+
+	private final AtomicLong cachedImgs = new AtomicLong();
+
+	/**
+	 * @param maxCachedCells the maximum number of cells all fields opened by
+	 *            this loader keep in memory together, or a non-positive number
+	 *            to open fields with {@link N5Utils#open}
+	 * @param inMemoryThreshold the number of elements up to which fields are
+	 *            copied into memory, or a non-positive number to never copy.
+	 *            At most {@link #MAX_IN_MEMORY_ELEMENTS}.
+	 */
+	public FieldLoader(final int maxCachedCells, final long inMemoryThreshold) {
+
+		this.maxCachedCells = maxCachedCells;
+		this.inMemoryThreshold = Math.min(inMemoryThreshold, MAX_IN_MEMORY_ELEMENTS);
+		cache = maxCachedCells > 0 ? new BoundedSoftRefLoaderCache<>(maxCachedCells) : null;
+	}
+
+	/**
+	 * @return the loader used by field transforms without a loader of their own
+	 */
+	public static FieldLoader getDefault() {
+
+		return defaultLoader;
+	}
+
+	/**
+	 * Sets the loader used by field transforms without a loader of their own.
+	 * Fields are shared through the {@link TransformCache} per loader, so
+	 * fields opened by the previous default loader are not reused.
+	 *
+	 * @param loader the loader
+	 */
+	public static void setDefault(final FieldLoader loader) {
+
+		defaultLoader = Objects.requireNonNull(loader);
+	}
+
+	public int getMaxCachedCells() {
+
+		return maxCachedCells;
+	}
+
+	public long getInMemoryThreshold() {
+
+		return inMemoryThreshold;
+	}
+
+	/**
+	 * @return a key that identifies this loader in {@link TransformCache} keys
+	 */
+	public String key() {
+
+		return "loader:" + id;
+	}
+
+	public <T extends NativeType<T>> RandomAccessibleInterval<T> open(final N5Reader n5, final String dataset) {
+
+		final CachedCellImg<T, ?> img;
+		if (cache != null)
+			img = openCached(n5, dataset);
+		else
+			img = N5Utils.open(n5, dataset);
+
+		if (inMemoryThreshold > 0 && Intervals.numElements(img) <= inMemoryThreshold)
+			return copy(img);
+
+		if (cache != null) {
+			// the cells of the opened image are the blocks of the dataset
+			final int[] blockSize = new int[img.numDimensions()];
+			img.getCellGrid().cellDimensions(blockSize);
+			if (blockSize[0] < img.dimension(0))
+				return interleave(img, blockSize);
+		}
+
+		return img;
+	}
+
+	private <T extends NativeType<T>, A extends ArrayDataAccess<A>> CachedCellImg<T, A> openCached(final N5Reader n5,
+			final String dataset) {
+
+		final LoaderCache<Long, Cell<A>> fieldCache = fieldCache();
+		return N5Utils.open(n5, dataset, x -> {}, dataType -> fieldCache, AccessFlags.setOf());
+	}
+
+	/**
+	 * Copies the field into a single array.
+	 *
+	 * @param <T> the type
+	 * @param field the field, with at most {@link #MAX_IN_MEMORY_ELEMENTS}
+	 *            elements
+	 * @return the copy
+	 */
+	public static <T extends NativeType<T>> ArrayImg<T, ?> copy(final RandomAccessibleInterval<T> field) {
+
+		if (Intervals.numElements(field) > MAX_IN_MEMORY_ELEMENTS)
+			throw new IllegalArgumentException("Field with " + Intervals.numElements(field) + " elements does not fit in an array");
+
+		final T type = Util.getTypeFromInterval(field).createVariable();
+		final ArrayImg<T, ?> img = new ArrayImgFactory<>(type).create(field);
+		LoopBuilder.setImages(Views.zeroMin(field), img).multiThreaded().forEachPixel((s, t) -> t.set(s));
+		return img;
+	}
+
+	/**
+	 * Re-chunks the field into cells that span the whole first (vector) axis.
+	 * The cells are kept in the cache this loader shares between all fields.
+	 *
+	 * @param <T> the type
+	 * @param <A> the access type
+	 * @param field the field
+	 * @param blockSize the block size of the field
+	 * @return the re-chunked field
+	 */
+	public <T extends NativeType<T>, A extends ArrayDataAccess<A>> CachedCellImg<T, A> interleave(
+			final RandomAccessibleInterval<T> field, final int[] blockSize) {
+
+		if (cache == null)
+			throw new IllegalArgumentException("Re-chunking needs a loader with a bounded cache");
+
+		final int[] cellDimensions = blockSize.clone();
+		cellDimensions[0] = (int)field.dimension(0);
+		final CellGrid grid = new CellGrid(Intervals.dimensionsAsLongArray(field), cellDimensions);
+
+		final T type = Util.getTypeFromInterval(field).createVariable();
+		final RandomAccessibleInterval<T> src = Views.zeroMin(field);
+		final CellLoader<T> loader = cell -> LoopBuilder.setImages(Views.interval(src, cell), cell).forEachPixel((s, t) -> t.set(s));
+
+		final LoaderCache<Long, Cell<A>> fieldCache = fieldCache();
+		final Cache<Long, Cell<A>> cellCache = fieldCache.withLoader(LoadedCellCacheLoader.get(grid, loader, type, AccessFlags.setOf()));
+		return new CachedCellImg<>(grid, type, cellCache, ArrayDataAccessFactory.get(type, AccessFlags.setOf()));
+	}
+
+	/**
+	 * @return a view of the shared cache for the cells of one image
+	 */
+	@SuppressWarnings({"unchecked", "rawtypes"})
+	private <A> LoaderCache<Long, Cell<A>> fieldCache() {
+
+		final long img = cachedImgs.incrementAndGet();
+		final LoaderCache<Long, Cell<?>> view = cache.mapKeys(KeyBimap.<Long, CellKey>build(
+				index -> new CellKey(img, index),
+				key -> key.img == img ? key.index : null));
+		return (LoaderCache)view;
+	}
+
+	private static class CellKey {
+
+		private final long img;
+
+		private final long index;
+
+		private CellKey(final long img, final long index) {
+
+			this.img = img;
+			this.index = index;
+		}
+
+		@Override
+		public boolean equals(final Object obj) {
+
+			if (!(obj instanceof CellKey))
+				return false;
+
+			final CellKey other = (CellKey)obj;
+			return img == other.img && index == other.index;
+		}
+
+		@Override
+		public int hashCode() {
+
+			return Long.hashCode(img) * 31 + Long.hashCode(index);
+		}
+	}
+
+}
@@ -19,6 +19,13 @@ public class InverseCoordinateTransform<T extends RealTransform,C extends Coordi
 		this( "inverse_of-" + ct.getName(), ct );
 	}
 
+	/**
+	 * @return the transform that this transform is the inverse of
+	 */
+	public C getForward() {
+		return transform;
+	}
+
 	@Override
 	public T getTransform() {
 		return transform.getTransform();
@@ -0,0 +1,383 @@
+package org.janelia.saalfeldlab.n5.universe.metadata.ome.ngff.v05.transformations;
+
+import java.nio.DoubleBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.janelia.saalfeldlab.n5.N5Exception;
+import org.janelia.saalfeldlab.n5.N5Reader;
+
+import net.imglib2.realtransform.AffineGet;
+import net.imglib2.realtransform.RealTransform;
+
+/**
+ * Transforms many points at once.
+ * <p>
+ * Points are stored one after the other in flat arrays, so the i-th point of a
+ * transform with n source dimensions starts at {@code srcOffset + i * n}.
+ * Affine transforms (including scales and translations) are applied directly
+ * from their matrix. Other transforms are copied once per call and applied
+ * point by point with reused buffers, so calls are safe from several threads.
+ * Sequences of transforms are applied stage by stage over blocks of points.
+ * <p>
+ * Points can be transformed in place, with src and dst the same array, only
+ * by transforms with as many source as target dimensions and with equal
+ * offsets. Otherwise points would overwrite source points that were not read
+ * yet, so such calls fail with an {@link IllegalArgumentException}.
+ * <p>
+ * A {@link BulkTransform} holds a transform whose parameters were read once,
+ * so that it can be applied to many blocks or chunks of points without reading
+ * them again.
+ */
+public class PointTransforms {
+
+	/**
+	 * The number of points per block when applying sequences, and the default
+	 * number of points per parallel chunk.
+	 */
+	public static final int BLOCK_SIZE = 4096;
+
+	private PointTransforms() {}
+
+	/**
+	 * Transforms a contiguous range of points.
+	 */
+	@FunctionalInterface
+	public static interface ChunkTask {
+
+		/**
+		 * @param start the first point
+		 * @param numPoints the number of points
+		 */
+		public void apply(int start, int numPoints);
+	}
+
+	/**
+	 * Transforms points with a transform whose parameters were already read.
+	 * Implementations may be called from several threads at once.
+	 */
+	@FunctionalInterface
+	public static interface BulkTransform {
+
+		/**
+		 * @param src the source points
+		 * @param srcOffset the index of the first source coordinate
+		 * @param dst the target points
+		 * @param dstOffset the index of the first target coordinate
+		 * @param numPoints the number of points
+		 */
+		public void apply(double[] src, int srcOffset, double[] dst, int dstOffset, int numPoints);
+	}
+
+	/**
+	 * @param transform the transform
+	 * @return a bulk transform that applies the transform with
+	 *         {@link #apply(RealTransform, double[], int, double[], int, int)}
+	 */
+	public static BulkTransform bulk(final RealTransform transform) {
+
+		return (src, srcOffset, dst, dstOffset, numPoints) -> apply(transform, src, srcOffset, dst, dstOffset, numPoints);
+	}
+
+	public static void apply(final RealTransform transform, final double[] src, final double[] dst, final int numPoints) {
+
+		apply(transform, src, 0, dst, 0, numPoints);
+	}
+
+	/**
+	 * Transforms numPoints points from src into dst. src and dst may be the same
+	 * array if the transform has as many source as target dimensions and the
+	 * offsets are equal.
+	 *
+	 * @param transform the transform
+	 * @param src the source points
+	 * @param srcOffset the index of the first source coordinate
+	 * @param dst the target points
+	 * @param dstOffset the index of the first target coordinate
+	 * @param numPoints the number of points
+	 */
+	public static void apply(final RealTransform transform, final double[] src, final int srcOffset,
+			final double[] dst, final int dstOffset, final int numPoints) {
+
+		if (transform instanceof AffineGet)
+			applyAffine((AffineGet)transform, src, srcOffset, dst, dstOffset, numPoints);
+		else
+			applyPerPoint(transform.copy(), src, srcOffset, dst, dstOffset, numPoints);
+	}
+
+	/**
+	 * Transforms points stored in buffers, starting at their positions. The
+	 * positions are not changed.
+	 *
+	 * @param transform the transform
+	 * @param src the source points
+	 * @param dst the target points
+	 * @param numPoints the number of points
+	 */
+	public static void apply(final RealTransform transform, final DoubleBuffer src, final DoubleBuffer dst, final int numPoints) {
+
+		final int ns = transform.numSourceDimensions();
+		final int nt = transform.numTargetDimensions();
+		if (src.hasArray() && dst.hasArray() && !dst.isReadOnly()) {
+			apply(transform, src.array(), src.arrayOffset() + src.position(),
+					dst.array(), dst.arrayOffset() + dst.position(), numPoints);
+			return;
+		}
+
+		final int blockSize = Math.min(numPoints, BLOCK_SIZE);
+		final double[] srcBlock = new double[blockSize * ns];
+		final double[] dstBlock = new double[blockSize * nt];
+		final DoubleBuffer srcView = src.duplicate();
+		final DoubleBuffer dstView = dst.duplicate();
+		for (int i = 0; i < numPoints; i += blockSize) {
+			final int n = Math.min(blockSize, numPoints - i);
+			srcView.get(srcBlock, 0, n * ns);
+			apply(transform, srcBlock, 0, dstBlock, 0, n);
+			dstView.put(dstBlock, 0, n * nt);
+		}
+	}
+
+	public static void applyAffine(final AffineGet affine, final double[] src, final int srcOffset,
+			final double[] dst, final int dstOffset, final int numPoints) {
+
+		final int ns = affine.numSourceDimensions();
+		final int nt = affine.numTargetDimensions();
+		checkInPlace(src, srcOffset, dst, dstOffset, ns, nt);
+		final double[] m = affine.getRowPackedCopy();
+		final int nc = ns + 1;
+
+		if (ns == nt && isDiagonal(m, ns)) {
+			final double[] s = new double[ns];
+			final double[] t = new double[ns];
+			for (int d = 0; d < ns; d++) {
+				s[d] = m[d * nc + d];
+				t[d] = m[d * nc + ns];
+			}
+
+			for (int i = 0; i < numPoints; i++) {
+				final int si = srcOffset + i * ns;
+				final int ti = dstOffset + i * ns;
+				for (int d = 0; d < ns; d++)
+					dst[ti + d] = s[d] * src[si + d] + t[d];
+			}
+			return;
+		}
+
+		// copy each point first, src and dst may overlap
+		final double[] p = new double[ns];
+		for (int i = 0; i < numPoints; i++) {
+			System.arraycopy(src, srcOffset + i * ns, p, 0, ns);
+			final int ti = dstOffset + i * nt;
+			for (int r = 0; r < nt; r++) {
+				final int row = r * nc;
+				double v = m[row + ns];
+				for (int c = 0; c < ns; c++)
+					v += m[row + c] * p[c];
+
+				dst[ti + r] = v;
+			}
+		}
+	}
+
+	/**
+	 * Applies the transform point by point. The transform is not copied, so do
+	 * not share it between threads.
+	 */
+	public static void applyPerPoint(final RealTransform transform, final double[] src, final int srcOffset,
+			final double[] dst, final int dstOffset, final int numPoints) {
+
+		final int ns = transform.numSourceDimensions();
+		final int nt = transform.numTargetDimensions();
+		checkInPlace(src, srcOffset, dst, dstOffset, ns, nt);
+		final double[] p = new double[ns];
+		final double[] q = new double[nt];
+		for (int i = 0; i < numPoints; i++) {
+			System.arraycopy(src, srcOffset + i * ns, p, 0, ns);
+			transform.apply(p, q);
+			System.arraycopy(q, 0, dst, dstOffset + i * nt, nt);
+		}
+	}
+
+	/**
+	 * Transforms points with a sequence of coordinate transforms. Points are
+	 * processed in blocks, each block passing through all stages before the
+	 * next, so intermediate results stay small.
+	 *
+	 * @param stages the transforms, in order
+	 * @param n5 the reader that stores transform parameters, may be null
+	 * @param src the source points
+	 * @param srcOffset the index of the first source coordinate
+	 * @param dst the target points
+	 * @param dstOffset the index of the first target coordinate
+	 * @param numPoints the number of points
+	 */
+	public static void applySequence(final List<? extends CoordinateTransform<?>> stages, final N5Reader n5,
+			final double[] src, final int srcOffset, final double[] dst, final int dstOffset, final int numPoints) {
+
+		sequence(stages, n5).apply(src, srcOffset, dst, dstOffset, numPoints);
+	}
+
+	/**
+	 * Reads the parameters of all stages once and returns a bulk transform
+	 * that applies them stage by stage over blocks of points.
+	 *
+	 * @param stages the transforms, in order
+	 * @param n5 the reader that stores transform parameters, may be null
+	 * @return the bulk transform
+	 */
+	public static BulkTransform sequence(final List<? extends CoordinateTransform<?>> stages, final N5Reader n5) {
+
+		if (stages.isEmpty())
+			throw new IllegalArgumentException("No transforms to apply");
+
+		if (stages.size() == 1)
+			return stages.get(0).bulkTransform(n5);
+
+		final int[] dims = stageDimensions(stages, n5);
+		final BulkTransform[] bulk = new BulkTransform[stages.size()];
+		for (int s = 0; s < bulk.length; s++)
+			bulk[s] = stages.get(s).bulkTransform(n5);
+
+		int max = 0;
+		for (final int d : dims)
+			max = Math.max(max, d);
+
+		final int maxDims = max;
+		final int ns = dims[0];
+		final int nt = dims[dims.length - 1];
+		final int last = bulk.length - 1;
+		return (src, srcOffset, dst, dstOffset, numPoints) -> {
+			checkInPlace(src, srcOffset, dst, dstOffset, ns, nt);
+			final int blockSize = Math.min(numPoints, BLOCK_SIZE);
+			double[] a = new double[blockSize * maxDims];
+			double[] b = new double[blockSize * maxDims];
+			for (int i = 0; i < numPoints; i += blockSize) {
+				final int n = Math.min(blockSize, numPoints - i);
+				bulk[0].apply(src, srcOffset + i * ns, a, 0, n);
+				for (int s = 1; s < last; s++) {
+					bulk[s].apply(a, 0, b, 0, n);
+					final double[] tmp = a;
+					a = b;
+					b = tmp;
+				}
+				bulk[last].apply(a, 0, dst, dstOffset + i * nt, n);
+			}
+		};
+	}
+
+	/**
+	 * @return the number of source dimensions of each stage, followed by the
+	 *         number of target dimensions of the last stage
+	 */
+	public static int[] stageDimensions(final List<? extends CoordinateTransform<?>> stages, final N5Reader n5) {
+
+		final int[] dims = new int[stages.size() + 1];
+		for (int i = 0; i < stages.size(); i++) {
+			final RealTransform t = stages.get(i).getTransform(n5);
+			dims[i] = t.numSourceDimensions();
+			dims[i + 1] = t.numTargetDimensions();
+		}
+		return dims;
+	}
+
+	/**
+	 * Splits numPoints points into chunks and runs the task for each chunk on
+	 * the executor. Chunks that the executor has not started yet when the
+	 * calling thread gets to them, or that the executor rejects, are run on the
+	 * calling thread, so a busy, bounded or shut down executor can not
+	 * deadlock.
+	 *
+	 * @param numPoints the number of points
+	 * @param chunkSize the number of points per chunk
+	 * @param executor the executor, if null all chunks run on the calling thread
+	 * @param task the task
+	 */
+	public static void forEachChunk(final int numPoints, final int chunkSize, final ExecutorService executor,
+			final ChunkTask task) {
+
+		final int size = chunkSize > 0 ? chunkSize : BLOCK_SIZE;
+		if (executor == null || numPoints <= size) {
+			task.apply(0, numPoints);
+			return;
+		}
+
+		final List<FutureTask<Void>> tasks = new ArrayList<>();
+		try {
+			for (int i = 0; i < numPoints; i += size) {
+				final int start = i;
+				final int n = Math.min(size, numPoints - i);
+				final FutureTask<Void> f = new FutureTask<Void>(() -> task.apply(start, n), null);
+				tasks.add(f);
+				try {
+					executor.execute(f);
+				} catch (final RejectedExecutionException e) {
+					// run below on the calling thread
+				}
+			}
+
+			for (final FutureTask<Void> f : tasks) {
+				f.run();
+				f.get();
+			}
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new N5Exception("Interrupted while transforming points", e);
+		} catch (final ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException)
+				throw (RuntimeException)e.getCause();
+
+			throw new N5Exception("Failed to transform points", e.getCause());
+		} finally {
+			for (final FutureTask<Void> f : tasks)
+				f.cancel(false);
+		}
+	}
+
+	/**
+	 * Transforms points in parallel chunks.
+	 *
+	 * @param transform the transform
+	 * @param src the source points
+	 * @param dst the target points
+	 * @param numPoints the number of points
+	 * @param executor the executor
+	 * @param chunkSize the number of points per chunk
+	 */
+	public static void apply(final RealTransform transform, final double[] src, final double[] dst, final int numPoints,
+			final ExecutorService executor, final int chunkSize) {
+
+		final int ns = transform.numSourceDimensions();
+		final int nt = transform.numTargetDimensions();
+		checkInPlace(src, 0, dst, 0, ns, nt);
+		forEachChunk(numPoints, chunkSize, executor,
+				(start, n) -> apply(transform, src, start * ns, dst, start * nt, n));
+	}
+
+	/**
+	 * Fails if dst is src and points would be written over source points that
+	 * were not read yet.
+	 */
+	static void checkInPlace(final double[] src, final int srcOffset, final double[] dst, final int dstOffset,
+			final int ns, final int nt) {
+
+		if (src == dst && (ns != nt || srcOffset != dstOffset))
+			throw new IllegalArgumentException("Points can be transformed in place only with as many source as target dimensions "
+					+ "and equal offsets, was " + ns + " to " + nt + " dimensions at offsets " + srcOffset + " and " + dstOffset);
+	}
+
+	private static boolean isDiagonal(final double[] m, final int nd) {
+
+		final int nc = nd + 1;
+		for (int r = 0; r < nd; r++)
+			for (int c = 0; c < nd; c++)
+				if (r != c && m[r * nc + c] != 0)
+					return false;
+
+		return true;
+	}
+
+}
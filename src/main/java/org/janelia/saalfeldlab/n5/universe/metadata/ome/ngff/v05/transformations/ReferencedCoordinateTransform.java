@@ -1,9 +1,20 @@
 package org.janelia.saalfeldlab.n5.universe.metadata.ome.ngff.v05.transformations;
 
+import org.janelia.saalfeldlab.n5.N5Exception;
+import org.janelia.saalfeldlab.n5.N5Reader;
 import org.janelia.saalfeldlab.n5.universe.metadata.ome.ngff.v05.Common;
 
 import net.imglib2.realtransform.RealTransform;
-
+import net.imglib2.util.Pair;
+
+/**
+ * A transform stored at another location, given by a url.
+ * <p>
+ * The referenced transform is opened the first time it is needed, and is
+ * shared through the {@link TransformCache} with other references to the same
+ * url. {@link #getTransform()} returns a copy of the shared instance, since
+ * transforms are not thread safe.
+ */
 public class ReferencedCoordinateTransform<T extends RealTransform> implements RealCoordinateTransform<T> {
 
 	public static transient final String TYPE = "transformReference";
@@ -12,13 +23,14 @@ public class ReferencedCoordinateTransform<T extends RealTransform> implements R
 
 	private final String type;
 
-	private final transient CoordinateTransform ct;
+	private transient volatile Pair<CoordinateTransform<?>, N5Reader> referenced;
+
+	private transient volatile T shared;
 
 	public ReferencedCoordinateTransform(final String url) {
 
 		this.url = url;
 		this.type = TYPE;
-		ct = Common.openTransformN5(url).getA();
 	}
 
 	public String getUrl() {
@@ -26,47 +38,67 @@ public class ReferencedCoordinateTransform<T extends RealTransform> implements R
 		return url;
 	}
 
+	private Pair<CoordinateTransform<?>, N5Reader> getReferenced() {
+
+		if (referenced == null) {
+			referenced = TransformCache.get(TransformCache.key(url) + "#reference", () -> Common.openTransformN5(url));
+			if (referenced == null || referenced.getA() == null)
+				throw new N5Exception("Could not open transform: " + url);
+		}
+		return referenced;
+	}
+
+	protected CoordinateTransform<?> getReferencedTransform() {
+
+		return getReferenced().getA();
+	}
+
 	@SuppressWarnings("unchecked")
 	@Override
 	public T getTransform() {
 
-		return (T)Common.open(url);
+		if (shared == null) {
+			final Pair<CoordinateTransform<?>, N5Reader> ref = getReferenced();
+			shared = TransformCache.get(TransformCache.key(url) + "#transform",
+					() -> (T)ref.getA().getTransform(ref.getB()));
+		}
+		return shared == null ? null : (T)shared.copy();
 	}
 
 	@Override
 	public String getName() {
 
-		return ct.getName();
+		return getReferencedTransform().getName();
 	}
 
 	@Override
 	public String getType() {
 
-		return ct.getType();
+		return getReferencedTransform().getType();
 	}
 
 	@Override
 	public String getInput() {
 
-		return ct.getInput();
+		return getReferencedTransform().getInput();
 	}
 
 	@Override
 	public String getOutput() {
 
-		return ct.getOutput();
+		return getReferencedTransform().getOutput();
 	}
 
 	@Override
 	public String[] getInputAxes() {
 
-		return ct.getInputAxes();
+		return getReferencedTransform().getInputAxes();
 	}
 
 	@Override
 	public String[] getOutputAxes() {
 
-		return ct.getOutputAxes();
+		return getReferencedTransform().getOutputAxes();
 	}
 
 }
@@ -173,6 +173,15 @@ public class SequenceCoordinateTransform extends AbstractCoordinateTransform<Rea
 		return transformations;
 	}
 
+	/**
+	 * Applies the transformations stage by stage over blocks of points.
+	 */
+	@Override
+	public PointTransforms.BulkTransform bulkTransform( final N5Reader n5 )
+	{
+		return PointTransforms.sequence( Arrays.asList( transformations ), n5 );
+	}
+
 //	@Override
 //	public AxisPoint applyAxes( final AxisPoint src )
 //	{
@@ -4,6 +4,7 @@ import java.util.Arrays;
 import java.util.List;
 import java.util.stream.Collectors;
 
+import org.janelia.saalfeldlab.n5.N5Reader;
 import org.janelia.saalfeldlab.n5.universe.metadata.axes.AxisUtils;
 import org.janelia.saalfeldlab.n5.universe.metadata.ome.ngff.v05.graph.CoordinateSystems;
 
@@ -53,62 +54,167 @@ public class StackedCoordinateTransform extends AbstractCoordinateTransform<Real
 	}
 
 	public RealTransform buildTransform()
+	{
+		return buildTransform( null );
+	}
+
+	/**
+	 * @param n5 the reader that stores the parameters of the stacked
+	 *            transforms, may be null
+	 * @return the total transform
+	 */
+	public RealTransform buildTransform( final N5Reader n5 )
 	{
 		final RealTransform[] arr = transforms.stream()
-				.map( x -> (RealTransform)x.getTransform() )
+				.map( x -> (RealTransform)( n5 == null ? x.getTransform() : x.getTransform( n5 ) ) )
 				.toArray( RealTransform[]::new );
 
 		final StackedRealTransform stackedTransform = new StackedRealTransform(arr);
+		final RealTransform[] permutations = axisPermutations();
+		final RealTransform pre = permutations[ 0 ];
+		final RealTransform post = permutations[ 1 ];
 
-		if( spaces != null )
+		if( pre == null && post == null )
+		{
+			totalTransform = stackedTransform;
+			return totalTransform;
+		}
+		else
 		{
-			final String[] inputAxisLabels = spaces.getSpace(getInput()).getAxisNames();
-			final String[] tformInputAxisLabels = inputAxesLabels();
+			final RealTransformSequence seq = new RealTransformSequence();
+			if( pre != null )
+				seq.add( pre );
 
-			final String[] outputAxisLabels = spaces.getSpace(getOutput()).getAxisNames();
-			final String[] tformOutputAxisLabels = outputAxesLabels();
+			seq.add(stackedTransform);
 
-			RealTransform pre = null;
-			if( !Arrays.equals(inputAxisLabels, tformInputAxisLabels))
-			{
-				// go from the input axis order to the transform's input axis order
-				final int[] inPermParams = AxisUtils.findPermutation(inputAxisLabels, tformInputAxisLabels);
-				pre = new RealComponentMappingTransform( inPermParams.length, inPermParams);
-			}
+			if( post != null )
+				seq.add( post );
 
-			RealTransform post = null;
-			if( !Arrays.equals(outputAxisLabels, tformOutputAxisLabels))
-			{
-				// go from the transforms output to the output axis order
-				final int[] outPermParams = AxisUtils.findPermutation(tformOutputAxisLabels, outputAxisLabels );
-				post = new RealComponentMappingTransform( outPermParams.length, outPermParams);
-			}
+			totalTransform = seq;
+			return totalTransform;
+		}
+	}
 
-			if( pre == null && post == null )
-			{
-				totalTransform = stackedTransform;
-				return totalTransform;
-			}
-			else
-			{
-				final RealTransformSequence seq = new RealTransformSequence();
-				if( pre != null )
-					seq.add( pre );
+	/**
+	 * @return the permutation from the input axes to the input axes of the
+	 *         stacked transforms, and the permutation from their output axes
+	 *         to the output axes, null if the axes are in the same order
+	 */
+	private RealTransform[] axisPermutations()
+	{
+		final RealTransform[] permutations = new RealTransform[ 2 ];
+		if( spaces == null )
+			return permutations;
 
-				seq.add(stackedTransform);
+		final String[] inputAxisLabels = spaces.getSpace(getInput()).getAxisNames();
+		final String[] tformInputAxisLabels = inputAxesLabels();
 
-				if( post != null )
-					seq.add( post );
+		final String[] outputAxisLabels = spaces.getSpace(getOutput()).getAxisNames();
+		final String[] tformOutputAxisLabels = outputAxesLabels();
 
-				totalTransform = seq;
-				return totalTransform;
-			}
+		if( !Arrays.equals(inputAxisLabels, tformInputAxisLabels))
+		{
+			// go from the input axis order to the transform's input axis order
+			final int[] inPermParams = AxisUtils.findPermutation(inputAxisLabels, tformInputAxisLabels);
+			permutations[ 0 ] = new RealComponentMappingTransform( inPermParams.length, inPermParams);
 		}
-		else
+
+		if( !Arrays.equals(outputAxisLabels, tformOutputAxisLabels))
 		{
-			totalTransform = stackedTransform;
-			return totalTransform;
+			// go from the transforms output to the output axis order
+			final int[] outPermParams = AxisUtils.findPermutation(tformOutputAxisLabels, outputAxisLabels );
+			permutations[ 1 ] = new RealComponentMappingTransform( outPermParams.length, outPermParams);
 		}
+
+		return permutations;
+	}
+
+	/**
+	 * Applies each stacked transform to its own dimensions over blocks of
+	 * points.
+	 */
+	@Override
+	public PointTransforms.BulkTransform bulkTransform( final N5Reader n5 )
+	{
+		final RealTransform[] permutations = axisPermutations();
+		final RealTransform pre = permutations[ 0 ];
+		final RealTransform post = permutations[ 1 ];
+
+		final int numChildren = transforms.size();
+		final PointTransforms.BulkTransform[] children = new PointTransforms.BulkTransform[ numChildren ];
+		final int[] childSource = new int[ numChildren ];
+		final int[] childTarget = new int[ numChildren ];
+		for( int c = 0; c < numChildren; c++ )
+		{
+			final CoordinateTransform<?> t = transforms.get( c );
+			final RealTransform rt = n5 == null ? t.getTransform() : t.getTransform( n5 );
+			childSource[ c ] = rt.numSourceDimensions();
+			childTarget[ c ] = rt.numTargetDimensions();
+			children[ c ] = t.bulkTransform( n5 );
+		}
+
+		final int ns = Arrays.stream( childSource ).sum();
+		final int nt = Arrays.stream( childTarget ).sum();
+		return ( src, srcOffset, dst, dstOffset, numPoints ) -> {
+			PointTransforms.checkInPlace( src, srcOffset, dst, dstOffset, ns, nt );
+			final int blockSize = Math.min( numPoints, PointTransforms.BLOCK_SIZE );
+			// stacked transforms may read dimensions that others wrote, so copy points transformed in place
+			final boolean inPlace = src == dst;
+			final double[] in = pre == null && !inPlace ? null : new double[ blockSize * ns ];
+			final double[] out = post == null ? null : new double[ blockSize * nt ];
+			final double[] childIn = new double[ blockSize * ns ];
+			final double[] childOut = new double[ blockSize * nt ];
+
+			for( int i = 0; i < numPoints; i += blockSize )
+			{
+				final int n = Math.min( blockSize, numPoints - i );
+
+				final double[] blockSrc;
+				final int blockSrcOffset;
+				if( pre != null )
+				{
+					PointTransforms.apply( pre, src, srcOffset + i * ns, in, 0, n );
+					blockSrc = in;
+					blockSrcOffset = 0;
+				}
+				else if( inPlace )
+				{
+					System.arraycopy( src, srcOffset + i * ns, in, 0, n * ns );
+					blockSrc = in;
+					blockSrcOffset = 0;
+				}
+				else
+				{
+					blockSrc = src;
+					blockSrcOffset = srcOffset + i * ns;
+				}
+
+				final double[] blockDst = post != null ? out : dst;
+				final int blockDstOffset = post != null ? 0 : dstOffset + i * nt;
+
+				int inStart = 0;
+				int outStart = 0;
+				for( int c = 0; c < numChildren; c++ )
+				{
+					final int cs = childSource[ c ];
+					final int ct = childTarget[ c ];
+
+					for( int j = 0; j < n; j++ )
+						System.arraycopy( blockSrc, blockSrcOffset + j * ns + inStart, childIn, j * cs, cs );
+
+					children[ c ].apply( childIn, 0, childOut, 0, n );
+
+					for( int j = 0; j < n; j++ )
+						System.arraycopy( childOut, j * ct, blockDst, blockDstOffset + j * nt + outStart, ct );
+
+					inStart += cs;
+					outStart += ct;
+				}
+
+				if( post != null )
+					PointTransforms.apply( post, out, 0, dst, dstOffset + i * nt, n );
+			}
+		};
 	}
 
 	@Override
@@ -119,4 +225,12 @@ public class StackedCoordinateTransform extends AbstractCoordinateTransform<Real
 		return totalTransform;
 	}
 
+	@Override
+	public RealTransform getTransform( final N5Reader n5 ) {
+		if( totalTransform == null )
+			buildTransform( n5 );
+
+		return totalTransform;
+	}
+
 }
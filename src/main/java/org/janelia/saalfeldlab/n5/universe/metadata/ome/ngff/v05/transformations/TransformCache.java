@@ -0,0 +1,160 @@
+package org.janelia.saalfeldlab.n5.universe.metadata.ome.ngff.v05.transformations;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.Collections;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import org.janelia.saalfeldlab.n5.N5Reader;
+import org.janelia.saalfeldlab.n5.N5URI;
+
+/**
+ * A process-wide cache of transforms and transform parameters read from
+ * containers, keyed by container URI and dataset.
+ * <p>
+ * Values are weakly referenced, so an entry is kept as long as some transform
+ * uses it, and the same instance is shared by everyone who loads the same key
+ * meanwhile. Values are loaded at most once at a time per key.
+ * <p>
+ * Cached {@link net.imglib2.realtransform.RealTransform}s are shared, so use
+ * their {@code copy()} to apply them from several threads.
+ */
+public class TransformCache {
+
+	private static final ConcurrentHashMap<String, ValueReference> cache = new ConcurrentHashMap<>();
+
+	private static final ConcurrentHashMap<String, Object> locks = new ConcurrentHashMap<>();
+
+	private static final ReferenceQueue<Object> queue = new ReferenceQueue<>();
+
+	private static final Map<N5Reader, String> readerIds = Collections.synchronizedMap(new WeakHashMap<>());
+
+	private static final AtomicLong nextReaderId = new AtomicLong();
+
+	private TransformCache() {}
+
+	private static class ValueReference extends WeakReference<Object> {
+
+		private final String key;
+
+		public ValueReference(final String key, final Object value) {
+
+			super(value, queue);
+			this.key = key;
+		}
+	}
+
+	/**
+	 * Returns the cached value for the key, or loads and caches it.
+	 *
+	 * @param <T> the value type
+	 * @param key the key
+	 * @param loader loads the value, may return null in which case nothing is cached
+	 * @return the value
+	 */
+	@SuppressWarnings("unchecked")
+	public static <T> T get(final String key, final Supplier<T> loader) {
+
+		expunge();
+
+		Object value = lookup(key);
+		if (value != null)
+			return (T)value;
+
+		final Object lock = locks.computeIfAbsent(key, k -> new Object());
+		try {
+			synchronized (lock) {
+				value = lookup(key);
+				if (value == null) {
+					value = loader.get();
+					if (value != null)
+						cache.put(key, new ValueReference(key, value));
+				}
+			}
+		} finally {
+			locks.remove(key, lock);
+		}
+		return (T)value;
+	}
+
+	/**
+	 * Removes the entry for the key, for example after the container was
+	 * modified.
+	 *
+	 * @param key the key
+	 */
+	public static void invalidate(final String key) {
+
+		cache.remove(key);
+	}
+
+	public static void clear() {
+
+		cache.clear();
+	}
+
+	/**
+	 * Readers without a URI, like in-memory container trees, get a key
+	 * unique to the reader instance.
+	 *
+	 * @param n5 the reader
+	 * @param dataset the dataset
+	 * @return the key for a dataset of the reader's container
+	 */
+	public static String key(final N5Reader n5, final String dataset) {
+
+		return containerKey(n5) + "?" + N5URI.normalizeGroupPath(dataset);
+	}
+
+	private static String containerKey(final N5Reader n5) {
+
+		try {
+			final URI uri = n5.getURI();
+			if (uri != null)
+				return uri.toString();
+		} catch (final RuntimeException e) {}
+
+		return readerIds.computeIfAbsent(n5, r -> "reader:" + nextReaderId.incrementAndGet());
+	}
+
+	/**
+	 * Resolves the url, so that urls that refer to the same container, group
+	 * and attribute have the same key.
+	 *
+	 * @param url the url
+	 * @return the key for the url
+	 */
+	public static String key(final String url) {
+
+		try {
+			final N5URI n5url = new N5URI(url);
+			final String group = n5url.getGroupPath() != null ? n5url.getGroupPath() : "/";
+			return n5url.getContainerPath() + "?" + N5URI.normalizeGroupPath(group) + "#" + n5url.getAttributePath();
+		} catch (final URISyntaxException e) {
+			return url;
+		}
+	}
+
+	private static Object lookup(final String key) {
+
+		final ValueReference ref = cache.get(key);
+		return ref == null ? null : ref.get();
+	}
+
+	private static void expunge() {
+
+		Reference<?> ref;
+		while ((ref = queue.poll()) != null) {
+			final ValueReference valueRef = (ValueReference)ref;
+			cache.remove(valueRef.key, valueRef);
+		}
+	}
+
+}
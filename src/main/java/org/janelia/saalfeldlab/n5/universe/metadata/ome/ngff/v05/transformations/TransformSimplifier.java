@@ -0,0 +1,271 @@
+package org.janelia.saalfeldlab.n5.universe.metadata.ome.ngff.v05.transformations;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.janelia.saalfeldlab.n5.N5Reader;
+
+import net.imglib2.RealRandomAccessible;
+import net.imglib2.realtransform.AffineGet;
+import net.imglib2.realtransform.AffineRealRandomAccessible;
+import net.imglib2.realtransform.AffineTransform;
+import net.imglib2.realtransform.AffineTransform2D;
+import net.imglib2.realtransform.AffineTransform3D;
+import net.imglib2.realtransform.InvertibleRealTransform;
+import net.imglib2.realtransform.InvertibleRealTransformSequence;
+import net.imglib2.realtransform.PositionFieldTransform;
+import net.imglib2.realtransform.RealTransform;
+import net.imglib2.realtransform.RealTransformSequence;
+import net.imglib2.realtransform.RealViews;
+import net.imglib2.realtransform.Scale;
+import net.imglib2.realtransform.Scale2D;
+import net.imglib2.realtransform.Scale3D;
+import net.imglib2.realtransform.ScaleAndTranslation;
+import net.imglib2.realtransform.Translation;
+import net.imglib2.realtransform.Translation2D;
+import net.imglib2.realtransform.Translation3D;
+import net.imglib2.type.numeric.RealType;
+import net.imglib2.view.composite.RealComposite;
+
+/**
+ * Builds a minimal {@link RealTransform} equivalent to a chain of coordinate
+ * transforms.
+ * <p>
+ * Sequences are flattened and identities removed. Consecutive linear
+ * transforms, including inverses of linear transforms, are fused into a
+ * single affine of the simplest type (scale, translation, 2d or 3d affine).
+ * An affine directly before a coordinate field is moved into the sampling of
+ * the field, merging it with the field's own pixel to physical affine when
+ * there is one.
+ */
+public class TransformSimplifier {
+
+	private TransformSimplifier() {}
+
+	public static RealTransform simplify(final N5Reader n5, final CoordinateTransform<?> transform) {
+
+		return simplify(n5, Collections.singletonList(transform));
+	}
+
+	/**
+	 * @param n5 the reader that stores transform parameters, may be null
+	 * @param transforms the transforms, in the order they are applied
+	 * @return a transform equivalent to applying all transforms in order
+	 */
+	public static RealTransform simplify(final N5Reader n5, final List<? extends CoordinateTransform<?>> transforms) {
+
+		final List<CoordinateTransform<?>> flat = new ArrayList<>();
+		flatten(transforms, flat);
+
+		final List<RealTransform> out = new ArrayList<>();
+		AffineTransform pending = null;
+		for (final CoordinateTransform<?> ct : flat) {
+
+			if (ct instanceof IdentityCoordinateTransform)
+				continue;
+
+			final RealTransform t = resolve(n5, ct);
+			if (t instanceof AffineGet) {
+				final AffineGet affine = (AffineGet)t;
+				if (pending != null && pending.numTargetDimensions() == affine.numSourceDimensions())
+					pending.preConcatenate(affine);
+				else {
+					flush(pending, out);
+					pending = toAffineTransform(affine);
+				}
+				continue;
+			}
+
+			if (pending != null && ct instanceof CoordinateFieldCoordinateTransform) {
+				final RealTransform fused = fuse(pending, (CoordinateFieldCoordinateTransform<?>)ct);
+				if (fused != null) {
+					out.add(fused);
+					pending = null;
+					continue;
+				}
+			}
+
+			flush(pending, out);
+			pending = null;
+			out.add(t);
+		}
+		flush(pending, out);
+
+		if (out.isEmpty())
+			return new InvertibleRealTransformSequence();
+		else if (out.size() == 1)
+			return out.get(0);
+
+		final RealTransformSequence seq = new RealTransformSequence();
+		out.forEach(seq::add);
+		return seq;
+	}
+
+	/**
+	 * Returns the simplest affine type that represents the given affine.
+	 *
+	 * @param affine the affine
+	 * @return a scale, translation, scale and translation, or affine
+	 */
+	public static AffineGet simplest(final AffineGet affine) {
+
+		final int nd = affine.numSourceDimensions();
+		final double[] m = affine.getRowPackedCopy();
+		final int nc = nd + 1;
+
+		boolean diagonal = true;
+		boolean unitScale = true;
+		boolean zeroTranslation = true;
+		final double[] s = new double[nd];
+		final double[] t = new double[nd];
+		for (int r = 0; r < nd; r++) {
+			for (int c = 0; c < nd; c++)
+				if (r != c && m[r * nc + c] != 0)
+					diagonal = false;
+
+			s[r] = m[r * nc + r];
+			t[r] = m[r * nc + nd];
+			unitScale &= s[r] == 1;
+			zeroTranslation &= t[r] == 0;
+		}
+
+		if (diagonal && unitScale) {
+			if (nd == 2)
+				return new Translation2D(t);
+			else if (nd == 3)
+				return new Translation3D(t);
+			return new Translation(t);
+		} else if (diagonal && zeroTranslation) {
+			if (nd == 2)
+				return new Scale2D(s);
+			else if (nd == 3)
+				return new Scale3D(s);
+			return new Scale(s);
+		} else if (diagonal)
+			return new ScaleAndTranslation(s, t);
+
+		if (nd == 2) {
+			final AffineTransform2D out = new AffineTransform2D();
+			out.set(m);
+			return out;
+		} else if (nd == 3) {
+			final AffineTransform3D out = new AffineTransform3D();
+			out.set(m);
+			return out;
+		}
+		return toAffineTransform(affine);
+	}
+
+	/**
+	 * Expands an affine over the first dimensions to nd dimensions. The added
+	 * dimensions are not changed.
+	 *
+	 * @param affine the affine
+	 * @param nd the number of dimensions
+	 * @return the expanded affine
+	 */
+	public static AffineTransform embed(final AffineGet affine, final int nd) {
+
+		final int n = affine.numSourceDimensions();
+		if (n > nd || affine.numTargetDimensions() != n)
+			throw new IllegalArgumentException(
+					"Can not expand a " + n + " to " + affine.numTargetDimensions() + " dimensional affine to " + nd + " dimensions");
+
+		final AffineTransform out = new AffineTransform(nd);
+		for (int r = 0; r < n; r++) {
+			for (int c = 0; c < n; c++)
+				out.set(affine.get(r, c), r, c);
+
+			out.set(affine.get(r, n), r, nd);
+		}
+		return out;
+	}
+
+	public static boolean isIdentity(final AffineGet affine) {
+
+		final int nd = affine.numSourceDimensions();
+		for (int r = 0; r < nd; r++)
+			for (int c = 0; c <= nd; c++)
+				if (affine.get(r, c) != (r == c ? 1 : 0))
+					return false;
+
+		return true;
+	}
+
+	private static void flatten(final List<? extends CoordinateTransform<?>> transforms, final List<CoordinateTransform<?>> flat) {
+
+		for (final CoordinateTransform<?> ct : transforms) {
+			if (ct instanceof SequenceCoordinateTransform)
+				flatten(Arrays.asList(((SequenceCoordinateTransform)ct).getTransformations()), flat);
+			else
+				flat.add(ct);
+		}
+	}
+
+	private static RealTransform resolve(final N5Reader n5, final CoordinateTransform<?> ct) {
+
+		if (ct instanceof InverseCoordinateTransform) {
+			final RealTransform forward = ((InverseCoordinateTransform<?, ?>)ct).getForward().getTransform(n5);
+			if (forward instanceof AffineGet)
+				return ((AffineGet)forward).inverse();
+			else if (forward instanceof InvertibleRealTransform)
+				return ((InvertibleRealTransform)forward).inverse();
+
+			return forward;
+		}
+		return ct.getTransform(n5);
+	}
+
+	private static void flush(final AffineTransform affine, final List<RealTransform> out) {
+
+		if (affine != null && !isIdentity(affine))
+			out.add(simplest(affine));
+	}
+
+	private static AffineTransform toAffineTransform(final AffineGet affine) {
+
+		final AffineTransform copy = new AffineTransform(affine.numSourceDimensions());
+		copy.set(affine.getRowPackedCopy());
+		return copy;
+	}
+
+	/**
+	 * Moves the affine into the sampling of the coordinate field, so that the
+	 * returned transform maps x to field(affine(x)).
+	 *
+	 * @return the transform or null if the field is not available or the
+	 *         dimensions do not match
+	 */
+	private static <S extends RealType<S>> RealTransform fuse(final AffineTransform affine,
+			final CoordinateFieldCoordinateTransform<S> ct) {
+
+		final RealRandomAccessible<RealComposite<S>> field = ct.getField();
+		if (field == null || isIdentity(affine) || field.numDimensions() != affine.numTargetDimensions())
+			return null;
+
+		final RealRandomAccessible<RealComposite<S>> sampled = affineField(field, affine);
+		return sampled == null ? null : new PositionFieldTransform(sampled);
+	}
+
+	private static <V> RealRandomAccessible<V> affineField(final RealRandomAccessible<V> field, final AffineTransform affine) {
+
+		if (field instanceof AffineRealRandomAccessible) {
+			// field(x) = source(toSource(x)), so field(affine(x)) = source((toSource o affine)(x))
+			final AffineRealRandomAccessible<V, ?> view = (AffineRealRandomAccessible<V, ?>)field;
+			final AffineTransform toSource = toAffineTransform(view.getTransformToSource());
+			toSource.concatenate(affine);
+			return new AffineRealRandomAccessible<>(view.getSource(), toSource);
+		}
+
+		final AffineGet inverse = affine.inverse();
+		for (final double v : inverse.getRowPackedCopy())
+			if (!Double.isFinite(v))
+				return null;
+
+		// affineReal samples the source at the inverse of the given transform
+		return RealViews.affineReal(field, inverse);
+	}
+
+}
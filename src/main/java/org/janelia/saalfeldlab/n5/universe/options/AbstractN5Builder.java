@@ -1,12 +1,15 @@
 package org.janelia.saalfeldlab.n5.universe.options;
 
 import com.google.gson.GsonBuilder;
+import org.janelia.saalfeldlab.n5.universe.reader.BlockCache;
 
 @SuppressWarnings("UnusedReturnValue")
 public abstract class AbstractN5Builder {
 
     protected Boolean cacheAttributes = null;
     protected GsonBuilder gsonBuilder = null;
+    protected BlockCache blockCache = null;
+    protected Boolean coalesceReads = null;
 
     final protected AbstractN5Builder sharedOptions;
 
@@ -18,6 +21,24 @@ public abstract class AbstractN5Builder {
 
     public abstract AbstractN5Builder gsonBuilder(GsonBuilder gsonBuilder);
 
+    /**
+     * Set a cache of decoded blocks that readers and writers are wrapped with.
+     * The same cache can be shared by containers of all formats.
+     *
+     * @param blockCache the cache, or null for no block caching
+     * @return this
+     */
+    public abstract AbstractN5Builder blockCache(BlockCache blockCache);
+
+    /**
+     * Set whether readers merge concurrent identical block and attribute reads
+     * into one request to the backend.
+     *
+     * @param coalesceReads flag to coalesce reads
+     * @return this
+     */
+    public abstract AbstractN5Builder coalesceReads(boolean coalesceReads);
+
     public boolean getCacheAttributes() {
         return cacheAttributes != null ? cacheAttributes : sharedOptions.getCacheAttributes();
     }
@@ -25,6 +46,14 @@ public abstract class AbstractN5Builder {
     public GsonBuilder getGsonBuilder() {
         return gsonBuilder != null ? gsonBuilder : sharedOptions.getGsonBuilder();
     }
+
+    public boolean getCoalesceReads() {
+        return coalesceReads != null ? coalesceReads : sharedOptions.getCoalesceReads();
+    }
+
+    public BlockCache getBlockCache() {
+        return blockCache != null || sharedOptions == null ? blockCache : sharedOptions.getBlockCache();
+    }
 }
 
 
@@ -3,6 +3,7 @@ package org.janelia.saalfeldlab.n5.universe.options;
 import com.google.gson.GsonBuilder;
 import org.janelia.saalfeldlab.n5.hdf5.N5HDF5Reader;
 import org.janelia.saalfeldlab.n5.hdf5.N5HDF5Writer;
+import org.janelia.saalfeldlab.n5.universe.reader.BlockCache;
 
 @SuppressWarnings("UnusedReturnValue")
 public class HDF5Builder extends AbstractN5Builder {
@@ -26,6 +27,18 @@ public class HDF5Builder extends AbstractN5Builder {
         return this;
     }
 
+    @Override
+    public HDF5Builder blockCache(BlockCache blockCache) {
+        this.blockCache = blockCache;
+        return this;
+    }
+
+    @Override
+    public HDF5Builder coalesceReads(boolean coalesceReads) {
+        this.coalesceReads = coalesceReads;
+        return this;
+    }
+
     public HDF5Builder defaultBlockSize(int[] defaultBlockSize) {
         this.defaultBlockSize = defaultBlockSize.clone();
         return this;
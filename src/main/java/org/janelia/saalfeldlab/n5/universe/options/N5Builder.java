@@ -4,6 +4,7 @@ import com.google.gson.GsonBuilder;
 import org.janelia.saalfeldlab.n5.KeyValueAccess;
 import org.janelia.saalfeldlab.n5.N5KeyValueReader;
 import org.janelia.saalfeldlab.n5.N5KeyValueWriter;
+import org.janelia.saalfeldlab.n5.universe.reader.BlockCache;
 
 @SuppressWarnings("UnusedReturnValue")
 public class N5Builder extends AbstractN5Builder {
@@ -24,6 +25,18 @@ public class N5Builder extends AbstractN5Builder {
         return this;
     }
 
+    @Override
+    public N5Builder blockCache(BlockCache blockCache) {
+        this.blockCache = blockCache;
+        return this;
+    }
+
+    @Override
+    public N5Builder coalesceReads(boolean coalesceReads) {
+        this.coalesceReads = coalesceReads;
+        return this;
+    }
+
     public N5KeyValueWriter buildWriter(KeyValueAccess access, String containerLocation) {
         return new N5KeyValueWriter(access, containerLocation, getGsonBuilder(), getCacheAttributes());
     }
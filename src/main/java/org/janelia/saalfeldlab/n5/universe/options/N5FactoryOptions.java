@@ -1,6 +1,7 @@
 package org.janelia.saalfeldlab.n5.universe.options;
 
 import com.google.gson.GsonBuilder;
+import org.janelia.saalfeldlab.n5.universe.reader.BlockCache;
 
 import java.util.function.Consumer;
 
@@ -85,6 +86,29 @@ public class N5FactoryOptions {
         return this;
     }
 
+    /**
+     * Set the default block cache. Will be overridden by any format-specific configurations
+     *
+     * @param blockCache to wrap otherwise unconfigured N5Readers with, or null for none
+     * @return this
+     */
+    public N5FactoryOptions blockCache(BlockCache blockCache) {
+
+        sharedOptions.blockCache(blockCache);
+        return this;
+    }
+
+    /**
+     * Set whether readers coalesce concurrent identical reads. Will be overridden by any format-specific configurations
+     *
+     * @param coalesceReads flag to use for otherwise unconfigured N5Readers
+     * @return this
+     */
+    public N5FactoryOptions coalesceReads(boolean coalesceReads) {
+
+        sharedOptions.coalesceReads(coalesceReads);
+        return this;
+    }
 
     public N5Builder getN5Builder() {
         return n5Builder;
@@ -106,6 +130,7 @@ public class N5FactoryOptions {
         public DefaultSharedBuilder() {
             super(null);
             cacheAttributes = true;
+            coalesceReads = false;
             gsonBuilder = new GsonBuilder();
         }
 
@@ -120,5 +145,17 @@ public class N5FactoryOptions {
             this.gsonBuilder = gsonBuilder;
             return this;
         }
+
+        @Override
+        public DefaultSharedBuilder blockCache(BlockCache blockCache) {
+            this.blockCache = blockCache;
+            return this;
+        }
+
+        @Override
+        public DefaultSharedBuilder coalesceReads(boolean coalesceReads) {
+            this.coalesceReads = coalesceReads;
+            return this;
+        }
     }
 }
@@ -2,6 +2,7 @@ package org.janelia.saalfeldlab.n5.universe.options;
 
 import com.google.gson.GsonBuilder;
 import org.janelia.saalfeldlab.n5.KeyValueAccess;
+import org.janelia.saalfeldlab.n5.universe.reader.BlockCache;
 import org.janelia.saalfeldlab.n5.zarr.ZarrKeyValueReader;
 import org.janelia.saalfeldlab.n5.zarr.ZarrKeyValueWriter;
 
@@ -37,6 +38,18 @@ public class Zarr2Builder extends ZarrBuilder {
         return this;
     }
 
+    @Override
+    public Zarr2Builder blockCache(BlockCache blockCache) {
+        this.blockCache = blockCache;
+        return this;
+    }
+
+    @Override
+    public Zarr2Builder coalesceReads(boolean coalesceReads) {
+        this.coalesceReads = coalesceReads;
+        return this;
+    }
+
     @Override
     public Zarr2Builder dimensionSeparator(String dimensionSeparator) {
         this.dimensionSeparator = dimensionSeparator;
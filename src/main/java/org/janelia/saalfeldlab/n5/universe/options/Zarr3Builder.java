@@ -2,6 +2,7 @@ package org.janelia.saalfeldlab.n5.universe.options;
 
 import com.google.gson.GsonBuilder;
 import org.janelia.saalfeldlab.n5.KeyValueAccess;
+import org.janelia.saalfeldlab.n5.universe.reader.BlockCache;
 import org.janelia.saalfeldlab.n5.zarr.v3.ZarrV3KeyValueReader;
 import org.janelia.saalfeldlab.n5.zarr.v3.ZarrV3KeyValueWriter;
 
@@ -26,6 +27,18 @@ public class Zarr3Builder extends ZarrBuilder {
         return this;
     }
 
+    @Override
+    public Zarr3Builder blockCache(BlockCache blockCache) {
+        this.blockCache = blockCache;
+        return this;
+    }
+
+    @Override
+    public Zarr3Builder coalesceReads(boolean coalesceReads) {
+        this.coalesceReads = coalesceReads;
+        return this;
+    }
+
     @Override
     public Zarr3Builder dimensionSeparator(String dimensionSeparator) {
         this.dimensionSeparator = dimensionSeparator;
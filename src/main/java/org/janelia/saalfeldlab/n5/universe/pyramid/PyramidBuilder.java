@@ -0,0 +1,388 @@
+package org.janelia.saalfeldlab.n5.universe.pyramid;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+
+import org.apache.commons.lang3.ArrayUtils;
+import org.janelia.saalfeldlab.n5.DatasetAttributes;
+import org.janelia.saalfeldlab.n5.N5Exception;
+import org.janelia.saalfeldlab.n5.N5Writer;
+import org.janelia.saalfeldlab.n5.imglib2.N5Utils;
+import org.janelia.saalfeldlab.n5.universe.BlockTasks;
+import org.janelia.saalfeldlab.n5.universe.metadata.MetadataUtils;
+import org.janelia.saalfeldlab.n5.universe.metadata.N5CosemMetadata;
+import org.janelia.saalfeldlab.n5.universe.metadata.N5CosemMetadataParser;
+import org.janelia.saalfeldlab.n5.universe.metadata.N5DatasetMetadata;
+import org.janelia.saalfeldlab.n5.universe.metadata.N5SingleScaleMetadata;
+import org.janelia.saalfeldlab.n5.universe.metadata.N5SingleScaleMetadataParser;
+import org.janelia.saalfeldlab.n5.universe.metadata.axes.Axis;
+import org.janelia.saalfeldlab.n5.universe.metadata.axes.AxisMetadata;
+import org.janelia.saalfeldlab.n5.universe.metadata.ome.ngff.NgffSingleScaleAxesMetadata;
+import org.janelia.saalfeldlab.n5.universe.metadata.ome.ngff.OmeNgffMetadata;
+import org.janelia.saalfeldlab.n5.universe.metadata.ome.ngff.OmeNgffMetadataParser;
+import org.janelia.saalfeldlab.n5.universe.reader.ForwardingN5Reader;
+import org.janelia.saalfeldlab.n5.zarr.v3.ZarrV3KeyValueWriter;
+
+import net.imglib2.Cursor;
+import net.imglib2.RandomAccess;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.img.Img;
+import net.imglib2.img.array.ArrayImgFactory;
+import net.imglib2.type.NativeType;
+import net.imglib2.type.numeric.RealType;
+import net.imglib2.util.Util;
+
+/**
+ * Builds a multiscale pyramid from an existing full resolution dataset.
+ * <p>
+ * Each level is computed from the previous one, one output block per task.
+ * Tasks run on the given executor, with at most a few blocks in flight per
+ * thread, and the previous level is read through a bounded block cache, so
+ * memory use does not depend on the size of the data. Levels are added until
+ * no dimension can be downsampled further or a level fits into a single
+ * block.
+ * <p>
+ * After all levels are written, metadata of the same dialect as the base
+ * metadata are written: N5Viewer and COSEM metadata for every level, or
+ * OME-NGFF multiscales for the group. Averaged levels are offset by half the
+ * downsampling factor, like N5Viewer's "Average" downsampling; levels reduced
+ * otherwise are not offset, like its "Sample" downsampling.
+ */
+public class PyramidBuilder {
+
+	public enum Reduction {
+		AVERAGE, MAX, MODE
+	}
+
+	private final N5Writer n5;
+
+	private final String group;
+
+	private String levelPattern = "s%d";
+
+	private long factor = 2;
+
+	private int maxLevels = Integer.MAX_VALUE;
+
+	private Reduction reduction = Reduction.AVERAGE;
+
+	private ExecutorService executor;
+
+	private int maxCachedBlocks = 256;
+
+	/**
+	 * @param n5 the writer
+	 * @param group the group that holds the levels, the full resolution
+	 *            dataset is the first level in it
+	 */
+	public PyramidBuilder(final N5Writer n5, final String group) {
+
+		this.n5 = n5;
+		this.group = group;
+	}
+
+	/**
+	 * @param levelPattern format of the level dataset names, taking the level
+	 *            index, "s%d" by default
+	 * @return this
+	 */
+	public PyramidBuilder levelPattern(final String levelPattern) {
+
+		this.levelPattern = levelPattern;
+		return this;
+	}
+
+	public PyramidBuilder factor(final long factor) {
+
+		this.factor = factor;
+		return this;
+	}
+
+	/**
+	 * @param maxLevels the maximum number of levels, including the first
+	 * @return this
+	 */
+	public PyramidBuilder maxLevels(final int maxLevels) {
+
+		this.maxLevels = maxLevels;
+		return this;
+	}
+
+	public PyramidBuilder reduction(final Reduction reduction) {
+
+		this.reduction = reduction;
+		return this;
+	}
+
+	/**
+	 * @param executor the executor, or null to compute blocks in the calling thread
+	 * @return this
+	 */
+	public PyramidBuilder executor(final ExecutorService executor) {
+
+		this.executor = executor;
+		return this;
+	}
+
+	public PyramidBuilder maxCachedBlocks(final int maxCachedBlocks) {
+
+		this.maxCachedBlocks = maxCachedBlocks;
+		return this;
+	}
+
+	public String levelPath(final int level) {
+
+		return MetadataUtils.canonicalPath(group, String.format(levelPattern, level));
+	}
+
+	/**
+	 * Builds the pyramid and writes its metadata.
+	 *
+	 * @param baseMetadata metadata of the first level, N5Viewer, COSEM or
+	 *            OME-NGFF. May be null, then no metadata are written and all
+	 *            dimensions are downsampled.
+	 * @return the paths of all levels, starting with the first
+	 */
+	public <T extends RealType<T> & NativeType<T>> String[] build(final N5DatasetMetadata baseMetadata) {
+
+		final String[] axisTypes = axisTypes(baseMetadata, n5.getDatasetAttributes(levelPath(0)).getNumDimensions());
+
+		final List<String> paths = new ArrayList<>();
+		final List<long[]> factors = new ArrayList<>();
+		paths.add(levelPath(0));
+		factors.add(ones(axisTypes.length));
+
+		for (int level = 1; level < maxLevels; level++) {
+
+			final String sourcePath = paths.get(level - 1);
+			final DatasetAttributes sourceAttrs = n5.getDatasetAttributes(sourcePath);
+			if (fitsInOneBlock(sourceAttrs))
+				break;
+
+			final long[] relative = MetadataUtils.downsamplingFactors(factor, sourceAttrs.getDimensions(), axisTypes);
+			if (Arrays.stream(relative).allMatch(f -> f == 1))
+				break;
+
+			final long[] dimensions = new long[relative.length];
+			for (int d = 0; d < dimensions.length; d++)
+				dimensions[d] = (sourceAttrs.getDimensions()[d] + relative[d] - 1) / relative[d];
+
+			final String path = levelPath(level);
+			final DatasetAttributes attrs = new DatasetAttributes(dimensions, sourceAttrs.getBlockSize(),
+					sourceAttrs.getDataType(), sourceAttrs.getCompression());
+			n5.createDataset(path, attrs);
+
+			final RandomAccessibleInterval<T> source = N5Utils.openWithBoundedSoftRefCache(n5, sourcePath, maxCachedBlocks);
+			downsample(source, relative, path, attrs);
+
+			paths.add(path);
+			final long[] absolute = factors.get(level - 1).clone();
+			for (int d = 0; d < absolute.length; d++)
+				absolute[d] *= relative[d];
+			factors.add(absolute);
+		}
+
+		if (baseMetadata != null)
+			writeMetadata(baseMetadata, paths, factors);
+
+		return paths.toArray(new String[0]);
+	}
+
+	private <T extends RealType<T> & NativeType<T>> void downsample(final RandomAccessibleInterval<T> source,
+			final long[] relative, final String path, final DatasetAttributes attrs) {
+
+		BlockTasks.forEachBlock(attrs, executor, "downsample " + path,
+				gridPosition -> downsampleBlock(source, relative, path, attrs, gridPosition));
+	}
+
+	private <T extends RealType<T> & NativeType<T>> void downsampleBlock(final RandomAccessibleInterval<T> source,
+			final long[] relative, final String path, final DatasetAttributes attrs, final long[] gridPosition) {
+
+		final int nd = relative.length;
+		final long[] min = new long[nd];
+		final long[] size = new long[nd];
+		int windowSize = 1;
+		for (int d = 0; d < nd; d++) {
+			min[d] = gridPosition[d] * attrs.getBlockSize()[d];
+			size[d] = Math.min(attrs.getBlockSize()[d], attrs.getDimensions()[d] - min[d]);
+			windowSize *= relative[d];
+		}
+
+		final T type = Util.getTypeFromInterval(source).createVariable();
+		final Img<T> block = new ArrayImgFactory<>(type).create(size);
+
+		final RandomAccess<T> access = source.randomAccess();
+		final double[] window = new double[windowSize];
+		final long[] windowMin = new long[nd];
+		final long[] offset = new long[nd];
+		final long[] position = new long[nd];
+		final Cursor<T> cursor = block.localizingCursor();
+		while (cursor.hasNext()) {
+			cursor.fwd();
+
+			for (int d = 0; d < nd; d++)
+				windowMin[d] = (min[d] + cursor.getLongPosition(d)) * relative[d];
+
+			// values of the window that are inside the source
+			int n = 0;
+			Arrays.fill(offset, 0);
+			for (int k = 0; k < windowSize; k++) {
+
+				boolean inside = true;
+				for (int d = 0; d < nd; d++) {
+					position[d] = windowMin[d] + offset[d];
+					inside &= position[d] <= source.max(d);
+				}
+
+				if (inside) {
+					access.setPosition(position);
+					window[n++] = access.get().getRealDouble();
+				}
+
+				for (int d = 0; d < nd && ++offset[d] == relative[d]; d++)
+					offset[d] = 0;
+			}
+			cursor.get().setReal(reduce(window, n));
+		}
+
+		N5Utils.saveBlock(block, n5, path, attrs, gridPosition);
+	}
+
+	private double reduce(final double[] values, final int n) {
+
+		switch (reduction) {
+		case MAX:
+			double max = values[0];
+			for (int i = 1; i < n; i++)
+				max = Math.max(max, values[i]);
+			return max;
+		case MODE:
+			// the most frequent value, the smallest of those if there is a tie
+			Arrays.sort(values, 0, n);
+			double mode = values[0];
+			int modeCount = 0;
+			for (int i = 0; i < n;) {
+				int j = i + 1;
+				while (j < n && values[j] == values[i])
+					j++;
+				if (j - i > modeCount) {
+					mode = values[i];
+					modeCount = j - i;
+				}
+				i = j;
+			}
+			return mode;
+		default:
+			double sum = 0;
+			for (int i = 0; i < n; i++)
+				sum += values[i];
+			return sum / n;
+		}
+	}
+
+	private void writeMetadata(final N5DatasetMetadata baseMetadata, final List<String> paths, final List<long[]> factors) {
+
+		final int nd = factors.get(0).length;
+		final double[] baseScale;
+		final double[] baseTranslation;
+		if (baseMetadata instanceof N5CosemMetadata) {
+			baseScale = ((N5CosemMetadata)baseMetadata).getCosemTransform().fOrderedScale();
+			baseTranslation = ((N5CosemMetadata)baseMetadata).getCosemTransform().fOrderedTranslation();
+		} else if (baseMetadata instanceof N5SingleScaleMetadata) {
+			baseScale = ((N5SingleScaleMetadata)baseMetadata).getPixelResolution();
+			baseTranslation = ((N5SingleScaleMetadata)baseMetadata).getOffset();
+		} else if (baseMetadata instanceof NgffSingleScaleAxesMetadata) {
+			baseScale = ((NgffSingleScaleAxesMetadata)baseMetadata).getScale();
+			baseTranslation = ((NgffSingleScaleAxesMetadata)baseMetadata).getTranslation();
+		} else
+			return;
+
+		final int N = paths.size();
+		final double[][] scales = new double[N][];
+		final double[][] translations = new double[N][];
+		for (int i = 0; i < N; i++) {
+
+			final long[] f = factors.get(i);
+			scales[i] = new double[baseScale.length];
+			translations[i] = new double[baseScale.length];
+			for (int d = 0; d < baseScale.length; d++) {
+				final double fd = d < nd ? f[d] : 1;
+				final double t = baseTranslation == null || d >= baseTranslation.length ? 0 : baseTranslation[d];
+				scales[i][d] = baseScale[d] * fd;
+				// an average is centered between the pixels it reduces,
+				// other reductions are placed at the first pixel like samples
+				translations[i][d] = reduction == Reduction.AVERAGE ? t + baseScale[d] * (fd - 1) / 2 : t;
+			}
+		}
+
+		try {
+			if (baseMetadata instanceof NgffSingleScaleAxesMetadata) {
+
+				final Axis[] axes = ((NgffSingleScaleAxesMetadata)baseMetadata).getAxes();
+				final String[] relativePaths = paths.stream().map(p -> MetadataUtils.relativePath(group, p)).toArray(String[]::new);
+				final String version = ForwardingN5Reader.unwrap(n5) instanceof ZarrV3KeyValueWriter ? "0.5" : "0.4";
+				final OmeNgffMetadata meta = OmeNgffMetadata.buildForWriting(axes.length, group, version, axes,
+						relativePaths, scales, translations);
+				new OmeNgffMetadataParser(n5).writeMetadata(meta, n5, group);
+				return;
+			}
+
+			for (int i = 1; i < N; i++) {
+				final double[] factorsD = Arrays.stream(factors.get(i)).asDoubleStream().toArray();
+				if (baseMetadata instanceof N5CosemMetadata) {
+					// cosem transforms are c-ordered
+					ArrayUtils.reverse(scales[i]);
+					ArrayUtils.reverse(translations[i]);
+					new N5CosemMetadataParser().writeMetadata(MetadataUtils.buildCosemMetadata(paths.get(i),
+							(N5CosemMetadata)baseMetadata, scales[i], translations[i]), n5, paths.get(i));
+				} else {
+					new N5SingleScaleMetadataParser().writeMetadata(MetadataUtils.buildN5VMetadata(paths.get(i),
+							(N5SingleScaleMetadata)baseMetadata, downsamplingMethod(), baseScale, factorsD), n5, paths.get(i));
+				}
+			}
+		} catch (final N5Exception e) {
+			throw e;
+		} catch (final Exception e) {
+			throw new N5Exception("Failed to write pyramid metadata for " + group, e);
+		}
+	}
+
+	/**
+	 * @return the N5Viewer downsampling method of the reduction
+	 */
+	private String downsamplingMethod() {
+
+		return reduction == Reduction.AVERAGE ? MetadataUtils.DOWN_AVERAGE : MetadataUtils.DOWN_SAMPLE;
+	}
+
+	private boolean fitsInOneBlock(final DatasetAttributes attrs) {
+
+		for (int d = 0; d < attrs.getNumDimensions(); d++)
+			if (attrs.getDimensions()[d] > attrs.getBlockSize()[d])
+				return false;
+
+		return true;
+	}
+
+	private static String[] axisTypes(final N5DatasetMetadata metadata, final int nd) {
+
+		final String[] types = new String[nd];
+		Arrays.fill(types, Axis.SPACE);
+		if (metadata instanceof AxisMetadata) {
+			final String[] metaTypes = ((AxisMetadata)metadata).getAxisTypes();
+			if (metaTypes != null && metaTypes.length == nd)
+				return metaTypes;
+		}
+		return types;
+	}
+
+	private static long[] ones(final int nd) {
+
+		final long[] out = new long[nd];
+		Arrays.fill(out, 1);
+		return out;
+	}
+
+}
@@ -0,0 +1,572 @@
+package org.janelia.saalfeldlab.n5.universe.reader;
+
+import java.io.Serializable;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.janelia.saalfeldlab.n5.ByteArrayDataBlock;
+import org.janelia.saalfeldlab.n5.DataBlock;
+import org.janelia.saalfeldlab.n5.DataType;
+import org.janelia.saalfeldlab.n5.DatasetAttributes;
+import org.janelia.saalfeldlab.n5.DoubleArrayDataBlock;
+import org.janelia.saalfeldlab.n5.FloatArrayDataBlock;
+import org.janelia.saalfeldlab.n5.IntArrayDataBlock;
+import org.janelia.saalfeldlab.n5.LongArrayDataBlock;
+import org.janelia.saalfeldlab.n5.N5URI;
+import org.janelia.saalfeldlab.n5.ShortArrayDataBlock;
+
+/**
+ * A least recently used cache of decoded {@link DataBlock}s, bounded by the
+ * size of the block data in bytes.
+ * <p>
+ * Blocks are keyed by container URI, dataset path and grid position, so one
+ * cache can be shared by readers of many containers of any storage format.
+ * A cached block is only returned for the dataset attributes it was read
+ * with. Callers get their own copy of a cached block, so they may modify it.
+ * Only blocks of primitive arrays are cached.
+ * <p>
+ * Blocks are also indexed by dataset, so invalidating a dataset or a written
+ * block only visits the blocks of that dataset. A block that is invalidated
+ * while it is being read is not cached when the read ends.
+ * <p>
+ * A cache is serialized without its blocks, it is empty when deserialized.
+ */
+public class BlockCache implements Serializable {
+
+	private static final long serialVersionUID = 3172981744052736437L;
+
+	private final long maxBytes;
+
+	private transient long bytes = 0;
+
+	private final transient LinkedHashMap<Key, Cached> blocks = new LinkedHashMap<>(16, 0.75f, true);
+
+	/**
+	 * The cached blocks and pending reads by container and dataset, so that
+	 * invalidating a dataset does not scan the whole cache.
+	 */
+	private final transient HashMap<List<Object>, Dataset> datasets = new HashMap<>();
+
+	private final transient LongAdder hits = new LongAdder();
+
+	private final transient LongAdder misses = new LongAdder();
+
+	private final transient LongAdder evictions = new LongAdder();
+
+	/**
+	 * @param maxBytes the maximum size of the cached block data in bytes
+	 */
+	public BlockCache(final long maxBytes) {
+
+		if (maxBytes <= 0)
+			throw new IllegalArgumentException("Cache size must be positive, was " + maxBytes);
+
+		this.maxBytes = maxBytes;
+	}
+
+	/**
+	 * @return a copy of the block cached for the key and dataset attributes,
+	 *         or null if there is none
+	 */
+	DataBlock<?> get(final Key key, final DatasetAttributes attributes) {
+
+		final DataBlock<?> block;
+		synchronized (this) {
+			final Cached cached = blocks.get(key);
+			block = cached == null || !sameLayout(cached.attributes, attributes) ? null : cached.block;
+		}
+
+		if (block == null) {
+			misses.increment();
+			return null;
+		}
+
+		hits.increment();
+		return copy(block);
+	}
+
+	/**
+	 * Starts reading a block from the backend. The read must be ended with
+	 * {@link #end}, which only caches the block if it was not invalidated
+	 * while it was read.
+	 *
+	 * @param key the key of the block
+	 * @return the pending read
+	 */
+	synchronized Read begin(final Key key) {
+
+		final Read read = new Read(key);
+		dataset(key, true).reads.add(read);
+		return read;
+	}
+
+	/**
+	 * Ends a read and adds a copy of the block, unless the block was
+	 * invalidated since the read began. Evicts the least recently used blocks
+	 * until the cache fits. Blocks larger than the cache and blocks that
+	 * cannot be copied are not added.
+	 *
+	 * @param read the pending read
+	 * @param attributes the dataset attributes the block was read with
+	 * @param block the block, or null if there is none
+	 */
+	void end(final Read read, final DatasetAttributes attributes, final DataBlock<?> block) {
+
+		final DataBlock<?> copy = block == null || weight(block) > maxBytes ? null : copy(block);
+		synchronized (this) {
+			final Dataset dataset = dataset(read.key, false);
+			dataset.reads.remove(read);
+			if (read.stale || copy == null) {
+				removeIfUnused(read.key, dataset);
+				return;
+			}
+
+			final Cached previous = blocks.put(read.key, new Cached(attributes, copy));
+			if (previous != null)
+				bytes -= weight(previous.block);
+
+			bytes += weight(copy);
+			dataset.keys(read.key.chunk).add(read.key);
+			dataset.setOrigin(read.key, attributes, copy);
+
+			final Iterator<Entry<Key, Cached>> it = blocks.entrySet().iterator();
+			while (bytes > maxBytes && it.hasNext()) {
+				final Entry<Key, Cached> eldest = it.next();
+				it.remove();
+				bytes -= weight(eldest.getValue().block);
+				final Dataset evicted = dataset(eldest.getKey(), false);
+				evicted.keys(eldest.getKey().chunk).remove(eldest.getKey());
+				removeIfUnused(eldest.getKey(), evicted);
+				evictions.increment();
+			}
+		}
+	}
+
+	/**
+	 * Removes a block that was written or deleted, and the blocks of the
+	 * dataset that were read the other way and may overlap it, as chunks if
+	 * a block was written or as blocks if a chunk was written. If the blocks
+	 * and chunks of the dataset are known to be the same, only the one at the
+	 * same grid position is removed. Pending reads of the removed blocks are
+	 * not cached.
+	 */
+	synchronized void invalidateWritten(final Key key) {
+
+		final Dataset dataset = dataset(key, false);
+		if (dataset == null)
+			return;
+
+		remove(key, dataset);
+		if (dataset.sameGrid()) {
+			remove(new Key(key.container, key.dataset, !key.chunk, key.gridPosition), dataset);
+		} else {
+			for (final Key other : new ArrayList<>(dataset.keys(!key.chunk)))
+				remove(other, dataset);
+
+			for (final Read read : dataset.reads)
+				if (read.key.chunk != key.chunk)
+					read.stale = true;
+		}
+		removeIfUnused(key, dataset);
+	}
+
+	/**
+	 * Removes all blocks of a dataset.
+	 *
+	 * @param container the container URI
+	 * @param dataset the dataset path
+	 */
+	public synchronized void invalidate(final URI container, final String dataset) {
+
+		final List<Object> id = datasetId(container, normalize(dataset));
+		final Dataset entry = datasets.get(id);
+		if (entry != null)
+			invalidate(id, entry);
+	}
+
+	/**
+	 * Removes all blocks of all datasets below a group, or of the whole
+	 * container if the group is the root.
+	 *
+	 * @param container the container URI
+	 * @param group the group path
+	 */
+	public synchronized void invalidateGroup(final URI container, final String group) {
+
+		final String path = normalize(group);
+		final String prefix = path.isEmpty() ? "" : path + "/";
+		for (final Entry<List<Object>, Dataset> entry : new ArrayList<>(datasets.entrySet())) {
+			final List<Object> id = entry.getKey();
+			final String dataset = (String)id.get(1);
+			if (id.get(0).equals(container) && (dataset.equals(path) || dataset.startsWith(prefix)))
+				invalidate(id, entry.getValue());
+		}
+	}
+
+	public synchronized void clear() {
+
+		for (final Entry<List<Object>, Dataset> entry : new ArrayList<>(datasets.entrySet()))
+			invalidate(entry.getKey(), entry.getValue());
+	}
+
+	private void invalidate(final List<Object> id, final Dataset dataset) {
+
+		for (final Key key : dataset.blocks)
+			bytes -= weight(blocks.remove(key).block);
+
+		for (final Key key : dataset.chunks)
+			bytes -= weight(blocks.remove(key).block);
+
+		for (final Read read : dataset.reads)
+			read.stale = true;
+
+		if (dataset.reads.isEmpty())
+			datasets.remove(id);
+		else
+			dataset.clear();
+	}
+
+	/**
+	 * Removes a block and marks its pending reads as stale.
+	 */
+	private void remove(final Key key, final Dataset dataset) {
+
+		final Cached previous = blocks.remove(key);
+		if (previous != null) {
+			bytes -= weight(previous.block);
+			dataset.keys(key.chunk).remove(key);
+		}
+
+		for (final Read read : dataset.reads)
+			if (read.key.equals(key))
+				read.stale = true;
+	}
+
+	private Dataset dataset(final Key key, final boolean create) {
+
+		final List<Object> id = datasetId(key.container, key.dataset);
+		Dataset dataset = datasets.get(id);
+		if (dataset == null && create) {
+			dataset = new Dataset();
+			datasets.put(id, dataset);
+		}
+		return dataset;
+	}
+
+	private void removeIfUnused(final Key key, final Dataset dataset) {
+
+		if (dataset.blocks.isEmpty() && dataset.chunks.isEmpty() && dataset.reads.isEmpty())
+			datasets.remove(datasetId(key.container, key.dataset));
+	}
+
+	private static List<Object> datasetId(final URI container, final String dataset) {
+
+		return Arrays.asList(container, dataset);
+	}
+
+	public long getMaxBytes() {
+
+		return maxBytes;
+	}
+
+	public synchronized long getBytes() {
+
+		return bytes;
+	}
+
+	public synchronized int size() {
+
+		return blocks.size();
+	}
+
+	public long getHits() {
+
+		return hits.sum();
+	}
+
+	public long getMisses() {
+
+		return misses.sum();
+	}
+
+	public long getEvictions() {
+
+		return evictions.sum();
+	}
+
+	/**
+	 * @return the fraction of lookups that found a cached block, 0 if there were none
+	 */
+	public double getHitRate() {
+
+		final long h = getHits();
+		final long total = h + getMisses();
+		return total == 0 ? 0 : (double)h / total;
+	}
+
+	/**
+	 * The size of the block data in bytes, estimated with 8 bytes per element
+	 * for non-primitive data.
+	 */
+	static long weight(final DataBlock<?> block) {
+
+		final Object data = block.getData();
+		if (data instanceof byte[])
+			return ((byte[])data).length;
+		else if (data instanceof short[])
+			return 2L * ((short[])data).length;
+		else if (data instanceof int[])
+			return 4L * ((int[])data).length;
+		else if (data instanceof float[])
+			return 4L * ((float[])data).length;
+		else if (data instanceof long[])
+			return 8L * ((long[])data).length;
+		else if (data instanceof double[])
+			return 8L * ((double[])data).length;
+
+		return 8L * block.getNumElements();
+	}
+
+	/**
+	 * Copies a block of a primitive array.
+	 *
+	 * @return the copy, or null for blocks of other data
+	 */
+	static DataBlock<?> copy(final DataBlock<?> block) {
+
+		final int[] size = block.getSize().clone();
+		final long[] gridPosition = block.getGridPosition().clone();
+		final Object data = block.getData();
+		if (data instanceof byte[])
+			return new ByteArrayDataBlock(size, gridPosition, ((byte[])data).clone());
+		else if (data instanceof short[])
+			return new ShortArrayDataBlock(size, gridPosition, ((short[])data).clone());
+		else if (data instanceof int[])
+			return new IntArrayDataBlock(size, gridPosition, ((int[])data).clone());
+		else if (data instanceof float[])
+			return new FloatArrayDataBlock(size, gridPosition, ((float[])data).clone());
+		else if (data instanceof long[])
+			return new LongArrayDataBlock(size, gridPosition, ((long[])data).clone());
+		else if (data instanceof double[])
+			return new DoubleArrayDataBlock(size, gridPosition, ((double[])data).clone());
+
+		return null;
+	}
+
+	/**
+	 * Whether blocks read with either attributes have the same size, type and
+	 * encoding.
+	 */
+	static boolean sameLayout(final DatasetAttributes a, final DatasetAttributes b) {
+
+		if (a == b)
+			return true;
+		else if (a == null || b == null)
+			return false;
+
+		return new Layout(a).equals(new Layout(b));
+	}
+
+	private Object readResolve() {
+
+		return new BlockCache(maxBytes);
+	}
+
+	/**
+	 * The normalized path without leading and trailing separators.
+	 */
+	static String normalize(final String path) {
+
+		String out = N5URI.normalizeGroupPath(path);
+		while (out.startsWith("/"))
+			out = out.substring(1);
+		while (out.endsWith("/"))
+			out = out.substring(0, out.length() - 1);
+
+		return out;
+	}
+
+	private static class Cached {
+
+		final DatasetAttributes attributes;
+
+		final DataBlock<?> block;
+
+		Cached(final DatasetAttributes attributes, final DataBlock<?> block) {
+
+			this.attributes = attributes;
+			this.block = block;
+		}
+	}
+
+	/**
+	 * The cached blocks and chunks and the pending reads of a dataset.
+	 */
+	private static class Dataset {
+
+		final Set<Key> blocks = new HashSet<>();
+
+		final Set<Key> chunks = new HashSet<>();
+
+		final List<Read> reads = new ArrayList<>();
+
+		/**
+		 * The sizes of the block and of the chunk at the origin of the grid.
+		 * They are equal if and only if blocks and chunks are the same.
+		 */
+		Layout blockLayout;
+
+		int[] blockOrigin;
+
+		Layout chunkLayout;
+
+		int[] chunkOrigin;
+
+		void clear() {
+
+			blocks.clear();
+			chunks.clear();
+			blockLayout = null;
+			blockOrigin = null;
+			chunkLayout = null;
+			chunkOrigin = null;
+		}
+
+		Set<Key> keys(final boolean chunk) {
+
+			return chunk ? chunks : blocks;
+		}
+
+		void setOrigin(final Key key, final DatasetAttributes attributes, final DataBlock<?> block) {
+
+			for (final long p : key.gridPosition)
+				if (p != 0)
+					return;
+
+			if (key.chunk) {
+				chunkLayout = new Layout(attributes);
+				chunkOrigin = block.getSize().clone();
+			} else {
+				blockLayout = new Layout(attributes);
+				blockOrigin = block.getSize().clone();
+			}
+		}
+
+		boolean sameGrid() {
+
+			return blockOrigin != null && chunkOrigin != null && blockLayout.equals(chunkLayout)
+					&& Arrays.equals(blockOrigin, chunkOrigin);
+		}
+	}
+
+	/**
+	 * A read from the backend whose block is only cached if it is not stale.
+	 */
+	static class Read {
+
+		final Key key;
+
+		boolean stale;
+
+		Read(final Key key) {
+
+			this.key = key;
+		}
+	}
+
+	/**
+	 * The size, type and encoding of the blocks read with some attributes.
+	 */
+	static class Layout {
+
+		final DataType dataType;
+
+		final long[] dimensions;
+
+		final int[] blockSize;
+
+		final Class<?> compression;
+
+		private final int hash;
+
+		Layout(final DatasetAttributes attributes) {
+
+			dataType = attributes.getDataType();
+			dimensions = attributes.getDimensions().clone();
+			blockSize = attributes.getBlockSize().clone();
+			compression = attributes.getCompression() == null ? null : attributes.getCompression().getClass();
+			hash = Objects.hash(dataType, Arrays.hashCode(dimensions), Arrays.hashCode(blockSize), compression);
+		}
+
+		@Override
+		public int hashCode() {
+
+			return hash;
+		}
+
+		@Override
+		public boolean equals(final Object obj) {
+
+			if (this == obj)
+				return true;
+			else if (!(obj instanceof Layout))
+				return false;
+
+			final Layout other = (Layout)obj;
+			return dataType == other.dataType && compression == other.compression
+					&& Arrays.equals(dimensions, other.dimensions) && Arrays.equals(blockSize, other.blockSize);
+		}
+	}
+
+	static class Key {
+
+		final URI container;
+
+		final String dataset;
+
+		final boolean chunk;
+
+		final long[] gridPosition;
+
+		private final int hash;
+
+		Key(final URI container, final String dataset, final boolean chunk, final long[] gridPosition) {
+
+			this.container = container;
+			this.dataset = normalize(dataset);
+			this.chunk = chunk;
+			this.gridPosition = gridPosition.clone();
+			hash = Objects.hash(container, this.dataset, chunk, Arrays.hashCode(this.gridPosition));
+		}
+
+		@Override
+		public int hashCode() {
+
+			return hash;
+		}
+
+		@Override
+		public boolean equals(final Object obj) {
+
+			if (this == obj)
+				return true;
+			else if (!(obj instanceof Key))
+				return false;
+
+			final Key other = (Key)obj;
+			return chunk == other.chunk && dataset.equals(other.dataset) && container.equals(other.container)
+					&& Arrays.equals(gridPosition, other.gridPosition);
+		}
+	}
+
+}
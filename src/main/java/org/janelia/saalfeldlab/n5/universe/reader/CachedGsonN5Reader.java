@@ -0,0 +1,15 @@
+package org.janelia.saalfeldlab.n5.universe.reader;
+
+import org.janelia.saalfeldlab.n5.GsonN5Reader;
+
+/**
+ * A {@link CachedN5Reader} of a {@link GsonN5Reader}.
+ */
+public class CachedGsonN5Reader extends CachedN5Reader implements ForwardingGsonN5Reader {
+
+	public CachedGsonN5Reader(final GsonN5Reader reader, final BlockCache cache) {
+
+		super(reader, cache);
+	}
+
+}
@@ -0,0 +1,15 @@
+package org.janelia.saalfeldlab.n5.universe.reader;
+
+import org.janelia.saalfeldlab.n5.GsonN5Writer;
+
+/**
+ * A {@link CachedN5Writer} of a {@link GsonN5Writer}.
+ */
+public class CachedGsonN5Writer extends CachedN5Writer implements ForwardingGsonN5Writer {
+
+	public CachedGsonN5Writer(final GsonN5Writer writer, final BlockCache cache) {
+
+		super(writer, cache);
+	}
+
+}
@@ -0,0 +1,101 @@
+package org.janelia.saalfeldlab.n5.universe.reader;
+
+import java.net.URI;
+
+import org.janelia.saalfeldlab.n5.DataBlock;
+import org.janelia.saalfeldlab.n5.DatasetAttributes;
+import org.janelia.saalfeldlab.n5.GsonN5Reader;
+import org.janelia.saalfeldlab.n5.N5Reader;
+import org.janelia.saalfeldlab.n5.universe.reader.BlockCache.Key;
+import org.janelia.saalfeldlab.n5.universe.reader.BlockCache.Read;
+
+/**
+ * An {@link N5Reader} that keeps the blocks it reads in a {@link BlockCache}.
+ * <p>
+ * Missing blocks are not cached, so blocks written later by another writer
+ * are found. Blocks that are overwritten by another writer are only read
+ * again once they have been evicted or invalidated. A block that is written
+ * through a {@link CachedN5Writer} of the same cache while it is read is
+ * returned to the reader but not cached.
+ * <p>
+ * Use {@link #wrap(N5Reader, BlockCache)} to keep the {@link GsonN5Reader}
+ * interface of the reader.
+ */
+public class CachedN5Reader extends ForwardingN5Reader {
+
+	protected final BlockCache cache;
+
+	protected final URI container;
+
+	public CachedN5Reader(final N5Reader reader, final BlockCache cache) {
+
+		super(reader);
+		this.cache = cache;
+		container = reader.getURI();
+	}
+
+	/**
+	 * Wraps a reader with a cache, as a {@link GsonN5Reader} if the reader is
+	 * one.
+	 *
+	 * @param reader the reader
+	 * @param cache the cache
+	 * @return the cached reader
+	 */
+	public static CachedN5Reader wrap(final N5Reader reader, final BlockCache cache) {
+
+		if (reader instanceof GsonN5Reader)
+			return new CachedGsonN5Reader((GsonN5Reader)reader, cache);
+
+		return new CachedN5Reader(reader, cache);
+	}
+
+	public BlockCache getCache() {
+
+		return cache;
+	}
+
+	@Override
+	public DataBlock<?> readBlock(final String pathName, final DatasetAttributes datasetAttributes, final long... gridPosition) {
+
+		return read(pathName, datasetAttributes, false, gridPosition);
+	}
+
+	@Override
+	public DataBlock<?> readChunk(final String pathName, final DatasetAttributes datasetAttributes, final long... gridPosition) {
+
+		return read(pathName, datasetAttributes, true, gridPosition);
+	}
+
+	private DataBlock<?> read(final String pathName, final DatasetAttributes datasetAttributes, final boolean chunk,
+			final long... gridPosition) {
+
+		final Key key = new Key(container, pathName, chunk, gridPosition);
+		final DataBlock<?> cached = cache.get(key, datasetAttributes);
+		if (cached != null)
+			return cached;
+
+		// a block that is written while it is read is not cached
+		final Read read = cache.begin(key);
+		DataBlock<?> block = null;
+		try {
+			block = chunk
+					? reader.readChunk(pathName, datasetAttributes, gridPosition)
+					: reader.readBlock(pathName, datasetAttributes, gridPosition);
+		} finally {
+			cache.end(read, datasetAttributes, block);
+		}
+		return block;
+	}
+
+	/**
+	 * Removes a written block from the cache, and the blocks read the other
+	 * way that overlap it, as chunks if a block was written or as blocks if a
+	 * chunk was written. Blocks that are being read are not cached.
+	 */
+	protected void invalidate(final String pathName, final boolean chunk, final long... gridPosition) {
+
+		cache.invalidateWritten(new Key(container, pathName, chunk, gridPosition));
+	}
+
+}
@@ -0,0 +1,211 @@
+package org.janelia.saalfeldlab.n5.universe.reader;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+
+import org.janelia.saalfeldlab.n5.Compression;
+import org.janelia.saalfeldlab.n5.DataBlock;
+import org.janelia.saalfeldlab.n5.DataType;
+import org.janelia.saalfeldlab.n5.DatasetAttributes;
+import org.janelia.saalfeldlab.n5.GsonN5Writer;
+import org.janelia.saalfeldlab.n5.N5Exception;
+import org.janelia.saalfeldlab.n5.N5Writer;
+
+/**
+ * An {@link N5Writer} that caches the blocks it reads like
+ * {@link CachedN5Reader}, and removes blocks from the cache when they are
+ * written or deleted through it.
+ * <p>
+ * Use {@link #wrap(N5Writer, BlockCache)} to keep the {@link GsonN5Writer}
+ * interface of the writer.
+ */
+public class CachedN5Writer extends CachedN5Reader implements N5Writer {
+
+	protected final N5Writer writer;
+
+	public CachedN5Writer(final N5Writer writer, final BlockCache cache) {
+
+		super(writer, cache);
+		this.writer = writer;
+	}
+
+	/**
+	 * Wraps a writer with a cache, as a {@link GsonN5Writer} if the writer is
+	 * one.
+	 *
+	 * @param writer the writer
+	 * @param cache the cache
+	 * @return the cached writer
+	 */
+	public static CachedN5Writer wrap(final N5Writer writer, final BlockCache cache) {
+
+		if (writer instanceof GsonN5Writer)
+			return new CachedGsonN5Writer((GsonN5Writer)writer, cache);
+
+		return new CachedN5Writer(writer, cache);
+	}
+
+	@Override
+	public <T> void setAttribute(final String pathName, final String key, final T attribute) {
+
+		writer.setAttribute(pathName, key, attribute);
+	}
+
+	@Override
+	public void setAttributes(final String pathName, final Map<String, ?> attributes) {
+
+		writer.setAttributes(pathName, attributes);
+	}
+
+	@Override
+	public boolean removeAttribute(final String pathName, final String key) {
+
+		return writer.removeAttribute(pathName, key);
+	}
+
+	@Override
+	public <T> T removeAttribute(final String pathName, final String key, final Class<T> clazz) {
+
+		return writer.removeAttribute(pathName, key, clazz);
+	}
+
+	@Override
+	public boolean removeAttributes(final String pathName, final List<String> attributes) {
+
+		return writer.removeAttributes(pathName, attributes);
+	}
+
+	@Override
+	public void setDatasetAttributes(final String datasetPath, final DatasetAttributes datasetAttributes) {
+
+		cache.invalidate(container, datasetPath);
+		writer.setDatasetAttributes(datasetPath, datasetAttributes);
+	}
+
+	@Override
+	public void createGroup(final String pathName) {
+
+		writer.createGroup(pathName);
+	}
+
+	@Override
+	public void createDataset(final String datasetPath, final DatasetAttributes datasetAttributes) {
+
+		cache.invalidate(container, datasetPath);
+		writer.createDataset(datasetPath, datasetAttributes);
+	}
+
+	@Override
+	public void createDataset(final String datasetPath, final long[] dimensions, final int[] blockSize,
+			final DataType dataType, final Compression compression) {
+
+		cache.invalidate(container, datasetPath);
+		writer.createDataset(datasetPath, dimensions, blockSize, dataType, compression);
+	}
+
+	@Override
+	public boolean remove(final String pathName) {
+
+		try {
+			return writer.remove(pathName);
+		} finally {
+			cache.invalidateGroup(container, pathName);
+		}
+	}
+
+	@Override
+	public boolean remove() {
+
+		try {
+			return writer.remove();
+		} finally {
+			cache.invalidateGroup(container, "");
+		}
+	}
+
+	@Override
+	public <T> void writeChunk(final String pathName, final DatasetAttributes datasetAttributes, final DataBlock<T> dataBlock) {
+
+		try {
+			writer.writeChunk(pathName, datasetAttributes, dataBlock);
+		} finally {
+			invalidate(pathName, true, dataBlock.getGridPosition());
+		}
+	}
+
+	@Override
+	public <T> void writeBlock(final String pathName, final DatasetAttributes datasetAttributes, final DataBlock<T> dataBlock) {
+
+		try {
+			writer.writeBlock(pathName, datasetAttributes, dataBlock);
+		} finally {
+			invalidate(pathName, false, dataBlock.getGridPosition());
+		}
+	}
+
+	@Override
+	public <T> void writeRegion(final String datasetPath, final DatasetAttributes datasetAttributes, final long[] min, final long[] size,
+			final DataBlockSupplier<T> dataBlocks, final boolean writeFully) throws N5Exception {
+
+		try {
+			writer.writeRegion(datasetPath, datasetAttributes, min, size, dataBlocks, writeFully);
+		} finally {
+			cache.invalidate(container, datasetPath);
+		}
+	}
+
+	@Override
+	public <T> void writeRegion(final String datasetPath, final DatasetAttributes datasetAttributes, final long[] min, final long[] size,
+			final DataBlockSupplier<T> dataBlocks, final boolean writeFully, final ExecutorService exec)
+			throws N5Exception, InterruptedException, ExecutionException {
+
+		try {
+			writer.writeRegion(datasetPath, datasetAttributes, min, size, dataBlocks, writeFully, exec);
+		} finally {
+			cache.invalidate(container, datasetPath);
+		}
+	}
+
+	@Override
+	public boolean deleteChunk(final String pathName, final long... gridPosition) {
+
+		try {
+			return writer.deleteChunk(pathName, gridPosition);
+		} finally {
+			invalidate(pathName, true, gridPosition);
+		}
+	}
+
+	@Override
+	public boolean deleteChunk(final String datasetPath, final DatasetAttributes datasetAttributes, final long... gridPosition) throws N5Exception {
+
+		try {
+			return writer.deleteChunk(datasetPath, datasetAttributes, gridPosition);
+		} finally {
+			invalidate(datasetPath, true, gridPosition);
+		}
+	}
+
+	@Override
+	public boolean deleteBlock(final String pathName, final long... gridPosition) {
+
+		try {
+			return writer.deleteBlock(pathName, gridPosition);
+		} finally {
+			invalidate(pathName, false, gridPosition);
+		}
+	}
+
+	@Override
+	public boolean deleteBlock(final String datasetPath, final DatasetAttributes datasetAttributes, final long... gridPosition) throws N5Exception {
+
+		try {
+			return writer.deleteBlock(datasetPath, datasetAttributes, gridPosition);
+		} finally {
+			invalidate(datasetPath, false, gridPosition);
+		}
+	}
+
+}
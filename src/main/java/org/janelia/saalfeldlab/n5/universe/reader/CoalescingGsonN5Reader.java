@@ -0,0 +1,71 @@
+package org.janelia.saalfeldlab.n5.universe.reader;
+
+import java.lang.reflect.Type;
+import java.util.Arrays;
+
+import org.janelia.saalfeldlab.n5.DatasetAttributes;
+import org.janelia.saalfeldlab.n5.GsonN5Reader;
+import org.janelia.saalfeldlab.n5.GsonUtils;
+import org.janelia.saalfeldlab.n5.N5Exception;
+import org.janelia.saalfeldlab.n5.N5URI;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonSyntaxException;
+
+/**
+ * A {@link CoalescingN5Reader} of a {@link GsonN5Reader} that also merges
+ * concurrent reads of the json attributes of a group or dataset.
+ * <p>
+ * Attributes of any type and dataset attributes are read from the merged json
+ * attributes, every caller deserializes its own value with the reader's
+ * {@link com.google.gson.Gson}.
+ */
+public class CoalescingGsonN5Reader extends CoalescingN5Reader implements ForwardingGsonN5Reader {
+
+	public CoalescingGsonN5Reader(final GsonN5Reader reader) {
+
+		super(reader);
+	}
+
+	@Override
+	public JsonElement getAttributes(final String pathName) throws N5Exception.N5IOException {
+
+		return coalesce(Arrays.asList(BlockCache.normalize(pathName), GsonN5Reader.class),
+				() -> ((GsonN5Reader)reader).getAttributes(pathName),
+				CoalescingN5Reader::copyJson);
+	}
+
+	@Override
+	public <T> T getAttribute(final String pathName, final String key, final Class<T> clazz) throws N5Exception {
+
+		final JsonElement attributes = getAttributes(pathName);
+		try {
+			return GsonUtils.readAttribute(attributes, N5URI.normalizeAttributePath(key), clazz, getGson());
+		} catch (JsonSyntaxException | NumberFormatException | ClassCastException e) {
+			throw new N5Exception.N5ClassCastException(e);
+		}
+	}
+
+	@Override
+	public <T> T getAttribute(final String pathName, final String key, final Type type) throws N5Exception {
+
+		final JsonElement attributes = getAttributes(pathName);
+		try {
+			return GsonUtils.readAttribute(attributes, N5URI.normalizeAttributePath(key), type, getGson());
+		} catch (JsonSyntaxException | NumberFormatException | ClassCastException e) {
+			throw new N5Exception.N5ClassCastException(e);
+		}
+	}
+
+	@Override
+	public DatasetAttributes getDatasetAttributes(final String pathName) throws N5Exception {
+
+		final JsonElement attributes = getAttributes(pathName);
+		if (attributes == null)
+			return null;
+
+		// the reader knows how its format stores dataset attributes
+		return ((GsonN5Reader)reader).createDatasetAttributes(attributes);
+	}
+
+}
@@ -0,0 +1,220 @@
+package org.janelia.saalfeldlab.n5.universe.reader;
+
+import java.lang.reflect.Type;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
+
+import org.janelia.saalfeldlab.n5.DataBlock;
+import org.janelia.saalfeldlab.n5.DatasetAttributes;
+import org.janelia.saalfeldlab.n5.GsonN5Reader;
+import org.janelia.saalfeldlab.n5.N5Exception;
+import org.janelia.saalfeldlab.n5.N5Reader;
+import org.janelia.saalfeldlab.n5.universe.reader.BlockCache.Key;
+import org.janelia.saalfeldlab.n5.universe.reader.BlockCache.Layout;
+
+import com.google.gson.JsonElement;
+
+/**
+ * An {@link N5Reader} that merges concurrent identical reads.
+ * <p>
+ * While a block, chunk or json attribute is being read, other threads asking
+ * for the same are not sent to the backend, they wait for the pending read and
+ * share its result or exception. Nothing is kept once the read is done,
+ * combine with {@link CachedN5Reader} to also cache results.
+ * <p>
+ * Callers that shared a read get their own copy of the result, so they can
+ * modify it. Blocks that cannot be copied are read from the backend by every
+ * caller, and so are attributes that are not read as json and dataset
+ * attributes, unless the reader is a {@link GsonN5Reader}.
+ * <p>
+ * Use {@link #wrap(N5Reader)} to keep the {@link GsonN5Reader} interface of
+ * the reader, and to merge reads of attributes of any type.
+ */
+public class CoalescingN5Reader extends ForwardingN5Reader {
+
+	private final ConcurrentHashMap<Object, Pending> pending = new ConcurrentHashMap<>();
+
+	private final LongAdder requests = new LongAdder();
+
+	private final LongAdder coalesced = new LongAdder();
+
+	public CoalescingN5Reader(final N5Reader reader) {
+
+		super(reader);
+	}
+
+	/**
+	 * Wraps a reader, as a {@link GsonN5Reader} if the reader is one.
+	 *
+	 * @param reader the reader
+	 * @return the coalescing reader
+	 */
+	public static CoalescingN5Reader wrap(final N5Reader reader) {
+
+		if (reader instanceof GsonN5Reader)
+			return new CoalescingGsonN5Reader((GsonN5Reader)reader);
+
+		return new CoalescingN5Reader(reader);
+	}
+
+	/**
+	 * @return the number of coalesced reads that were requested
+	 */
+	public long getRequests() {
+
+		return requests.sum();
+	}
+
+	/**
+	 * @return the number of reads that were served by a pending identical read
+	 *         instead of reading from the backend
+	 */
+	public long getCoalesced() {
+
+		return coalesced.sum();
+	}
+
+	/**
+	 * Reads a value, or waits for a pending read with the same key.
+	 * <p>
+	 * If other callers waited for the read, every caller gets a copy of the
+	 * value. Callers that cannot get a copy read from the backend themselves.
+	 *
+	 * @param key identifies the read
+	 * @param read reads from the backend
+	 * @param copy copies a value that is not null, returns null if it cannot
+	 * @return the value or a copy of it
+	 */
+	@SuppressWarnings("unchecked")
+	protected <T> T coalesce(final Object key, final Supplier<T> read, final UnaryOperator<T> copy) {
+
+		final Pending mine = new Pending();
+		final Pending current = pending.compute(key, (k, p) -> {
+			if (p == null)
+				return mine;
+
+			p.waiters++;
+			return p;
+		});
+		requests.increment();
+
+		if (current != mine) {
+			final T value;
+			try {
+				value = (T)current.result.join();
+			} catch (final CompletionException e) {
+				if (e.getCause() instanceof RuntimeException)
+					throw (RuntimeException)e.getCause();
+				else if (e.getCause() instanceof Error)
+					throw (Error)e.getCause();
+
+				throw new N5Exception("Failed to read from " + getURI(), e.getCause());
+			}
+
+			if (value == null) {
+				coalesced.increment();
+				return null;
+			}
+
+			final T own = copy.apply(value);
+			if (own == null)
+				return read.get();
+
+			coalesced.increment();
+			return own;
+		}
+
+		final T value;
+		try {
+			value = read.get();
+		} catch (final Throwable e) {
+			pending.remove(key, mine);
+			mine.result.completeExceptionally(e);
+			throw e;
+		}
+
+		// no caller can join once removed, so the number of waiters is final
+		pending.remove(key, mine);
+		mine.result.complete(value);
+		if (mine.waiters == 0 || value == null)
+			return value;
+
+		// the waiters copy the value, keep it unmodified
+		final T own = copy.apply(value);
+		return own == null ? value : own;
+	}
+
+	@SuppressWarnings("unchecked")
+	private static <T> T copyBlock(final T block) {
+
+		return (T)BlockCache.copy((DataBlock<?>)block);
+	}
+
+	/**
+	 * Copies a json attribute.
+	 */
+	@SuppressWarnings("unchecked")
+	protected static <T> T copyJson(final T json) {
+
+		return (T)((JsonElement)json).deepCopy();
+	}
+
+	private static boolean isJson(final Type type) {
+
+		return type instanceof Class && JsonElement.class.isAssignableFrom((Class<?>)type);
+	}
+
+	@Override
+	public DataBlock<?> readBlock(final String pathName, final DatasetAttributes datasetAttributes, final long... gridPosition) {
+
+		return coalesce(Arrays.asList(new Key(getURI(), pathName, false, gridPosition), new Layout(datasetAttributes)),
+				() -> reader.readBlock(pathName, datasetAttributes, gridPosition),
+				CoalescingN5Reader::copyBlock);
+	}
+
+	@Override
+	public DataBlock<?> readChunk(final String pathName, final DatasetAttributes datasetAttributes, final long... gridPosition) {
+
+		return coalesce(Arrays.asList(new Key(getURI(), pathName, true, gridPosition), new Layout(datasetAttributes)),
+				() -> reader.readChunk(pathName, datasetAttributes, gridPosition),
+				CoalescingN5Reader::copyBlock);
+	}
+
+	@Override
+	public <T> T getAttribute(final String pathName, final String key, final Class<T> clazz) throws N5Exception {
+
+		if (!isJson(clazz))
+			return reader.getAttribute(pathName, key, clazz);
+
+		return coalesce(Arrays.asList(BlockCache.normalize(pathName), key, clazz),
+				() -> reader.getAttribute(pathName, key, clazz),
+				CoalescingN5Reader::copyJson);
+	}
+
+	@Override
+	public <T> T getAttribute(final String pathName, final String key, final Type type) throws N5Exception {
+
+		if (!isJson(type))
+			return reader.getAttribute(pathName, key, type);
+
+		return coalesce(Arrays.asList(BlockCache.normalize(pathName), key, type),
+				() -> reader.getAttribute(pathName, key, type),
+				CoalescingN5Reader::copyJson);
+	}
+
+	private static class Pending {
+
+		final CompletableFuture<Object> result = new CompletableFuture<>();
+
+		/**
+		 * Only changed while the pending read is in the map.
+		 */
+		int waiters;
+	}
+
+}
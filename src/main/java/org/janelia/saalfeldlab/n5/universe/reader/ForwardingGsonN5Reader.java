@@ -0,0 +1,43 @@
+package org.janelia.saalfeldlab.n5.universe.reader;
+
+import org.janelia.saalfeldlab.n5.GsonN5Reader;
+import org.janelia.saalfeldlab.n5.N5Exception;
+import org.janelia.saalfeldlab.n5.N5Reader;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+
+/**
+ * A {@link GsonN5Reader} that forwards its json attributes to the
+ * {@link GsonN5Reader} it wraps.
+ * <p>
+ * Implemented by the {@link ForwardingN5Reader}s of {@link GsonN5Reader}s,
+ * so that code which reads attributes as json works with the wrapped readers
+ * too.
+ */
+public interface ForwardingGsonN5Reader extends GsonN5Reader {
+
+	/**
+	 * @return the reader that calls are forwarded to, a {@link GsonN5Reader}
+	 */
+	N5Reader getReader();
+
+	@Override
+	default Gson getGson() {
+
+		return ((GsonN5Reader)getReader()).getGson();
+	}
+
+	@Override
+	default String getAttributesKey() {
+
+		return ((GsonN5Reader)getReader()).getAttributesKey();
+	}
+
+	@Override
+	default JsonElement getAttributes(final String pathName) throws N5Exception.N5IOException {
+
+		return ((GsonN5Reader)getReader()).getAttributes(pathName);
+	}
+
+}
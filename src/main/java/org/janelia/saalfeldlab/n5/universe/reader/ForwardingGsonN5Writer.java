@@ -0,0 +1,20 @@
+package org.janelia.saalfeldlab.n5.universe.reader;
+
+import org.janelia.saalfeldlab.n5.GsonN5Writer;
+import org.janelia.saalfeldlab.n5.N5Exception;
+
+import com.google.gson.JsonElement;
+
+/**
+ * A {@link GsonN5Writer} that forwards its json attributes to the
+ * {@link GsonN5Writer} it wraps.
+ */
+public interface ForwardingGsonN5Writer extends ForwardingGsonN5Reader, GsonN5Writer {
+
+	@Override
+	default void setAttributes(final String groupPath, final JsonElement attributes) throws N5Exception {
+
+		((GsonN5Writer)getReader()).setAttributes(groupPath, attributes);
+	}
+
+}
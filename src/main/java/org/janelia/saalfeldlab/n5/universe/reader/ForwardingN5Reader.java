@@ -0,0 +1,127 @@
+package org.janelia.saalfeldlab.n5.universe.reader;
+
+import java.lang.reflect.Type;
+import java.net.URI;
+import java.util.Map;
+
+import org.janelia.saalfeldlab.n5.DataBlock;
+import org.janelia.saalfeldlab.n5.DatasetAttributes;
+import org.janelia.saalfeldlab.n5.N5Exception;
+import org.janelia.saalfeldlab.n5.N5Reader;
+
+/**
+ * An {@link N5Reader} that forwards all calls to another reader. Extended by
+ * readers that add behavior to some of the calls.
+ */
+public class ForwardingN5Reader implements N5Reader {
+
+	protected final N5Reader reader;
+
+	public ForwardingN5Reader(final N5Reader reader) {
+
+		this.reader = reader;
+	}
+
+	/**
+	 * @return the reader that calls are forwarded to
+	 */
+	public N5Reader getReader() {
+
+		return reader;
+	}
+
+	/**
+	 * Returns the reader that a chain of forwarding readers finally forwards
+	 * to. Use this to check the type of the underlying container.
+	 *
+	 * @param n5 a reader
+	 * @return the innermost reader, or n5 itself if it does not forward
+	 */
+	public static N5Reader unwrap(final N5Reader n5) {
+
+		N5Reader inner = n5;
+		while (inner instanceof ForwardingN5Reader)
+			inner = ((ForwardingN5Reader)inner).getReader();
+
+		return inner;
+	}
+
+	@Override
+	public <T> T getAttribute(final String pathName, final String key, final Class<T> clazz) throws N5Exception {
+
+		return reader.getAttribute(pathName, key, clazz);
+	}
+
+	@Override
+	public <T> T getAttribute(final String pathName, final String key, final Type type) throws N5Exception {
+
+		return reader.getAttribute(pathName, key, type);
+	}
+
+	@Override
+	public DatasetAttributes getDatasetAttributes(final String pathName) throws N5Exception {
+
+		return reader.getDatasetAttributes(pathName);
+	}
+
+	@Override
+	public DataBlock<?> readChunk(final String pathName, final DatasetAttributes datasetAttributes, final long... gridPosition) {
+
+		return reader.readChunk(pathName, datasetAttributes, gridPosition);
+	}
+
+	@Override
+	public DataBlock<?> readBlock(final String pathName, final DatasetAttributes datasetAttributes, final long... gridPosition) {
+
+		return reader.readBlock(pathName, datasetAttributes, gridPosition);
+	}
+
+	@Override
+	public boolean blockExists(final String pathName, final DatasetAttributes datasetAttributes, final long... gridPosition) throws N5Exception {
+
+		return reader.blockExists(pathName, datasetAttributes, gridPosition);
+	}
+
+	@Override
+	public boolean exists(final String pathName) {
+
+		return reader.exists(pathName);
+	}
+
+	@Override
+	public boolean datasetExists(final String pathName) throws N5Exception {
+
+		return reader.datasetExists(pathName);
+	}
+
+	@Override
+	public String[] list(final String pathName) throws N5Exception {
+
+		return reader.list(pathName);
+	}
+
+	@Override
+	public Map<String, Class<?>> listAttributes(final String pathName) throws N5Exception {
+
+		return reader.listAttributes(pathName);
+	}
+
+	@Override
+	public String groupPath(final String... nodes) {
+
+		return reader.groupPath(nodes);
+	}
+
+	@Override
+	public URI getURI() {
+
+		return reader.getURI();
+	}
+
+	@Override
+	public void close() {
+
+		reader.close();
+	}
+
+}
@@ -0,0 +1,28 @@
+package org.janelia.saalfeldlab.n5.universe.reader;
+
+import java.util.function.Supplier;
+
+import org.janelia.saalfeldlab.n5.GsonN5Reader;
+import org.janelia.saalfeldlab.n5.N5Exception;
+import org.janelia.saalfeldlab.n5.N5Reader;
+
+import com.google.gson.JsonElement;
+
+/**
+ * A {@link PooledN5Reader} of {@link GsonN5Reader}s. Attributes are read by
+ * the pooled readers like all other calls.
+ */
+public class PooledGsonN5Reader extends PooledN5Reader implements ForwardingGsonN5Reader {
+
+	protected PooledGsonN5Reader(final Supplier<? extends N5Reader> factory, final int size, final N5Reader first) {
+
+		super(factory, size, first);
+	}
+
+	@Override
+	public JsonElement getAttributes(final String pathName) throws N5Exception.N5IOException {
+
+		return apply(n5 -> ((GsonN5Reader)n5).getAttributes(pathName));
+	}
+
+}
@@ -0,0 +1,239 @@
+package org.janelia.saalfeldlab.n5.universe.reader;
+
+import java.lang.reflect.Type;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import org.janelia.saalfeldlab.n5.DataBlock;
+import org.janelia.saalfeldlab.n5.DatasetAttributes;
+import org.janelia.saalfeldlab.n5.GsonN5Reader;
+import org.janelia.saalfeldlab.n5.N5Exception;
+import org.janelia.saalfeldlab.n5.N5Reader;
+
+/**
+ * An {@link N5Reader} that dispatches calls to a pool of readers of the same
+ * container.
+ * <p>
+ * Useful for readers that are not thread safe or serialize access per
+ * instance: concurrent calls are spread over independent readers instead of
+ * waiting for a single one. It does not help readers that serialize access
+ * between instances. JHDF5 synchronizes all calls into the native HDF5
+ * library, so a pool of HDF5 readers is no faster than one, measure with
+ * {@code PooledReadBenchmarks} before pooling a format. Readers are created when
+ * needed, up to the size of the pool, the first one when the pool is
+ * created so that opening fails early. The first reader is the one this
+ * reader forwards to, so {@link ForwardingN5Reader#unwrap(N5Reader)} finds
+ * the type of the container.
+ * <p>
+ * Use {@link #open(Supplier, int)} to keep the {@link GsonN5Reader}
+ * interface of the pooled readers.
+ */
+public class PooledN5Reader extends ForwardingN5Reader {
+
+	private final Supplier<? extends N5Reader> factory;
+
+	private final int size;
+
+	/**
+	 * All open readers, idle or in use. Also the lock of the pool.
+	 */
+	private final List<N5Reader> readers = new ArrayList<>();
+
+	private final ArrayDeque<N5Reader> idle = new ArrayDeque<>();
+
+	private boolean closed = false;
+
+	/**
+	 * @param factory opens a new reader of the container
+	 * @param size the maximum number of readers
+	 */
+	public PooledN5Reader(final Supplier<? extends N5Reader> factory, final int size) {
+
+		this(factory, size, openFirst(factory, size));
+	}
+
+	protected PooledN5Reader(final Supplier<? extends N5Reader> factory, final int size, final N5Reader first) {
+
+		super(first);
+		this.factory = factory;
+		this.size = size;
+
+		readers.add(first);
+		idle.add(first);
+	}
+
+	/**
+	 * Creates a pool, that is a {@link GsonN5Reader} if the pooled readers are.
+	 *
+	 * @param factory opens a new reader of the container
+	 * @param size the maximum number of readers
+	 * @return the pool
+	 */
+	public static PooledN5Reader open(final Supplier<? extends N5Reader> factory, final int size) {
+
+		final N5Reader first = openFirst(factory, size);
+		if (first instanceof GsonN5Reader)
+			return new PooledGsonN5Reader(factory, size, first);
+
+		return new PooledN5Reader(factory, size, first);
+	}
+
+	private static N5Reader openFirst(final Supplier<? extends N5Reader> factory, final int size) {
+
+		if (size < 1)
+			throw new IllegalArgumentException("Pool size must be positive, was " + size);
+
+		return factory.get();
+	}
+
+	public int getPoolSize() {
+
+		return size;
+	}
+
+	/**
+	 * @return the class of the pooled readers
+	 */
+	public Class<? extends N5Reader> getReaderClass() {
+
+		return reader.getClass();
+	}
+
+	private N5Reader acquire() {
+
+		synchronized (readers) {
+			while (true) {
+				if (closed)
+					throw new N5Exception("Reader of " + getURI() + " is closed");
+
+				if (!idle.isEmpty())
+					return idle.poll();
+
+				if (readers.size() < size) {
+					final N5Reader created = factory.get();
+					readers.add(created);
+					return created;
+				}
+
+				try {
+					readers.wait();
+				} catch (final InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new N5Exception("Interrupted while waiting for a reader of " + getURI(), e);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Returns a reader to the pool, or closes it if the pool was closed while
+	 * it was in use.
+	 */
+	private void release(final N5Reader n5) {
+
+		synchronized (readers) {
+			if (!closed) {
+				idle.add(n5);
+				readers.notify();
+				return;
+			}
+			readers.remove(n5);
+		}
+		n5.close();
+	}
+
+	protected <T> T apply(final Function<N5Reader, T> call) {
+
+		final N5Reader n5 = acquire();
+		try {
+			return call.apply(n5);
+		} finally {
+			release(n5);
+		}
+	}
+
+	@Override
+	public <T> T getAttribute(final String pathName, final String key, final Class<T> clazz) throws N5Exception {
+
+		return apply(n5 -> n5.getAttribute(pathName, key, clazz));
+	}
+
+	@Override
+	public <T> T getAttribute(final String pathName, final String key, final Type type) throws N5Exception {
+
+		return apply(n5 -> n5.getAttribute(pathName, key, type));
+	}
+
+	@Override
+	public DatasetAttributes getDatasetAttributes(final String pathName) throws N5Exception {
+
+		return apply(n5 -> n5.getDatasetAttributes(pathName));
+	}
+
+	@Override
+	public DataBlock<?> readChunk(final String pathName, final DatasetAttributes datasetAttributes, final long... gridPosition) {
+
+		return apply(n5 -> n5.readChunk(pathName, datasetAttributes, gridPosition));
+	}
+
+	@Override
+	public DataBlock<?> readBlock(final String pathName, final DatasetAttributes datasetAttributes, final long... gridPosition) {
+
+		return apply(n5 -> n5.readBlock(pathName, datasetAttributes, gridPosition));
+	}
+
+	@Override
+	public boolean blockExists(final String pathName, final DatasetAttributes datasetAttributes, final long... gridPosition) throws N5Exception {
+
+		return apply(n5 -> n5.blockExists(pathName, datasetAttributes, gridPosition));
+	}
+
+	@Override
+	public boolean exists(final String pathName) {
+
+		return apply(n5 -> n5.exists(pathName));
+	}
+
+	@Override
+	public boolean datasetExists(final String pathName) throws N5Exception {
+
+		return apply(n5 -> n5.datasetExists(pathName));
+	}
+
+	@Override
+	public String[] list(final String pathName) throws N5Exception {
+
+		return apply(n5 -> n5.list(pathName));
+	}
+
+	@Override
+	public Map<String, Class<?>> listAttributes(final String pathName) throws N5Exception {
+
+		return apply(n5 -> n5.listAttributes(pathName));
+	}
+
+	/**
+	 * Closes the idle readers. Readers in use are closed when the calls that
+	 * use them return, later calls fail.
+	 */
+	@Override
+	public void close() {
+
+		final List<N5Reader> toClose;
+		synchronized (readers) {
+			closed = true;
+			toClose = new ArrayList<>(idle);
+			readers.removeAll(toClose);
+			idle.clear();
+			readers.notifyAll();
+		}
+
+		for (final N5Reader n5 : toClose)
+			n5.close();
+	}
+
+}
@@ -0,0 +1,1052 @@
+package org.janelia.saalfeldlab.n5.universe.translation;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.UnaryOperator;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.janelia.saalfeldlab.n5.universe.container.ContainerMetadataNode;
+import org.janelia.saalfeldlab.n5.universe.translation.NativeContainerTranslation.UnsupportedTreeException;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonNull;
+import com.google.gson.JsonObject;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+/**
+ * Lowers simple jq container translations to {@link NativeContainerTranslation}s.
+ * <p>
+ * A translation can be compiled if it includes the "n5" library, optionally
+ * defines functions without arguments ({@code def name: body;}), and is a
+ * pipeline ({@code f | g | ...}) of:
+ * <ul>
+ * <li>{@code .}</li>
+ * <li>{@code moveSubTree( $src; $dst )}</li>
+ * <li>{@code treeAddAttrs( $path; $attrs )}</li>
+ * <li>{@code treeEditAttrs( $path; e )}</li>
+ * <li>{@code treeDefaultAttrs( $path; $attrs )}</li>
+ * <li>{@code treeRenameAttr( $old; $new )}</li>
+ * <li>{@code treeReverseAttr( $key )}</li>
+ * <li>{@code treePushAttrToChildren( $key )}</li>
+ * <li>{@code treePullAttrFromChild( $child; $key )}</li>
+ * <li>{@code .attributes |= e}</li>
+ * <li>{@code walk( if hasAttributes then f else . end )}, also with
+ * {@code isDataset}, where f is a pipeline of {@code .attributes |= e}</li>
+ * </ul>
+ * where the paths, keys and attributes are JSON literals and e is a pipeline of
+ * these edits of an attributes object:
+ * <ul>
+ * <li>{@code . + {...}} and {@code {...} + .}, whose values are JSON literals
+ * or keys of the attributes ({@code .key} or {@code .key?})</li>
+ * <li>{@code del( .key )}</li>
+ * <li>{@code .key |= reverse}</li>
+ * <li>{@code with_entries( .key |= if . == "old" then "new" else . end )}</li>
+ * <li>{@code if has( "key" ) then e else . end}</li>
+ * </ul>
+ * Other translations fall back to {@link JqContainerTranslation}.
+ * <p>
+ * The compiled translation produces the tree that the jq query outputs, also
+ * for missing paths and nodes without attributes. Where it cannot, for
+ * example if an attribute value has an "attributes" key that the jq walk
+ * would also edit, it runs the jq query instead.
+ */
+public class ContainerTranslationCompiler {
+
+	private static final Pattern INCLUDE = Pattern.compile("^include\\s+\"n5\"\\s*;");
+
+	private static final Pattern DEF = Pattern.compile("^def\\s+([A-Za-z_][A-Za-z0-9_]*)\\s*:(.*)$", Pattern.DOTALL);
+
+	private static final Pattern IDENTIFIER = Pattern.compile("^[A-Za-z_][A-Za-z0-9_]*$");
+
+	private static final Pattern CALL = Pattern.compile("^([A-Za-z_][A-Za-z0-9_]*)\\s*\\(");
+
+	private static final Pattern IF = Pattern.compile("^if\\s+(.+?)\\s+then\\s+(.+)\\s+else\\s+\\.\\s+end$", Pattern.DOTALL);
+
+	private static final Pattern UPDATE = Pattern.compile("^(\\.[A-Za-z_][A-Za-z0-9_]*|\\.\"(?:[^\"\\\\]|\\\\.)*\")\\s*\\|=(.+)$", Pattern.DOTALL);
+
+	private static final Pattern KEY_REF = Pattern.compile("^\\.([A-Za-z_][A-Za-z0-9_]*|\"(?:[^\"\\\\]|\\\\.)*\")\\??$");
+
+	private static final Pattern RENAME = Pattern.compile(
+			"^with_entries\\s*\\(\\s*\\.key\\s*\\|=\\s*if\\s+\\.\\s*==\\s*(\"(?:[^\"\\\\]|\\\\.)*\")\\s+then\\s+(\"(?:[^\"\\\\]|\\\\.)*\")\\s+else\\s+\\.\\s+end\\s*\\)$",
+			Pattern.DOTALL);
+
+	private static final Pattern HAS = Pattern.compile("^has\\s*\\(\\s*(\"(?:[^\"\\\\]|\\\\.)*\")\\s*\\)$");
+
+	/**
+	 * The n5 library conditions the walk supports, by their definitions.
+	 */
+	private static final Map<String, String> CONDITIONS = new HashMap<>();
+	static {
+		CONDITIONS.put("hasAttributes", "type == \"object\" and has(\"attributes\")");
+		CONDITIONS.put("isDataset", "type == \"object\" and has(\"attributes\") and (.attributes | has(\"dimensions\") and has(\"dataType\") )");
+	}
+
+	/**
+	 * Functions whose meaning the compiler assumes, they may not be redefined.
+	 */
+	private static final Set<String> RESERVED = new HashSet<>(Arrays.asList(
+			"walk", "moveSubTree", "treeAddAttrs", "treeEditAttrs", "treeWalkUp", "treeDefaultAttrs", "treeRenameAttr",
+			"treeReverseAttr", "treePushAttrToChildren", "treePullAttrFromChild", "toTreePath", "getSubTree", "setpath", "getpath",
+			"delpaths", "del", "has", "reverse", "with_entries", "to_entries", "from_entries", "type"));
+
+	private static final int MAX_DEPTH = 32;
+
+	private static final TypeAdapter<JsonElement> jsonAdapter = new Gson().getAdapter(JsonElement.class);
+
+	private final Map<String, String> defs;
+
+	private ContainerTranslationCompiler(final Map<String, String> defs) {
+
+		this.defs = defs;
+	}
+
+	/**
+	 * Compiles the translation to native operations if possible, otherwise
+	 * returns a translation that runs the jq query.
+	 *
+	 * @param translation the jq translation
+	 * @param gson the gson used by the jq fallback
+	 * @return the translation
+	 */
+	public static ContainerTranslation compile(final String translation, final Gson gson) {
+
+		final Optional<NativeContainerTranslation> nativeTranslation = compileNative(translation, gson);
+		if (nativeTranslation.isPresent())
+			return nativeTranslation.get();
+
+		return new JqContainerTranslation(translation, gson);
+	}
+
+	/**
+	 * Compiles the translation to native operations, with the reader
+	 * independent gson for inputs it cannot translate natively.
+	 *
+	 * @param translation the jq translation
+	 * @return the native translation, or empty if the translation is not in
+	 *         the supported subset
+	 */
+	public static Optional<NativeContainerTranslation> compileNative(final String translation) {
+
+		return compileNative(translation, JqUtils.buildGson(null));
+	}
+
+	/**
+	 * Compiles the translation to native operations.
+	 *
+	 * @param translation the jq translation
+	 * @param gson the gson that converts trees to json, and that is used by
+	 *            the jq fallback
+	 * @return the native translation, or empty if the translation is not in
+	 *         the supported subset
+	 */
+	public static Optional<NativeContainerTranslation> compileNative(final String translation, final Gson gson) {
+
+		// with null members the jq input has keys that native trees do not
+		if (translation == null || gson.serializeNulls())
+			return Optional.empty();
+
+		final Matcher m = INCLUDE.matcher(translation);
+		if (!m.find())
+			return Optional.empty();
+
+		final List<String> statements = splitTopLevel(translation.substring(m.end()), ';');
+		if (statements == null)
+			return Optional.empty();
+
+		final Map<String, String> defs = new HashMap<>();
+		for (final String statement : statements.subList(0, statements.size() - 1)) {
+			final Matcher d = DEF.matcher(statement.trim());
+			if (!d.matches() || defs.containsKey(d.group(1)))
+				return Optional.empty();
+
+			final String name = d.group(1);
+			final String body = d.group(2).trim();
+			if (CONDITIONS.containsKey(name)) {
+				// local copies of the library definitions are fine
+				if (!normalize(CONDITIONS.get(name)).equals(normalize(body)))
+					return Optional.empty();
+			} else if (RESERVED.contains(name))
+				return Optional.empty();
+			else
+				defs.put(name, body);
+		}
+
+		final List<Consumer<ContainerMetadataNode>> ops = new ContainerTranslationCompiler(defs)
+				.treeOperations(statements.get(statements.size() - 1), 0);
+		if (ops == null)
+			return Optional.empty();
+
+		return Optional.of(new NativeContainerTranslation(translation, ops, gson));
+	}
+
+	/**
+	 * Compiles a pipeline applied to the root of the tree.
+	 */
+	private List<Consumer<ContainerMetadataNode>> treeOperations(final String expression, final int depth) {
+
+		if (depth > MAX_DEPTH)
+			return null;
+
+		final List<String> stages = splitTopLevel(expression, '|');
+		if (stages == null)
+			return null;
+
+		final List<Consumer<ContainerMetadataNode>> ops = new ArrayList<>();
+		for (final String stage : stages) {
+			final String s = stage.trim();
+			if (s.equals("."))
+				continue;
+
+			final String inner = enclosed(s);
+			if (inner != null) {
+				final List<Consumer<ContainerMetadataNode>> innerOps = treeOperations(inner, depth + 1);
+				if (innerOps == null)
+					return null;
+
+				ops.addAll(innerOps);
+			} else if (defs.containsKey(s)) {
+				final List<Consumer<ContainerMetadataNode>> defOps = treeOperations(defs.get(s), depth + 1);
+				if (defOps == null)
+					return null;
+
+				ops.addAll(defOps);
+			} else if (UPDATE.matcher(s).matches()) {
+				// an edit of the root node
+				final Consumer<ContainerMetadataNode> op = nodeOperation(s, depth + 1);
+				if (op == null)
+					return null;
+
+				ops.add(op);
+			} else {
+				final Consumer<ContainerMetadataNode> op = compileCall(s, depth + 1);
+				if (op == null)
+					return null;
+
+				ops.add(op);
+			}
+		}
+		return ops;
+	}
+
+	private Consumer<ContainerMetadataNode> compileCall(final String call, final int depth) {
+
+		final Matcher m = CALL.matcher(call);
+		if (!m.find() || enclosed(call.substring(m.end() - 1)) == null)
+			return null;
+
+		final List<String> args = splitTopLevel(call.substring(m.end(), call.length() - 1), ';');
+		if (args == null)
+			return null;
+
+		switch (m.group(1)) {
+		case "moveSubTree":
+			if (args.size() == 2) {
+				final JsonElement src = parseLiteral(args.get(0));
+				final JsonElement dst = parseLiteral(args.get(1));
+				if (!isString(src) || !isString(dst))
+					return null;
+
+				final List<String> srcPath = treePath(src.getAsString());
+				final List<String> dstPath = treePath(dst.getAsString());
+				if (srcPath.isEmpty() || dstPath.isEmpty())
+					return null;
+
+				return root -> moveSubTree(root, srcPath, dstPath);
+			}
+			break;
+		case "treeAddAttrs":
+			if (args.size() == 2) {
+				final JsonElement path = parseLiteral(args.get(0));
+				final JsonElement attrs = parseLiteral(args.get(1));
+				if (!isString(path) || attrs == null || !attrs.isJsonObject())
+					return null;
+
+				final List<String> treePath = treePath(path.getAsString());
+				final JsonObject add = attrs.getAsJsonObject();
+				return root -> editAttributes(root, treePath, a -> plus(a, add.deepCopy()));
+			}
+			break;
+		case "treeEditAttrs":
+			if (args.size() == 2) {
+				final JsonElement path = parseLiteral(args.get(0));
+				final UnaryOperator<JsonElement> edit = attributesEdit(args.get(1), depth + 1);
+				if (!isString(path) || edit == null)
+					return null;
+
+				final List<String> treePath = treePath(path.getAsString());
+				return root -> editAttributes(root, treePath, edit);
+			}
+			break;
+		case "walk":
+			if (args.size() == 1)
+				return walk(args.get(0).trim(), depth + 1);
+
+			break;
+		case "treeDefaultAttrs":
+			if (args.size() == 2) {
+				final JsonElement path = parseLiteral(args.get(0));
+				final JsonElement attrs = parseLiteral(args.get(1));
+				if (!isString(path) || attrs == null || !attrs.isJsonObject())
+					return null;
+
+				final List<String> treePath = treePath(path.getAsString());
+				final JsonObject defaults = attrs.getAsJsonObject();
+				return root -> editAttributes(root, treePath, a -> plus(defaults.deepCopy(), a));
+			}
+			break;
+		case "treeRenameAttr":
+			if (args.size() == 2) {
+				final JsonElement oldKey = parseLiteral(args.get(0));
+				final JsonElement newKey = parseLiteral(args.get(1));
+				if (!isString(oldKey) || !isString(newKey))
+					return null;
+
+				final String from = oldKey.getAsString();
+				final String to = newKey.getAsString();
+				return root -> treeWalkUp(root, n -> renameAttribute(n, from, to));
+			}
+			break;
+		case "treeReverseAttr":
+			if (args.size() == 1) {
+				final JsonElement key = parseLiteral(args.get(0));
+				if (!isString(key))
+					return null;
+
+				final String k = key.getAsString();
+				return root -> treeWalkUp(root, n -> reverseAttribute(n, k));
+			}
+			break;
+		case "treePushAttrToChildren":
+			if (args.size() == 1) {
+				final JsonElement key = parseLiteral(args.get(0));
+				if (!isString(key))
+					return null;
+
+				final String k = key.getAsString();
+				return root -> treeWalkUp(root, n -> pushAttributeToChildren(n, k));
+			}
+			break;
+		case "treePullAttrFromChild":
+			if (args.size() == 2) {
+				final JsonElement child = parseLiteral(args.get(0));
+				final JsonElement key = parseLiteral(args.get(1));
+				if (!isString(child) || !isString(key))
+					return null;
+
+				final String c = child.getAsString();
+				final String k = key.getAsString();
+				return root -> treeWalkUp(root, n -> pullAttributeFromChild(n, c, k));
+			}
+			break;
+		}
+		return null;
+	}
+
+	/**
+	 * Compiles {@code if cond then f else . end}, the argument of walk.
+	 */
+	private Consumer<ContainerMetadataNode> walk(final String expression, final int depth) {
+
+		final Matcher m = IF.matcher(expression);
+		if (!m.matches())
+			return null;
+
+		final String condition = normalize(m.group(1));
+		final boolean datasets;
+		if (condition.equals("hasAttributes") || condition.equals(normalize(CONDITIONS.get("hasAttributes"))))
+			datasets = false;
+		else if (condition.equals("isDataset") || condition.equals(normalize(CONDITIONS.get("isDataset"))))
+			datasets = true;
+		else
+			return null;
+
+		final List<Consumer<ContainerMetadataNode>> ops = nodeOperations(m.group(2), depth + 1);
+		if (ops == null)
+			return null;
+
+		return root -> walkUp(root, node -> {
+			if (node.getContainerAttributes() == null)
+				return;
+
+			if (datasets && !(has(node.getContainerAttributes(), "dimensions") && has(node.getContainerAttributes(), "dataType")))
+				return;
+
+			for (final Consumer<ContainerMetadataNode> op : ops)
+				op.accept(node);
+		});
+	}
+
+	/**
+	 * Compiles a pipeline applied to one node.
+	 */
+	private List<Consumer<ContainerMetadataNode>> nodeOperations(final String expression, final int depth) {
+
+		if (depth > MAX_DEPTH)
+			return null;
+
+		final List<String> stages = splitTopLevel(expression, '|');
+		if (stages == null)
+			return null;
+
+		final List<Consumer<ContainerMetadataNode>> ops = new ArrayList<>();
+		for (final String stage : stages) {
+			final String s = stage.trim();
+			if (s.equals("."))
+				continue;
+
+			final String inner = enclosed(s);
+			final List<Consumer<ContainerMetadataNode>> nested;
+			if (inner != null)
+				nested = nodeOperations(inner, depth + 1);
+			else if (defs.containsKey(s))
+				nested = nodeOperations(defs.get(s), depth + 1);
+			else {
+				final Consumer<ContainerMetadataNode> op = nodeOperation(s, depth + 1);
+				nested = op == null ? null : Arrays.asList(op);
+			}
+
+			if (nested == null)
+				return null;
+
+			ops.addAll(nested);
+		}
+		return ops;
+	}
+
+	/**
+	 * Compiles {@code .attributes |= e}.
+	 */
+	private Consumer<ContainerMetadataNode> nodeOperation(final String expression, final int depth) {
+
+		final Matcher m = UPDATE.matcher(expression);
+		if (!m.matches() || !m.group(1).equals(".attributes"))
+			return null;
+
+		final UnaryOperator<JsonElement> edit = attributesEdit(m.group(2), depth + 1);
+		if (edit == null)
+			return null;
+
+		return node -> setAttributes(node, edit.apply(toJson(node.getContainerAttributes())));
+	}
+
+	/**
+	 * Compiles a pipeline applied to an attributes object, which is null if
+	 * missing.
+	 */
+	private UnaryOperator<JsonElement> attributesEdit(final String expression, final int depth) {
+
+		if (depth > MAX_DEPTH)
+			return null;
+
+		final List<String> stages = splitTopLevel(expression, '|');
+		if (stages == null)
+			return null;
+
+		final List<UnaryOperator<JsonElement>> edits = new ArrayList<>();
+		for (final String stage : stages) {
+			final String s = stage.trim();
+			if (s.equals("."))
+				continue;
+
+			final UnaryOperator<JsonElement> edit = attributesStage(s, depth + 1);
+			if (edit == null)
+				return null;
+
+			edits.add(edit);
+		}
+
+		return in -> {
+			JsonElement out = in;
+			for (final UnaryOperator<JsonElement> edit : edits)
+				out = edit.apply(out);
+
+			return out;
+		};
+	}
+
+	private UnaryOperator<JsonElement> attributesStage(final String s, final int depth) {
+
+		final String inner = enclosed(s);
+		if (inner != null)
+			return attributesEdit(inner, depth + 1);
+		else if (defs.containsKey(s))
+			return attributesEdit(defs.get(s), depth + 1);
+
+		final Matcher conditional = IF.matcher(s);
+		if (conditional.matches()) {
+			final Matcher has = HAS.matcher(conditional.group(1).trim());
+			final JsonElement key = has.matches() ? parseLiteral(has.group(1)) : null;
+			final UnaryOperator<JsonElement> then = attributesEdit(conditional.group(2), depth + 1);
+			if (!isString(key) || then == null)
+				return null;
+
+			final String k = key.getAsString();
+			return in -> {
+				// has errors on anything but objects and arrays
+				if (in == null || !in.isJsonObject())
+					throw new UnsupportedTreeException();
+
+				return in.getAsJsonObject().has(k) ? then.apply(in) : in;
+			};
+		}
+
+		final Matcher rename = RENAME.matcher(s);
+		if (rename.matches()) {
+			final String from = parseLiteral(rename.group(1)).getAsString();
+			final String to = parseLiteral(rename.group(2)).getAsString();
+			return in -> rename(in, from, to);
+		}
+
+		final Matcher update = UPDATE.matcher(s);
+		if (update.matches()) {
+			final String key = key(update.group(1));
+			if (key == null || !update.group(2).trim().equals("reverse"))
+				return null;
+
+			return in -> reverse(in, key);
+		}
+
+		final Matcher call = CALL.matcher(s);
+		if (call.find() && call.group(1).equals("del")) {
+			final String args = enclosed(s.substring(call.end() - 1));
+			final Matcher ref = args == null ? null : KEY_REF.matcher(args.trim());
+			if (ref == null || !ref.matches() || args.trim().endsWith("?"))
+				return null;
+
+			final String key = key(args.trim());
+			return in -> delete(in, key);
+		}
+
+		final List<String> terms = splitTopLevel(s, '+');
+		if (terms == null || terms.size() != 2)
+			return null;
+
+		final String left = terms.get(0).trim();
+		final String right = terms.get(1).trim();
+		if (left.equals(".")) {
+			final UnaryOperator<JsonElement> object = objectTemplate(right);
+			if (object == null)
+				return null;
+
+			return in -> plus(in, object.apply(in));
+		} else if (right.equals(".")) {
+			final UnaryOperator<JsonElement> object = objectTemplate(left);
+			if (object == null)
+				return null;
+
+			return in -> plus(object.apply(in), in);
+		}
+		return null;
+	}
+
+	/**
+	 * Compiles an object construction whose values are literals or keys of
+	 * the input.
+	 */
+	private static UnaryOperator<JsonElement> objectTemplate(final String s) {
+
+		final JsonElement literal = parseLiteral(s);
+		if (literal != null) {
+			if (!literal.isJsonObject())
+				return null;
+
+			return in -> literal.deepCopy();
+		}
+
+		if (!s.startsWith("{") || !s.endsWith("}"))
+			return null;
+
+		final List<String> entries = splitTopLevel(s.substring(1, s.length() - 1), ',');
+		if (entries == null)
+			return null;
+
+		final Map<String, JsonElement> literals = new LinkedHashMap<>();
+		final Map<String, String> references = new LinkedHashMap<>();
+		for (final String entry : entries) {
+			final List<String> keyValue = splitTopLevel(entry, ':');
+			if (keyValue == null || keyValue.size() != 2)
+				return null;
+
+			final String k = keyValue.get(0).trim();
+			final String name;
+			if (IDENTIFIER.matcher(k).matches())
+				name = k;
+			else {
+				final JsonElement quoted = parseLiteral(k);
+				if (!isString(quoted))
+					return null;
+
+				name = quoted.getAsString();
+			}
+
+			final String v = keyValue.get(1).trim();
+			final JsonElement value = parseLiteral(v);
+			if (value != null)
+				literals.put(name, value);
+			else if (KEY_REF.matcher(v).matches())
+				references.put(name, key(v.endsWith("?") ? v.substring(0, v.length() - 1) : v));
+			else
+				return null;
+
+			// the later of duplicate keys wins
+			if (value != null)
+				references.remove(name);
+			else
+				literals.remove(name);
+		}
+
+		return in -> {
+			final JsonObject out = new JsonObject();
+			literals.forEach((k, v) -> out.add(k, v.deepCopy()));
+			references.forEach((k, ref) -> {
+				final JsonElement v;
+				if (in == null)
+					v = null;
+				else if (in.isJsonObject())
+					v = in.getAsJsonObject().get(ref);
+				else
+					throw new UnsupportedTreeException();
+
+				out.add(k, v == null ? JsonNull.INSTANCE : v.deepCopy());
+			});
+			return out;
+		};
+	}
+
+	/**
+	 * Adds the members of b to a, like jq does for objects and null.
+	 */
+	private static JsonElement plus(final JsonElement a, final JsonElement b) {
+
+		if (a == null)
+			return b;
+		else if (b == null)
+			return a;
+		else if (!a.isJsonObject() || !b.isJsonObject())
+			throw new UnsupportedTreeException();
+
+		final JsonObject out = new JsonObject();
+		for (final Map.Entry<String, JsonElement> e : a.getAsJsonObject().entrySet())
+			out.add(e.getKey(), e.getValue());
+
+		for (final Map.Entry<String, JsonElement> e : b.getAsJsonObject().entrySet())
+			out.add(e.getKey(), e.getValue());
+
+		return out;
+	}
+
+	private static JsonElement delete(final JsonElement in, final String key) {
+
+		if (in == null)
+			return null;
+		else if (!in.isJsonObject())
+			throw new UnsupportedTreeException();
+
+		final JsonObject out = new JsonObject();
+		for (final Map.Entry<String, JsonElement> e : in.getAsJsonObject().entrySet())
+			if (!e.getKey().equals(key))
+				out.add(e.getKey(), e.getValue());
+
+		return out;
+	}
+
+	private static JsonElement reverse(final JsonElement in, final String key) {
+
+		final JsonElement value = in != null && in.isJsonObject() ? in.getAsJsonObject().get(key) : null;
+		if (value == null || !value.isJsonArray())
+			throw new UnsupportedTreeException();
+
+		final JsonArray arr = value.getAsJsonArray();
+		final JsonArray reversed = new JsonArray(arr.size());
+		for (int i = arr.size() - 1; i >= 0; i--)
+			reversed.add(arr.get(i));
+
+		final JsonObject out = new JsonObject();
+		for (final Map.Entry<String, JsonElement> e : in.getAsJsonObject().entrySet())
+			out.add(e.getKey(), e.getKey().equals(key) ? reversed : e.getValue());
+
+		return out;
+	}
+
+	private static JsonElement rename(final JsonElement in, final String from, final String to) {
+
+		if (in == null || !in.isJsonObject())
+			throw new UnsupportedTreeException();
+
+		final JsonObject obj = in.getAsJsonObject();
+		if (!obj.has(from) || from.equals(to))
+			return in;
+
+		// which value jq keeps for duplicate keys depends on the key order
+		if (obj.has(to))
+			throw new UnsupportedTreeException();
+
+		final JsonObject out = new JsonObject();
+		for (final Map.Entry<String, JsonElement> e : obj.entrySet())
+			out.add(e.getKey().equals(from) ? to : e.getKey(), e.getValue());
+
+		return out;
+	}
+
+	/**
+	 * Moves the subtree at src to dst, like the moveSubTree jq definition:
+	 * the destination is set to null if src does not exist.
+	 */
+	private static void moveSubTree(final ContainerMetadataNode root, final List<String> src, final List<String> dst) {
+
+		final ContainerMetadataNode srcParent = getNode(root, src.subList(0, src.size() - 1), false);
+		final ContainerMetadataNode subTree = srcParent == null ? null : srcParent.getChildren().get(src.get(src.size() - 1));
+
+		children(getNode(root, dst.subList(0, dst.size() - 1), true)).put(dst.get(dst.size() - 1), subTree);
+
+		// the jq definition deletes the source after setting the destination
+		final ContainerMetadataNode srcParentAfter = getNode(root, src.subList(0, src.size() - 1), false);
+		if (srcParentAfter != null)
+			srcParentAfter.getChildren().remove(src.get(src.size() - 1));
+	}
+
+	/**
+	 * Edits the attributes of the node at the path, like the treeEditAttrs jq
+	 * definition: missing nodes are created.
+	 */
+	private static void editAttributes(final ContainerMetadataNode root, final List<String> path,
+			final UnaryOperator<JsonElement> edit) {
+
+		final ContainerMetadataNode node;
+		if (path.isEmpty())
+			node = root;
+		else {
+			final ContainerMetadataNode parent = getNode(root, path.subList(0, path.size() - 1), true);
+			final String name = path.get(path.size() - 1);
+			final ContainerMetadataNode child = children(parent).get(name);
+			if (child != null)
+				node = child;
+			else {
+				node = new ContainerMetadataNode((HashMap<String, JsonElement>)null, new HashMap<>(), root.getGson());
+				parent.getChildren().put(name, node);
+			}
+		}
+
+		setAttributes(node, edit.apply(toJson(node.getContainerAttributes())));
+	}
+
+	/**
+	 * Applies the operation to all descendants of the node before the node
+	 * itself, like the jq walk does.
+	 */
+	private static void walkUp(final ContainerMetadataNode node, final Consumer<ContainerMetadataNode> op) {
+
+		if (node.getChildren() != null) {
+			// walk would also edit the map of children
+			if (node.getChildren().containsKey("attributes"))
+				throw new UnsupportedTreeException();
+
+			for (final ContainerMetadataNode child : node.getChildren().values())
+				if (child != null)
+					walkUp(child, op);
+		}
+
+		// and attribute values that look like nodes
+		if (node.getContainerAttributes() != null)
+			for (final JsonElement value : node.getContainerAttributes().values())
+				if (hasAttributesKey(value))
+					throw new UnsupportedTreeException();
+
+		op.accept(node);
+	}
+
+	/**
+	 * Applies the operation to all descendant nodes of the node before the
+	 * node itself, like the treeWalkUp jq definition.
+	 */
+	private static void treeWalkUp(final ContainerMetadataNode node, final Consumer<ContainerMetadataNode> op) {
+
+		if (node.getChildren() != null)
+			for (final ContainerMetadataNode child : node.getChildren().values())
+				if (child != null)
+					treeWalkUp(child, op);
+
+		op.accept(node);
+	}
+
+	private static void renameAttribute(final ContainerMetadataNode node, final String oldKey, final String newKey) {
+
+		final HashMap<String, JsonElement> attrs = node.getContainerAttributes();
+		if (attrs != null && has(attrs, oldKey))
+			attrs.put(newKey, attrs.remove(oldKey));
+	}
+
+	private static void reverseAttribute(final ContainerMetadataNode node, final String key) {
+
+		final HashMap<String, JsonElement> attrs = node.getContainerAttributes();
+		final JsonElement value = attrs == null ? null : attrs.get(key);
+		if (value == null || !value.isJsonArray())
+			return;
+
+		final JsonArray arr = value.getAsJsonArray();
+		final JsonArray reversed = new JsonArray(arr.size());
+		for (int i = arr.size() - 1; i >= 0; i--)
+			reversed.add(arr.get(i));
+
+		attrs.put(key, reversed);
+	}
+
+	private static void pushAttributeToChildren(final ContainerMetadataNode node, final String key) {
+
+		final HashMap<String, JsonElement> attrs = node.getContainerAttributes();
+		if (attrs == null || !has(attrs, key) || node.getChildren() == null)
+			return;
+
+		// null children are not serialized, jq does not see them
+		final List<ContainerMetadataNode> children = new ArrayList<>();
+		for (final ContainerMetadataNode child : node.getChildren().values())
+			if (child != null)
+				children.add(child);
+
+		if (children.isEmpty())
+			return;
+
+		final JsonElement value = attrs.remove(key);
+		for (final ContainerMetadataNode child : children) {
+			if (child.getContainerAttributes() == null)
+				child.setContainerAttributes(new HashMap<>());
+
+			child.getContainerAttributes().put(key, value.deepCopy());
+		}
+	}
+
+	private static void pullAttributeFromChild(final ContainerMetadataNode node, final String childName, final String key) {
+
+		final ContainerMetadataNode child = node.getChildren() == null ? null : node.getChildren().get(childName);
+		if (node.getContainerAttributes() == null || child == null || child.getContainerAttributes() == null
+				|| !has(child.getContainerAttributes(), key))
+			return;
+
+		node.getContainerAttributes().put(key, child.getContainerAttributes().remove(key));
+	}
+
+	private static boolean hasAttributesKey(final JsonElement elem) {
+
+		if (elem == null)
+			return false;
+		else if (elem.isJsonObject()) {
+			for (final Map.Entry<String, JsonElement> e : elem.getAsJsonObject().entrySet())
+				if (e.getKey().equals("attributes") || hasAttributesKey(e.getValue()))
+					return true;
+		} else if (elem.isJsonArray()) {
+			for (final JsonElement e : elem.getAsJsonArray())
+				if (hasAttributesKey(e))
+					return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Returns the node at the path, creating missing nodes without attributes
+	 * like jq setpath does if create is true.
+	 */
+	private static ContainerMetadataNode getNode(final ContainerMetadataNode root, final List<String> path, final boolean create) {
+
+		ContainerMetadataNode node = root;
+		for (final String name : path) {
+			ContainerMetadataNode child = node.getChildren() == null ? null : node.getChildren().get(name);
+			if (child == null) {
+				if (!create)
+					return null;
+
+				child = new ContainerMetadataNode((HashMap<String, JsonElement>)null, new HashMap<>(), root.getGson());
+				children(node).put(name, child);
+			}
+			node = child;
+		}
+		return node;
+	}
+
+	private static Map<String, ContainerMetadataNode> children(final ContainerMetadataNode node) {
+
+		// jq would add the missing children object, but nodes cannot
+		if (node.getChildren() == null)
+			throw new UnsupportedTreeException();
+
+		return node.getChildren();
+	}
+
+	/**
+	 * The attributes as the jq input sees them, without null members.
+	 */
+	private static JsonObject toJson(final Map<String, JsonElement> attributes) {
+
+		if (attributes == null)
+			return null;
+
+		final JsonObject out = new JsonObject();
+		for (final Map.Entry<String, JsonElement> e : attributes.entrySet())
+			if (e.getValue() != null && !e.getValue().isJsonNull())
+				out.add(e.getKey(), e.getValue());
+
+		return out;
+	}
+
+	private static void setAttributes(final ContainerMetadataNode node, final JsonElement attributes) {
+
+		if (attributes == null)
+			node.setContainerAttributes(null);
+		else if (!attributes.isJsonObject())
+			throw new UnsupportedTreeException();
+		else {
+			final HashMap<String, JsonElement> map = new HashMap<>();
+			for (final Map.Entry<String, JsonElement> e : attributes.getAsJsonObject().entrySet())
+				map.put(e.getKey(), e.getValue());
+
+			node.setContainerAttributes(map);
+		}
+	}
+
+	private static boolean has(final Map<String, JsonElement> attributes, final String key) {
+
+		final JsonElement value = attributes.get(key);
+		return value != null && !value.isJsonNull();
+	}
+
+	/**
+	 * Splits a path like the toTreePath jq definition.
+	 */
+	private static List<String> treePath(final String path) {
+
+		final String p = path.startsWith("/") ? path.substring(1) : path;
+		final List<String> out = new ArrayList<>();
+		if (p.isEmpty())
+			return out;
+
+		for (final String s : p.split("/", -1))
+			out.add(s);
+
+		return out;
+	}
+
+	/**
+	 * The key of {@code .key} or {@code ."key"}.
+	 */
+	private static String key(final String ref) {
+
+		final String k = ref.substring(1);
+		if (IDENTIFIER.matcher(k).matches())
+			return k;
+
+		final JsonElement quoted = parseLiteral(k);
+		return isString(quoted) ? quoted.getAsString() : null;
+	}
+
+	private static boolean isString(final JsonElement elem) {
+
+		return elem != null && elem.isJsonPrimitive() && elem.getAsJsonPrimitive().isString();
+	}
+
+	/**
+	 * Removes whitespace outside of string literals.
+	 */
+	private static String normalize(final String s) {
+
+		final StringBuilder out = new StringBuilder();
+		boolean inString = false;
+		for (int i = 0; i < s.length(); i++) {
+			final char c = s.charAt(i);
+			if (inString) {
+				out.append(c);
+				if (c == '\\' && i + 1 < s.length())
+					out.append(s.charAt(++i));
+				else if (c == '"')
+					inString = false;
+			} else if (c == '"') {
+				inString = true;
+				out.append(c);
+			} else if (!Character.isWhitespace(c))
+				out.append(c);
+		}
+		return out.toString();
+	}
+
+	private static JsonElement parseLiteral(final String literal) {
+
+		try (final JsonReader reader = new JsonReader(new StringReader(literal))) {
+			reader.setLenient(false);
+			final JsonElement elem = jsonAdapter.read(reader);
+			if (reader.peek() != JsonToken.END_DOCUMENT)
+				return null;
+
+			return elem;
+		} catch (final IOException | RuntimeException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Returns the trimmed content of a string in parentheses, or null if the
+	 * string does not start with an opening parenthesis that is closed by its
+	 * last character.
+	 */
+	private static String enclosed(final String s) {
+
+		if (!s.startsWith("(") || !s.endsWith(")"))
+			return null;
+
+		final List<String> parts = splitTopLevel(s.substring(1, s.length() - 1), '\0');
+		return parts == null ? null : s.substring(1, s.length() - 1).trim();
+	}
+
+	/**
+	 * Splits the string at occurrences of the separator that are not nested in
+	 * brackets or string literals. The pipe of an update-assignment
+	 * ({@code |=}) does not separate.
+	 *
+	 * @return the parts, or null if brackets or strings are unbalanced
+	 */
+	private static List<String> splitTopLevel(final String s, final char separator) {
+
+		final List<String> parts = new ArrayList<>();
+		int depth = 0;
+		boolean inString = false;
+		int start = 0;
+		for (int i = 0; i < s.length(); i++) {
+			final char c = s.charAt(i);
+			if (inString) {
+				if (c == '\\')
+					i++;
+				else if (c == '"')
+					inString = false;
+			} else if (c == '"')
+				inString = true;
+			else if (c == '(' || c == '[' || c == '{')
+				depth++;
+			else if (c == ')' || c == ']' || c == '}') {
+				if (--depth < 0)
+					return null;
+			} else if (c == separator && depth == 0 && !(c == '|' && i + 1 < s.length() && s.charAt(i + 1) == '=')) {
+				parts.add(s.substring(start, i));
+				start = i + 1;
+			}
+		}
+
+		if (depth != 0 || inString)
+			return null;
+
+		parts.add(s.substring(start));
+		return parts;
+	}
+
+}
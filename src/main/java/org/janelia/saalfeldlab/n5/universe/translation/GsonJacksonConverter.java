@@ -0,0 +1,135 @@
+package org.janelia.saalfeldlab.n5.universe.translation;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonNull;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonPrimitive;
+
+/**
+ * Converts between Gson {@link JsonElement} and Jackson {@link JsonNode} trees
+ * without serializing to an intermediate string.
+ * <p>
+ * Numbers are mapped to the node types Jackson would produce when parsing the
+ * serialized Gson tree, so that jq queries behave as if the tree had been
+ * round-tripped through a string.
+ */
+public class GsonJacksonConverter {
+
+	private static final JsonNodeFactory factory = JsonNodeFactory.instance;
+
+	private GsonJacksonConverter() {}
+
+	public static JsonNode toJsonNode(final JsonElement elem) {
+
+		return toJsonNode(elem, true);
+	}
+
+	/**
+	 * Converts a Gson tree to a Jackson tree.
+	 *
+	 * @param elem the Gson tree
+	 * @param serializeNulls if false, object members with null values are
+	 *            omitted, as Gson does when serializing without
+	 *            {@link com.google.gson.GsonBuilder#serializeNulls()}
+	 * @return the Jackson tree
+	 */
+	public static JsonNode toJsonNode(final JsonElement elem, final boolean serializeNulls) {
+
+		if (elem == null || elem.isJsonNull())
+			return factory.nullNode();
+		else if (elem.isJsonObject()) {
+			final ObjectNode obj = factory.objectNode();
+			for (final Entry<String, JsonElement> e : elem.getAsJsonObject().entrySet()) {
+				if (serializeNulls || (e.getValue() != null && !e.getValue().isJsonNull()))
+					obj.set(e.getKey(), toJsonNode(e.getValue(), serializeNulls));
+			}
+			return obj;
+		} else if (elem.isJsonArray()) {
+			final JsonArray jsonArray = elem.getAsJsonArray();
+			final ArrayNode arr = factory.arrayNode(jsonArray.size());
+			for (final JsonElement e : jsonArray)
+				arr.add(toJsonNode(e, serializeNulls));
+
+			return arr;
+		}
+
+		final JsonPrimitive prim = elem.getAsJsonPrimitive();
+		if (prim.isBoolean())
+			return factory.booleanNode(prim.getAsBoolean());
+		else if (prim.isNumber())
+			return toNumberNode(prim.getAsNumber());
+		else
+			return factory.textNode(prim.getAsString());
+	}
+
+	public static JsonElement toJsonElement(final JsonNode node) {
+
+		if (node == null || node.isNull() || node.isMissingNode())
+			return JsonNull.INSTANCE;
+		else if (node.isObject()) {
+			final JsonObject obj = new JsonObject();
+			final Iterator<Map.Entry<String, JsonNode>> it = node.fields();
+			while (it.hasNext()) {
+				final Map.Entry<String, JsonNode> e = it.next();
+				obj.add(e.getKey(), toJsonElement(e.getValue()));
+			}
+			return obj;
+		} else if (node.isArray()) {
+			final JsonArray arr = new JsonArray(node.size());
+			for (final JsonNode n : node)
+				arr.add(toJsonElement(n));
+
+			return arr;
+		} else if (node.isBoolean())
+			return new JsonPrimitive(node.booleanValue());
+		else if (node.isNumber())
+			return new JsonPrimitive(node.numberValue());
+		else
+			return new JsonPrimitive(node.asText());
+	}
+
+	private static JsonNode toNumberNode(final Number n) {
+
+		if (n instanceof Integer || n instanceof Short || n instanceof Byte)
+			return factory.numberNode(n.intValue());
+		else if (n instanceof Long)
+			return factory.numberNode(n.longValue());
+		else if (n instanceof Double)
+			return factory.numberNode(n.doubleValue());
+		else if (n instanceof BigInteger)
+			return factory.numberNode((BigInteger)n);
+		else if (n instanceof BigDecimal)
+			return factory.numberNode(n.doubleValue());
+
+		// floats and lazily parsed numbers
+		return parseNumber(n.toString());
+	}
+
+	private static JsonNode parseNumber(final String s) {
+
+		if (s.indexOf('.') >= 0 || s.indexOf('e') >= 0 || s.indexOf('E') >= 0)
+			return factory.numberNode(Double.parseDouble(s));
+
+		try {
+			final long l = Long.parseLong(s);
+			if (l >= Integer.MIN_VALUE && l <= Integer.MAX_VALUE)
+				return factory.numberNode((int)l);
+			else
+				return factory.numberNode(l);
+		} catch (final NumberFormatException e) {
+			return factory.numberNode(new BigInteger(s));
+		}
+	}
+
+}
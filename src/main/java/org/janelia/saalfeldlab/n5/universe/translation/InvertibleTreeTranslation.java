@@ -8,17 +8,17 @@ import org.janelia.saalfeldlab.n5.universe.container.ContainerMetadataNode;
 
 public class InvertibleTreeTranslation extends TreeTranslation {
 
-	protected JqContainerTranslation invFun;
+	protected ContainerTranslation invFun;
 
 	public InvertibleTreeTranslation( 
 			final ContainerMetadataNode root,
 			final Gson gson,
 			final String fwd, final String inv) {
 		super( root, gson, fwd );
-		invFun = new JqContainerTranslation( inv, gson );
+		invFun = ContainerTranslationCompiler.compile( inv, gson );
 	}
 
-	public JqContainerTranslation getInverseTranslationFunction() {
+	public ContainerTranslation getInverseTranslationFunction() {
 		return invFun;
 	}
 	
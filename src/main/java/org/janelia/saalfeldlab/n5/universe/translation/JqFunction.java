@@ -1,22 +1,16 @@
 package org.janelia.saalfeldlab.n5.universe.translation;
 
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.gson.Gson;
-import java.util.ArrayList;
-import java.util.List;
+import com.google.gson.JsonElement;
 import java.util.function.Function;
 import net.thisptr.jackson.jq.JsonQuery;
 import net.thisptr.jackson.jq.Scope;
-import net.thisptr.jackson.jq.Versions;
 import net.thisptr.jackson.jq.exception.JsonQueryException;
 
 public class JqFunction<S,T> implements Function<S,T>{
 
 	private final Scope scope;
 
-	private final ObjectMapper objMapper;
-
 	private final Gson gson;
 
 	private final JsonQuery query;
@@ -27,12 +21,11 @@ public class JqFunction<S,T> implements Function<S,T>{
 		this.gson = gson;
 		this.clazz = clazz;
 
-		scope = JqUtils.buildRootScope();
-		objMapper = new ObjectMapper();
+		scope = JqUtils.rootScope();
 
 		JsonQuery qTmp = null;
 		try {
-			qTmp = JsonQuery.compile(JqUtils.resolveImports(translation), Versions.JQ_1_6);
+			qTmp = JqUtils.compile(translation);
 		} catch (JsonQueryException e) {
 			e.printStackTrace();
 		}
@@ -54,18 +47,12 @@ public class JqFunction<S,T> implements Function<S,T>{
 		if( query == null )
 			return null;
 
-		JsonNode jsonNode;
 		try {
-			jsonNode = objMapper.readTree(gson.toJson(src));
-
-			final List<JsonNode> out = new ArrayList<>();
-			query.apply(scope, jsonNode, out::add);
-
-			final StringBuffer stringOutput = new StringBuffer();
-			for (final JsonNode n : out)
-				stringOutput.append(n.toString() + "\n");
+			final JsonElement out = JqUtils.apply(query, scope, gson.toJsonTree(src));
+			if (out == null)
+				return null;
 
-			return gson.fromJson(stringOutput.toString(), clazz);
+			return gson.fromJson(out, clazz);
 
 		} catch (Exception e) {
 			e.printStackTrace();
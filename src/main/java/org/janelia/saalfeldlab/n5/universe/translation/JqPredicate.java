@@ -1,22 +1,17 @@
 package org.janelia.saalfeldlab.n5.universe.translation;
 
 import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.gson.Gson;
-import java.util.ArrayList;
-import java.util.List;
+import com.google.gson.JsonElement;
 import java.util.function.Predicate;
 import net.thisptr.jackson.jq.JsonQuery;
 import net.thisptr.jackson.jq.Scope;
-import net.thisptr.jackson.jq.Versions;
 import net.thisptr.jackson.jq.exception.JsonQueryException;
 
 public class JqPredicate<S> implements Predicate<S>{
 
 	private final Scope scope;
 
-	private final ObjectMapper objMapper;
-
 	private final Gson gson;
 
 	private final JsonQuery query;
@@ -24,12 +19,11 @@ public class JqPredicate<S> implements Predicate<S>{
 	public JqPredicate(final String translation, final Gson gson ) {
 		this.gson = gson;
 
-		scope = JqUtils.buildRootScope();
-		objMapper = new ObjectMapper();
+		scope = JqUtils.rootScope();
 
 		JsonQuery qTmp = null;
 		try {
-			qTmp = JsonQuery.compile(JqUtils.resolveImports(translation), Versions.JQ_1_6);
+			qTmp = JqUtils.compile(translation);
 		} catch (JsonQueryException e) {
 			e.printStackTrace();
 		}
@@ -41,18 +35,27 @@ public class JqPredicate<S> implements Predicate<S>{
 		if( query == null )
 			return false;
 
-		JsonNode jsonNode;
-		try {
-			jsonNode = objMapper.readTree(gson.toJson(src));
+		return test( GsonJacksonConverter.toJsonNode( gson.toJsonTree(src)));
+	}
 
-			final List<JsonNode> out = new ArrayList<>();
-			query.apply(scope, jsonNode, out::add);
+	/**
+	 * Tests an object that was already converted to a Jackson tree, for
+	 * example a part of a larger tree that was converted once.
+	 *
+	 * @param in the Jackson tree
+	 * @return the result of the query
+	 */
+	public boolean test(final JsonNode in) {
+		if( query == null )
+			return false;
 
-			final StringBuffer stringOutput = new StringBuffer();
-			for (final JsonNode n : out)
-				stringOutput.append(n.toString() + "\n");
+		try {
+			final JsonElement out = JqUtils.apply(query, scope, in);
+			if (out == null)
+				return false;
 
-			return gson.fromJson(stringOutput.toString(), Boolean.class);
+			final Boolean result = gson.fromJson(out, Boolean.class);
+			return result != null && result;
 
 		} catch (Exception e) {
 			e.printStackTrace();
@@ -1,7 +1,9 @@
 package org.janelia.saalfeldlab.n5.universe.translation;
 
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 import com.google.gson.ExclusionStrategy;
 import com.google.gson.FieldAttributes;
@@ -11,6 +13,7 @@ import org.janelia.saalfeldlab.n5.DataType;
 import org.janelia.saalfeldlab.n5.GsonN5Reader;
 import org.janelia.saalfeldlab.n5.N5Reader;
 import org.janelia.saalfeldlab.n5.universe.container.ContainerMetadataNode;
+import org.janelia.saalfeldlab.n5.universe.metadata.GsonRegistry;
 import org.janelia.saalfeldlab.n5.universe.metadata.axisTransforms.TransformAxes;
 import org.janelia.saalfeldlab.n5.universe.metadata.axisTransforms.TransformAxesMetadataAdapter;
 import org.janelia.saalfeldlab.n5.universe.metadata.canonical.CanonicalMetadata;
@@ -25,6 +28,7 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.TextNode;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
+import com.google.gson.JsonElement;
 
 import net.thisptr.jackson.jq.BuiltinFunctionLoader;
 import net.thisptr.jackson.jq.Expression;
@@ -40,9 +44,33 @@ import net.thisptr.jackson.jq.path.Path;
 
 public class JqUtils {
 
+	/**
+	 * The number of compiled queries kept by {@link #compile(String)}.
+	 */
+	public static final int MAX_CACHED_QUERIES = 256;
+
+	/**
+	 * Compiled queries by their text, least recently used first. Guarded by
+	 * itself.
+	 */
+	private static final LinkedHashMap<String, JsonQuery> queryCache = new LinkedHashMap<String, JsonQuery>(16, 0.75f, true) {
+
+		private static final long serialVersionUID = 6201471652917043358L;
+
+		@Override
+		protected boolean removeEldestEntry(final Map.Entry<String, JsonQuery> eldest) {
+
+			return size() > MAX_CACHED_QUERIES;
+		}
+	};
+
+	private static volatile Scope sharedRootScope;
+
+	private static volatile String importedTranslations;
+
 	public static String resolveImports(String query) {
 		if (query.startsWith("include")) {
-			return new ImportedTranslations().getTranslation() + query.replaceFirst("^\\s*include\\s+\"n5\"\\s*;", "");
+			return importedTranslations() + query.replaceFirst("^\\s*include\\s+\"n5\"\\s*;", "");
 		}
 		else
 			return query;
@@ -69,6 +97,102 @@ public class JqUtils {
 		return rootScope;
 	}
 
+	/**
+	 * Returns a root scope shared by all queries. {@link JsonQuery}s apply
+	 * themselves in an isolated child scope, so this instance is never modified
+	 * after construction and can be used concurrently.
+	 *
+	 * @return the shared root scope
+	 */
+	public static Scope rootScope() {
+
+		if (sharedRootScope == null) {
+			synchronized (JqUtils.class) {
+				if (sharedRootScope == null)
+					sharedRootScope = buildRootScope();
+			}
+		}
+		return sharedRootScope;
+	}
+
+	/**
+	 * Returns the functions of the "n5" import, read from the classpath once.
+	 *
+	 * @return the imported functions
+	 */
+	private static String importedTranslations() {
+
+		if (importedTranslations == null) {
+			synchronized (JqUtils.class) {
+				if (importedTranslations == null)
+					importedTranslations = new ImportedTranslations().getTranslation();
+			}
+		}
+		return importedTranslations;
+	}
+
+	/**
+	 * Compiles the given query after resolving imports, reusing a previously
+	 * compiled instance for identical queries. Queries are cached by their
+	 * text as given, imports are only resolved when a query is compiled. The
+	 * {@link #MAX_CACHED_QUERIES} most recently used queries are kept.
+	 *
+	 * @param query the jq query
+	 * @return the compiled query
+	 * @throws JsonQueryException if the query does not compile
+	 */
+	public static JsonQuery compile(final String query) throws JsonQueryException {
+
+		synchronized (queryCache) {
+			final JsonQuery cached = queryCache.get(query);
+			if (cached != null)
+				return cached;
+		}
+
+		// compile without holding the lock, concurrent compilations of the same query keep the first
+		final JsonQuery compiled = JsonQuery.compile(resolveImports(query), Versions.JQ_1_6);
+		synchronized (queryCache) {
+			final JsonQuery prev = queryCache.putIfAbsent(query, compiled);
+			return prev != null ? prev : compiled;
+		}
+	}
+
+	/**
+	 * Applies the query to a Gson tree without serializing to an intermediate string.
+	 *
+	 * @param query the compiled query
+	 * @param scope the scope
+	 * @param in the input
+	 * @return the single output of the query, or null if there is none
+	 * @throws JsonQueryException if the query fails or emits more than one output
+	 */
+	public static JsonElement apply(final JsonQuery query, final Scope scope, final JsonElement in) throws JsonQueryException {
+
+		return apply(query, scope, GsonJacksonConverter.toJsonNode(in));
+	}
+
+	/**
+	 * Applies the query to a Jackson tree and converts the result to a Gson tree.
+	 *
+	 * @param query the compiled query
+	 * @param scope the scope
+	 * @param in the input
+	 * @return the single output of the query, or null if there is none
+	 * @throws JsonQueryException if the query fails or emits more than one output
+	 */
+	public static JsonElement apply(final JsonQuery query, final Scope scope, final JsonNode in) throws JsonQueryException {
+
+		final List<JsonNode> out = new ArrayList<>(1);
+		query.apply(scope, in, out::add);
+
+		if (out.isEmpty())
+			return null;
+		else if (out.size() > 1)
+			throw new JsonQueryException("expected a single output but query emitted " + out.size());
+
+		return GsonJacksonConverter.toJsonElement(out.get(0));
+	}
+
 	private static class ExcludeParentGsonFromContainerMetadata implements ExclusionStrategy {
 
 		@Override public boolean shouldSkipField(FieldAttributes f) {
@@ -113,6 +237,10 @@ public class JqUtils {
 	}
 
 	public static Gson buildGson( final N5Reader n5 ) {
+		// adapters for a reader hold on to it, so only share the reader-independent instance
+		if (n5 == null)
+			return GsonRegistry.get(() -> gsonBuilder(null), JqUtils.class);
+
 		return gsonBuilder(n5).create();
 	}
 
@@ -121,7 +249,7 @@ public class JqUtils {
 		JsonNode inJsonNode = objMapper.readTree( in );
 
 		final List< JsonNode > out = new ArrayList<>();
-		JsonQuery.compile( translation, Versions.JQ_1_6 ).apply( scope, inJsonNode, out::add );
+		compile( translation ).apply( scope, inJsonNode, out::add );
 
 		final StringBuffer stringOutput = new StringBuffer();
 		for ( final JsonNode n : out )
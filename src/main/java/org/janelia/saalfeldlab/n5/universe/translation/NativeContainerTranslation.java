@@ -0,0 +1,87 @@
+package org.janelia.saalfeldlab.n5.universe.translation;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Consumer;
+
+import org.janelia.saalfeldlab.n5.universe.container.ContainerMetadataNode;
+
+import com.google.gson.Gson;
+
+/**
+ * A {@link ContainerTranslation} implemented by Java operations on a
+ * {@link ContainerMetadataNode} tree rather than by a jq query.
+ * <p>
+ * Instances are produced by {@link ContainerTranslationCompiler} for
+ * translations that only use supported functions from the "n5" jq library.
+ * The input is never modified; operations are applied to a deep copy.
+ * Trees the operations cannot translate exactly like the jq query are
+ * translated by the jq query.
+ */
+public class NativeContainerTranslation implements ContainerTranslation {
+
+	private final String translation;
+
+	private final List<Consumer<ContainerMetadataNode>> operations;
+
+	private final Gson gson;
+
+	private volatile JqContainerTranslation fallback;
+
+	public NativeContainerTranslation(final String translation, final List<Consumer<ContainerMetadataNode>> operations,
+			final Gson gson) {
+
+		this.translation = translation;
+		this.operations = Collections.unmodifiableList(new ArrayList<>(operations));
+		this.gson = gson;
+	}
+
+	/**
+	 * @return the jq translation this was compiled from
+	 */
+	public String getTranslation() {
+
+		return translation;
+	}
+
+	@Override
+	public ContainerMetadataNode apply(final ContainerMetadataNode root) {
+
+		if (root == null)
+			return null;
+
+		final ContainerMetadataNode out = root.deepCopy();
+		try {
+			for (final Consumer<ContainerMetadataNode> op : operations)
+				op.accept(out);
+		} catch (final UnsupportedTreeException e) {
+			return getFallback().apply(root);
+		}
+
+		return out;
+	}
+
+	private JqContainerTranslation getFallback() {
+
+		if (fallback == null)
+			fallback = new JqContainerTranslation(translation, gson);
+
+		return fallback;
+	}
+
+	/**
+	 * Thrown by operations for trees they cannot translate like the jq query
+	 * would.
+	 */
+	static class UnsupportedTreeException extends RuntimeException {
+
+		private static final long serialVersionUID = -2390429461585931347L;
+
+		UnsupportedTreeException() {
+
+			super(null, null, false, false);
+		}
+	}
+
+}
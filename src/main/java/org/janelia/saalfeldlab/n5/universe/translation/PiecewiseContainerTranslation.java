@@ -1,30 +1,104 @@
 package org.janelia.saalfeldlab.n5.universe.translation;
 
 import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 import java.util.function.Predicate;
 import org.janelia.saalfeldlab.n5.universe.container.ContainerMetadataNode;
 
+import com.fasterxml.jackson.databind.JsonNode;
+
+/**
+ * Applies the first translation whose predicate matches the container.
+ * <p>
+ * If a {@link ForkJoinPool} is given, predicates are evaluated in parallel
+ * in that pool, also when called from another pool. The result is the same as for sequential evaluation: the translation of the
+ * first matching predicate in insertion order is applied, and the remaining
+ * predicates are cancelled as soon as it is known.
+ */
 public class PiecewiseContainerTranslation implements ContainerTranslation {
 
 	private ArrayList<OptionalTranslation> list;
 
+	protected final ForkJoinPool pool;
+
 	public PiecewiseContainerTranslation() {
+		this(null);
+	}
+
+	/**
+	 * @param pool evaluates predicates in parallel, if not null
+	 */
+	public PiecewiseContainerTranslation(final ForkJoinPool pool) {
 		list = new ArrayList<>();
+		this.pool = pool;
 	}
 
 	@Override
 	public ContainerMetadataNode apply(ContainerMetadataNode x) {
-		for( OptionalTranslation t : list )
-			if( t.predicate.test(x))
-				return t.translation.apply(x);
+		final ContainerTranslation t = matchingTranslation(x);
+		if (t != null)
+			return t.apply(x);
 
 		return x;
 	}
-	
+
 	public void add( Predicate<ContainerMetadataNode> pred, 
 			ContainerTranslation translation ) {
 		list.add(new OptionalTranslation(pred, translation));
 	}
+
+	/**
+	 * Returns the translation of the first predicate that matches the given
+	 * node.
+	 *
+	 * @param x the node
+	 * @return the translation or null if no predicate matches
+	 */
+	protected ContainerTranslation matchingTranslation(final ContainerMetadataNode x) {
+
+		return matchingTranslation(x, null);
+	}
+
+	/**
+	 * Returns the translation of the first predicate that matches the given
+	 * node. {@link JqPredicate}s are tested on the given Jackson tree of the
+	 * node instead of converting the node again.
+	 *
+	 * @param x the node
+	 * @param json the node as a Jackson tree, or null
+	 * @return the translation or null if no predicate matches
+	 */
+	protected ContainerTranslation matchingTranslation(final ContainerMetadataNode x, final JsonNode json) {
+
+		if (pool == null || list.size() < 2) {
+			for (OptionalTranslation t : list)
+				if (t.test(x, json))
+					return t.translation;
+
+			return null;
+		}
+
+		// fork only in our own pool, forking in another pool would run there
+		final boolean inPool = ForkJoinTask.getPool() == pool;
+		final List<ForkJoinTask<Boolean>> tests = new ArrayList<>(list.size());
+		for (final OptionalTranslation t : list) {
+			final ForkJoinTask<Boolean> test = ForkJoinTask.adapt(() -> t.test(x, json));
+			tests.add(inPool ? test.fork() : pool.submit(test));
+		}
+
+		try {
+			for (int i = 0; i < tests.size(); i++)
+				if (tests.get(i).join())
+					return list.get(i).translation;
+
+			return null;
+		} finally {
+			for (final ForkJoinTask<Boolean> test : tests)
+				test.cancel(false);
+		}
+	}
 	
 	private static class OptionalTranslation {
 		public Predicate<ContainerMetadataNode> predicate;
@@ -36,6 +110,13 @@ public class PiecewiseContainerTranslation implements ContainerTranslation {
 			this.predicate = predicate;
 			this.translation = translation;
 		}
+
+		public boolean test( final ContainerMetadataNode x, final JsonNode json ) {
+			if (json != null && predicate instanceof JqPredicate)
+				return ((JqPredicate<?>)predicate).test(json);
+
+			return predicate.test(x);
+		}
 	}
 
 }
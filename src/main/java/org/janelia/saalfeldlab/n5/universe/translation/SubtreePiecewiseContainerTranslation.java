@@ -0,0 +1,107 @@
+package org.janelia.saalfeldlab.n5.universe.translation;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+
+import org.janelia.saalfeldlab.n5.universe.container.ContainerMetadataNode;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+
+/**
+ * A {@link PiecewiseContainerTranslation} that dispatches per subtree rather
+ * than for the whole container.
+ * <p>
+ * Starting at the root, each node is tested against the predicates in order.
+ * If one matches, its translation is applied to the subtree rooted at that
+ * node, and the result replaces the subtree in the output. Otherwise the
+ * node's attributes are kept, and its children are processed in the same
+ * way. Sibling subtrees and the predicates for a node are evaluated in
+ * parallel, so containers with parts following different conventions are
+ * translated in a single pass.
+ * <p>
+ * The container is converted for jq once, {@link JqPredicate}s test the
+ * part of that tree for each node, so that predicates do not convert every
+ * subtree again on every level.
+ * <p>
+ * The input tree is not modified.
+ */
+public class SubtreePiecewiseContainerTranslation extends PiecewiseContainerTranslation {
+
+	public SubtreePiecewiseContainerTranslation() {
+		this(ForkJoinPool.commonPool());
+	}
+
+	public SubtreePiecewiseContainerTranslation(final ForkJoinPool pool) {
+		super(pool == null ? ForkJoinPool.commonPool() : pool);
+	}
+
+	@Override
+	public ContainerMetadataNode apply(final ContainerMetadataNode root) {
+
+		if (root == null)
+			return null;
+
+		final Gson gson = root.getGson();
+		final JsonNode json = gson == null ? null : GsonJacksonConverter.toJsonNode(gson.toJsonTree(root));
+
+		final SubtreeTranslationTask task = new SubtreeTranslationTask(root, json);
+		return ForkJoinTask.getPool() == pool ? task.invoke() : pool.invoke(task);
+	}
+
+	private class SubtreeTranslationTask extends RecursiveTask<ContainerMetadataNode> {
+
+		private static final long serialVersionUID = 1L;
+
+		private final ContainerMetadataNode node;
+
+		private final JsonNode json;
+
+		public SubtreeTranslationTask(final ContainerMetadataNode node, final JsonNode json) {
+			this.node = node;
+			this.json = json;
+		}
+
+		@Override
+		protected ContainerMetadataNode compute() {
+
+			if (node == null)
+				return null;
+
+			final ContainerTranslation translation = matchingTranslation(node, json);
+			if (translation != null) {
+				final ContainerMetadataNode translated = translation.apply(node);
+				if (translated != null)
+					return translated;
+			}
+
+			final List<String> names = new ArrayList<>(node.getChildren().keySet());
+			final List<SubtreeTranslationTask> childTasks = new ArrayList<>(names.size());
+			final JsonNode childrenJson = json == null ? null : json.get("children");
+			for (final String name : names)
+				childTasks.add(new SubtreeTranslationTask(node.getChildren().get(name),
+						childrenJson == null ? null : childrenJson.get(name)));
+
+			invokeAll(childTasks);
+
+			final HashMap<String, JsonElement> attributes = new HashMap<>();
+			if (node.getContainerAttributes() != null)
+				for (final Map.Entry<String, JsonElement> e : node.getContainerAttributes().entrySet())
+					attributes.put(e.getKey(), e.getValue() == null ? null : e.getValue().deepCopy());
+
+			final ContainerMetadataNode out = new ContainerMetadataNode(attributes, new HashMap<>(), node.getGson());
+			out.addPathsRecursive(node.getPath());
+			for (int i = 0; i < names.size(); i++)
+				out.addChild(names.get(i), childTasks.get(i).join());
+
+			return out;
+		}
+	}
+
+}
@@ -1,9 +1,17 @@
 package org.janelia.saalfeldlab.n5.universe.translation;
 
+import com.google.gson.Gson;
 import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+
+import java.lang.ref.WeakReference;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Optional;
+import java.util.Set;
 import java.util.function.Predicate;
+import org.janelia.saalfeldlab.n5.GsonN5Reader;
+import org.janelia.saalfeldlab.n5.N5Exception;
 import org.janelia.saalfeldlab.n5.N5Reader;
 import org.janelia.saalfeldlab.n5.universe.N5TreeNode;
 import org.janelia.saalfeldlab.n5.universe.container.ContainerMetadataNode;
@@ -12,23 +20,61 @@ import org.janelia.saalfeldlab.n5.universe.metadata.canonical.CanonicalMetadataP
 
 /**
  * A parser for metadata that are translated into the "canonical" dialect.
- * 
+ * <p>
+ * By default, the translation is applied to the whole container tree. The
+ * container is built and translated once per {@link N5Reader}, and reused
+ * for every node parsed with the same reader until {@link #invalidate()} is
+ * called. The reader is only referenced weakly, the parser does not keep it
+ * from being garbage collected.
+ * <p>
+ * Translations that only depend on a single node can be declared
+ * {@link TranslationScope#NODE node-local}. These are applied to each node
+ * independently, so that nodes can be parsed in parallel without building
+ * the container tree.
+ *
  * @author John Bogovic
  */
 public class TranslatedTreeMetadataParser extends CanonicalMetadataParser {
 
+	/**
+	 * The part of the container a translation is applied to.
+	 */
+	public static enum TranslationScope {
+		/**
+		 * The translation is applied to the whole container tree.
+		 */
+		CONTAINER,
+		/**
+		 * The translation is applied to each node independently. Its input is
+		 * a tree containing only that node, i.e. an object with "path" and
+		 * "attributes", and no children.
+		 */
+		NODE
+	}
+
 	private ContainerMetadataNode translatedRoot;
 
 	private ContainerTranslation translationFun;
 
+	private TranslationScope translationScope = TranslationScope.CONTAINER;
+
+	private WeakReference<N5Reader> setupN5 = new WeakReference<>(null);
+
 	public TranslatedTreeMetadataParser(final String translation) {
 		this(translation, x -> true);
 	}
 
 	public TranslatedTreeMetadataParser(final String translation,
 			final Predicate<CanonicalMetadata> filter) {
+		this(translation, filter, TranslationScope.CONTAINER);
+	}
+
+	public TranslatedTreeMetadataParser(final String translation,
+			final Predicate<CanonicalMetadata> filter,
+			final TranslationScope translationScope) {
 		super( filter );
-		translationFun = new JqContainerTranslation( translation, JqUtils.buildGson(null));
+		translationFun = ContainerTranslationCompiler.compile( translation, JqUtils.buildGson(null));
+		this.translationScope = translationScope;
 	}
 
 	public boolean validTranslation() {
@@ -37,22 +83,72 @@ public class TranslatedTreeMetadataParser extends CanonicalMetadataParser {
 
 	public TranslatedTreeMetadataParser( final N5Reader n5, final String n5Tree, final String translation) {
 		super( null );
-		translationFun = new JqContainerTranslation( translation, JqUtils.buildGson(n5));
+		translationFun = ContainerTranslationCompiler.compile( translation, JqUtils.buildGson(n5));
 	}
 
-	protected void setup( final N5Reader n5 ) {
-//		if( gson == null )
-			setGson( JqUtils.buildGson( n5 ));
+	public TranslationScope getTranslationScope() {
+		return translationScope;
+	}
+
+	/**
+	 * Builds and translates the container tree for the given reader, unless
+	 * this was already done for the same reader.
+	 *
+	 * @param n5 the reader
+	 */
+	protected synchronized void setup( final N5Reader n5 ) {
+
+		if (n5 == setupN5.get())
+			return;
+
+		setGson( readerIndependentGson( n5 ));
+		setupN5 = new WeakReference<>(n5);
+
+		if (translationScope == TranslationScope.NODE) {
+			root = null;
+			translatedRoot = null;
+			return;
+		}
 
 		root = ContainerMetadataNode.build(n5, gson);
-		translatedRoot = translationFun.apply( root );
+		translatedRoot = root == null ? null : translationFun.apply( root );
 		if( translatedRoot != null )
 			translatedRoot.addPathsRecursive();
 	}
 
+	/**
+	 * Discards the container tree and its translation, so that they are
+	 * rebuilt the next time metadata are parsed. Call this after the container
+	 * was modified.
+	 */
+	public synchronized void invalidate() {
+
+		setupN5 = new WeakReference<>(null);
+		root = null;
+		translatedRoot = null;
+	}
+
+	/**
+	 * Builds a Gson with the reader's adapters but none that hold on to the
+	 * reader itself, so that the translated tree does not keep it reachable.
+	 *
+	 * @param n5 the reader
+	 * @return the gson
+	 */
+	private static Gson readerIndependentGson( final N5Reader n5 ) {
+
+		if (n5 instanceof GsonN5Reader)
+			return JqUtils.newBuilder(((GsonN5Reader)n5).getGson()).disableHtmlEscaping().create();
+
+		return JqUtils.buildGson(null);
+	}
+
 	@Override
 	public Optional<CanonicalMetadata> parseMetadata(N5Reader n5, N5TreeNode node) {
 		setup( n5 );
+		if (translationScope == TranslationScope.NODE)
+			return parseNodeMetadata(n5, node);
+
 		return parseMetadata( node, n5.getGroupSeparator());
 	}
 
@@ -67,17 +163,66 @@ public class TranslatedTreeMetadataParser extends CanonicalMetadataParser {
 
 	public Optional<CanonicalMetadata> parseMetadata(N5TreeNode node, String groupSep) {
 
-		if (translatedRoot == null)
+		final ContainerMetadataNode translated = translatedRoot;
+		if (translated == null)
 			return Optional.empty();
 
-		return translatedRoot.getChild( node.getPath(), groupSep )
+		return translated.getChild( node.getPath(), groupSep )
 				.map( ContainerMetadataNode::getContainerAttributes )
 				.map( this::canonicalMetadata )
 				.filter(filter);
 	}
 
+	/**
+	 * Applies a node-local translation to the attributes of the given node
+	 * only.
+	 *
+	 * @param n5 the reader
+	 * @param node the node
+	 * @return the canonical metadata
+	 */
+	protected Optional<CanonicalMetadata> parseNodeMetadata(final N5Reader n5, final N5TreeNode node) {
+
+		final String path = node.getPath();
+		final ContainerMetadataNode localNode;
+		try {
+			if (n5 instanceof GsonN5Reader) {
+				final JsonElement attrs = ((GsonN5Reader)n5).getAttributes(path);
+				final JsonObject attrsObj = (attrs != null && attrs.isJsonObject()) ? attrs.getAsJsonObject() : new JsonObject();
+				localNode = new ContainerMetadataNode(attrsObj, new HashMap<>(), gson);
+			} else {
+				final HashMap<String, JsonElement> attrs = ContainerMetadataNode.getMetadataMapN5(n5, path, gson)
+						.orElseGet(HashMap::new);
+				localNode = new ContainerMetadataNode(attrs, new HashMap<>(), gson);
+			}
+		} catch (final N5Exception e) {
+			return Optional.empty();
+		}
+		localNode.addPathsRecursive(path);
+
+		final ContainerMetadataNode translated = translationFun.apply(localNode);
+		if (translated == null || translated.getContainerAttributes() == null)
+			return Optional.empty();
+
+		return Optional.of(translated.getContainerAttributes())
+				.map(this::canonicalMetadata)
+				.filter(filter);
+	}
+
+	/**
+	 * The canonical keys only exist after the translation, so the keys of a
+	 * node's stored attributes do not tell whether this parser can succeed.
+	 *
+	 * @return the empty set
+	 */
+	@Override
+	public Set<String> identifyingKeys() {
+		return Collections.emptySet();
+	}
+
+	@Override
 	public CanonicalMetadata canonicalMetadata(final HashMap<String, JsonElement> attrMap) {
-		return gson.fromJson(gson.toJson(attrMap), CanonicalMetadata.class);
+		return gson.fromJson(gson.toJsonTree(attrMap), CanonicalMetadata.class);
 	}
 
 }
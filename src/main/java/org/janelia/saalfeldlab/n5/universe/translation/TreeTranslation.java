@@ -8,7 +8,7 @@ public class TreeTranslation {
 
 	protected ContainerMetadataNode rootOrig;
 	protected ContainerMetadataNode rootTranslated;
-	protected JqContainerTranslation fwdFun;
+	protected ContainerTranslation fwdFun;
 	protected Gson gson;
 
 	public TreeTranslation( 
@@ -17,7 +17,7 @@ public class TreeTranslation {
 			final String fwd ) {
 		this.rootOrig = root;
 		this.gson = gson;
-		fwdFun = new JqContainerTranslation( fwd, gson );
+		fwdFun = ContainerTranslationCompiler.compile( fwd, gson );
 
 		updateTranslated();
 	}
@@ -27,7 +27,7 @@ public class TreeTranslation {
 		return gson;
 	}
 
-	public JqContainerTranslation getTranslationFunction() {
+	public ContainerTranslation getTranslationFunction() {
 		return fwdFun;
 	}
 
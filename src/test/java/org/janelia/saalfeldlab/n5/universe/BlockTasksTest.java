@@ -0,0 +1,83 @@
+package org.janelia.saalfeldlab.n5.universe;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.Arrays;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.janelia.saalfeldlab.n5.DataType;
+import org.janelia.saalfeldlab.n5.DatasetAttributes;
+import org.janelia.saalfeldlab.n5.N5Exception;
+import org.janelia.saalfeldlab.n5.RawCompression;
+import org.junit.Test;
+
+public class BlockTasksTest {
+
+	private static final DatasetAttributes attrs = new DatasetAttributes(new long[]{10, 7, 3}, new int[]{4, 4, 2},
+			DataType.UINT8, new RawCompression());
+
+	private static void assertAllBlocks(final ExecutorService executor) {
+
+		final Set<String> visited = ConcurrentHashMap.newKeySet();
+		BlockTasks.forEachBlock(attrs, executor, "visit", p -> {
+			if (!visited.add(Arrays.toString(p)))
+				fail("visited twice " + Arrays.toString(p));
+		});
+
+		assertEquals(3 * 2 * 2, visited.size());
+		for (long x = 0; x < 3; x++)
+			for (long y = 0; y < 2; y++)
+				for (long z = 0; z < 2; z++)
+					assertTrue(visited.contains(Arrays.toString(new long[]{x, y, z})));
+	}
+
+	@Test
+	public void testGridDimensions() {
+
+		assertArrayEquals(new long[]{3, 2, 2}, BlockTasks.gridDimensions(attrs));
+	}
+
+	@Test
+	public void testAllBlocks() {
+
+		assertAllBlocks(null);
+
+		final ExecutorService executor = Executors.newFixedThreadPool(3);
+		try {
+			assertAllBlocks(executor);
+		} finally {
+			executor.shutdown();
+		}
+
+		// a shut down executor rejects all tasks, they run on the caller
+		assertAllBlocks(executor);
+	}
+
+	@Test
+	public void testFailure() {
+
+		final RuntimeException cause = new RuntimeException("block failed");
+		for (final ExecutorService executor : new ExecutorService[]{null, Executors.newFixedThreadPool(3)}) {
+			try {
+				BlockTasks.forEachBlock(attrs, executor, "fail", p -> {
+					if (p[0] == 1)
+						throw cause;
+				});
+				fail("failure not propagated");
+			} catch (final N5Exception e) {
+				assertSame(cause, e.getCause());
+			} finally {
+				if (executor != null)
+					executor.shutdown();
+			}
+		}
+	}
+
+}
@@ -0,0 +1,112 @@
+package org.janelia.saalfeldlab.n5.universe;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.janelia.saalfeldlab.n5.DataType;
+import org.janelia.saalfeldlab.n5.RawCompression;
+import org.janelia.saalfeldlab.n5.universe.metadata.ome.ngff.NgffSingleScaleAxesMetadata;
+import org.janelia.saalfeldlab.n5.universe.metadata.ome.ngff.OmeNgffMetadata;
+import org.janelia.saalfeldlab.n5.zarr.N5ZarrWriter;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.gson.JsonParser;
+
+public class N5DatasetDiscovererTest {
+
+	private N5ZarrWriter zarr;
+
+	private ExecutorService executor;
+
+	private void multiscale(final String group, final int numScales) {
+
+		final StringBuilder datasets = new StringBuilder();
+		for (int i = 0; i < numScales; i++) {
+			zarr.createDataset(group + "/s" + i, new long[]{32 >> i, 16 >> i}, new int[]{8, 8}, DataType.UINT8,
+					new RawCompression());
+
+			if (i > 0)
+				datasets.append(",");
+
+			final int s = 1 << i;
+			datasets.append(String.format("{\"path\":\"s%d\",\"coordinateTransformations\":[{\"type\":\"scale\",\"scale\":[%d,%d]}]}", i, s, s));
+		}
+
+		zarr.setAttribute(group, "multiscales", JsonParser.parseString("[{\"version\":\"0.4\","
+				+ "\"axes\":[{\"name\":\"y\",\"type\":\"space\"},{\"name\":\"x\",\"type\":\"space\"}],"
+				+ "\"datasets\":[" + datasets + "]}]"));
+	}
+
+	@Before
+	public void before() throws IOException {
+
+		zarr = new N5ZarrWriter(Files.createTempDirectory("n5-discoverer-test-").toFile().getCanonicalPath());
+		executor = Executors.newFixedThreadPool(4);
+
+		multiscale("img", 3);
+		multiscale("img/labels/cells", 2);
+		zarr.setAttribute("img/labels", "labels", new String[]{"cells"});
+
+		// labels declared below "ome", as in v0.5
+		multiscale("img2", 2);
+		multiscale("img2/labels/nuclei", 2);
+		zarr.setAttribute("img2/labels", "ome", JsonParser.parseString("{\"labels\":[\"nuclei\"]}"));
+
+		// not declared by the labels group, so not discovered
+		multiscale("img2/labels/other", 1);
+
+		zarr.createDataset("plain/a", new long[]{8, 8}, new int[]{8, 8}, DataType.UINT8, new RawCompression());
+	}
+
+	@After
+	public void after() {
+
+		executor.shutdown();
+		zarr.remove();
+	}
+
+	private N5DatasetDiscoverer discoverer() {
+
+		return new N5DatasetDiscoverer(zarr, executor, Arrays.asList(N5DatasetDiscoverer.DEFAULT_PARSERS),
+				N5DatasetDiscoverer.defaultGroupParsers(zarr));
+	}
+
+	private static void assertMultiscale(final N5TreeNode root, final String group, final int numScales) {
+
+		final N5TreeNode node = root.getDescendant(group).orElseThrow(() -> new AssertionError(group));
+		assertTrue(group, node.getMetadata() instanceof OmeNgffMetadata);
+		for (int i = 0; i < numScales; i++) {
+			final N5TreeNode level = root.getDescendant(group + "/s" + i).orElseThrow(() -> new AssertionError(group + "/s" + i));
+			assertTrue(level.getPath(), level.getMetadata() instanceof NgffSingleScaleAxesMetadata);
+		}
+		assertEquals(group, numScales, node.childrenList().stream().filter(c -> c.getNodeName().startsWith("s")).count());
+	}
+
+	@Test
+	public void testPruned() {
+
+		for (final String base : new String[]{"/", ""}) {
+			final N5TreeNode root = discoverer().discoverAndParsePruned(base);
+
+			assertMultiscale(root, "img", 3);
+			assertMultiscale(root, "img/labels/cells", 2);
+			assertMultiscale(root, "img2", 2);
+			assertMultiscale(root, "img2/labels/nuclei", 2);
+			assertFalse(root.getDescendant("img2/labels/other").isPresent());
+
+			final N5TreeNode plain = root.getDescendant("plain/a").orElseThrow(() -> new AssertionError("plain/a"));
+			assertNotNull(plain.getMetadata());
+		}
+	}
+
+}
@@ -2,6 +2,8 @@ package org.janelia.saalfeldlab.n5.universe;
 
 import org.apache.commons.io.FileUtils;
 import org.janelia.saalfeldlab.n5.FileSystemKeyValueAccess;
+import org.janelia.saalfeldlab.n5.GsonN5Reader;
+import org.janelia.saalfeldlab.n5.GsonN5Writer;
 import org.janelia.saalfeldlab.n5.N5Exception;
 import org.janelia.saalfeldlab.n5.N5KeyValueReader;
 import org.janelia.saalfeldlab.n5.N5KeyValueWriter;
@@ -9,6 +11,10 @@ import org.janelia.saalfeldlab.n5.N5Reader;
 import org.janelia.saalfeldlab.n5.N5Writer;
 import org.janelia.saalfeldlab.n5.hdf5.N5HDF5Reader;
 import org.janelia.saalfeldlab.n5.hdf5.N5HDF5Writer;
+import org.janelia.saalfeldlab.n5.universe.reader.BlockCache;
+import org.janelia.saalfeldlab.n5.universe.reader.CachedN5Reader;
+import org.janelia.saalfeldlab.n5.universe.reader.CachedN5Writer;
+import org.janelia.saalfeldlab.n5.universe.reader.ForwardingN5Reader;
 import org.janelia.saalfeldlab.n5.zarr.ZarrKeyValueReader;
 import org.janelia.saalfeldlab.n5.zarr.ZarrKeyValueWriter;
 import org.janelia.saalfeldlab.n5.zarr.v3.ZarrV3KeyValueReader;
@@ -35,6 +41,7 @@ import static org.junit.Assert.assertNotSame;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
 
 public class N5FactoryTests {
 
@@ -546,6 +553,40 @@ public class N5FactoryTests {
 		assertEquals("zarr 2", StorageFormat.ZARR2, format);
 	}
 
+	@Test
+	public void testBlockCacheDecoration() throws IOException {
+
+		final N5Factory factory = new N5Factory().options(opts -> opts.blockCache(new BlockCache(1 << 20)));
+		final File tmp = Files.createTempDirectory("factory-test-").toFile();
+		try {
+			final Object[][] testData = new Object[][]{
+					{"a.n5", StorageFormat.N5, N5KeyValueWriter.class},
+					{"b.zarr", StorageFormat.ZARR2, ZarrKeyValueWriter.class},
+					{"c.zarr", StorageFormat.ZARR3, ZarrV3KeyValueWriter.class},
+					{"d.zarr", StorageFormat.ZARR, ZarrV3KeyValueWriter.class},
+			};
+
+			for (final Object[] entry : testData) {
+				final URI uri = tmp.toPath().resolve((String)entry[0]).toUri();
+				final StorageFormat format = (StorageFormat)entry[1];
+				final Class<?> type = (Class<?>)entry[2];
+
+				final N5Writer n5 = factory.openWriter(format, uri);
+				assertTrue(format.toString(), n5 instanceof CachedN5Writer);
+				assertTrue(format.toString(), n5 instanceof GsonN5Writer);
+				assertEquals(format.toString(), type, ForwardingN5Reader.unwrap(n5).getClass());
+				n5.createGroup("g");
+
+				final N5Reader reader = factory.openReader(format, uri);
+				assertTrue(format.toString(), reader instanceof CachedN5Reader);
+				assertTrue(format.toString(), reader instanceof GsonN5Reader);
+				assertNotNull(format.toString(), ((GsonN5Reader)reader).getAttributes("g"));
+			}
+		} finally {
+			FileUtils.deleteDirectory(tmp);
+		}
+	}
+
 	private void checkWriterTypeFromFactory(N5Factory factory, String uri, Class<?> expected, String messageSuffix) {
 
 		if (expected == null) {
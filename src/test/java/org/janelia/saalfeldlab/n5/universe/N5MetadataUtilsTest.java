@@ -0,0 +1,103 @@
+package org.janelia.saalfeldlab.n5.universe;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.janelia.saalfeldlab.n5.DataType;
+import org.janelia.saalfeldlab.n5.N5Exception;
+import org.janelia.saalfeldlab.n5.RawCompression;
+import org.janelia.saalfeldlab.n5.universe.metadata.N5CosemMetadataParser;
+import org.janelia.saalfeldlab.n5.universe.metadata.N5Metadata;
+import org.janelia.saalfeldlab.n5.universe.metadata.N5MetadataParser;
+import org.janelia.saalfeldlab.n5.universe.metadata.ome.ngff.OmeNgffMetadata;
+import org.janelia.saalfeldlab.n5.universe.metadata.ome.ngff.OmeNgffMetadataParser;
+import org.janelia.saalfeldlab.n5.zarr.N5ZarrWriter;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.gson.JsonParser;
+
+public class N5MetadataUtilsTest {
+
+	private final AtomicInteger listed = new AtomicInteger();
+
+	private N5ZarrWriter zarr;
+
+	/**
+	 * A writer that counts calls to list, which all deep list methods use.
+	 */
+	private class CountingZarrWriter extends N5ZarrWriter {
+
+		public CountingZarrWriter(final String basePath) {
+
+			super(basePath);
+		}
+
+		@Override
+		public String[] list(final String pathName) throws N5Exception {
+
+			listed.incrementAndGet();
+			return super.list(pathName);
+		}
+	}
+
+	@Before
+	public void before() throws IOException {
+
+		zarr = new CountingZarrWriter(Files.createTempDirectory("n5-metadata-utils-test-").toFile().getCanonicalPath());
+		for (int i = 0; i < 3; i++)
+			zarr.createDataset("ms/s" + i, new long[]{32 >> i, 16 >> i}, new int[]{8, 8}, DataType.UINT8, new RawCompression());
+
+		zarr.setAttribute("ms", "multiscales", JsonParser.parseString("[{\"version\":\"0.4\",\"name\":\"ms\","
+				+ "\"axes\":[{\"name\":\"y\",\"type\":\"space\"},{\"name\":\"x\",\"type\":\"space\"}],"
+				+ "\"datasets\":["
+				+ "{\"path\":\"s0\",\"coordinateTransformations\":[{\"type\":\"scale\",\"scale\":[1,1]}]},"
+				+ "{\"path\":\"s1\",\"coordinateTransformations\":[{\"type\":\"scale\",\"scale\":[2,2]}]},"
+				+ "{\"path\":\"s2\",\"coordinateTransformations\":[{\"type\":\"scale\",\"scale\":[4,4]}]}]}]"));
+
+		zarr.createGroup("other/a");
+	}
+
+	@After
+	public void after() {
+
+		zarr.remove();
+	}
+
+	@Test
+	public void testShallowGroupParsers() {
+
+		final OmeNgffMetadataParser ngff = new OmeNgffMetadataParser();
+		final List<N5MetadataParser<?>> parsers = Arrays.asList(new N5CosemMetadataParser(), ngff);
+		assertEquals(Arrays.asList(ngff), N5MetadataUtils.shallowGroupParsers(parsers));
+		assertTrue(N5MetadataUtils.shallowGroupParsers(null).isEmpty());
+	}
+
+	@Test
+	public void testNgffGroupIsParsedWithoutListing() {
+
+		listed.set(0);
+		final N5Metadata meta = N5MetadataUtils.parseMetadata(zarr, "ms");
+		assertNotNull(meta);
+		assertTrue(meta instanceof OmeNgffMetadata);
+		assertEquals(3, ((OmeNgffMetadata)meta).multiscales[0].getChildrenMetadata().length);
+		assertEquals("container listed", 0, listed.get());
+
+		final N5TreeNode node = N5MetadataUtils.parseMetadataTreeShallow(zarr, "ms");
+		assertNotNull(node);
+		assertEquals("container listed", 0, listed.get());
+
+		// other groups fall back to discovery, which lists
+		N5MetadataUtils.parseMetadata(zarr, "other", false);
+		assertTrue("container listed", listed.get() > 0);
+	}
+
+}
@@ -3,8 +3,13 @@ package org.janelia.saalfeldlab.n5.universe;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ConcurrentModificationException;
 
 import org.junit.Test;
 
@@ -97,4 +102,111 @@ public class N5TreeNodeTest {
 		assertEquals( 2, N5TreeNode.flattenN5Tree(c0Node).count() );
 	}
 
+	@Test
+	public void testFromFlatList() {
+
+		// deepList output, "a/b-x" sorts between "a/b" and "a/b/c" as a string
+		final String[] paths = {"a/b/c", "a", "a/b-x", "a/b", "d/e/f", "a/b/c/s0", "a/b/c/s1"};
+		final N5TreeNode root = N5TreeNode.fromFlatList("/", paths, "/");
+
+		assertEquals(10, N5TreeNode.flattenN5Tree(root).count());
+		assertEquals(2, root.childrenList().size());
+		assertEquals("/a/b/c/s1", root.getDescendant("a/b/c/s1").get().getPath());
+		assertEquals("s1", root.getDescendant("a/b/c/s1").get().getNodeName());
+		assertEquals("/a/b", root.getDescendant("a/b/c").get().getParentPath());
+
+		// parents missing from the list are added
+		assertTrue(root.getDescendant("d/e").isPresent());
+
+		final N5TreeNode ab = root.getDescendant("a/b").get();
+		assertEquals(1, ab.childrenList().size());
+		ab.childrenList().removeIf(x -> x.getNodeName().equals("c"));
+		assertEquals(0, ab.childrenList().size());
+		assertFalse(root.getDescendant("a/b/c").isPresent());
+	}
+
+	@Test
+	public void testAddPathBelowSlashRoot() {
+
+		final N5TreeNode root = new N5TreeNode("/");
+		final N5TreeNode node = root.addPath("/ms/s0");
+		assertNotNull(node);
+		assertEquals("/ms/s0", node.getPath());
+		assertTrue(root.getDescendant("ms/s0").isPresent());
+		assertEquals(node, root.addPath("ms/s0"));
+
+		final N5TreeNode ms = root.getDescendant("ms").get();
+		assertEquals(node, ms.addPath("ms/s0"));
+		assertNull(ms.addPath("msx/s0"));
+	}
+
+	@Test
+	public void testFromFlatListWithOtherSeparator() {
+
+		// ":" sorts after "-", the separator must still sort first
+		final String[] paths = {"a:b:c", "a", "a:b-x", "a:b"};
+		final N5TreeNode root = N5TreeNode.fromFlatList("", paths, ":");
+		assertEquals(5, N5TreeNode.flattenN5Tree(root).count());
+		assertEquals(1, root.childrenList().size());
+		assertEquals(2, root.childrenList().get(0).childrenList().size());
+	}
+
+	@Test
+	public void testGetDescendant() {
+
+		final N5TreeNode root = N5TreeNode.fromFlatList("/", new String[]{"a/b/c", "a/bc", "d"}, "/");
+		final N5TreeNode a = root.getDescendant("a").get();
+		assertEquals(root, root.getDescendant("/").get());
+		assertEquals(a, root.getDescendant("/a").get());
+		assertEquals("/a/b/c", root.getDescendant("a/b/c").get().getPath());
+		assertEquals("/a/b/c", a.getDescendant("/a/b/c").get().getPath());
+		assertEquals("/a/bc", a.getDescendant("a/bc").get().getPath());
+		assertFalse(a.getDescendant("d").isPresent());
+		assertFalse(a.getDescendant("a/b/c/e").isPresent());
+		assertFalse(root.getDescendant("a/b/x").isPresent());
+	}
+
+	@Test
+	public void testGetDescendantSeveralSegmentsBelow() {
+
+		// multiscale parsers add scale levels by their full path
+		final N5TreeNode root = new N5TreeNode("");
+		final N5TreeNode ms = root.addPath("ms");
+		final N5TreeNode s0 = new N5TreeNode("ms/s0/data");
+		final N5TreeNode s1 = new N5TreeNode("/ms/s1/data");
+		ms.add(s0);
+		ms.add(s1);
+		s0.add(new N5TreeNode("ms/s0/data/labels"));
+
+		assertSame(s0, root.getDescendant("ms/s0/data").get());
+		assertSame(s1, root.getDescendant("ms/s1/data").get());
+		assertSame(s0, ms.getDescendant("/ms/s0/data").get());
+		assertEquals("ms/s0/data/labels", root.getDescendant("ms/s0/data/labels").get().getPath());
+		assertFalse(root.getDescendant("ms/s0").isPresent());
+		assertFalse(root.getDescendant("ms/s0/dat").isPresent());
+	}
+
+	@Test
+	public void testChildrenListFailsFast() {
+
+		final N5TreeNode root = new N5TreeNode("");
+		root.addPath("a");
+		root.addPath("b");
+		assertSame(root.childrenList(), root.childrenList());
+
+		try {
+			for (final N5TreeNode c : root.childrenList())
+				root.add(new N5TreeNode(c.getPath() + "x"));
+
+			fail("children changed while iterating");
+		} catch (final ConcurrentModificationException e) {}
+
+		try {
+			for (final N5TreeNode c : root.childrenList())
+				root.childrenList().remove(c);
+
+			fail("children changed while iterating");
+		} catch (final ConcurrentModificationException e) {}
+	}
+
 }
@@ -0,0 +1,101 @@
+package org.janelia.saalfeldlab.n5.universe.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.janelia.saalfeldlab.n5.universe.container.ContainerMetadataNode;
+import org.janelia.saalfeldlab.n5.universe.translation.ContainerTranslation;
+import org.janelia.saalfeldlab.n5.universe.translation.ContainerTranslationCompiler;
+import org.janelia.saalfeldlab.n5.universe.translation.JqContainerTranslation;
+import org.janelia.saalfeldlab.n5.universe.translation.JqUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import com.google.gson.Gson;
+
+/**
+ * Compares container translations run by jq with their compiled native
+ * equivalents.
+ */
+@State(Scope.Benchmark)
+@Warmup(iterations = 5, time = 500, timeUnit = TimeUnit.MILLISECONDS)
+@Measurement(iterations = 20, time = 500, timeUnit = TimeUnit.MILLISECONDS)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+public class ContainerTranslationBenchmarks {
+
+	private static final String TRANSLATION = "include \"n5\"; "
+			+ "walk( if hasAttributes then .attributes |= with_entries( .key |= if . == \"pixelResolution\" then \"resolution\" else . end ) else . end ) | "
+			+ "walk( if hasAttributes then .attributes |= if has(\"axes\") then .axes |= reverse else . end else . end ) | "
+			+ "treeAddAttrs( \"\"; {\"version\":\"1\"} )";
+
+	@Param(value = { "10", "100", "1000" })
+	protected int numGroups;
+
+	protected ContainerMetadataNode root;
+
+	protected ContainerTranslation jqTranslation;
+
+	protected ContainerTranslation nativeTranslation;
+
+	public ContainerTranslationBenchmarks() {}
+
+	public static void main(String... args) throws RunnerException {
+
+		final Options options = new OptionsBuilder().include(ContainerTranslationBenchmarks.class.getSimpleName() + "\\.")
+				.build();
+
+		new Runner(options).run();
+	}
+
+	@Setup(Level.Trial)
+	public void setup() {
+
+		final Gson gson = JqUtils.buildGson(null);
+		root = new ContainerMetadataNode();
+		for (int i = 0; i < numGroups; i++) {
+			final String group = "g" + i;
+			root.createGroup(group);
+			root.setAttribute(group, "unit", "um");
+			root.setAttribute(group, "axes", new String[]{"x", "y", "z"});
+			for (int s = 0; s < 3; s++) {
+				final String scale = group + "/s" + s;
+				root.createGroup(scale);
+				root.setAttribute(scale, "pixelResolution", new double[]{1 << s, 1 << s, 1 << s});
+				root.setAttribute(scale, "dimensions", new long[]{64 >> s, 64 >> s, 64 >> s});
+			}
+		}
+		root.addPathsRecursive();
+
+		jqTranslation = new JqContainerTranslation(TRANSLATION, gson);
+		nativeTranslation = ContainerTranslationCompiler.compileNative(TRANSLATION).get();
+	}
+
+	@Benchmark
+	public void jq(Blackhole hole) {
+
+		hole.consume(jqTranslation.apply(root));
+	}
+
+	@Benchmark
+	public void compiled(Blackhole hole) {
+
+		hole.consume(nativeTranslation.apply(root));
+	}
+
+}
@@ -0,0 +1,153 @@
+package org.janelia.saalfeldlab.n5.universe.benchmarks;
+
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.janelia.saalfeldlab.n5.universe.metadata.ome.ngff.v05.transformations.AffineCoordinateTransform;
+import org.janelia.saalfeldlab.n5.universe.metadata.ome.ngff.v05.transformations.CoordinateTransform;
+import org.janelia.saalfeldlab.n5.universe.metadata.ome.ngff.v05.transformations.DisplacementFieldCoordinateTransform;
+import org.janelia.saalfeldlab.n5.universe.metadata.ome.ngff.v05.transformations.ScaleCoordinateTransform;
+import org.janelia.saalfeldlab.n5.universe.metadata.ome.ngff.v05.transformations.SequenceCoordinateTransform;
+import org.janelia.saalfeldlab.n5.universe.metadata.ome.ngff.v05.transformations.TranslationCoordinateTransform;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import net.imglib2.RealRandomAccessible;
+import net.imglib2.img.array.ArrayImg;
+import net.imglib2.img.array.ArrayImgs;
+import net.imglib2.img.basictypeaccess.array.DoubleArray;
+import net.imglib2.interpolation.randomaccess.NLinearInterpolatorFactory;
+import net.imglib2.realtransform.RealTransform;
+import net.imglib2.type.numeric.real.DoubleType;
+import net.imglib2.view.Views;
+import net.imglib2.view.composite.RealComposite;
+
+/**
+ * Compares transforming points one at a time with a
+ * {@link net.imglib2.realtransform.RealTransformSequence} against the bulk
+ * {@link CoordinateTransform#applyPoints} path.
+ */
+@State(Scope.Benchmark)
+@Warmup(iterations = 5, time = 500, timeUnit = TimeUnit.MILLISECONDS)
+@Measurement(iterations = 20, time = 500, timeUnit = TimeUnit.MILLISECONDS)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+public class PointTransformBenchmarks {
+
+	private static final int ND = 3;
+
+	@Param(value = { "affine", "field" })
+	protected String transformType;
+
+	@Param(value = { "1000", "100000" })
+	protected int numPoints;
+
+	protected CoordinateTransform<?> transform;
+
+	protected double[] src;
+
+	protected double[] dst;
+
+	protected ExecutorService executor;
+
+	public PointTransformBenchmarks() {}
+
+	public static void main(String... args) throws RunnerException {
+
+		final Options options = new OptionsBuilder().include(PointTransformBenchmarks.class.getSimpleName() + "\\.")
+				.build();
+
+		new Runner(options).run();
+	}
+
+	@Setup(Level.Trial)
+	public void setup() {
+
+		final CoordinateTransform<?> last = transformType.equals("field")
+				? displacementField()
+				: new AffineCoordinateTransform(new double[]{
+						1.0, 0.1, 0.0, 5.0,
+						0.0, 1.0, 0.2, 6.0,
+						0.3, 0.0, 1.0, 7.0});
+
+		transform = new SequenceCoordinateTransform(new CoordinateTransform<?>[]{
+				new ScaleCoordinateTransform(new double[]{2, 3, 4}),
+				new TranslationCoordinateTransform(new double[]{-1, -2, -3}),
+				last});
+
+		final Random random = new Random(7);
+		src = new double[numPoints * ND];
+		for (int i = 0; i < src.length; i++)
+			src[i] = 32 * random.nextDouble();
+
+		dst = new double[numPoints * ND];
+		executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+	}
+
+	@TearDown(Level.Trial)
+	public void teardown() {
+
+		executor.shutdown();
+	}
+
+	private static DisplacementFieldCoordinateTransform<DoubleType> displacementField() {
+
+		final ArrayImg<DoubleType, DoubleArray> img = ArrayImgs.doubles(64, 64, 64, ND);
+		final Random random = new Random(11);
+		img.forEach(x -> x.set(random.nextDouble() - 0.5));
+
+		final RealRandomAccessible<RealComposite<DoubleType>> field = Views.interpolate(
+				Views.extendBorder(Views.collapseReal(img)),
+				new NLinearInterpolatorFactory<>());
+
+		return new DisplacementFieldCoordinateTransform<>("field", field, "linear", "in", "out");
+	}
+
+	@Benchmark
+	public void perPoint(final Blackhole hole) {
+
+		final RealTransform t = transform.getTransform(null);
+		final double[] p = new double[ND];
+		final double[] q = new double[ND];
+		for (int i = 0; i < numPoints; i++) {
+			System.arraycopy(src, i * ND, p, 0, ND);
+			t.apply(p, q);
+			System.arraycopy(q, 0, dst, i * ND, ND);
+		}
+		hole.consume(dst);
+	}
+
+	@Benchmark
+	public void bulk(final Blackhole hole) {
+
+		transform.applyPoints(null, src, dst, numPoints);
+		hole.consume(dst);
+	}
+
+	@Benchmark
+	public void bulkParallel(final Blackhole hole) {
+
+		transform.applyPoints(null, src, dst, numPoints, executor, 4096);
+		hole.consume(dst);
+	}
+
+}
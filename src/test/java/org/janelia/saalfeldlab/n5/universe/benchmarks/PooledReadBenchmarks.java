@@ -0,0 +1,146 @@
+package org.janelia.saalfeldlab.n5.universe.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.janelia.saalfeldlab.n5.DataBlock;
+import org.janelia.saalfeldlab.n5.DataType;
+import org.janelia.saalfeldlab.n5.DatasetAttributes;
+import org.janelia.saalfeldlab.n5.GzipCompression;
+import org.janelia.saalfeldlab.n5.IntArrayDataBlock;
+import org.janelia.saalfeldlab.n5.N5FSReader;
+import org.janelia.saalfeldlab.n5.N5FSWriter;
+import org.janelia.saalfeldlab.n5.N5Reader;
+import org.janelia.saalfeldlab.n5.N5Writer;
+import org.janelia.saalfeldlab.n5.hdf5.N5HDF5Reader;
+import org.janelia.saalfeldlab.n5.hdf5.N5HDF5Writer;
+import org.janelia.saalfeldlab.n5.universe.reader.PooledN5Reader;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import com.google.gson.GsonBuilder;
+
+/**
+ * Reads all blocks of a gzip compressed dataset from several threads through a
+ * {@link PooledN5Reader}. Reads scale with the pool size only if the pooled
+ * readers do not serialize access to the container between them.
+ */
+@State(Scope.Benchmark)
+@Warmup(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 10, time = 1, timeUnit = TimeUnit.SECONDS)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+public class PooledReadBenchmarks {
+
+	static final String HDF5 = "hdf5";
+	static final String N5 = "n5";
+
+	static final int BLOCK_DIM = 64;
+
+	static final int NUM_BLOCKS = 16;
+
+	@Param(value = {HDF5, N5})
+	protected String format;
+
+	@Param(value = {"1", "4"})
+	protected int poolSize;
+
+	@Param(value = {"4"})
+	protected int numThreads;
+
+	File tmpDir;
+	PooledN5Reader pool;
+	DatasetAttributes attrs;
+	ExecutorService exec;
+
+	public static void main(String[] args) throws RunnerException {
+
+		final Options options = new OptionsBuilder().include(PooledReadBenchmarks.class.getSimpleName() + "\\.").build();
+		new Runner(options).run();
+	}
+
+	@Setup(Level.Trial)
+	public void setup() throws IOException {
+
+		tmpDir = Files.createTempDirectory("n5-pooledReadBenchmark-").toFile();
+		final String location = format.equals(HDF5) ? new File(tmpDir, "data.h5").getAbsolutePath() : tmpDir.getAbsolutePath();
+
+		final N5Writer n5 = format.equals(HDF5)
+				? new N5HDF5Writer(location, false, new GsonBuilder(), new int[]{BLOCK_DIM, BLOCK_DIM})
+				: new N5FSWriter(location);
+
+		final Random random = new Random(7777);
+		final DatasetAttributes datasetAttributes = new DatasetAttributes(
+				new long[]{BLOCK_DIM * NUM_BLOCKS, BLOCK_DIM},
+				new int[]{BLOCK_DIM, BLOCK_DIM},
+				DataType.INT32,
+				new GzipCompression());
+		n5.createDataset("data", datasetAttributes);
+		for (int i = 0; i < NUM_BLOCKS; i++) {
+			final int[] data = new int[BLOCK_DIM * BLOCK_DIM];
+			for (int j = 0; j < data.length; j++)
+				data[j] = random.nextInt(256);
+
+			n5.writeBlock("data", datasetAttributes, new IntArrayDataBlock(new int[]{BLOCK_DIM, BLOCK_DIM}, new long[]{i, 0}, data));
+		}
+		n5.close();
+
+		pool = PooledN5Reader.open(() -> openReader(location), poolSize);
+		attrs = pool.getDatasetAttributes("data");
+		exec = Executors.newFixedThreadPool(numThreads);
+	}
+
+	private N5Reader openReader(final String location) {
+
+		return format.equals(HDF5)
+				? new N5HDF5Reader(location, false, new GsonBuilder(), new int[]{BLOCK_DIM, BLOCK_DIM})
+				: new N5FSReader(location);
+	}
+
+	@TearDown(Level.Trial)
+	public void teardown() {
+
+		exec.shutdown();
+		pool.close();
+		new N5FSWriter(tmpDir.getAbsolutePath()).remove();
+	}
+
+	@Benchmark
+	public void readBlocks(final Blackhole hole) throws Exception {
+
+		final List<Future<DataBlock<?>>> futures = new ArrayList<>();
+		for (int i = 0; i < NUM_BLOCKS; i++) {
+			final long x = i;
+			futures.add(exec.submit(() -> pool.readBlock("data", attrs, x, 0)));
+		}
+
+		for (final Future<DataBlock<?>> future : futures)
+			hole.consume(future.get());
+	}
+
+}
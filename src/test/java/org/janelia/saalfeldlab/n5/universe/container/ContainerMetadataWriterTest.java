@@ -0,0 +1,158 @@
+package org.janelia.saalfeldlab.n5.universe.container;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.janelia.saalfeldlab.n5.N5Exception;
+import org.janelia.saalfeldlab.n5.N5FSWriter;
+import org.janelia.saalfeldlab.n5.universe.translation.JqUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.gson.Gson;
+
+public class ContainerMetadataWriterTest {
+
+	private N5FSWriter n5;
+
+	private N5FSWriter n5Parallel;
+
+	private final List<String> written = new CopyOnWriteArrayList<>();
+
+	/**
+	 * A writer that records the paths of all setAttributes calls.
+	 */
+	private class RecordingN5Writer extends N5FSWriter {
+
+		public RecordingN5Writer(final String basePath) {
+
+			super(basePath);
+		}
+
+		@Override
+		public void setAttributes(final String path, final Map<String, ?> attributes) throws N5Exception {
+
+			written.add(path);
+			super.setAttributes(path, attributes);
+		}
+	}
+
+	@Before
+	public void before() throws IOException {
+
+		n5 = new RecordingN5Writer(Files.createTempDirectory("n5-metadata-writer-test-").toFile().getCanonicalPath());
+		n5Parallel = new N5FSWriter(Files.createTempDirectory("n5-metadata-writer-test-").toFile().getCanonicalPath());
+	}
+
+	@After
+	public void after() {
+
+		for (final N5FSWriter w : Arrays.asList(n5, n5Parallel)) {
+			try {
+				w.remove();
+			} catch (final N5Exception e) {}
+		}
+	}
+
+	@Test
+	public void testUnchangedNodesAreNotWritten() {
+
+		n5.createGroup("a");
+		n5.setAttribute("a", "x", 1);
+		n5.createGroup("b");
+		n5.setAttribute("b", "x", 1);
+
+		final ContainerMetadataWriter writer = new ContainerMetadataWriter(n5);
+		final ContainerMetadataNode tree = writer.getMetadataTree();
+		tree.setAttribute("b", "x", 2);
+		tree.createGroup("c/d");
+		tree.setAttribute("c/d", "y", 3);
+
+		written.clear();
+		writer.writeAllAttributes();
+		assertEquals(new HashSet<>(Arrays.asList("/b", "/c/d")), new HashSet<>(written));
+		assertEquals(1, (int)n5.getAttribute("a", "x", Integer.class));
+		assertEquals(2, (int)n5.getAttribute("b", "x", Integer.class));
+		assertEquals(3, (int)n5.getAttribute("c/d", "y", Integer.class));
+		assertTrue(n5.exists("c"));
+
+		// the written tree is now the original
+		written.clear();
+		writer.writeAllAttributes();
+		assertEquals(Collections.emptyList(), written);
+
+		tree.setAttribute("a", "x", 4);
+		writer.writeAllAttributes();
+		assertEquals(Collections.singletonList("/a"), written);
+		assertEquals(4, (int)n5.getAttribute("a", "x", Integer.class));
+	}
+
+	@Test
+	public void testRemovedKeysAreRemoved() {
+
+		n5.createGroup("a");
+		n5.setAttribute("a", "x", 1);
+		n5.setAttribute("a", "y", 2);
+		n5.createGroup("b");
+		n5.setAttribute("b", "x", 1);
+
+		final ContainerMetadataWriter writer = new ContainerMetadataWriter(n5);
+		final ContainerMetadataNode tree = writer.getMetadataTree();
+		tree.removeAttribute("a", "y");
+		tree.removeAttribute("b", "x");
+		writer.writeAllAttributes();
+
+		assertEquals(1, (int)n5.getAttribute("a", "x", Integer.class));
+		assertNull(n5.getAttribute("a", "y", Integer.class));
+		assertNull(n5.getAttribute("b", "x", Integer.class));
+	}
+
+	@Test
+	public void testParallelMatchesSerial() {
+
+		final ContainerMetadataWriter serial = new ContainerMetadataWriter(n5);
+		final ContainerMetadataWriter parallel = new ContainerMetadataWriter(n5Parallel);
+		for (final ContainerMetadataWriter writer : Arrays.asList(serial, parallel)) {
+			final ContainerMetadataNode tree = writer.getMetadataTree();
+			for (int i = 0; i < 8; i++) {
+				for (int j = 0; j < 8; j++) {
+					final String path = "g" + i + "/c" + j;
+					tree.createGroup(path);
+					tree.setAttribute(path, "index", new int[]{i, j});
+				}
+				tree.setAttribute("g" + i, "name", "group " + i);
+			}
+		}
+
+		serial.writeAllAttributes();
+
+		final ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			parallel.setExecutor(executor);
+			parallel.writeAllAttributes();
+		} finally {
+			executor.shutdown();
+		}
+
+		final Gson gson = JqUtils.buildGson(null);
+		assertEquals(
+				gson.toJsonTree(ContainerMetadataNode.build(n5, gson)),
+				gson.toJsonTree(ContainerMetadataNode.build(n5Parallel, gson)));
+		assertEquals("group 3", n5Parallel.getAttribute("g3", "name", String.class));
+	}
+
+}
@@ -0,0 +1,159 @@
+package org.janelia.saalfeldlab.n5.universe.convert;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.janelia.saalfeldlab.n5.DataType;
+import org.janelia.saalfeldlab.n5.GzipCompression;
+import org.janelia.saalfeldlab.n5.N5FSWriter;
+import org.janelia.saalfeldlab.n5.N5Writer;
+import org.janelia.saalfeldlab.n5.RawCompression;
+import org.janelia.saalfeldlab.n5.imglib2.N5Utils;
+import org.janelia.saalfeldlab.n5.universe.N5TreeNode;
+import org.janelia.saalfeldlab.n5.universe.convert.ContainerConverter.MetadataConvention;
+import org.janelia.saalfeldlab.n5.universe.convert.ContainerConverter.Progress;
+import org.janelia.saalfeldlab.n5.universe.metadata.ome.ngff.NgffSingleScaleAxesMetadata;
+import org.janelia.saalfeldlab.n5.universe.metadata.ome.ngff.OmeNgffMetadata;
+import org.janelia.saalfeldlab.n5.universe.metadata.ome.ngff.OmeNgffMetadataParser;
+import org.janelia.saalfeldlab.n5.zarr.N5ZarrWriter;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.img.array.ArrayImg;
+import net.imglib2.img.array.ArrayImgs;
+import net.imglib2.img.basictypes.IntArray;
+import net.imglib2.type.numeric.integer.IntType;
+import net.imglib2.view.Views;
+
+public class ContainerConverterTest {
+
+	private N5Writer n5;
+
+	private N5Writer zarr;
+
+	@Before
+	public void before() throws IOException {
+
+		n5 = new N5FSWriter(Files.createTempDirectory("n5-convert-src-").toFile().getCanonicalPath());
+		zarr = new N5ZarrWriter(Files.createTempDirectory("n5-convert-dst-").toFile().getCanonicalPath());
+
+		final int[] data = new int[20 * 14];
+		for (int i = 0; i < data.length; i++)
+			data[i] = i;
+
+		final ArrayImg<IntType, IntArray> img = ArrayImgs.ints(data, 20, 14);
+		N5Utils.save(img, n5, "a/b/img", new int[]{8, 8}, new GzipCompression());
+		n5.setAttribute("a", "description", "test");
+		n5.setAttribute("a/b/img", "resolution", new double[]{2, 3});
+	}
+
+	@After
+	public void after() {
+
+		n5.remove();
+		zarr.remove();
+	}
+
+	@Test
+	public void testConvertAndResume() {
+
+		final ExecutorService exec = Executors.newFixedThreadPool(3);
+		try {
+			final ContainerConverter converter = new ContainerConverter(n5, zarr)
+					.executor(exec)
+					.blockSize(5, 5)
+					.compression(new RawCompression());
+
+			final Progress progress = converter.convert();
+			assertEquals(1, progress.getDatasets());
+			assertEquals(4 * 3, progress.getBlocks());
+			assertEquals(20 * 14, progress.getElements());
+
+			assertTrue(zarr.datasetExists("a/b/img"));
+			assertArrayEquals(new int[]{5, 5}, zarr.getDatasetAttributes("a/b/img").getBlockSize());
+			assertEquals("test", zarr.getAttribute("a", "description", String.class));
+			assertArrayEquals(new double[]{2, 3}, zarr.getAttribute("a/b/img", "resolution", double[].class), 1e-9);
+
+			final RandomAccessibleInterval<IntType> copy = N5Utils.open(zarr, "a/b/img");
+			int i = 0;
+			for (final IntType t : Views.flatIterable(copy))
+				assertEquals(i++, t.get());
+
+			final Progress resumed = converter.resume(true).convert();
+			assertEquals(0, resumed.getBlocks());
+			assertEquals(4 * 3, resumed.getSkippedBlocks());
+		} finally {
+			exec.shutdown();
+		}
+	}
+
+	@Test
+	public void testResumePartialBlock() throws IOException {
+
+		new ContainerConverter(n5, zarr).convert();
+
+		// a block that was interrupted while being written
+		final Path chunk = Paths.get(zarr.getURI()).resolve("a/b/img/0.0");
+		final byte[] bytes = Files.readAllBytes(chunk);
+		Files.write(chunk, Arrays.copyOf(bytes, bytes.length / 2));
+
+		final Progress resumed = new ContainerConverter(n5, zarr).resume(true).convert();
+		assertEquals(1, resumed.getBlocks());
+		assertEquals(3 * 2 - 1, resumed.getSkippedBlocks());
+
+		final RandomAccessibleInterval<IntType> copy = N5Utils.open(zarr, "a/b/img");
+		int i = 0;
+		for (final IntType t : Views.flatIterable(copy))
+			assertEquals(i++, t.get());
+	}
+
+	@Test
+	public void testSameBlocks() {
+
+		final Progress progress = new ContainerConverter(n5, zarr).convert();
+		assertEquals(3 * 2, progress.getBlocks());
+		assertEquals(20 * 14, progress.getElements());
+		assertArrayEquals(new int[]{8, 8}, zarr.getDatasetAttributes("a/b/img").getBlockSize());
+
+		final RandomAccessibleInterval<IntType> copy = N5Utils.open(zarr, "a/b/img");
+		int i = 0;
+		for (final IntType t : Views.flatIterable(copy))
+			assertEquals(i++, t.get());
+	}
+
+	@Test
+	public void testOmeNgff() {
+
+		// an N5Viewer multiscale group with a stale multiscales attribute
+		n5.createDataset("ms/s0", new long[]{8, 8}, new int[]{4, 4}, DataType.UINT8, new RawCompression());
+		n5.createDataset("ms/s1", new long[]{4, 4}, new int[]{4, 4}, DataType.UINT8, new RawCompression());
+		n5.setAttribute("ms/s0", "pixelResolution", new double[]{2, 3});
+		n5.setAttribute("ms/s1", "pixelResolution", new double[]{2, 3});
+		n5.setAttribute("ms/s1", "downsamplingFactors", new double[]{2, 2});
+		n5.setAttribute("ms", "multiscales", "stale");
+
+		new ContainerConverter(n5, zarr).metadataConvention(MetadataConvention.OME_NGFF).convert();
+
+		final OmeNgffMetadata meta = new OmeNgffMetadataParser(zarr).parseMetadata(zarr, new N5TreeNode("ms"))
+				.orElseThrow(() -> new AssertionError("no OME-NGFF metadata"));
+		final NgffSingleScaleAxesMetadata[] levels = meta.multiscales[0].getChildrenMetadata();
+		assertEquals(2, levels.length);
+		assertArrayEquals(new double[]{2, 3}, levels[0].getScale(), 1e-9);
+		assertArrayEquals(new double[]{4, 6}, levels[1].getScale(), 1e-9);
+
+		// other attributes are still copied
+		assertArrayEquals(new double[]{2, 2}, zarr.getAttribute("ms/s1", "downsamplingFactors", double[].class), 1e-9);
+	}
+
+}
@@ -0,0 +1,73 @@
+package org.janelia.saalfeldlab.n5.universe.metadata;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.janelia.saalfeldlab.n5.universe.metadata.ome.ngff.OmeNgffMetadataParser;
+import org.junit.Test;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+
+public class GsonRegistryTest {
+
+	private static final AtomicInteger built = new AtomicInteger();
+
+	/**
+	 * A parser with its own Gson configuration.
+	 */
+	private static class CustomParser extends OmeNgffMetadataParser {
+
+		public CustomParser(final boolean reverse) {
+
+			super(reverse);
+		}
+
+		@Override
+		public GsonBuilder gsonBuilder() {
+
+			built.incrementAndGet();
+			return super.gsonBuilder().serializeNulls();
+		}
+	}
+
+	@Test
+	public void testSharedPerConfiguration() {
+
+		final AtomicInteger calls = new AtomicInteger();
+		final Gson a = GsonRegistry.get(() -> {
+			calls.incrementAndGet();
+			return new GsonBuilder();
+		}, GsonRegistryTest.class, "a");
+
+		assertSame(a, GsonRegistry.get(GsonBuilder::new, GsonRegistryTest.class, "a"));
+		assertEquals(1, calls.get());
+
+		final Gson b = GsonRegistry.get(GsonBuilder::new, GsonRegistryTest.class, "b");
+		assertNotSame(a, b);
+		assertNotSame(b, GsonRegistry.get(GsonBuilder::new, GsonRegistryTest.class));
+	}
+
+	@Test
+	public void testSubclassesHaveTheirOwnGson() {
+
+		// the base class configuration does not use the subclass builder
+		new OmeNgffMetadataParser(true);
+		new OmeNgffMetadataParser(false);
+
+		final int before = built.get();
+		new CustomParser(true);
+		assertEquals(before + 1, built.get());
+
+		// but is shared between instances of the subclass
+		new CustomParser(true);
+		assertEquals(before + 1, built.get());
+
+		new CustomParser(false);
+		assertEquals(before + 2, built.get());
+	}
+
+}
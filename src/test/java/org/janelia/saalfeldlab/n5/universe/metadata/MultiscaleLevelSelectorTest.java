@@ -0,0 +1,59 @@
+package org.janelia.saalfeldlab.n5.universe.metadata;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import org.janelia.saalfeldlab.n5.DataType;
+import org.janelia.saalfeldlab.n5.DatasetAttributes;
+import org.janelia.saalfeldlab.n5.RawCompression;
+import org.junit.Test;
+
+import net.imglib2.realtransform.AffineTransform3D;
+
+public class MultiscaleLevelSelectorTest {
+
+	private static N5SingleScaleMetadata level(final int s) {
+
+		final double f = 1 << s;
+		final AffineTransform3D transform = new AffineTransform3D();
+		transform.scale(f);
+		// pixel centers of downsampled levels are between the centers of s0
+		transform.translate(0.5 * (f - 1), 0.5 * (f - 1), 0.5 * (f - 1));
+
+		final long n = 256 >> s;
+		final DatasetAttributes attrs = new DatasetAttributes(new long[]{n, n, n}, new int[]{32, 32, 32},
+				DataType.UINT8, new RawCompression());
+
+		return new N5SingleScaleMetadata("s" + s, transform, new double[]{f, f, f}, new double[]{1, 1, 1},
+				new double[]{0, 0, 0}, "um", attrs);
+	}
+
+	@Test
+	public void testSelection() {
+
+		// out of order on purpose
+		final MultiscaleLevelSelector selector = new MultiscaleLevelSelector(level(2), level(0), level(1));
+		assertEquals(3, selector.numDimensions());
+
+		assertEquals(1, selector.bestLevel(0.5));
+		assertEquals(1, selector.bestLevel(1.0));
+		assertEquals(1, selector.bestLevel(1.9));
+		assertEquals(2, selector.bestLevel(2.0));
+		assertEquals(0, selector.bestLevel(100));
+		assertArrayEquals(new double[]{4, 4, 4}, selector.voxelSize(0), 1e-9);
+
+		final int[] levels = new int[3];
+		assertEquals(3, selector.levelsOverlapping(new double[]{10, 10, 10}, new double[]{20, 20, 20}, levels));
+		assertEquals(0, selector.levelsOverlapping(new double[]{300, 0, 0}, new double[]{400, 1, 1}, levels));
+
+		final long[] minBlock = new long[3];
+		final long[] maxBlock = new long[3];
+		// s1 has 64 physical units per block
+		assertEquals(2 * 1 * 1, selector.blocksNeeded(2, new double[]{60, 0, 0}, new double[]{70, 10, 10}, minBlock, maxBlock));
+		assertArrayEquals(new long[]{0, 0, 0}, minBlock);
+		assertArrayEquals(new long[]{1, 0, 0}, maxBlock);
+
+		assertEquals(0, selector.blocksNeeded(1, new double[]{-50, 0, 0}, new double[]{-10, 10, 10}, minBlock, maxBlock));
+	}
+
+}
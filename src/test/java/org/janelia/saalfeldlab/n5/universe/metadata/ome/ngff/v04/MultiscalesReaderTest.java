@@ -0,0 +1,108 @@
+package org.janelia.saalfeldlab.n5.universe.metadata.ome.ngff.v04;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.IOException;
+import java.io.StringReader;
+
+import org.janelia.saalfeldlab.n5.universe.metadata.ome.ngff.MultiscalesReader;
+import org.janelia.saalfeldlab.n5.universe.metadata.ome.ngff.OmeNgffMetadataParser;
+import org.janelia.saalfeldlab.n5.universe.metadata.ome.ngff.OmeNgffMultiScaleMetadata;
+import org.janelia.saalfeldlab.n5.universe.metadata.ome.ngff.coordinateTransformations.ScaleCoordinateTransformation;
+import org.janelia.saalfeldlab.n5.universe.metadata.ome.ngff.coordinateTransformations.TranslationCoordinateTransformation;
+import org.junit.Test;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+public class MultiscalesReaderTest {
+
+	private static final String ATTRIBUTES = "{"
+			+ "\"big\": {\"ignored\": [1, 2, {\"a\": null}]},"
+			+ "\"multiscales\": [{"
+			+ "  \"name\": \"img\", \"type\": null, \"version\": \"0.4\","
+			+ "  \"axes\": [{\"type\": \"space\", \"name\": \"z\", \"unit\": \"um\"},"
+			+ "           {\"type\": \"space\", \"name\": \"y\", \"unit\": \"um\"},"
+			+ "           {\"type\": \"space\", \"name\": \"x\", \"unit\": \"um\"}],"
+			+ "  \"datasets\": ["
+			+ "    {\"path\": \"s0\", \"coordinateTransformations\": [{\"type\": \"scale\", \"scale\": [3, 2, 1]}]},"
+			+ "    {\"path\": \"s1\", \"coordinateTransformations\": ["
+			+ "      {\"type\": \"scale\", \"scale\": [6, 4, 2]},"
+			+ "      {\"type\": \"translation\", \"translation\": [1.5, 1, 0.5]}]}],"
+			+ "  \"coordinateTransformations\": [{\"type\": \"identity\"}]"
+			+ "}]}";
+
+	@Test
+	public void testSameAsGson() {
+
+		final JsonObject json = JsonParser.parseString(ATTRIBUTES).getAsJsonObject();
+		for (final boolean reverse : new boolean[]{true, false}) {
+
+			final OmeNgffMultiScaleMetadata expected = new OmeNgffMetadataParser(reverse).gsonBuilder().create()
+					.fromJson(JsonParser.parseString(ATTRIBUTES).getAsJsonObject().get("multiscales"), OmeNgffMultiScaleMetadata[].class)[0];
+			final OmeNgffMultiScaleMetadata actual = MultiscalesReader.read(json.get("multiscales"), reverse)[0];
+
+			assertEquals(expected.name, actual.name);
+			assertNull(actual.type);
+			assertEquals(expected.version, actual.version);
+			assertArrayEquals(expected.axes, actual.axes);
+			assertEquals(expected.datasets.length, actual.datasets.length);
+			for (int i = 0; i < expected.datasets.length; i++) {
+				assertEquals(expected.datasets[i].path, actual.datasets[i].path);
+				assertArrayEquals(
+						((ScaleCoordinateTransformation)expected.datasets[i].coordinateTransformations[0]).getScale(),
+						((ScaleCoordinateTransformation)actual.datasets[i].coordinateTransformations[0]).getScale(), 0);
+			}
+			assertArrayEquals(
+					((TranslationCoordinateTransformation)expected.datasets[1].coordinateTransformations[1]).getTranslation(),
+					((TranslationCoordinateTransformation)actual.datasets[1].coordinateTransformations[1]).getTranslation(), 0);
+			assertNull(actual.coordinateTransformations[0]);
+		}
+	}
+
+	@Test
+	public void testReadAttributes() throws IOException {
+
+		final OmeNgffMultiScaleMetadata[] ms = MultiscalesReader.readAttributes(new StringReader(ATTRIBUTES), true);
+		assertEquals(1, ms.length);
+		assertEquals("x", ms[0].axes[0].getName());
+		assertArrayEquals(new double[]{1, 2, 3},
+				((ScaleCoordinateTransformation)ms[0].datasets[0].coordinateTransformations[0]).getScale(), 0);
+
+		// v0.5 nests the multiscales under "ome"
+		final String v05 = "{\"ome\": {\"version\": \"0.5\", " + ATTRIBUTES.substring(1) + "}";
+		assertEquals(1, MultiscalesReader.readAttributes(new StringReader(v05), true).length);
+		assertNull(MultiscalesReader.readAttributes(new StringReader("{\"a\": 1}"), true));
+	}
+
+	@Test
+	public void testWriteRoundTrip() {
+
+		final JsonObject json = JsonParser.parseString(ATTRIBUTES).getAsJsonObject();
+		for (final boolean reverse : new boolean[]{true, false}) {
+
+			final MultiscalesReader reader = new MultiscalesReader(reverse);
+			final OmeNgffMultiScaleMetadata[] ms = reader.fromJsonTree(json.get("multiscales"));
+			final JsonElement written = reader.toJsonTree(ms);
+
+			// axes and parameters are written in the stored order
+			assertEquals("z", written.getAsJsonArray().get(0).getAsJsonObject()
+					.get("axes").getAsJsonArray().get(0).getAsJsonObject().get("name").getAsString());
+
+			final OmeNgffMultiScaleMetadata actual = reader.fromJsonTree(written)[0];
+			assertEquals(ms[0].name, actual.name);
+			assertArrayEquals(ms[0].axes, actual.axes);
+			assertEquals(ms[0].datasets.length, actual.datasets.length);
+			for (int i = 0; i < ms[0].datasets.length; i++) {
+				assertEquals(ms[0].datasets[i].path, actual.datasets[i].path);
+				assertArrayEquals(
+						((ScaleCoordinateTransformation)ms[0].datasets[i].coordinateTransformations[0]).getScale(),
+						((ScaleCoordinateTransformation)actual.datasets[i].coordinateTransformations[0]).getScale(), 0);
+			}
+		}
+	}
+
+}
@@ -0,0 +1,152 @@
+package org.janelia.saalfeldlab.n5.universe.metadata.ome.ngff.v04;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.janelia.saalfeldlab.n5.DataType;
+import org.janelia.saalfeldlab.n5.N5Writer;
+import org.janelia.saalfeldlab.n5.RawCompression;
+import org.janelia.saalfeldlab.n5.universe.N5TreeNode;
+import org.janelia.saalfeldlab.n5.universe.metadata.ome.ngff.NgffSingleScaleAxesMetadata;
+import org.janelia.saalfeldlab.n5.universe.metadata.ome.ngff.OmeNgffMetadata;
+import org.janelia.saalfeldlab.n5.universe.metadata.ome.ngff.OmeNgffMetadataParser;
+import org.janelia.saalfeldlab.n5.universe.metadata.ome.ngff.OmeNgffMultiScaleMetadata;
+import org.janelia.saalfeldlab.n5.universe.metadata.ome.ngff.OmeNgffMultiScaleMetadataMutable;
+import org.janelia.saalfeldlab.n5.zarr.N5ZarrWriter;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.gson.JsonParser;
+
+public class ScaleLevelParsingTest {
+
+	private static final int NUM_SCALES = 4;
+
+	private static final String BASE = "ms";
+
+	private N5Writer zarr;
+
+	@Before
+	public void before() throws IOException {
+
+		zarr = new N5ZarrWriter(Files.createTempDirectory("ngff-scale-levels-").toFile().getCanonicalPath());
+
+		final StringBuilder datasets = new StringBuilder();
+		for (int i = 0; i < NUM_SCALES; i++) {
+			zarr.createDataset(BASE + "/s" + i, new long[]{64 >> i, 32 >> i}, new int[]{8, 8}, DataType.UINT8,
+					new RawCompression());
+
+			final int s = 1 << i;
+			if (i > 0)
+				datasets.append(",");
+
+			datasets.append(String.format("{\"path\":\"s%d\",\"coordinateTransformations\":[{\"type\":\"scale\",\"scale\":[%d,%d]}]}", i, s, s));
+		}
+
+		final String multiscales = "[{\"version\":\"0.4\",\"name\":\"ms\","
+				+ "\"axes\":[{\"name\":\"y\",\"type\":\"space\"},{\"name\":\"x\",\"type\":\"space\"}],"
+				+ "\"datasets\":[" + datasets + "]}]";
+		zarr.setAttribute(BASE, "multiscales", JsonParser.parseString(multiscales));
+	}
+
+	@After
+	public void after() {
+
+		zarr.remove();
+	}
+
+	@Test
+	public void testParallelAndLazyParsing() {
+
+		// a single thread checks that the parser can not deadlock on a busy executor
+		final ExecutorService exec = Executors.newFixedThreadPool(1);
+		try {
+			final NgffSingleScaleAxesMetadata[] expected = parse(new OmeNgffMetadataParser(zarr));
+			final NgffSingleScaleAxesMetadata[] parallel = parse(new OmeNgffMetadataParser(zarr, exec, false));
+			final NgffSingleScaleAxesMetadata[] lazy = parse(new OmeNgffMetadataParser(zarr, exec, true));
+
+			for (int i = 0; i < NUM_SCALES; i++)
+				assertTrue("level " + i + " resolved", parallel[i].isAttributesResolved());
+
+			assertTrue("first level resolved", lazy[0].isAttributesResolved());
+			assertTrue("last level resolved", lazy[NUM_SCALES - 1].isAttributesResolved());
+			for (int i = 1; i < NUM_SCALES - 1; i++)
+				assertFalse("level " + i + " lazy", lazy[i].isAttributesResolved());
+
+			assertLevelsEqual(expected, parallel);
+			assertLevelsEqual(expected, lazy);
+		} finally {
+			exec.shutdown();
+		}
+	}
+
+	@Test
+	public void testLevelTransforms() {
+
+		final OmeNgffMultiScaleMetadata ms = new OmeNgffMetadataParser(zarr).parseMetadata(zarr, new N5TreeNode(BASE)).get().multiscales[0];
+
+		final double[] p = new double[]{8, 4};
+		final double[] q = new double[2];
+		ms.pixelToPhysical(2).apply(p, q);
+		assertArrayEquals(new double[]{32, 16}, q, 1e-9);
+
+		ms.physicalToPixel(2).apply(q, q);
+		assertArrayEquals(p, q, 1e-9);
+
+		ms.levelToLevel(0, 2).apply(p, q);
+		assertArrayEquals(new double[]{2, 1}, q, 1e-9);
+
+		// callers get their own copy
+		assertNotSame(ms.levelToLevel(0, 2), ms.levelToLevel(0, 2));
+	}
+
+	@Test
+	public void testMutableLevelTransforms() {
+
+		final OmeNgffMultiScaleMetadataMutable ms = new OmeNgffMultiScaleMetadataMutable(BASE);
+		ms.addChild(new NgffSingleScaleAxesMetadata(BASE + "/s0", new double[]{1, 1}, null, null));
+		ms.addChild(new NgffSingleScaleAxesMetadata(BASE + "/s1", new double[]{2, 2}, new double[]{0.5, 0.5}, null));
+
+		final double[] q = new double[2];
+		ms.levelToLevel(0, 1).apply(new double[]{4, 2}, q);
+		assertArrayEquals(new double[]{1.75, 0.75}, q, 1e-9);
+
+		// adding a level discards the transforms computed so far
+		ms.addChild(new NgffSingleScaleAxesMetadata(BASE + "/s2", new double[]{4, 4}, null, null));
+		ms.levelToLevel(0, 2).apply(new double[]{4, 2}, q);
+		assertArrayEquals(new double[]{1, 0.5}, q, 1e-9);
+
+		ms.clear();
+		ms.addChild(new NgffSingleScaleAxesMetadata(BASE + "/s0", new double[]{3, 3}, null, null));
+		ms.pixelToPhysical(0).apply(new double[]{1, 2}, q);
+		assertArrayEquals(new double[]{3, 6}, q, 1e-9);
+	}
+
+	private NgffSingleScaleAxesMetadata[] parse(final OmeNgffMetadataParser parser) {
+
+		final OmeNgffMetadata meta = parser.parseMetadata(zarr, new N5TreeNode(BASE)).get();
+		final NgffSingleScaleAxesMetadata[] levels = meta.multiscales[0].getChildrenMetadata();
+		assertEquals("number of levels", NUM_SCALES, levels.length);
+		return levels;
+	}
+
+	private static void assertLevelsEqual(final NgffSingleScaleAxesMetadata[] expected, final NgffSingleScaleAxesMetadata[] actual) {
+
+		for (int i = 0; i < NUM_SCALES; i++) {
+			assertEquals("path " + i, expected[i].getPath(), actual[i].getPath());
+			assertArrayEquals("scale " + i, expected[i].getScale(), actual[i].getScale(), 1e-9);
+			assertArrayEquals("dimensions " + i, expected[i].getAttributes().getDimensions(),
+					actual[i].getAttributes().getDimensions());
+		}
+	}
+
+}
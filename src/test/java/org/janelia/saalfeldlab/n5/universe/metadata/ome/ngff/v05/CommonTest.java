@@ -0,0 +1,155 @@
+package org.janelia.saalfeldlab.n5.universe.metadata.ome.ngff.v05;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import org.janelia.saalfeldlab.n5.N5Exception;
+import org.janelia.saalfeldlab.n5.N5FSWriter;
+import org.janelia.saalfeldlab.n5.universe.metadata.axes.Axis;
+import org.janelia.saalfeldlab.n5.universe.metadata.axes.CoordinateSystem;
+import org.janelia.saalfeldlab.n5.universe.metadata.ome.ngff.v05.graph.TransformGraph;
+import org.janelia.saalfeldlab.n5.universe.metadata.ome.ngff.v05.transformations.CoordinateTransform;
+import org.janelia.saalfeldlab.n5.universe.metadata.ome.ngff.v05.transformations.ScaleCoordinateTransform;
+import org.janelia.saalfeldlab.n5.universe.metadata.ome.ngff.v05.transformations.TranslationCoordinateTransform;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import net.imglib2.realtransform.RealTransform;
+
+public class CommonTest {
+
+	private static final int N = 8;
+
+	private final AtomicInteger spacesRead = new AtomicInteger();
+
+	private N5FSWriter n5;
+
+	private String[] groups;
+
+	/**
+	 * A writer that counts reads of the coordinate systems attribute.
+	 */
+	private class CountingN5Writer extends N5FSWriter {
+
+		public CountingN5Writer(final String basePath) {
+
+			super(basePath, Common.gsonBuilder());
+		}
+
+		@Override
+		public <T> T getAttribute(final String pathName, final String key, final Class<T> clazz) throws N5Exception {
+
+			if (key.equals("coordinateSystems"))
+				spacesRead.incrementAndGet();
+
+			return super.getAttribute(pathName, key, clazz);
+		}
+	}
+
+	private static CoordinateSystem space(final String name) {
+
+		return new CoordinateSystem(name, new Axis[]{
+				new Axis("space", "x", "um"),
+				new Axis("space", "y", "um")});
+	}
+
+	@Before
+	public void before() throws IOException {
+
+		n5 = new CountingN5Writer(Files.createTempDirectory("n5-common-test-").toFile().getCanonicalPath());
+
+		groups = new String[N];
+		for (int i = 0; i < N; i++) {
+			final String group = "t" + i;
+			final String tile = "tile" + i;
+			groups[i] = group;
+			n5.createGroup(group);
+			n5.setAttribute(group, "coordinateSystems", new CoordinateSystem[]{space(tile), space("world"), space("scaled")});
+
+			// every group stores the shared scale
+			n5.setAttribute(group, "coordinateTransformations", new CoordinateTransform[]{
+					new TranslationCoordinateTransform(tile + "-world", tile, "world", new double[]{i, 0}),
+					new ScaleCoordinateTransform("world-scaled", "world", "scaled", new double[]{2, 2})});
+		}
+	}
+
+	@After
+	public void after() {
+
+		n5.remove();
+	}
+
+	private static List<String> names(final TransformGraph graph) {
+
+		return graph.transforms().stream().map(CoordinateTransform::getName).collect(Collectors.toList());
+	}
+
+	private void assertGraph(final TransformGraph graph) {
+
+		assertTrue(graph.isFrozen());
+
+		final List<String> names = names(graph);
+		assertEquals(1, names.stream().filter("world-scaled"::equals).count());
+		for (int i = 0; i < N; i++) {
+			assertEquals(1, names.stream().filter(("tile" + i + "-world")::equals).count());
+
+			final RealTransform t = graph.path("tile" + i, "scaled").get().totalTransform(n5, graph);
+			final double[] dst = new double[2];
+			t.apply(new double[]{1, 1}, dst);
+			assertArrayEquals(new double[]{2 * (1 + i), 2}, dst, 1e-9);
+		}
+
+		try {
+			graph.transforms().add(new ScaleCoordinateTransform("s", "world", "other", new double[]{3, 3}));
+			fail("frozen graph transforms changed");
+		} catch (final UnsupportedOperationException e) {}
+
+		try {
+			graph.addTransform(new ScaleCoordinateTransform("s", "world", "other", new double[]{3, 3}));
+			fail("frozen graph changed");
+		} catch (final UnsupportedOperationException e) {}
+	}
+
+	@Test
+	public void testParallelMatchesSequential() {
+
+		final TransformGraph sequential = Common.openGraph(n5, (ExecutorService)null, groups);
+		assertGraph(sequential);
+
+		final ExecutorService executor = Executors.newFixedThreadPool(3);
+		try {
+			final TransformGraph parallel = Common.openGraph(n5, executor, groups);
+			assertGraph(parallel);
+			assertEquals(names(sequential), names(parallel));
+		} finally {
+			executor.shutdown();
+		}
+
+		// a shut down executor rejects all tasks, they run on the caller
+		assertGraph(Common.openGraph(n5, executor, groups));
+	}
+
+	@Test
+	public void testSpacesReadOnce() {
+
+		spacesRead.set(0);
+		Common.openGraph(n5, "t0", 2);
+		assertEquals(1, spacesRead.get());
+
+		spacesRead.set(0);
+		Common.openGraph(n5, (ExecutorService)null, groups);
+		assertEquals(N, spacesRead.get());
+	}
+
+}
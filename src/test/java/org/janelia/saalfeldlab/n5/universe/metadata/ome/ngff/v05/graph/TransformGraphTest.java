@@ -0,0 +1,156 @@
+package org.janelia.saalfeldlab.n5.universe.metadata.ome.ngff.v05.graph;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import org.janelia.saalfeldlab.n5.universe.metadata.axes.Axis;
+import org.janelia.saalfeldlab.n5.universe.metadata.axes.CoordinateSystem;
+import org.janelia.saalfeldlab.n5.universe.metadata.ome.ngff.v05.transformations.CoordinateTransform;
+import org.janelia.saalfeldlab.n5.universe.metadata.ome.ngff.v05.transformations.DisplacementFieldCoordinateTransform;
+import org.janelia.saalfeldlab.n5.universe.metadata.ome.ngff.v05.transformations.ScaleCoordinateTransform;
+import org.janelia.saalfeldlab.n5.universe.metadata.ome.ngff.v05.transformations.SequenceCoordinateTransform;
+import org.janelia.saalfeldlab.n5.universe.metadata.ome.ngff.v05.transformations.TranslationCoordinateTransform;
+import org.junit.Test;
+
+import net.imglib2.realtransform.RealTransform;
+
+public class TransformGraphTest {
+
+	private static CoordinateSystem space(final String name) {
+
+		return new CoordinateSystem(name, new Axis[]{
+				new Axis("space", "x", "um"),
+				new Axis("space", "y", "um")});
+	}
+
+	@Test
+	public void testCheapestPath() {
+
+		final List<CoordinateSystem> spaces = Arrays.asList(space("a"), space("b"), space("c"), space("d"));
+
+		final List<CoordinateTransform<?>> transforms = new ArrayList<>();
+		transforms.add(new DisplacementFieldCoordinateTransform<>("field", "dfield", "linear", "a", "c"));
+		transforms.add(new ScaleCoordinateTransform("a-b", "a", "b", new double[]{2, 2}));
+		transforms.add(new TranslationCoordinateTransform("b-c", "b", "c", new double[]{1, 1}));
+
+		final TransformGraph graph = new TransformGraph(transforms, spaces);
+
+		final TransformPath path = graph.path("a", "c").get();
+		assertEquals(Arrays.asList("a", "b", "c"), path.flatSpace());
+		assertEquals(2 * TransformPath.LINEAR_COST, path.getCost(), 1e-9);
+
+		// inverses of the linear transforms are added
+		assertEquals(Arrays.asList("c", "b", "a"), graph.path("c", "a").get().flatSpace());
+
+		assertSame(path, graph.path("a", "c").get());
+		assertFalse(graph.path("a", "d").isPresent());
+
+		graph.addTransform(new TranslationCoordinateTransform("c-d", "c", "d", new double[]{3, 3}));
+		assertTrue(graph.path("a", "d").isPresent());
+		assertTrue(graph.getTransform("c-d").isPresent());
+	}
+
+	@Test(expected = UnsupportedOperationException.class)
+	public void testFrozen() {
+
+		final TransformGraph graph = new TransformGraph(new ArrayList<>(), Arrays.asList(space("a"), space("b")));
+		graph.freeze();
+		graph.addTransform(new ScaleCoordinateTransform("a-b", "a", "b", new double[]{2, 2}));
+	}
+
+	@Test
+	public void testSubAxisSequence() {
+
+		final List<CoordinateSystem> spaces = new ArrayList<>();
+		for (final String name : new String[]{"a", "b", "c"})
+			spaces.add(new CoordinateSystem(name, new Axis[]{
+					new Axis("space", "x", "um"),
+					new Axis("space", "y", "um"),
+					new Axis("space", "z", "um")}));
+
+		// the sequence only transforms the first two of the three axes
+		final List<CoordinateTransform<?>> transforms = new ArrayList<>();
+		transforms.add(new SequenceCoordinateTransform("a-b", "a", "b", new CoordinateTransform<?>[]{
+				new ScaleCoordinateTransform(new double[]{2, 3}),
+				new TranslationCoordinateTransform(new double[]{1, 1})}));
+		transforms.add(new ScaleCoordinateTransform("b-c", "b", "c", new double[]{1, 1, 4}));
+
+		final TransformGraph graph = new TransformGraph(transforms, spaces);
+		final RealTransform total = graph.path("a", "c").get().totalTransform(null, graph);
+		assertEquals(3, total.numSourceDimensions());
+		assertEquals(3, total.numTargetDimensions());
+
+		final double[] q = new double[3];
+		total.apply(new double[]{1, 2, 3}, q);
+		assertArrayEquals(new double[]{3, 7, 12}, q, 1e-9);
+	}
+
+	@Test
+	public void testPathKeys() {
+
+		// "a > b" to "c" and "a" to "b > c" must not share a cached path
+		final List<CoordinateSystem> spaces = Arrays.asList(space("a > b"), space("c"), space("a"), space("b > c"));
+		final List<CoordinateTransform<?>> transforms = new ArrayList<>();
+		transforms.add(new ScaleCoordinateTransform("ab-c", "a > b", "c", new double[]{2, 2}));
+		transforms.add(new ScaleCoordinateTransform("a-bc", "a", "b > c", new double[]{3, 3}));
+
+		final TransformGraph graph = new TransformGraph(transforms, spaces);
+		assertEquals(Arrays.asList("a > b", "c"), graph.path("a > b", "c").get().flatSpace());
+		assertEquals(Arrays.asList("a", "b > c"), graph.path("a", "b > c").get().flatSpace());
+	}
+
+	@Test
+	public void testViewsAreUnmodifiable() {
+
+		final List<CoordinateTransform<?>> transforms = new ArrayList<>();
+		transforms.add(new ScaleCoordinateTransform("a-b", "a", "b", new double[]{2, 2}));
+		final TransformGraph graph = new TransformGraph(transforms, Arrays.asList(space("a"), space("b"), space("c")));
+		assertFalse(graph.path("a", "c").isPresent());
+
+		final CoordinateTransform<?> bc = new TranslationCoordinateTransform("b-c", "b", "c", new double[]{1, 1});
+		try {
+			graph.transforms().add(bc);
+			fail("transforms changed");
+		} catch (final UnsupportedOperationException e) {}
+
+		try {
+			graph.spaceNodes().values().iterator().next().edges().add(bc);
+			fail("edges changed");
+		} catch (final UnsupportedOperationException e) {}
+
+		// changes through the graph clear found paths
+		final Map<CoordinateSystem, CTNode> nodes = graph.spaceNodes();
+		assertSame(nodes, graph.spaceNodes());
+		graph.addTransform(bc);
+		assertTrue(graph.path("a", "c").isPresent());
+		assertNotSame(nodes, graph.spaceNodes());
+	}
+
+	@SuppressWarnings("deprecation")
+	@Test
+	public void testModifiableGetters() {
+
+		final List<CoordinateTransform<?>> transforms = new ArrayList<>();
+		transforms.add(new ScaleCoordinateTransform("a-b", "a", "b", new double[]{2, 2}));
+		final TransformGraph graph = new TransformGraph(transforms, Arrays.asList(space("a"), space("b"), space("c")));
+		assertFalse(graph.path("a", "c").isPresent());
+
+		// changes made through the getters are seen by later queries
+		final CoordinateTransform<?> bc = new TranslationCoordinateTransform("b-c", "b", "c", new double[]{1, 1});
+		graph.getTransforms().add(bc);
+		graph.getSpaceNodes().get(graph.getCoordinateSystems().getSpace("b")).edges().add(bc);
+		assertTrue(graph.path("a", "c").isPresent());
+		assertSame(bc, graph.getTransform("b-c").get());
+	}
+
+}
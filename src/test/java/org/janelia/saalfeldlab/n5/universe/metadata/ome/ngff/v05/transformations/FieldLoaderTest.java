@@ -0,0 +1,143 @@
+package org.janelia.saalfeldlab.n5.universe.metadata.ome.ngff.v05.transformations;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+
+import org.janelia.saalfeldlab.n5.N5FSWriter;
+import org.janelia.saalfeldlab.n5.RawCompression;
+import org.janelia.saalfeldlab.n5.imglib2.N5Utils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import net.imglib2.Cursor;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.cache.img.CachedCellImg;
+import net.imglib2.img.array.ArrayImg;
+import net.imglib2.img.array.ArrayImgs;
+import net.imglib2.type.numeric.real.FloatType;
+import net.imglib2.view.Views;
+
+public class FieldLoaderTest {
+
+	private static final long[] DIMENSIONS = new long[]{2, 10, 8};
+
+	private N5FSWriter n5;
+
+	private static ArrayImg<FloatType, ?> field(final float offset) {
+
+		final ArrayImg<FloatType, ?> img = ArrayImgs.floats(DIMENSIONS);
+		final Cursor<FloatType> c = img.localizingCursor();
+		while (c.hasNext()) {
+			c.fwd();
+			c.get().set(offset + c.getIntPosition(0) * 1000 + c.getIntPosition(1) * 10 + c.getIntPosition(2));
+		}
+		return img;
+	}
+
+	@Before
+	public void before() throws IOException {
+
+		n5 = new N5FSWriter(Files.createTempDirectory("field-loader-test-").toFile().getCanonicalPath());
+		N5Utils.save(field(0), n5, "split", new int[]{1, 4, 4}, new RawCompression());
+		N5Utils.save(field(0.5f), n5, "other", new int[]{1, 4, 4}, new RawCompression());
+		N5Utils.save(field(0), n5, "interleaved", new int[]{2, 4, 4}, new RawCompression());
+	}
+
+	@After
+	public void after() {
+
+		n5.remove();
+	}
+
+	private static void assertValues(final float offset, final RandomAccessibleInterval<FloatType> img) {
+
+		final Cursor<FloatType> expected = Views.flatIterable(field(offset)).cursor();
+		final Cursor<FloatType> actual = Views.flatIterable(img).cursor();
+		while (expected.hasNext())
+			assertEquals(expected.next().get(), actual.next().get(), 1e-6);
+
+		assertFalse(actual.hasNext());
+	}
+
+	@Test
+	public void testDefault() {
+
+		final RandomAccessibleInterval<FloatType> img = FieldLoader.getDefault().open(n5, "split");
+		assertTrue(img instanceof CachedCellImg);
+		assertValues(0, img);
+	}
+
+	@Test
+	public void testInMemory() {
+
+		final FieldLoader loader = new FieldLoader(-1, 160);
+		final RandomAccessibleInterval<FloatType> img = loader.open(n5, "split");
+		assertTrue(img instanceof ArrayImg);
+		assertValues(0, img);
+
+		// larger fields stay lazy
+		final FieldLoader small = new FieldLoader(-1, 159);
+		assertFalse(small.open(n5, "split") instanceof ArrayImg);
+
+		// thresholds beyond the size of an array are clamped
+		final FieldLoader unbounded = new FieldLoader(-1, Long.MAX_VALUE);
+		assertEquals(FieldLoader.MAX_IN_MEMORY_ELEMENTS, unbounded.getInMemoryThreshold());
+		assertTrue(unbounded.open(n5, "split") instanceof ArrayImg);
+	}
+
+	@Test
+	public void testBoundedSharedCache() {
+
+		// fewer cells than either field has, shared by both
+		final FieldLoader loader = new FieldLoader(3, -1);
+		final RandomAccessibleInterval<FloatType> split = loader.open(n5, "split");
+		final RandomAccessibleInterval<FloatType> other = loader.open(n5, "other");
+
+		for (final RandomAccessibleInterval<FloatType> img : new RandomAccessibleInterval[]{split, other}) {
+			// cells span the vector axis
+			assertTrue(img instanceof CachedCellImg);
+			assertEquals(2, ((CachedCellImg<?, ?>)img).getCellGrid().cellDimension(0));
+			assertEquals(4, ((CachedCellImg<?, ?>)img).getCellGrid().cellDimension(1));
+		}
+
+		// cells of different fields do not mix
+		for (int i = 0; i < 2; i++) {
+			assertValues(0, split);
+			assertValues(0.5f, other);
+		}
+
+		final RandomAccessibleInterval<FloatType> interleaved = loader.open(n5, "interleaved");
+		assertEquals(2, ((CachedCellImg<?, ?>)interleaved).getCellGrid().cellDimension(0));
+		assertValues(0, interleaved);
+	}
+
+	@Test
+	public void testLoaderKeys() {
+
+		final FieldLoader a = new FieldLoader(3, -1);
+		final FieldLoader b = new FieldLoader(3, -1);
+		assertNotEquals(a.key(), b.key());
+
+		final FieldLoader previous = FieldLoader.getDefault();
+		try {
+			FieldLoader.setDefault(a);
+			final DisplacementFieldCoordinateTransform<FloatType> t = new DisplacementFieldCoordinateTransform<>("t", "field",
+					AbstractParametrizedFieldTransform.LINEAR_INTERPOLATION, "in", "out");
+			assertSame(a, t.getFieldLoader());
+			t.setFieldLoader(b);
+			assertSame(b, t.getFieldLoader());
+			t.setFieldLoader(null);
+			assertSame(a, t.getFieldLoader());
+		} finally {
+			FieldLoader.setDefault(previous);
+		}
+	}
+
+}
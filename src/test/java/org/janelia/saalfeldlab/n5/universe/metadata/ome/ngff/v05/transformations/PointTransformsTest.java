@@ -0,0 +1,218 @@
+package org.janelia.saalfeldlab.n5.universe.metadata.ome.ngff.v05.transformations;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertSame;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.janelia.saalfeldlab.n5.N5FSWriter;
+import org.janelia.saalfeldlab.n5.RawCompression;
+import org.janelia.saalfeldlab.n5.imglib2.N5Utils;
+import org.junit.Test;
+
+import net.imglib2.Cursor;
+import net.imglib2.RealRandomAccessible;
+import net.imglib2.img.array.ArrayImg;
+import net.imglib2.img.array.ArrayImgs;
+import net.imglib2.interpolation.randomaccess.NLinearInterpolatorFactory;
+import net.imglib2.realtransform.AffineTransform3D;
+import net.imglib2.realtransform.RealComponentMappingTransform;
+import net.imglib2.realtransform.RealTransform;
+import net.imglib2.type.numeric.real.DoubleType;
+import net.imglib2.view.Views;
+import net.imglib2.view.composite.RealComposite;
+
+public class PointTransformsTest {
+
+	private static final int N = 1000;
+
+	private static double[] randomPoints(final int numPoints, final int nd) {
+
+		final Random random = new Random(3);
+		final double[] pts = new double[numPoints * nd];
+		for (int i = 0; i < pts.length; i++)
+			pts[i] = 100 * random.nextDouble() - 50;
+
+		return pts;
+	}
+
+	private static double[] perPoint(final RealTransform t, final double[] src, final int numPoints) {
+
+		final double[] dst = new double[numPoints * t.numTargetDimensions()];
+		PointTransforms.applyPerPoint(t, src, 0, dst, 0, numPoints);
+		return dst;
+	}
+
+	@Test
+	public void testAffine() {
+
+		final AffineTransform3D affine = new AffineTransform3D();
+		affine.set(1.1, 0.2, 0.0, 5, -0.3, 0.9, 0.1, -2, 0.0, 0.4, 1.2, 7);
+
+		final double[] src = randomPoints(N, 3);
+		final double[] dst = new double[src.length];
+		PointTransforms.apply(affine, src, dst, N);
+		assertArrayEquals(perPoint(affine, src, N), dst, 1e-9);
+
+		// in place
+		final double[] inPlace = src.clone();
+		PointTransforms.apply(affine, inPlace, inPlace, N);
+		assertArrayEquals(dst, inPlace, 1e-9);
+	}
+
+	@Test
+	public void testSequence() {
+
+		final SequenceCoordinateTransform seq = new SequenceCoordinateTransform(new CoordinateTransform<?>[]{
+				new ScaleCoordinateTransform(new double[]{2, 3, 4}),
+				new TranslationCoordinateTransform(new double[]{-1, -2, -3}),
+				new AffineCoordinateTransform(new double[]{
+						1.0, 0.1, 0.0, 5.0,
+						0.0, 1.0, 0.2, 6.0,
+						0.3, 0.0, 1.0, 7.0})});
+
+		// more points than a block
+		final int n = PointTransforms.BLOCK_SIZE * 2 + 17;
+		final double[] src = randomPoints(n, 3);
+		final double[] expected = perPoint(seq.getTransform(null), src, n);
+
+		final double[] dst = new double[src.length];
+		seq.applyPoints(null, src, dst, n);
+		assertArrayEquals(expected, dst, 1e-9);
+
+		final ExecutorService exec = Executors.newFixedThreadPool(2);
+		try {
+			final double[] parallel = new double[src.length];
+			seq.applyPoints(null, src, parallel, n, exec, 1000);
+			assertArrayEquals(expected, parallel, 1e-9);
+		} finally {
+			exec.shutdown();
+		}
+	}
+
+	@Test
+	public void testDirectBuffer() {
+
+		final AffineTransform3D affine = new AffineTransform3D();
+		affine.set(1.1, 0.2, 0.0, 5, -0.3, 0.9, 0.1, -2, 0.0, 0.4, 1.2, 7);
+
+		final double[] src = randomPoints(N, 3);
+		final DoubleBuffer srcBuf = ByteBuffer.allocateDirect(src.length * 8).asDoubleBuffer();
+		srcBuf.put(src).flip();
+		final DoubleBuffer dstBuf = ByteBuffer.allocateDirect(src.length * 8).asDoubleBuffer();
+
+		PointTransforms.apply(affine, srcBuf, dstBuf, N);
+
+		final double[] dst = new double[src.length];
+		dstBuf.get(dst);
+		assertArrayEquals(perPoint(affine, src, N), dst, 1e-9);
+	}
+
+	@Test
+	public void testRejectedChunksRunOnCaller() {
+
+		final ScaleCoordinateTransform scale = new ScaleCoordinateTransform(new double[]{2, 3, 4});
+		final double[] src = randomPoints(N, 3);
+		final double[] expected = perPoint(scale.getTransform(), src, N);
+
+		final ExecutorService exec = Executors.newFixedThreadPool(2);
+		exec.shutdown();
+
+		final double[] dst = new double[src.length];
+		scale.applyPoints(null, src, dst, N, exec, 100);
+		assertArrayEquals(expected, dst, 1e-9);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testInPlaceMoreTargetDimensions() {
+
+		// later source points would be overwritten
+		final RealComponentMappingTransform duplicateX = new RealComponentMappingTransform(2, new int[]{0, 1, 0});
+		final double[] points = randomPoints(N, 3);
+		PointTransforms.apply(duplicateX, points, points, N);
+	}
+
+	@Test
+	public void testStackedWithStoredParameters() throws IOException {
+
+		final N5FSWriter n5 = new N5FSWriter(Files.createTempDirectory("point-transforms-test-").toFile().getCanonicalPath());
+		try {
+			N5Utils.save(ArrayImgs.doubles(new double[]{2, 3}, 2), n5, "params/scale", new int[]{2}, new RawCompression());
+
+			// the scale is only known to the container
+			final StackedCoordinateTransform stacked = new StackedCoordinateTransform("stacked", "in", "out",
+					Arrays.asList(
+							new ScaleCoordinateTransform("s", "in-xy", "out-xy", "params/scale"),
+							new TranslationCoordinateTransform(new double[]{5})));
+
+			final int n = PointTransforms.BLOCK_SIZE + 17;
+			final double[] src = randomPoints(n, 3);
+			final double[] expected = new double[src.length];
+			for (int i = 0; i < n; i++) {
+				expected[3 * i] = 2 * src[3 * i];
+				expected[3 * i + 1] = 3 * src[3 * i + 1];
+				expected[3 * i + 2] = src[3 * i + 2] + 5;
+			}
+
+			final double[] dst = new double[src.length];
+			stacked.applyPoints(n5, src, dst, n);
+			assertArrayEquals(expected, dst, 1e-9);
+
+			final double[] inPlace = src.clone();
+			stacked.applyPoints(n5, inPlace, inPlace, n);
+			assertArrayEquals(expected, inPlace, 1e-9);
+
+			final ExecutorService exec = Executors.newFixedThreadPool(2);
+			try {
+				final double[] parallel = new double[src.length];
+				stacked.applyPoints(n5, src, parallel, n, exec, 1000);
+				assertArrayEquals(expected, parallel, 1e-9);
+			} finally {
+				exec.shutdown();
+			}
+		} finally {
+			n5.remove();
+		}
+	}
+
+	@Test
+	public void testDisplacementField() {
+
+		// a 2d field of 2d displacements, the vector axis last
+		final ArrayImg<DoubleType, ?> img = ArrayImgs.doubles(20, 20, 2);
+		final Cursor<DoubleType> c = img.localizingCursor();
+		while (c.hasNext()) {
+			c.fwd();
+			final double x = c.getDoublePosition(0);
+			final double y = c.getDoublePosition(1);
+			c.get().set(c.getIntPosition(2) == 0 ? 0.1 * x + 1 : -0.2 * y);
+		}
+
+		final RealRandomAccessible<RealComposite<DoubleType>> field = Views.interpolate(
+				Views.extendBorder(Views.collapseReal(img)),
+				new NLinearInterpolatorFactory<>());
+
+		final DisplacementFieldCoordinateTransform<DoubleType> dfield = new DisplacementFieldCoordinateTransform<>("df",
+				field, AbstractParametrizedFieldTransform.LINEAR_INTERPOLATION, "in", "out");
+		assertSame(field, dfield.getField());
+
+		final double[] src = randomPoints(N, 2);
+		final double[] expected = perPoint(dfield.getTransform(), src, N);
+		final double[] dst = new double[src.length];
+		dfield.applyPoints(null, src, dst, N);
+		assertArrayEquals(expected, dst, 1e-9);
+
+		// in place
+		final double[] inPlace = src.clone();
+		dfield.applyPoints(null, inPlace, inPlace, N);
+		assertArrayEquals(expected, inPlace, 1e-9);
+	}
+
+}
@@ -0,0 +1,105 @@
+package org.janelia.saalfeldlab.n5.universe.metadata.ome.ngff.v05.transformations;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.janelia.saalfeldlab.n5.universe.container.ContainerMetadataNode;
+import org.janelia.saalfeldlab.n5.zarr.N5ZarrWriter;
+import org.junit.Test;
+
+import com.google.gson.JsonParser;
+
+import net.imglib2.realtransform.RealTransform;
+import net.imglib2.realtransform.Scale2D;
+
+public class TransformCacheTest {
+
+	@Test
+	public void testSharedInstance() {
+
+		final AtomicInteger loads = new AtomicInteger();
+		final String key = TransformCache.key("/tmp/transforms.zarr?a/b#coordinateTransformations[0]");
+
+		final Scale2D a = TransformCache.get(key, () -> {
+			loads.incrementAndGet();
+			return new Scale2D(2, 3);
+		});
+		final Scale2D b = TransformCache.get(key, () -> {
+			loads.incrementAndGet();
+			return new Scale2D(2, 3);
+		});
+
+		assertSame(a, b);
+		assertEquals(1, loads.get());
+
+		TransformCache.invalidate(key);
+		final Scale2D c = TransformCache.get(key, () -> new Scale2D(2, 3));
+		assertEquals(2, c.getScale(0), 1e-9);
+	}
+
+	@Test
+	public void testNullNotCached() {
+
+		final String key = TransformCache.key("/tmp/transforms.zarr?missing");
+		assertNull(TransformCache.get(key, () -> null));
+
+		final Scale2D t = TransformCache.get(key, () -> new Scale2D(1, 1));
+		assertEquals(1, t.getScale(1), 1e-9);
+	}
+
+	@Test
+	public void testKeyNormalization() {
+
+		assertEquals(
+				TransformCache.key("/tmp/transforms.zarr?/a/b/#coordinateTransformations[0]"),
+				TransformCache.key("/tmp/transforms.zarr?a/b#coordinateTransformations[0]"));
+	}
+
+	@Test
+	public void testReaderWithoutUri() {
+
+		final ContainerMetadataNode a = new ContainerMetadataNode();
+		final ContainerMetadataNode b = new ContainerMetadataNode();
+
+		assertEquals(TransformCache.key(a, "field"), TransformCache.key(a, "/field/"));
+		assertNotEquals(TransformCache.key(a, "field"), TransformCache.key(b, "field"));
+	}
+
+	@Test
+	public void testReferencedTransformIsCopied() throws IOException {
+
+		final File dir = new File(Files.createTempDirectory("transform-cache-test-").toFile(), "ref.zarr");
+		final N5ZarrWriter zarr = new N5ZarrWriter(dir.getCanonicalPath());
+		try {
+			zarr.createGroup("t");
+			zarr.setAttribute("t", "coordinateTransformations", JsonParser.parseString(
+					"[{\"type\":\"scale\",\"scale\":[2,2],\"input\":\"in\",\"output\":\"out\"}]"));
+
+			final String url = dir.getCanonicalPath() + "?t#coordinateTransformations[0]";
+			final RealTransform a = new ReferencedCoordinateTransform<>(url).getTransform();
+			final RealTransform b = new ReferencedCoordinateTransform<>(url).getTransform();
+
+			// the shared instance is not handed out, transforms are not thread safe
+			assertNotSame(a, b);
+
+			final double[] p = new double[]{1, 1};
+			final double[] q = new double[2];
+			a.apply(p, q);
+			assertArrayEquals(new double[]{2, 2}, q, 1e-9);
+			b.apply(p, q);
+			assertArrayEquals(new double[]{2, 2}, q, 1e-9);
+		} finally {
+			zarr.remove();
+		}
+	}
+
+}
@@ -0,0 +1,129 @@
+package org.janelia.saalfeldlab.n5.universe.metadata.ome.ngff.v05.transformations;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import net.imglib2.Cursor;
+import net.imglib2.RealRandomAccessible;
+import net.imglib2.img.array.ArrayImg;
+import net.imglib2.img.array.ArrayImgs;
+import net.imglib2.interpolation.randomaccess.NLinearInterpolatorFactory;
+import net.imglib2.realtransform.AffineTransform3D;
+import net.imglib2.realtransform.PositionFieldTransform;
+import net.imglib2.realtransform.RealTransform;
+import net.imglib2.realtransform.RealTransformSequence;
+import net.imglib2.realtransform.Scale2D;
+import net.imglib2.realtransform.Scale3D;
+import net.imglib2.realtransform.ScaleAndTranslation;
+import net.imglib2.type.numeric.real.DoubleType;
+import net.imglib2.view.Views;
+import net.imglib2.view.composite.RealComposite;
+
+public class TransformSimplifierTest {
+
+	private static final double[][] POINTS = {
+			{0, 0, 0},
+			{1, 2, 3},
+			{-7.5, 11, 0.25}};
+
+	private static void assertEquivalent(final RealTransform expected, final RealTransform actual) {
+
+		final double[] e = new double[3];
+		final double[] a = new double[3];
+		for (final double[] p : POINTS) {
+			expected.apply(p, e);
+			actual.apply(p, a);
+			assertArrayEquals(e, a, 1e-9);
+		}
+	}
+
+	@Test
+	public void testFuseLinear() {
+
+		final List<CoordinateTransform<?>> chain = Arrays.asList(
+				new ScaleCoordinateTransform(new double[]{2, 3, 4}),
+				new IdentityCoordinateTransform(),
+				new SequenceCoordinateTransform(new CoordinateTransform<?>[]{
+						new TranslationCoordinateTransform(new double[]{-1, -2, -3}),
+						new ScaleCoordinateTransform(new double[]{0.5, 0.5, 0.5})}));
+
+		final RealTransform simplified = TransformSimplifier.simplify(null, chain);
+		assertTrue(simplified instanceof ScaleAndTranslation);
+
+		final RealTransformSequence expected = new RealTransformSequence();
+		expected.add(new Scale3D(2, 3, 4));
+		expected.add(new ScaleAndTranslation(new double[]{1, 1, 1}, new double[]{-1, -2, -3}));
+		expected.add(new Scale3D(0.5, 0.5, 0.5));
+		assertEquivalent(expected, simplified);
+	}
+
+	@Test
+	public void testInverse() {
+
+		final AffineCoordinateTransform affine = new AffineCoordinateTransform(new double[]{
+				1.0, 0.1, 0.0, 5.0,
+				0.0, 1.0, 0.2, 6.0,
+				0.3, 0.0, 1.0, 7.0});
+
+		final List<CoordinateTransform<?>> chain = Arrays.asList(
+				affine,
+				new InverseCoordinateTransform<>(affine));
+
+		final RealTransform simplified = TransformSimplifier.simplify(null, chain);
+		assertEquivalent(new AffineTransform3D(), simplified);
+	}
+
+	@Test
+	public void testScaleIntoFieldSampling() {
+
+		// a 2d field of 2d positions, the vector axis last
+		final ArrayImg<DoubleType, ?> img = ArrayImgs.doubles(20, 20, 2);
+		final Cursor<DoubleType> c = img.localizingCursor();
+		while (c.hasNext()) {
+			c.fwd();
+			final double x = c.getDoublePosition(0);
+			final double y = c.getDoublePosition(1);
+			c.get().set(c.getIntPosition(2) == 0 ? 0.5 * x + 1 : y - 0.25 * x);
+		}
+
+		final RealRandomAccessible<RealComposite<DoubleType>> field = Views.interpolate(
+				Views.extendBorder(Views.collapseReal(img)),
+				new NLinearInterpolatorFactory<>());
+
+		final List<CoordinateTransform<?>> chain = Arrays.asList(
+				new ScaleCoordinateTransform(new double[]{2, 3}),
+				new CoordinateFieldCoordinateTransform<>("field", field,
+						AbstractParametrizedFieldTransform.LINEAR_INTERPOLATION, "in", "out"));
+
+		final RealTransform simplified = TransformSimplifier.simplify(null, chain);
+		assertTrue(simplified instanceof PositionFieldTransform);
+
+		final RealTransformSequence expected = new RealTransformSequence();
+		expected.add(new Scale2D(2, 3));
+		expected.add(new PositionFieldTransform(field));
+
+		final double[] e = new double[2];
+		final double[] a = new double[2];
+		for (final double[] p : new double[][]{{0, 0}, {1.5, 2.25}, {4, 5.5}, {7.75, 1}}) {
+			expected.apply(p, e);
+			simplified.apply(p, a);
+			assertArrayEquals(e, a, 1e-9);
+		}
+	}
+
+	@Test
+	public void testEmbed() {
+
+		final AffineTransform3D embedded = new AffineTransform3D();
+		embedded.set(TransformSimplifier.embed(new Scale2D(2, 3), 3).getRowPackedCopy());
+		assertEquivalent(new Scale3D(2, 3, 1), embedded);
+		assertFalse(TransformSimplifier.isIdentity(embedded));
+	}
+
+}
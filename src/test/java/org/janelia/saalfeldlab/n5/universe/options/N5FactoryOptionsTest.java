@@ -1,6 +1,7 @@
 package org.janelia.saalfeldlab.n5.universe.options;
 
 import com.google.gson.GsonBuilder;
+import org.janelia.saalfeldlab.n5.universe.reader.BlockCache;
 import org.jspecify.annotations.NonNull;
 import org.junit.Test;
 
@@ -8,6 +9,7 @@ import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
@@ -35,6 +37,10 @@ public class N5FactoryOptionsTest {
 
         assertArrayEquals(new int[]{64, 64, 64, 1, 1}, options.getHdf5Builder().getDefaultBlockSize());
         assertFalse(options.getHdf5Builder().getOverrideBlockSize());
+        for (AbstractN5Builder builder : builders) {
+            assertNull(builder.getBlockCache());
+            assertFalse(builder.getCoalesceReads());
+        }
     }
 
 
@@ -53,10 +59,13 @@ public class N5FactoryOptionsTest {
         options.cacheAttributes(false);
         GsonBuilder shared = new GsonBuilder();
         options.gsonBuilder(shared);
+        BlockCache blockCache = new BlockCache(1 << 20);
+        options.blockCache(blockCache);
 
         for (AbstractN5Builder builder : builders) {
             assertFalse(builder.getCacheAttributes());
             assertSame(shared, builder.getGsonBuilder());
+            assertSame(blockCache, builder.getBlockCache());
         }
     }
 
@@ -0,0 +1,156 @@
+package org.janelia.saalfeldlab.n5.universe.pyramid;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.janelia.saalfeldlab.n5.GzipCompression;
+import org.janelia.saalfeldlab.n5.N5FSWriter;
+import org.janelia.saalfeldlab.n5.N5Writer;
+import org.janelia.saalfeldlab.n5.imglib2.N5Utils;
+import org.janelia.saalfeldlab.n5.universe.N5TreeNode;
+import org.janelia.saalfeldlab.n5.universe.metadata.N5SingleScaleMetadata;
+import org.janelia.saalfeldlab.n5.universe.metadata.ome.ngff.NgffSingleScaleAxesMetadata;
+import org.janelia.saalfeldlab.n5.universe.metadata.ome.ngff.OmeNgffMetadata;
+import org.janelia.saalfeldlab.n5.universe.metadata.ome.ngff.OmeNgffMetadataParser;
+import org.janelia.saalfeldlab.n5.universe.pyramid.PyramidBuilder.Reduction;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import net.imglib2.RandomAccess;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.img.array.ArrayImg;
+import net.imglib2.img.array.ArrayImgs;
+import net.imglib2.img.basictypes.FloatArray;
+import net.imglib2.realtransform.AffineTransform3D;
+import net.imglib2.type.numeric.real.FloatType;
+
+public class PyramidBuilderTest {
+
+	private N5Writer n5;
+
+	@Before
+	public void before() throws IOException {
+
+		n5 = new N5FSWriter(Files.createTempDirectory("n5-pyramid-test-").toFile().getCanonicalPath());
+
+		// value = x + 100 y
+		final ArrayImg<FloatType, FloatArray> img = ArrayImgs.floats(16, 12);
+		final RandomAccess<FloatType> ra = img.randomAccess();
+		for (int y = 0; y < 12; y++)
+			for (int x = 0; x < 16; x++) {
+				ra.setPosition(new long[]{x, y});
+				ra.get().set(x + 100 * y);
+			}
+
+		N5Utils.save(img, n5, "img/s0", new int[]{4, 4}, new GzipCompression());
+	}
+
+	@After
+	public void after() {
+
+		n5.remove();
+	}
+
+	@Test
+	public void testAverage() {
+
+		final ExecutorService exec = Executors.newFixedThreadPool(2);
+		try {
+			final String[] levels = new PyramidBuilder(n5, "img").executor(exec).build(null);
+
+			// stops once a level fits into a single block
+			assertArrayEquals(new String[]{"img/s0", "img/s1", "img/s2"}, levels);
+			assertArrayEquals(new long[]{8, 6}, n5.getDatasetAttributes("img/s1").getDimensions());
+			assertArrayEquals(new long[]{4, 3}, n5.getDatasetAttributes("img/s2").getDimensions());
+
+			assertEquals(0.5 + 50, value("img/s1", 0, 0), 1e-6);
+			assertEquals(5 * 2 + 0.5 + 100 * (3 * 2 + 0.5), value("img/s1", 5, 3), 1e-6);
+			assertEquals(1.5 + 150, value("img/s2", 0, 0), 1e-6);
+		} finally {
+			exec.shutdown();
+		}
+	}
+
+	@Test
+	public void testMax() {
+
+		final String[] levels = new PyramidBuilder(n5, "img").reduction(Reduction.MAX).maxLevels(2).build(null);
+
+		assertEquals(2, levels.length);
+		assertEquals(1 + 100, value("img/s1", 0, 0), 1e-6);
+		assertEquals(15 + 1100, value("img/s1", 7, 5), 1e-6);
+	}
+
+	@Test
+	public void testMode() {
+
+		new PyramidBuilder(n5, "img").reduction(Reduction.MODE).maxLevels(2).build(null);
+
+		// all values are distinct, so the smallest of each window is its mode
+		assertEquals(0, value("img/s1", 0, 0), 1e-6);
+		assertEquals(14 + 1000, value("img/s1", 7, 5), 1e-6);
+	}
+
+	@Test
+	public void testN5ViewerMetadata() {
+
+		final AffineTransform3D transform = new AffineTransform3D();
+		transform.set(2, 0, 0);
+		transform.set(3, 1, 1);
+		final N5SingleScaleMetadata base = new N5SingleScaleMetadata("img/s0", transform, new double[]{1, 1},
+				new double[]{2, 3}, new double[]{0, 0}, "um", n5.getDatasetAttributes("img/s0"));
+
+		new PyramidBuilder(n5, "img").maxLevels(2).build(base);
+		assertArrayEquals(new double[]{2, 2}, n5.getAttribute("img/s1", "downsamplingFactors", double[].class), 1e-9);
+		assertArrayEquals(new double[]{2, 3}, Arrays.copyOf(pixelResolution("img/s1"), 2), 1e-9);
+
+		// not averaged, so the resolution is scaled instead
+		new PyramidBuilder(n5, "img").reduction(Reduction.MAX).maxLevels(2).build(base);
+		assertArrayEquals(new double[]{1, 1}, n5.getAttribute("img/s1", "downsamplingFactors", double[].class), 1e-9);
+		assertArrayEquals(new double[]{4, 6}, Arrays.copyOf(pixelResolution("img/s1"), 2), 1e-9);
+	}
+
+	@Test
+	public void testOmeNgffMetadata() {
+
+		final NgffSingleScaleAxesMetadata base = new NgffSingleScaleAxesMetadata("img/s0", new double[]{2, 3},
+				new double[]{10, 20}, n5.getDatasetAttributes("img/s0"));
+
+		new PyramidBuilder(n5, "img").maxLevels(2).build(base);
+		NgffSingleScaleAxesMetadata s1 = ngffLevel(1);
+		assertArrayEquals(new double[]{4, 6}, s1.getScale(), 1e-9);
+		assertArrayEquals(new double[]{11, 21.5}, s1.getTranslation(), 1e-9);
+
+		new PyramidBuilder(n5, "img").reduction(Reduction.MODE).maxLevels(2).build(base);
+		s1 = ngffLevel(1);
+		assertArrayEquals(new double[]{4, 6}, s1.getScale(), 1e-9);
+		assertArrayEquals(new double[]{10, 20}, s1.getTranslation(), 1e-9);
+	}
+
+	private double[] pixelResolution(final String dataset) {
+
+		return n5.getAttribute(dataset, "pixelResolution/dimensions", double[].class);
+	}
+
+	private NgffSingleScaleAxesMetadata ngffLevel(final int level) {
+
+		final OmeNgffMetadata meta = new OmeNgffMetadataParser(n5).parseMetadata(n5, new N5TreeNode("img")).get();
+		return meta.multiscales[0].getChildrenMetadata()[level];
+	}
+
+	private double value(final String dataset, final long... position) {
+
+		final RandomAccessibleInterval<FloatType> img = N5Utils.open(n5, dataset);
+		final RandomAccess<FloatType> ra = img.randomAccess();
+		ra.setPosition(position);
+		return ra.get().getRealDouble();
+	}
+
+}
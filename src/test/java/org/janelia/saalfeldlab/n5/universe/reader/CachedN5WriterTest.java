@@ -0,0 +1,210 @@
+package org.janelia.saalfeldlab.n5.universe.reader;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.file.Files;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.janelia.saalfeldlab.n5.DataBlock;
+import org.janelia.saalfeldlab.n5.DataType;
+import org.janelia.saalfeldlab.n5.DatasetAttributes;
+import org.janelia.saalfeldlab.n5.IntArrayDataBlock;
+import org.janelia.saalfeldlab.n5.N5FSWriter;
+import org.janelia.saalfeldlab.n5.RawCompression;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class CachedN5WriterTest {
+
+	private static final DatasetAttributes ATTRS = new DatasetAttributes(new long[]{16, 16}, new int[]{4, 4},
+			DataType.INT32, new RawCompression());
+
+	private BlockCache cache;
+
+	private CachedN5Writer n5;
+
+	@Before
+	public void before() throws IOException {
+
+		// room for three 64 byte blocks
+		cache = new BlockCache(3 * 64);
+		n5 = new CachedN5Writer(new N5FSWriter(Files.createTempDirectory("n5-block-cache-test-").toFile().getCanonicalPath()), cache);
+		n5.createDataset("img", ATTRS);
+	}
+
+	@After
+	public void after() {
+
+		n5.remove();
+	}
+
+	private static DataBlock<int[]> block(final int value, final long... gridPosition) {
+
+		final int[] data = new int[16];
+		data[0] = value;
+		return new IntArrayDataBlock(new int[]{4, 4}, gridPosition, data);
+	}
+
+	private int value(final long... gridPosition) {
+
+		return ((int[])n5.readBlock("img", ATTRS, gridPosition).getData())[0];
+	}
+
+	@Test
+	public void testHitsAndInvalidation() {
+
+		n5.writeBlock("img", ATTRS, block(1, 0, 0));
+		assertEquals(1, value(0, 0));
+		assertEquals(1, value(0, 0));
+		assertNotSame(n5.readBlock("img", ATTRS, 0, 0), n5.readBlock("img", ATTRS, 0, 0));
+		assertEquals(1, cache.getMisses());
+		assertEquals(3, cache.getHits());
+
+		// callers get copies, modifying them does not change the cached block
+		((int[])n5.readBlock("img", ATTRS, 0, 0).getData())[0] = 7;
+		assertEquals(1, value(0, 0));
+
+		// writes through the cached writer are seen
+		n5.writeBlock("img", ATTRS, block(2, 0, 0));
+		assertEquals(2, value(0, 0));
+
+		// missing blocks are not cached
+		assertNull(n5.readBlock("img", ATTRS, 1, 1));
+		n5.writeBlock("img", ATTRS, block(3, 1, 1));
+		assertEquals(3, value(1, 1));
+
+		n5.deleteBlock("img", 1, 1);
+		assertNull(n5.readBlock("img", ATTRS, 1, 1));
+	}
+
+	@Test
+	public void testDatasetAttributes() {
+
+		n5.writeBlock("img", ATTRS, block(1, 0, 0));
+		assertEquals(1, value(0, 0));
+
+		// a block read with other attributes is not taken from the cache
+		final DatasetAttributes other = new DatasetAttributes(new long[]{16, 16}, new int[]{4, 4},
+				DataType.FLOAT32, new RawCompression());
+		final long misses = cache.getMisses();
+		assertTrue(n5.readBlock("img", other, 0, 0).getData() instanceof float[]);
+		assertEquals(misses + 1, cache.getMisses());
+	}
+
+	@Test
+	public void testSerialization() throws IOException, ClassNotFoundException {
+
+		n5.writeBlock("img", ATTRS, block(1, 0, 0));
+		value(0, 0);
+
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (final ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+			out.writeObject(cache);
+		}
+
+		try (final ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+			final BlockCache copy = (BlockCache)in.readObject();
+			assertEquals(cache.getMaxBytes(), copy.getMaxBytes());
+			assertEquals(0, copy.size());
+			assertEquals(0, copy.getHits());
+		}
+	}
+
+	@Test
+	public void testWriteDuringRead() throws Exception {
+
+		n5.writeBlock("img", ATTRS, block(1, 0, 0));
+
+		// a backend that has read the block and waits before returning it
+		final CountDownLatch read = new CountDownLatch(1);
+		final CountDownLatch release = new CountDownLatch(1);
+		final CachedN5Reader reader = new CachedN5Reader(new ForwardingN5Reader(n5.writer) {
+
+			@Override
+			public DataBlock<?> readBlock(final String pathName, final DatasetAttributes datasetAttributes, final long... gridPosition) {
+
+				final DataBlock<?> block = super.readBlock(pathName, datasetAttributes, gridPosition);
+				read.countDown();
+				try {
+					release.await();
+				} catch (final InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				return block;
+			}
+		}, cache);
+
+		final ExecutorService exec = Executors.newSingleThreadExecutor();
+		try {
+			final Future<DataBlock<?>> future = exec.submit(() -> reader.readBlock("img", ATTRS, 0, 0));
+			read.await();
+			n5.writeBlock("img", ATTRS, block(2, 0, 0));
+			release.countDown();
+			assertEquals(1, ((int[])future.get().getData())[0]);
+		} finally {
+			exec.shutdown();
+		}
+
+		// the block read before the write was not cached
+		assertEquals(0, cache.size());
+		assertEquals(2, value(0, 0));
+	}
+
+	@Test
+	public void testWriteInvalidatesSameChunk() {
+
+		final BlockCache large = new BlockCache(1 << 20);
+		final CachedN5Writer writer = new CachedN5Writer(n5.writer, large);
+		writer.writeBlock("img", ATTRS, block(1, 0, 0));
+		writer.writeBlock("img", ATTRS, block(2, 1, 0));
+		for (int i = 0; i < 2; i++) {
+			writer.readBlock("img", ATTRS, i, 0);
+			writer.readChunk("img", ATTRS, i, 0);
+		}
+		assertEquals(4, large.size());
+
+		// blocks and chunks are the same, only the chunk at the written position is removed
+		writer.writeBlock("img", ATTRS, block(3, 1, 0));
+		assertEquals(2, large.size());
+		assertEquals(3, ((int[])writer.readChunk("img", ATTRS, 1, 0).getData())[0]);
+
+		writer.setDatasetAttributes("img", ATTRS);
+		assertEquals(0, large.size());
+	}
+
+	@Test
+	public void testEviction() {
+
+		for (int i = 0; i < 4; i++)
+			n5.writeBlock("img", ATTRS, block(i, i, 0));
+
+		for (int i = 0; i < 4; i++)
+			value(i, 0);
+
+		assertEquals(3, cache.size());
+		assertEquals(3 * 64, cache.getBytes());
+		assertEquals(1, cache.getEvictions());
+
+		// the least recently used block was evicted
+		final long misses = cache.getMisses();
+		value(0, 0);
+		assertEquals(misses + 1, cache.getMisses());
+		assertTrue(cache.getHitRate() < 0.5);
+
+		n5.remove("img");
+		assertEquals(0, cache.size());
+	}
+
+}
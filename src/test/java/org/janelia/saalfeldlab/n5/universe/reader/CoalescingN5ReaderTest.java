@@ -0,0 +1,302 @@
+package org.janelia.saalfeldlab.n5.universe.reader;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import org.janelia.saalfeldlab.n5.DataBlock;
+import org.janelia.saalfeldlab.n5.DataType;
+import org.janelia.saalfeldlab.n5.DatasetAttributes;
+import org.janelia.saalfeldlab.n5.FloatArrayDataBlock;
+import org.janelia.saalfeldlab.n5.GsonN5Reader;
+import org.janelia.saalfeldlab.n5.IntArrayDataBlock;
+import org.janelia.saalfeldlab.n5.N5Exception;
+import org.janelia.saalfeldlab.n5.N5FSWriter;
+import org.janelia.saalfeldlab.n5.N5Writer;
+import org.janelia.saalfeldlab.n5.RawCompression;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.gson.JsonPrimitive;
+
+public class CoalescingN5ReaderTest {
+
+	private static final DatasetAttributes ATTRS = new DatasetAttributes(new long[]{8, 8}, new int[]{4, 4},
+			DataType.INT32, new RawCompression());
+
+	private static final int NUM_THREADS = 8;
+
+	private N5FSWriter n5;
+
+	private final AtomicInteger backendReads = new AtomicInteger();
+
+	private final CountDownLatch release = new CountDownLatch(1);
+
+	@Before
+	public void before() throws IOException {
+
+		n5 = new N5FSWriter(Files.createTempDirectory("n5-coalescing-test-").toFile().getCanonicalPath());
+		n5.createDataset("img", ATTRS);
+		n5.writeBlock("img", ATTRS, new IntArrayDataBlock(new int[]{4, 4}, new long[]{0, 0}, new int[16]));
+		n5.setAttribute("img", "meta", JsonParser.parseString("{\"name\":\"img\"}"));
+		n5.setAttribute("img", "scale", new double[]{1, 2});
+	}
+
+	@After
+	public void after() {
+
+		n5.remove();
+	}
+
+	/**
+	 * A backend whose block and attribute reads wait until the test releases
+	 * them.
+	 */
+	private class SlowBackend extends ForwardingN5Reader implements ForwardingGsonN5Reader {
+
+		private final boolean fail;
+
+		SlowBackend(final N5Writer n5, final boolean fail) {
+
+			super(n5);
+			this.fail = fail;
+		}
+
+		private void read() {
+
+			backendReads.incrementAndGet();
+			try {
+				release.await();
+			} catch (final InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			if (fail)
+				throw new N5Exception("backend failure");
+		}
+
+		@Override
+		public DataBlock<?> readBlock(final String pathName, final DatasetAttributes datasetAttributes, final long... gridPosition) {
+
+			read();
+			return super.readBlock(pathName, datasetAttributes, gridPosition);
+		}
+
+		@Override
+		public <T> T getAttribute(final String pathName, final String key, final Class<T> clazz) throws N5Exception {
+
+			read();
+			return super.getAttribute(pathName, key, clazz);
+		}
+
+		@Override
+		public JsonElement getAttributes(final String pathName) throws N5Exception.N5IOException {
+
+			read();
+			return ForwardingGsonN5Reader.super.getAttributes(pathName);
+		}
+	}
+
+	/**
+	 * Runs the read in all threads, and releases the backend once all reads
+	 * have started.
+	 */
+	private <T> List<Future<T>> readConcurrently(final Callable<T> read, final BooleanSupplier started,
+			final ExecutorService exec) throws InterruptedException {
+
+		final List<Future<T>> futures = new ArrayList<>();
+		for (int i = 0; i < NUM_THREADS; i++)
+			futures.add(exec.submit(read));
+
+		while (!started.getAsBoolean())
+			Thread.sleep(1);
+
+		release.countDown();
+		return futures;
+	}
+
+	private <T> List<T> readConcurrently(final CoalescingN5Reader reader, final Callable<T> read) throws Exception {
+
+		final ExecutorService exec = Executors.newFixedThreadPool(NUM_THREADS);
+		try {
+			final List<T> results = new ArrayList<>();
+			for (final Future<T> future : readConcurrently(read, () -> reader.getRequests() >= NUM_THREADS, exec))
+				results.add(future.get());
+
+			return results;
+		} finally {
+			exec.shutdown();
+		}
+	}
+
+	@Test
+	public void testSingleFlight() throws Exception {
+
+		final CoalescingN5Reader reader = new CoalescingN5Reader(new SlowBackend(n5, false));
+		final List<DataBlock<?>> blocks = readConcurrently(reader, () -> reader.readBlock("img", ATTRS, 0, 0));
+
+		assertEquals(1, backendReads.get());
+		assertEquals(NUM_THREADS - 1, reader.getCoalesced());
+
+		// every caller gets its own copy
+		((int[])blocks.get(0).getData())[0] = 1;
+		for (int i = 1; i < NUM_THREADS; i++) {
+			assertNotSame(blocks.get(0), blocks.get(i));
+			assertArrayEquals(new int[16], (int[])blocks.get(i).getData());
+		}
+
+		// nothing is kept after the read is done
+		reader.readBlock("img", ATTRS, 0, 0);
+		assertEquals(2, backendReads.get());
+	}
+
+	@Test
+	public void testDatasetAttributes() throws Exception {
+
+		final DatasetAttributes floats = new DatasetAttributes(ATTRS.getDimensions(), ATTRS.getBlockSize(),
+				DataType.FLOAT32, new RawCompression());
+
+		final CoalescingN5Reader reader = new CoalescingN5Reader(new SlowBackend(n5, false));
+		final AtomicInteger calls = new AtomicInteger();
+		final List<DataBlock<?>> blocks = readConcurrently(reader,
+				() -> reader.readBlock("img", calls.getAndIncrement() % 2 == 0 ? ATTRS : floats, 0, 0));
+
+		// reads with different attributes are not merged
+		assertEquals(2, backendReads.get());
+		assertEquals(NUM_THREADS - 2, reader.getCoalesced());
+		assertEquals(NUM_THREADS / 2, blocks.stream().filter(b -> b instanceof IntArrayDataBlock).count());
+		assertEquals(NUM_THREADS / 2, blocks.stream().filter(b -> b instanceof FloatArrayDataBlock).count());
+	}
+
+	@Test
+	public void testSharedFailure() throws Exception {
+
+		final CoalescingN5Reader reader = new CoalescingN5Reader(new SlowBackend(n5, true));
+		final ExecutorService exec = Executors.newFixedThreadPool(NUM_THREADS);
+		try {
+			int failures = 0;
+			for (final Future<DataBlock<?>> future : readConcurrently(() -> reader.readBlock("img", ATTRS, 0, 0),
+					() -> reader.getRequests() >= NUM_THREADS, exec)) {
+				try {
+					future.get();
+				} catch (final ExecutionException e) {
+					assertEquals(N5Exception.class, e.getCause().getClass());
+					failures++;
+				}
+			}
+			assertEquals(NUM_THREADS, failures);
+		} finally {
+			exec.shutdown();
+		}
+
+		assertEquals(1, backendReads.get());
+	}
+
+	@Test
+	public void testJsonAttributes() throws Exception {
+
+		final CoalescingN5Reader reader = new CoalescingN5Reader(new SlowBackend(n5, false));
+		final List<JsonObject> attributes = readConcurrently(reader,
+				() -> reader.getAttribute("img", "meta", JsonObject.class));
+
+		assertEquals(1, backendReads.get());
+		assertEquals(NUM_THREADS - 1, reader.getCoalesced());
+
+		// every caller gets its own copy
+		attributes.get(0).add("name", new JsonPrimitive("changed"));
+		for (int i = 1; i < NUM_THREADS; i++) {
+			assertNotSame(attributes.get(0), attributes.get(i));
+			assertEquals("img", attributes.get(i).get("name").getAsString());
+		}
+	}
+
+	@Test
+	public void testTypedAttributes() throws Exception {
+
+		final CoalescingN5Reader reader = new CoalescingN5Reader(new SlowBackend(n5, false));
+		final ExecutorService exec = Executors.newFixedThreadPool(NUM_THREADS);
+		final List<double[]> scales = new ArrayList<>();
+		try {
+			// typed attributes cannot be copied, all reads go to the backend
+			for (final Future<double[]> future : readConcurrently(() -> reader.getAttribute("img", "scale", double[].class),
+					() -> backendReads.get() >= NUM_THREADS, exec))
+				scales.add(future.get());
+		} finally {
+			exec.shutdown();
+		}
+
+		assertEquals(NUM_THREADS, backendReads.get());
+		assertEquals(0, reader.getCoalesced());
+		for (int i = 1; i < NUM_THREADS; i++)
+			assertNotSame(scales.get(0), scales.get(i));
+	}
+
+	@Test
+	public void testGsonTypedAttributes() throws Exception {
+
+		final CoalescingN5Reader reader = CoalescingN5Reader.wrap(new SlowBackend(n5, false));
+		final List<double[]> scales = readConcurrently(reader, () -> reader.getAttribute("img", "scale", double[].class));
+
+		// the json attributes are read once, every caller deserializes its own value
+		assertEquals(1, backendReads.get());
+		assertEquals(NUM_THREADS - 1, reader.getCoalesced());
+		for (int i = 1; i < NUM_THREADS; i++) {
+			assertNotSame(scales.get(0), scales.get(i));
+			assertArrayEquals(new double[]{1, 2}, scales.get(i), 0);
+		}
+	}
+
+	@Test
+	public void testGsonDatasetAttributes() throws Exception {
+
+		final CoalescingN5Reader reader = CoalescingN5Reader.wrap(new SlowBackend(n5, false));
+		final List<DatasetAttributes> attributes = readConcurrently(reader, () -> reader.getDatasetAttributes("img"));
+
+		assertEquals(1, backendReads.get());
+		assertEquals(NUM_THREADS - 1, reader.getCoalesced());
+		for (final DatasetAttributes attrs : attributes) {
+			assertArrayEquals(ATTRS.getDimensions(), attrs.getDimensions());
+			assertArrayEquals(ATTRS.getBlockSize(), attrs.getBlockSize());
+			assertEquals(ATTRS.getDataType(), attrs.getDataType());
+		}
+	}
+
+	@Test
+	public void testGson() throws Exception {
+
+		assertTrue(CoalescingN5Reader.wrap(n5) instanceof GsonN5Reader);
+		assertFalse(CoalescingN5Reader.wrap(new ForwardingN5Reader(n5)) instanceof GsonN5Reader);
+
+		final CoalescingN5Reader reader = CoalescingN5Reader.wrap(new SlowBackend(n5, false));
+		assertTrue(reader instanceof GsonN5Reader);
+
+		final List<JsonElement> attributes = readConcurrently(reader, () -> ((GsonN5Reader)reader).getAttributes("img"));
+		assertEquals(1, backendReads.get());
+		assertEquals(NUM_THREADS - 1, reader.getCoalesced());
+
+		attributes.get(0).getAsJsonObject().remove("meta");
+		for (int i = 1; i < NUM_THREADS; i++) {
+			assertNotSame(attributes.get(0), attributes.get(i));
+			assertTrue(attributes.get(i).getAsJsonObject().has("meta"));
+		}
+	}
+
+}
@@ -0,0 +1,168 @@
+package org.janelia.saalfeldlab.n5.universe.reader;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.janelia.saalfeldlab.n5.DataType;
+import org.janelia.saalfeldlab.n5.DatasetAttributes;
+import org.janelia.saalfeldlab.n5.GsonN5Reader;
+import org.janelia.saalfeldlab.n5.IntArrayDataBlock;
+import org.janelia.saalfeldlab.n5.N5Exception;
+import org.janelia.saalfeldlab.n5.N5FSReader;
+import org.janelia.saalfeldlab.n5.N5FSWriter;
+import org.janelia.saalfeldlab.n5.N5Reader;
+import org.janelia.saalfeldlab.n5.N5Writer;
+import org.janelia.saalfeldlab.n5.RawCompression;
+import org.janelia.saalfeldlab.n5.hdf5.N5HDF5Reader;
+import org.janelia.saalfeldlab.n5.hdf5.N5HDF5Writer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.gson.GsonBuilder;
+
+public class PooledN5ReaderTest {
+
+	private String location;
+
+	private N5Writer n5;
+
+	@Before
+	public void before() throws IOException {
+
+		location = Files.createTempDirectory("n5-pooled-reader-test-").toFile().getCanonicalPath();
+		n5 = new N5FSWriter(location);
+		writeBlocks(n5);
+	}
+
+	@After
+	public void after() {
+
+		n5.remove();
+	}
+
+	@Test
+	public void testConcurrentReads() throws Exception {
+
+		final AtomicInteger opened = new AtomicInteger();
+		final PooledN5Reader pool = new PooledN5Reader(() -> {
+			opened.incrementAndGet();
+			return new N5FSReader(location);
+		}, 3);
+
+		assertEquals(1, opened.get());
+		readConcurrently(pool);
+
+		assertTrue(opened.get() <= 3);
+		assertArrayEquals(new long[]{16, 16}, pool.getDatasetAttributes("img").getDimensions());
+	}
+
+	@Test
+	public void testHDF5() throws Exception {
+
+		final File h5 = new File(location, "pooled.h5");
+		final N5Writer h5Writer = new N5HDF5Writer(h5.getAbsolutePath(), false, new GsonBuilder(), new int[]{4, 4});
+		try {
+			writeBlocks(h5Writer);
+		} finally {
+			h5Writer.close();
+		}
+
+		final PooledN5Reader pool = PooledN5Reader.open(
+				() -> new N5HDF5Reader(h5.getAbsolutePath(), false, new GsonBuilder(), new int[]{4, 4}), 3);
+		try {
+			assertEquals(N5HDF5Reader.class, ForwardingN5Reader.unwrap(pool).getClass());
+			readConcurrently(pool);
+		} finally {
+			pool.close();
+		}
+	}
+
+	private static void writeBlocks(final N5Writer n5) {
+
+		final DatasetAttributes attrs = new DatasetAttributes(new long[]{16, 16}, new int[]{4, 4}, DataType.INT32, new RawCompression());
+		n5.createDataset("img", attrs);
+		for (int y = 0; y < 4; y++)
+			for (int x = 0; x < 4; x++) {
+				final int[] data = new int[16];
+				data[0] = x + 4 * y;
+				n5.writeBlock("img", attrs, new IntArrayDataBlock(new int[]{4, 4}, new long[]{x, y}, data));
+			}
+	}
+
+	private static void readConcurrently(final N5Reader pool) throws Exception {
+
+		final DatasetAttributes attrs = pool.getDatasetAttributes("img");
+		final ExecutorService exec = Executors.newFixedThreadPool(8);
+		try {
+			final List<Future<Integer>> futures = new ArrayList<>();
+			for (int i = 0; i < 200; i++) {
+				final long x = i % 4;
+				final long y = (i / 4) % 4;
+				futures.add(exec.submit(() -> ((int[])pool.readBlock("img", attrs, x, y).getData())[0]));
+			}
+
+			for (int i = 0; i < futures.size(); i++)
+				assertEquals(i % 4 + 4 * ((i / 4) % 4), futures.get(i).get().intValue());
+		} finally {
+			exec.shutdown();
+		}
+	}
+
+	@Test
+	public void testForwarding() {
+
+		final PooledN5Reader pool = PooledN5Reader.open(() -> new N5FSReader(location), 2);
+		assertTrue(pool instanceof GsonN5Reader);
+		assertEquals(N5FSReader.class, ForwardingN5Reader.unwrap(pool).getClass());
+		assertNotNull(((GsonN5Reader)pool).getAttributes("img"));
+		pool.close();
+	}
+
+	@Test
+	public void testCloseInUse() {
+
+		final List<N5Reader> closed = Collections.synchronizedList(new ArrayList<>());
+		final PooledN5Reader pool = new PooledN5Reader(() -> new N5FSReader(location) {
+
+			@Override
+			public void close() {
+
+				closed.add(this);
+				super.close();
+			}
+		}, 2);
+
+		pool.apply(n5 -> {
+			pool.close();
+
+			// the reader in use stays open until the call returns
+			assertTrue(closed.isEmpty());
+			assertTrue(n5.exists("img"));
+			return null;
+		});
+		assertEquals(1, closed.size());
+	}
+
+	@Test(expected = N5Exception.class)
+	public void testClosed() {
+
+		final PooledN5Reader pool = new PooledN5Reader(() -> new N5FSReader(location), 2);
+		pool.close();
+		pool.exists("img");
+	}
+
+}
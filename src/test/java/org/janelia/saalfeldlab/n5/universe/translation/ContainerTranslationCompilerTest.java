@@ -0,0 +1,205 @@
+package org.janelia.saalfeldlab.n5.universe.translation;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Map;
+import java.util.Optional;
+
+import org.janelia.saalfeldlab.n5.universe.container.ContainerMetadataNode;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+
+import net.thisptr.jackson.jq.exception.JsonQueryException;
+
+public class ContainerTranslationCompilerTest {
+
+	private static final String TREE = "{\"path\":\"\",\"attributes\":{\"axes\":[\"x\",\"y\",\"z\"],\"unit\":\"um\"},"
+			+ "\"children\":{"
+			+ "\"s0\":{\"path\":\"/s0\",\"attributes\":{\"dimensions\":[1,2,3],\"dataType\":\"uint8\",\"res\":[1,2,3],\"orig\":5},\"children\":{}},"
+			+ "\"s1\":{\"path\":\"/s1\",\"attributes\":{\"res\":[2,4,6]},\"children\":{}}}}";
+
+	/**
+	 * A tree with a node without attributes and a null node, as produced by
+	 * jq translations.
+	 */
+	private static final String TREE_EMPTY_NODES = "{\"path\":\"\",\"attributes\":{\"unit\":\"um\"},"
+			+ "\"children\":{"
+			+ "\"s0\":{\"path\":\"/s0\",\"attributes\":null,\"children\":{}},"
+			+ "\"s1\":null}}";
+
+	private static final String[] SUPPORTED = new String[]{
+			"include \"n5\"; .",
+			"include \"n5\"; moveSubTree( \"/s1\"; \"a/b\" )",
+			"include \"n5\"; moveSubTree( \"/s1\"; \"s0/s1\" )",
+			"include \"n5\"; moveSubTree( \"/missing\"; \"a/b\" )",
+			"include \"n5\"; moveSubTree( \"/s0/missing\"; \"s1/b\" )",
+			"include \"n5\"; treeAddAttrs( \"/s1\"; {\"unit\":\"nm\", \"res\":[9]} )",
+			"include \"n5\"; treeAddAttrs( \"\"; {\"unit\":\"nm\"} )",
+			"include \"n5\"; treeAddAttrs( \"new/group\"; {\"x\":1} )",
+			"include \"n5\"; treeEditAttrs( \"/s0\"; del(.res) )",
+			"include \"n5\"; treeEditAttrs( \"/s1\"; {\"unit\":\"nm\"} + . )",
+			"include \"n5\"; .attributes |= . + {\"version\":\"1\"}",
+			"include \"n5\"; walk( if hasAttributes then .attributes |= {\"unit\":\"nm\"} + . else . end )",
+			"include \"n5\"; walk( if hasAttributes then .attributes |= del(.res) else . end )",
+			"include \"n5\"; walk( if isDataset then .attributes |= . + {\"dataset\":true} else . end )",
+			"include \"n5\"; walk( if hasAttributes then .attributes |= with_entries( .key |= if . == \"res\" then \"resolution\" else . end ) else . end )",
+			"include \"n5\"; walk( if hasAttributes then .attributes |= if has(\"axes\") then .axes |= reverse else . end else . end )",
+			"include \"n5\"; def hasAttributes: type == \"object\" and has(\"attributes\"); "
+					+ "def convFwd: .attributes |= (. + { \"translated\" : .orig? } | del( .orig )); "
+					+ "walk( if hasAttributes then convFwd else . end )",
+			"include \"n5\"; moveSubTree( \"/s1\"; \"a/b\" ) | treeAddAttrs( \"a\"; {\"x\":1} ) | (.attributes |= del(.unit))",
+			"include \"n5\"; treeDefaultAttrs( \"/s1\"; {\"unit\":\"nm\", \"res\":[9]} )",
+			"include \"n5\"; treeDefaultAttrs( \"new/group\"; {\"x\":1} )",
+			"include \"n5\"; treeRenameAttr( \"res\"; \"resolution\" )",
+			"include \"n5\"; treeRenameAttr( \"res\"; \"orig\" )",
+			"include \"n5\"; treeReverseAttr( \"axes\" )",
+			"include \"n5\"; treePushAttrToChildren( \"unit\" )",
+			"include \"n5\"; treePullAttrFromChild( \"s0\"; \"dimensions\" )",
+			"include \"n5\"; treeReverseAttr( \"res\" ) | treePushAttrToChildren( \"axes\" ) | treeRenameAttr( \"axes\"; \"labels\" )"
+	};
+
+	private static final String[] UNSUPPORTED = new String[]{
+			"moveSubTree( \"/s1\"; \"a\" )",
+			"include \"n5\"; walk( . )",
+			"include \"n5\"; .attributes |= . + {\"b\": (.b + 1)}",
+			"include \"n5\"; def hasAttributes: true; walk( if hasAttributes then .attributes |= del(.res) else . end )",
+			"include \"n5\"; moveSubTree( .src; \"a\" )",
+			"include \"n5\"; walk( if isAttributes then .attributes |= del(.res) else . end )",
+			"include \"n5\"; treeRenameAttr( \"res\"; \"a\" ) + treeRenameAttr( \"res\"; \"b\" )",
+			"include \"n5\"; treeRenameAttr( .res; \"a\" )",
+			"include \"n5\"; treeRenameAttr( \"res\" )",
+			"include \"n5\"; def treeReverseAttr( $k ): .; treeReverseAttr( \"axes\" )"
+	};
+
+	private Gson gson;
+
+	private ContainerMetadataNode root;
+
+	@Before
+	public void before() {
+
+		gson = JqUtils.buildGson(null);
+		root = gson.fromJson(TREE, ContainerMetadataNode.class);
+	}
+
+	/**
+	 * The output of the jq query, without null members and empty children.
+	 */
+	private JsonElement jq(final String translation, final ContainerMetadataNode tree) throws JsonQueryException {
+
+		return normalize(JqUtils.apply(JqUtils.compile(translation), JqUtils.rootScope(), gson.toJsonTree(tree)));
+	}
+
+	private JsonElement translate(final ContainerTranslation translation, final ContainerMetadataNode tree) {
+
+		return normalize(gson.toJsonTree(translation.apply(tree)));
+	}
+
+	private static JsonElement normalize(final JsonElement elem) {
+
+		if (elem == null || !elem.isJsonObject())
+			return elem;
+
+		final JsonObject out = new JsonObject();
+		for (final Map.Entry<String, JsonElement> e : elem.getAsJsonObject().entrySet()) {
+			final JsonElement value = normalize(e.getValue());
+			if (value == null || value.isJsonNull())
+				continue;
+			else if (e.getKey().equals("children") && value.isJsonObject() && value.getAsJsonObject().size() == 0)
+				continue;
+
+			out.add(e.getKey(), value);
+		}
+		return out;
+	}
+
+	@Test
+	public void testNativeMatchesJq() throws JsonQueryException {
+
+		for (final String translation : SUPPORTED) {
+
+			final Optional<NativeContainerTranslation> nativeTranslation = ContainerTranslationCompiler.compileNative(translation);
+			assertTrue(translation, nativeTranslation.isPresent());
+			assertEquals(translation, jq(translation, root), translate(nativeTranslation.get(), root));
+		}
+	}
+
+	@Test
+	public void testMissingSource() {
+
+		final String translation = "include \"n5\"; moveSubTree( \"/missing\"; \"a/b\" )";
+		final ContainerMetadataNode result = ContainerTranslationCompiler.compileNative(translation).get().apply(root);
+
+		// like jq setpath, the destination is null and the new group has no attributes
+		assertTrue(result.getChildren().containsKey("a"));
+		assertNull(result.getChildren().get("a").getContainerAttributes());
+		assertTrue(result.getChildren().get("a").getChildren().containsKey("b"));
+		assertNull(result.getChildren().get("a").getChildren().get("b"));
+	}
+
+	@Test
+	public void testNodesWithoutAttributes() throws JsonQueryException {
+
+		final ContainerMetadataNode emptyNodes = gson.fromJson(TREE_EMPTY_NODES, ContainerMetadataNode.class);
+		final String[] translations = new String[]{
+				"include \"n5\"; walk( if hasAttributes then .attributes |= {\"unit\":\"nm\"} + . else . end )",
+				"include \"n5\"; treeAddAttrs( \"/s0\"; {\"unit\":\"nm\"} )",
+				"include \"n5\"; treeEditAttrs( \"/s0\"; del(.unit) )",
+				"include \"n5\"; treeDefaultAttrs( \"/s0\"; {\"unit\":\"nm\"} )",
+				"include \"n5\"; treePushAttrToChildren( \"unit\" )",
+				"include \"n5\"; treePullAttrFromChild( \"s1\"; \"unit\" )"
+		};
+
+		for (final String translation : translations)
+			assertEquals(translation, jq(translation, emptyNodes),
+					translate(ContainerTranslationCompiler.compileNative(translation).get(), emptyNodes));
+	}
+
+	@Test
+	public void testUnsupportedTrees() throws JsonQueryException {
+
+		// the jq walk also edits attribute values that have attributes
+		root.getChildren().get("s1").getContainerAttributes().put("nested",
+				gson.fromJson("{\"attributes\":{\"res\":1}}", JsonElement.class));
+
+		// jq keeps one of the values of duplicate keys
+		root.getChildren().get("s0").getContainerAttributes().put("resolution",
+				gson.fromJson("[4,5,6]", JsonElement.class));
+
+		final String[] translations = new String[]{
+				"include \"n5\"; walk( if hasAttributes then .attributes |= del(.res) else . end )",
+				"include \"n5\"; walk( if hasAttributes then .attributes |= with_entries( .key |= if . == \"res\" then \"resolution\" else . end ) else . end )"
+		};
+
+		for (final String translation : translations)
+			assertEquals(translation, jq(translation, root),
+					translate(ContainerTranslationCompiler.compileNative(translation).get(), root));
+	}
+
+	@Test
+	public void testInputUnchanged() {
+
+		final JsonElement before = gson.toJsonTree(root);
+		for (final String translation : SUPPORTED)
+			ContainerTranslationCompiler.compileNative(translation).get().apply(root);
+
+		assertEquals(before, gson.toJsonTree(root));
+	}
+
+	@Test
+	public void testFallback() {
+
+		for (final String translation : UNSUPPORTED) {
+			assertFalse(translation, ContainerTranslationCompiler.compileNative(translation).isPresent());
+			assertTrue(translation, ContainerTranslationCompiler.compile(translation, gson) instanceof JqContainerTranslation);
+		}
+	}
+
+}
@@ -0,0 +1,45 @@
+package org.janelia.saalfeldlab.n5.universe.translation;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+
+public class GsonJacksonConverterTest {
+
+	private static final String JSON = "{\"a\":1,\"b\":2.5,\"c\":[1,2.0,3e2,12345678901],\"d\":{\"e\":\"str\",\"f\":true,\"g\":null}}";
+
+	@Test
+	public void testMatchesStringRoundTrip() throws Exception {
+
+		final Gson gson = new Gson();
+		final ObjectMapper objMapper = new ObjectMapper();
+
+		final JsonElement elem = gson.fromJson(JSON, JsonElement.class);
+		final JsonNode expected = objMapper.readTree(gson.toJson(elem));
+		final JsonNode converted = GsonJacksonConverter.toJsonNode(elem, false);
+
+		assertEquals(expected, converted);
+		assertTrue(converted.get("a").isInt());
+		assertTrue(converted.get("b").isDouble());
+		assertTrue(converted.get("c").get(1).isDouble());
+		assertTrue(converted.get("c").get(3).isLong());
+	}
+
+	@Test
+	public void testRoundTrip() throws Exception {
+
+		final Gson gson = new Gson();
+		final JsonElement elem = gson.fromJson(JSON, JsonElement.class);
+
+		final JsonElement expected = gson.fromJson(new ObjectMapper().readTree(gson.toJson(elem)).toString(), JsonElement.class);
+		final JsonElement roundTrip = GsonJacksonConverter.toJsonElement(GsonJacksonConverter.toJsonNode(elem, false));
+		assertEquals(gson.toJson(expected), gson.toJson(roundTrip));
+	}
+
+}
@@ -0,0 +1,160 @@
+package org.janelia.saalfeldlab.n5.universe.translation;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Predicate;
+
+import org.janelia.saalfeldlab.n5.universe.container.ContainerMetadataNode;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+
+public class PiecewiseContainerTranslationTest {
+
+	private static final String TREE = "{\"path\":\"\",\"attributes\":{\"top\":true},"
+			+ "\"children\":{"
+			+ "\"n5v\":{\"path\":\"/n5v\",\"attributes\":{\"pixelResolution\":[1,2]},\"children\":{"
+			+ "\"s0\":{\"path\":\"/n5v/s0\",\"attributes\":{\"pixelResolution\":[1,2]},\"children\":{}}}},"
+			+ "\"cosem\":{\"path\":\"/cosem\",\"attributes\":{\"transform\":{}},\"children\":{}},"
+			+ "\"plain\":{\"path\":\"/plain\",\"attributes\":{},\"children\":{"
+			+ "\"nested\":{\"path\":\"/plain/nested\",\"attributes\":{\"transform\":{}},\"children\":{}}}}}}";
+
+	private Gson gson;
+
+	private ContainerMetadataNode root;
+
+	private ForkJoinPool pool;
+
+	private ForkJoinPool foreignPool;
+
+	private Set<ForkJoinPool> testedIn;
+
+	@Before
+	public void before() {
+
+		gson = JqUtils.buildGson(null);
+		root = gson.fromJson(TREE, ContainerMetadataNode.class);
+		pool = new ForkJoinPool(2);
+		foreignPool = new ForkJoinPool(2);
+		testedIn = ConcurrentHashMap.newKeySet();
+	}
+
+	@After
+	public void after() {
+
+		pool.shutdown();
+		foreignPool.shutdown();
+	}
+
+	private <T extends PiecewiseContainerTranslation> T addTranslations(final T translation) {
+
+		translation.add(new JqPredicate<>(".attributes | has(\"pixelResolution\")", gson),
+				translation("{\"convention\":\"n5v\"}"));
+		translation.add(recording(n -> n.getContainerAttributes().containsKey("transform")),
+				translation("{\"convention\":\"cosem\"}"));
+		translation.add(recording(n -> n.getContainerAttributes().containsKey("top")),
+				translation("{\"convention\":\"container\"}"));
+		return translation;
+	}
+
+	private static ContainerTranslation translation(final String attrs) {
+
+		return ContainerTranslationCompiler.compileNative("include \"n5\"; treeAddAttrs( \"\"; " + attrs + " )").get();
+	}
+
+	private Predicate<ContainerMetadataNode> recording(final Predicate<ContainerMetadataNode> predicate) {
+
+		return n -> {
+			final ForkJoinPool current = ForkJoinTask.getPool();
+			if (current != null)
+				testedIn.add(current);
+
+			return predicate.test(n);
+		};
+	}
+
+	private static String convention(final ContainerMetadataNode node, final String path) {
+
+		final JsonElement convention = node.getChild(path).get().getContainerAttributes().get("convention");
+		return convention == null ? null : convention.getAsString();
+	}
+
+	@Test
+	public void testParallelMatchesSequential() {
+
+		final ContainerMetadataNode sequential = addTranslations(new PiecewiseContainerTranslation()).apply(root);
+		final ContainerMetadataNode parallel = addTranslations(new PiecewiseContainerTranslation(pool)).apply(root);
+
+		assertEquals("container", convention(sequential, ""));
+		assertEquals(gson.toJsonTree(sequential), gson.toJsonTree(parallel));
+	}
+
+	@Test
+	public void testParallelUsesConfiguredPool() throws InterruptedException, ExecutionException {
+
+		final PiecewiseContainerTranslation translation = addTranslations(new PiecewiseContainerTranslation(pool));
+		foreignPool.submit(() -> translation.apply(root)).get();
+
+		assertFalse(testedIn.isEmpty());
+		for (final ForkJoinPool p : testedIn)
+			assertSame(pool, p);
+	}
+
+	@Test
+	public void testSubtree() {
+
+		final JsonElement before = gson.toJsonTree(root);
+		final ContainerMetadataNode translated = addTranslations(new SubtreePiecewiseContainerTranslation(pool)).apply(root);
+
+		// the root matches the last translation, subtrees are not visited
+		assertEquals("container", convention(translated, ""));
+		assertEquals(null, convention(translated, "n5v"));
+
+		final PiecewiseContainerTranslation subtrees = new SubtreePiecewiseContainerTranslation(pool);
+		subtrees.add(new JqPredicate<>(".attributes | has(\"pixelResolution\")", gson),
+				translation("{\"convention\":\"n5v\"}"));
+		subtrees.add(recording(n -> n.getContainerAttributes().containsKey("transform")),
+				translation("{\"convention\":\"cosem\"}"));
+
+		final ContainerMetadataNode mixed = subtrees.apply(root);
+		assertEquals(null, convention(mixed, ""));
+		assertEquals("n5v", convention(mixed, "n5v"));
+		assertEquals("cosem", convention(mixed, "cosem"));
+		assertEquals(null, convention(mixed, "plain"));
+		assertEquals("cosem", convention(mixed, "plain/nested"));
+
+		// matching subtrees are translated as a whole, their children are not tested
+		assertEquals(null, convention(mixed, "n5v/s0"));
+		assertTrue(mixed.getChild("n5v/s0").isPresent());
+
+		assertEquals(before, gson.toJsonTree(root));
+	}
+
+	@Test
+	public void testSubtreeUsesConfiguredPool() throws InterruptedException, ExecutionException {
+
+		final PiecewiseContainerTranslation translation = new SubtreePiecewiseContainerTranslation(pool);
+		translation.add(recording(n -> false), translation("{\"convention\":\"none\"}"));
+		translation.add(recording(n -> n.getContainerAttributes().containsKey("transform")),
+				translation("{\"convention\":\"cosem\"}"));
+
+		final ContainerMetadataNode translated = foreignPool.submit(() -> translation.apply(root)).get();
+		assertEquals("cosem", convention(translated, "plain/nested"));
+
+		assertFalse(testedIn.isEmpty());
+		for (final ForkJoinPool p : testedIn)
+			assertSame(pool, p);
+	}
+
+}
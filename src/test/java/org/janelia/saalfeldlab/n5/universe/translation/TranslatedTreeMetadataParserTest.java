@@ -0,0 +1,127 @@
+package org.janelia.saalfeldlab.n5.universe.translation;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.janelia.saalfeldlab.n5.N5Exception;
+import org.janelia.saalfeldlab.n5.N5FSReader;
+import org.janelia.saalfeldlab.n5.N5FSWriter;
+import org.janelia.saalfeldlab.n5.universe.N5DatasetDiscoverer;
+import org.janelia.saalfeldlab.n5.universe.N5TreeNode;
+import org.janelia.saalfeldlab.n5.universe.metadata.N5MetadataParser;
+import org.janelia.saalfeldlab.n5.universe.metadata.canonical.CanonicalMetadata;
+import org.janelia.saalfeldlab.n5.universe.metadata.canonical.CanonicalSpatialMetadata;
+import org.janelia.saalfeldlab.n5.universe.translation.TranslatedTreeMetadataParser.TranslationScope;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TranslatedTreeMetadataParserTest {
+
+	/**
+	 * Translates a "res" attribute into a canonical spatial transform.
+	 */
+	static final String TRANSLATION = "include \"n5\"; "
+			+ "def xlate: .path as $p | .attributes |= ( ( if has(\"res\") then "
+			+ "{ \"spatialTransform\": { \"transform\": "
+			+ "{ \"type\": \"scale_offset\", \"scale\": .res, \"offset\": [0, 0] }, \"unit\": \"um\" } } "
+			+ "else {} end ) + { \"path\": $p } );"
+			+ "walk( if hasAttributes then xlate else . end )";
+
+	private File containerDir;
+
+	private N5FSWriter n5;
+
+	@Before
+	public void before() throws IOException {
+
+		containerDir = Files.createTempDirectory("n5-translated-parser-test-").toFile();
+		n5 = new N5FSWriter(containerDir.getCanonicalPath(), JqUtils.gsonBuilder(null));
+		n5.createGroup("a");
+		n5.setAttribute("a", "res", new double[]{2, 3});
+		n5.createGroup("b");
+	}
+
+	@After
+	public void after() {
+
+		try {
+			n5.remove();
+		} catch (final N5Exception e) {}
+	}
+
+	@Test
+	public void testContainerTranslationIsReused() {
+
+		final TranslatedTreeMetadataParser parser = new TranslatedTreeMetadataParser(TRANSLATION);
+		final Optional<CanonicalMetadata> meta = parser.parseMetadata(n5, "a");
+		assertTrue("translated", meta.isPresent());
+		assertTrue("spatial", meta.get() instanceof CanonicalSpatialMetadata);
+		assertFalse("not translated", parser.parseMetadata(n5, "b").isPresent());
+
+		// the translation of the container is reused for the same reader
+		n5.removeAttribute("a", "res");
+		assertTrue("cached translation", parser.parseMetadata(n5, "a").isPresent());
+
+		// until it is invalidated
+		parser.invalidate();
+		assertFalse("translation rebuilt", parser.parseMetadata(n5, "a").isPresent());
+
+		// or another reader is used
+		n5.setAttribute("a", "res", new double[]{2, 3});
+		assertFalse("cached translation", parser.parseMetadata(n5, "a").isPresent());
+		try (final N5FSReader other = new N5FSReader(containerDir.getAbsolutePath(), JqUtils.gsonBuilder(null))) {
+			assertTrue("translation rebuilt for other reader", parser.parseMetadata(other, "a").isPresent());
+		}
+	}
+
+	@Test
+	public void testNodeTranslation() {
+
+		final TranslatedTreeMetadataParser parser = new TranslatedTreeMetadataParser(TRANSLATION, x -> true,
+				TranslationScope.NODE);
+
+		final Optional<CanonicalMetadata> meta = parser.parseMetadata(n5, "a");
+		assertTrue("translated", meta.isPresent());
+		assertTrue("spatial", meta.get() instanceof CanonicalSpatialMetadata);
+		assertFalse("not translated", parser.parseMetadata(n5, "b").isPresent());
+
+		// node translations read the node's current attributes every time
+		n5.removeAttribute("a", "res");
+		assertFalse("removed", parser.parseMetadata(n5, "a").isPresent());
+		n5.setAttribute("b", "res", new double[]{4, 5});
+		assertTrue("added", parser.parseMetadata(n5, "b").isPresent());
+	}
+
+	@Test
+	public void testDiscovery() throws IOException {
+
+		final ExecutorService executor = Executors.newFixedThreadPool(2);
+		try {
+			for (final TranslationScope scope : TranslationScope.values()) {
+				final List<N5MetadataParser<?>> parsers = Collections.singletonList(
+						new TranslatedTreeMetadataParser(TRANSLATION, x -> true, scope));
+				final N5DatasetDiscoverer discoverer = new N5DatasetDiscoverer(n5, executor, parsers, Collections.emptyList());
+
+				// the stored attributes have none of the canonical keys
+				final N5TreeNode root = discoverer.discoverAndParseRecursive("");
+				final Optional<N5TreeNode> a = root.getDescendant("a");
+				assertTrue(scope + " discovered", a.isPresent());
+				assertTrue(scope + " spatial", a.get().getMetadata() instanceof CanonicalSpatialMetadata);
+				assertFalse(scope + " not translated", root.getDescendant("b").isPresent());
+			}
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+}